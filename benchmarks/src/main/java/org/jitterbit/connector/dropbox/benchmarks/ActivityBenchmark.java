@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.benchmarks;
+
+import org.jitterbit.connector.dropbox.DropboxConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the end-to-end <code>execute()</code> of each activity against a {@link StubDropbox}, from the
+ * request payload to the response payload, through the connection, the shared client, the metrics and the
+ * concurrency limiter of the connector. The throughput and the distribution of the latencies are reported;
+ * the allocation rate is reported with the <code>gc</code> profiler (see {@link Benchmarks}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActivityBenchmark {
+
+  @Param({"fetch", "get", "process", "put", "batch-fetch", "batch-put", "download-folder"})
+  public String activity;
+
+  @Param({"1024", "1048576"})
+  public int fileSize;
+
+  @Setup
+  public void setup() throws Exception {
+    // the activities log every execution at the info level
+    Logger.getLogger("org.jitterbit").setLevel(Level.WARNING);
+    byte[] content = new byte[fileSize];
+    new Random(42).nextBytes(content);
+    ActivityWorkload.seed(dropbox, content);
+    connection = dropbox.newConnection();
+    workload = ActivityWorkload.create(activity, content);
+  }
+
+  @Benchmark
+  public long execute() throws Exception {
+    return workload.execute(connection);
+  }
+
+  private final StubDropbox dropbox = new StubDropbox();
+  private DropboxConnection connection;
+  private ActivityWorkload workload;
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.benchmarks;
+
+import org.jitterbit.connector.dropbox.DropboxUtils;
+import org.jitterbit.connector.dropbox.activities.BatchFetchFileActivity;
+import org.jitterbit.connector.dropbox.activities.BatchPutFileActivity;
+import org.jitterbit.connector.dropbox.activities.DownloadFolderActivity;
+import org.jitterbit.connector.dropbox.activities.FetchFileActivity;
+import org.jitterbit.connector.dropbox.activities.GetFileActivity;
+import org.jitterbit.connector.dropbox.activities.ProcessFileActivity;
+import org.jitterbit.connector.dropbox.activities.PutFileActivity;
+import org.jitterbit.connector.dropbox.schema.BatchPutFileRequest;
+import org.jitterbit.connector.dropbox.schema.PutFileRequest;
+import org.jitterbit.connector.sdk.Connection;
+import org.jitterbit.connector.sdk.JitterbitActivity;
+import org.jitterbit.connector.sdk.exceptions.ActivityExecutionException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The execution of an activity on the files of a {@link StubDropbox}: the activity, its function
+ * parameters and its request payload. The files the activities read are added by {@link #seed}.
+ */
+final class ActivityWorkload {
+
+  static final List<String> ACTIVITIES = Collections.unmodifiableList(Arrays.asList(
+      "fetch", "get", "process", "put", "batch-fetch", "batch-put", "download-folder"));
+
+  static final String FOLDER = "/benchmark";
+  static final int BATCH_SIZE = 8;
+
+  private ActivityWorkload(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Adds the files read by the activities.
+   *
+   * @param dropbox the Dropbox stub
+   * @param content the content of the files
+   */
+  static void seed(StubDropbox dropbox, byte[] content) {
+    dropbox.put(FOLDER + "/file.bin", content);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      dropbox.put(FOLDER + "/batch/file-" + i + ".bin", content);
+    }
+  }
+
+  /**
+   * Creates the workload of an activity.
+   *
+   * @param activity the name of the activity, one of {@link #ACTIVITIES}
+   * @param content the content of the files written by the activity
+   * @return the workload
+   * @throws Exception if the request payload cannot be created
+   */
+  static ActivityWorkload create(String activity, byte[] content) throws Exception {
+    ActivityWorkload workload = new ActivityWorkload(activity);
+    Map<String, String> params = workload.params;
+    params.put("folder", FOLDER);
+    params.put("fileName", "file.bin");
+    switch (activity) {
+      case "fetch":
+        workload.activity = new FetchFileActivity.FetchFileActivityFactory().createActivity();
+        break;
+      case "get":
+        params.put("list-object", "{\"name\": \"file.bin\"}");
+        workload.activity = new GetFileActivity.GetFileActivityFactory().createActivity();
+        break;
+      case "process":
+        workload.activity = new ProcessFileActivity.ProcessFileActivityFactory().createActivity();
+        break;
+      case "put":
+        params.put("fileName", "upload.bin");
+        PutFileRequest put = new PutFileRequest();
+        put.setPath(FOLDER + "/upload.bin");
+        put.setContent(content);
+        workload.request = marshall(PutFileRequest.class, put);
+        workload.activity = new PutFileActivity.PutFileActivityFactory().createActivity();
+        break;
+      case "batch-fetch":
+        params.put("folder", FOLDER + "/batch");
+        params.put("pattern", "*.bin");
+        workload.activity = new BatchFetchFileActivity.BatchFetchFileActivityFactory().createActivity();
+        break;
+      case "batch-put":
+        BatchPutFileRequest batch = new BatchPutFileRequest();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+          BatchPutFileRequest.PutFileRequest file = new BatchPutFileRequest.PutFileRequest();
+          file.setPath(FOLDER + "/uploads/file-" + i + ".bin");
+          file.setContent(content);
+          batch.getPutFileRequest().add(file);
+        }
+        workload.request = marshall(BatchPutFileRequest.class, batch);
+        workload.activity = new BatchPutFileActivity.BatchPutFileActivityFactory().createActivity();
+        break;
+      case "download-folder":
+        params.put("folder", FOLDER + "/batch");
+        params.put("unzip", "true");
+        workload.activity = new DownloadFolderActivity.DownloadFolderActivityFactory().createActivity();
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown activity " + activity + ", expecting one of " + ACTIVITIES);
+    }
+    return workload;
+  }
+
+  /**
+   * Executes the activity with a connection, which the activity closes.
+   *
+   * @param connection the connection
+   * @return the size of the response payload
+   * @throws ActivityExecutionException if the activity fails
+   */
+  long execute(Connection connection) throws ActivityExecutionException {
+    BenchmarkContext context = new BenchmarkContext(connection, params, request);
+    activity.execute(context);
+    return context.getResponseSize();
+  }
+
+  String getName() {
+    return name;
+  }
+
+  private static <T> byte[] marshall(Class<T> type, T value) throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DropboxUtils.marshall(type, value, os);
+    return os.toByteArray();
+  }
+
+  private final String name;
+  private final Map<String, String> params = new HashMap<>();
+  private JitterbitActivity activity;
+  private byte[] request;
+}
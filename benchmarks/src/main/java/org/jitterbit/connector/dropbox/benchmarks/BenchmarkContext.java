@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.benchmarks;
+
+import org.jitterbit.connector.sdk.Connection;
+import org.jitterbit.connector.sdk.JitterbitActivity;
+import org.jitterbit.connector.sdk.Payload;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Execution context of an activity run by a benchmark. The request payload is read from memory and
+ * the response payload is counted and discarded, so that neither weighs on the measurement.
+ */
+public class BenchmarkContext implements JitterbitActivity.ExecutionContext {
+
+  /**
+   * Creates a context.
+   *
+   * @param connection the connection of the activity
+   * @param functionParams the function parameters of the activity
+   * @param request the request payload, or null if the activity has none
+   */
+  public BenchmarkContext(Connection connection, Map<String, String> functionParams, byte[] request) {
+    this.connection = connection;
+    this.functionParams = functionParams;
+    this.request = new BytesPayload(request != null ? request : new byte[0]);
+  }
+
+  @Override
+  public Connection getConnection() {
+    return connection;
+  }
+
+  @Override
+  public Map<String, String> getFunctionParameters() {
+    return functionParams;
+  }
+
+  @Override
+  public boolean persistenceRequired() {
+    return false;
+  }
+
+  @Override
+  public Payload getRequestPayload() {
+    return request;
+  }
+
+  @Override
+  public Payload getResponsePayload() {
+    return response;
+  }
+
+  /**
+   * Returns the size of the response written by the activity.
+   *
+   * @return the number of bytes
+   */
+  public long getResponseSize() {
+    return response.size;
+  }
+
+  /**
+   * A request payload read from a byte array.
+   */
+  private static final class BytesPayload implements Payload {
+
+    BytesPayload(byte[] content) {
+      this.content = content;
+    }
+
+    @Override
+    public String getContent() {
+      return new String(content, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void setContent(String content) {
+      this.content = content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      throw new UnsupportedOperationException("The request payload is read only");
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private byte[] content;
+  }
+
+  /**
+   * A response payload counting the bytes written to it.
+   */
+  private static final class CountingPayload implements Payload {
+
+    @Override
+    public String getContent() {
+      return "";
+    }
+
+    @Override
+    public void setContent(String content) {
+      size = content.length();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return new ByteArrayInputStream(new byte[0]);
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return os;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private final OutputStream os = new OutputStream() {
+      @Override
+      public void write(int b) {
+        size++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        size += len;
+      }
+    };
+    private long size;
+  }
+
+  private final Connection connection;
+  private final Map<String, String> functionParams;
+  private final Payload request;
+  private final CountingPayload response = new CountingPayload();
+}
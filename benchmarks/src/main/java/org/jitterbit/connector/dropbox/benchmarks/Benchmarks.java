@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of the connector with the JMH command line options, such as a benchmark
+ * name pattern and <code>-p fileSize=1024</code>. The <code>gc</code> profiler, which reports the
+ * allocation rate and the garbage collections of each benchmark, is added unless profilers are
+ * given with <code>-prof</code>.
+ */
+public final class Benchmarks {
+
+  private Benchmarks() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions cmdOptions = new CommandLineOptions(args);
+    if (cmdOptions.shouldHelp() || cmdOptions.shouldList() || cmdOptions.shouldListProfilers() ||
+        cmdOptions.shouldListResultFormats() || cmdOptions.shouldListWithParams()) {
+      // let JMH print the requested information
+      org.openjdk.jmh.Main.main(args);
+      return;
+    }
+    OptionsBuilder builder = new OptionsBuilder();
+    builder.parent(cmdOptions);
+    if (cmdOptions.getProfilers().isEmpty()) {
+      builder.addProfiler(GCProfiler.class);
+    }
+    Options options = builder.build();
+    new Runner(options).run();
+  }
+}
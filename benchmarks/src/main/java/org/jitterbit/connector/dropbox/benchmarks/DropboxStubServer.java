@@ -0,0 +1,381 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.benchmarks;
+
+import com.dropbox.core.http.HttpRequestor;
+import org.jitterbit.connector.dropbox.DropboxConstants;
+import org.jitterbit.connector.dropbox.DropboxHttpTransport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process HTTP server answering the Dropbox API endpoints used by the connector from a {@link StubDropbox}.
+ * <p>
+ * A connection is pointed at the server with the <code>http-base-url</code> property of its endpoint (see
+ * {@link #getEndpointProperties(String)}), so that the requests go through the whole HTTP stack of the
+ * connector; the property is only honoured when the {@link DropboxHttpTransport#ALLOW_BASE_URL_PROPERTY}
+ * system property is <code>true</code>. The server can degrade its answers like a loaded Dropbox would:
+ * </p>
+ * <ul>
+ *   <li>a latency, with a random jitter, before each response</li>
+ *   <li>a bandwidth limit on the body of each request and response</li>
+ *   <li>a ratio of requests rate limited with a <code>429</code> status and a <code>Retry-After</code> header</li>
+ *   <li>a ratio of requests failed with a <code>500</code> or <code>503</code> status</li>
+ * </ul>
+ * <p>
+ * The server speaks HTTP/1.1 with persistent connections, one thread per connection. The Dropbox SDK looks
+ * up the <code>Dropbox-API-Result</code> and <code>Retry-After</code> headers with their exact case, which
+ * the server keeps.
+ * </p>
+ */
+public class DropboxStubServer implements AutoCloseable {
+
+  /**
+   * Creates a server answering from a Dropbox stub. The server is started by {@link #start()}.
+   *
+   * @param dropbox the Dropbox stub
+   */
+  public DropboxStubServer(StubDropbox dropbox) {
+    this.dropbox = dropbox;
+  }
+
+  /**
+   * Starts the server on a free port of the loopback interface.
+   *
+   * @return this server
+   * @throws IOException if the server cannot be started
+   */
+  public DropboxStubServer start() throws IOException {
+    server = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+    AtomicInteger threads = new AtomicInteger();
+    executor = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "dropbox-stub-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.execute(this::accept);
+    return this;
+  }
+
+  /**
+   * Returns the URL of the server, such as <code>http://127.0.0.1:49152</code>.
+   *
+   * @return the base URL
+   */
+  public String getBaseUrl() {
+    return "http://" + server.getInetAddress().getHostAddress() + ":" + server.getLocalPort();
+  }
+
+  /**
+   * Returns the properties of a Dropbox endpoint whose connections are answered by this server.
+   *
+   * @param transport the HTTP transport of the connector, <code>standard</code> or <code>okhttp</code>
+   * @return the endpoint properties
+   */
+  public Map<String, String> getEndpointProperties(String transport) {
+    Map<String, String> props = new HashMap<>();
+    props.put(DropboxConstants.APP_KEY, "stub");
+    props.put(DropboxConstants.ACCESS_TOKEN, "stub-" + System.identityHashCode(this));
+    props.put(DropboxConstants.HTTP_BASE_URL, getBaseUrl());
+    props.put(DropboxConstants.HTTP_TRANSPORT, transport);
+    return props;
+  }
+
+  private void accept() {
+    while (!server.isClosed()) {
+      try {
+        Socket socket = server.accept();
+        executor.execute(() -> serve(socket));
+      } catch (IOException x) {
+        // the server is closed
+      }
+    }
+  }
+
+  /**
+   * Answers the requests of a connection until the client closes it.
+   */
+  private void serve(Socket socket) {
+    try (Socket s = socket) {
+      s.setTcpNoDelay(true);
+      InputStream in = new BufferedInputStream(s.getInputStream());
+      OutputStream out = new BufferedOutputStream(s.getOutputStream());
+      for (String line = readLine(in); line != null && !line.isEmpty(); line = readLine(in)) {
+        String[] request = line.split(" ");
+        List<HttpRequestor.Header> headers = new ArrayList<>();
+        Map<String, String> values = new HashMap<>();
+        for (String header = readLine(in); header != null && !header.isEmpty(); header = readLine(in)) {
+          int colon = header.indexOf(':');
+          String key = header.substring(0, colon).trim();
+          String value = header.substring(colon + 1).trim();
+          headers.add(new HttpRequestor.Header(key, value));
+          values.put(key.toLowerCase(Locale.ROOT), value);
+        }
+        byte[] body = readBody(in, values);
+        respond(request[1], headers, body, out);
+        out.flush();
+        if ("close".equalsIgnoreCase(values.get("connection"))) {
+          return;
+        }
+      }
+    } catch (SocketException | EOFException x) {
+      // the client closed the connection
+    } catch (IOException x) {
+      if (!server.isClosed()) {
+        x.printStackTrace();
+      }
+    }
+  }
+
+  private void respond(String uri, List<HttpRequestor.Header> headers, byte[] body, OutputStream out)
+      throws IOException {
+    requests.incrementAndGet();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    sleep(latencyMillis + (latencyJitterMillis > 0 ? random.nextInt(latencyJitterMillis + 1) : 0));
+    double fault = random.nextDouble();
+    Map<String, List<String>> responseHeaders = new HashMap<>();
+    if (fault < rateLimitedRatio) {
+      rateLimited.incrementAndGet();
+      responseHeaders.put("Retry-After", Collections.singletonList(String.valueOf(retryAfterSeconds)));
+      responseHeaders.put("Content-Type", Collections.singletonList("application/json"));
+      write(out, 429, responseHeaders, ("{\"error_summary\": \"too_many_requests/\", \"error\": " +
+          "{\"reason\": {\".tag\": \"too_many_requests\"}, \"retry_after\": " + retryAfterSeconds + "}}")
+          .getBytes(StandardCharsets.UTF_8));
+    } else if (fault < rateLimitedRatio + serverErrorRatio) {
+      serverErrors.incrementAndGet();
+      responseHeaders.put("Content-Type", Collections.singletonList("text/plain"));
+      write(out, random.nextBoolean() ? 500 : 503, responseHeaders,
+          "Injected server error".getBytes(StandardCharsets.UTF_8));
+    } else {
+      int query = uri.indexOf('?');
+      HttpRequestor.Response response = dropbox.handle("https://stub" + (query < 0 ? uri : uri.substring(0, query)),
+          headers, body);
+      write(out, response.getStatusCode(), response.getHeaders(), readAll(response.getBody()));
+    }
+  }
+
+  private void write(OutputStream out, int status, Map<String, List<String>> headers, byte[] body)
+      throws IOException {
+    StringBuilder head = new StringBuilder("HTTP/1.1 ").append(status).append(' ')
+        .append(status < 300 ? "OK" : status < 500 ? "Client Error" : "Server Error").append("\r\n");
+    headers.forEach((key, values) -> values.forEach(value -> head.append(key).append(": ").append(value)
+        .append("\r\n")));
+    head.append("Content-Length: ").append(body.length).append("\r\n\r\n");
+    out.write(head.toString().getBytes(StandardCharsets.UTF_8));
+    long started = System.nanoTime();
+    for (int off = 0; off < body.length; off += CHUNK_SIZE) {
+      int len = Math.min(CHUNK_SIZE, body.length - off);
+      out.write(body, off, len);
+      if (bandwidthBytesPerSecond > 0) {
+        out.flush();
+        throttle(started, off + len);
+      }
+    }
+  }
+
+  /**
+   * Reads the body of a request, sent with a length or in chunks.
+   */
+  private byte[] readBody(InputStream in, Map<String, String> headers) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    long started = System.nanoTime();
+    if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+      for (int size = Integer.parseInt(readLine(in).split(";")[0].trim(), 16); size > 0;
+          size = Integer.parseInt(readLine(in).split(";")[0].trim(), 16)) {
+        copy(in, body, size, started);
+        readLine(in);
+      }
+      // skip the trailers
+      String line = readLine(in);
+      while (line != null && !line.isEmpty()) {
+        line = readLine(in);
+      }
+    } else if (headers.containsKey("content-length")) {
+      copy(in, body, Long.parseLong(headers.get("content-length")), started);
+    }
+    return body.toByteArray();
+  }
+
+  private void copy(InputStream in, ByteArrayOutputStream body, long size, long started) throws IOException {
+    byte[] buffer = new byte[CHUNK_SIZE];
+    while (size > 0) {
+      int read = in.read(buffer, 0, (int) Math.min(buffer.length, size));
+      if (read < 0) {
+        throw new EOFException("Truncated request body");
+      }
+      body.write(buffer, 0, read);
+      size -= read;
+      throttle(started, body.size());
+    }
+  }
+
+  /**
+   * Reads a line ended by CRLF, or returns null at the end of the stream.
+   */
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    for (int c = in.read(); c != '\n'; c = in.read()) {
+      if (c < 0) {
+        return line.length() > 0 ? line.toString() : null;
+      }
+      if (c != '\r') {
+        line.append((char) c);
+      }
+    }
+    return line.toString();
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    byte[] buffer = new byte[CHUNK_SIZE];
+    for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+      os.write(buffer, 0, read);
+    }
+    return os.toByteArray();
+  }
+
+  /**
+   * Waits until the bytes transferred since a start time fit in the bandwidth limit.
+   */
+  private void throttle(long started, long bytes) throws InterruptedIOException {
+    long bandwidth = bandwidthBytesPerSecond;
+    if (bandwidth > 0) {
+      long due = TimeUnit.SECONDS.toNanos(bytes) / bandwidth - (System.nanoTime() - started);
+      sleep(TimeUnit.NANOSECONDS.toMillis(due));
+    }
+  }
+
+  private static void sleep(long millis) throws InterruptedIOException {
+    if (millis <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException x) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while delaying a response");
+    }
+  }
+
+  /**
+   * Sets the latency added before each response.
+   *
+   * @param latencyMillis the fixed part of the latency, in milliseconds
+   * @param latencyJitterMillis the maximum of the random part of the latency, in milliseconds
+   * @return this server
+   */
+  public DropboxStubServer setLatency(int latencyMillis, int latencyJitterMillis) {
+    this.latencyMillis = Math.max(0, latencyMillis);
+    this.latencyJitterMillis = Math.max(0, latencyJitterMillis);
+    return this;
+  }
+
+  /**
+   * Sets the bandwidth of the body of each request and response.
+   *
+   * @param bandwidthBytesPerSecond the bandwidth in bytes per second, or 0 for no limit
+   * @return this server
+   */
+  public DropboxStubServer setBandwidth(long bandwidthBytesPerSecond) {
+    this.bandwidthBytesPerSecond = Math.max(0, bandwidthBytesPerSecond);
+    return this;
+  }
+
+  /**
+   * Sets the ratio of the requests rate limited with a <code>429</code> status.
+   *
+   * @param rateLimitedRatio the ratio, between 0 and 1
+   * @param retryAfterSeconds the wait requested by the <code>Retry-After</code> header
+   * @return this server
+   */
+  public DropboxStubServer setRateLimited(double rateLimitedRatio, int retryAfterSeconds) {
+    this.rateLimitedRatio = rateLimitedRatio;
+    this.retryAfterSeconds = retryAfterSeconds;
+    return this;
+  }
+
+  /**
+   * Sets the ratio of the requests failed with a <code>500</code> or <code>503</code> status.
+   *
+   * @param serverErrorRatio the ratio, between 0 and 1
+   * @return this server
+   */
+  public DropboxStubServer setServerErrors(double serverErrorRatio) {
+    this.serverErrorRatio = serverErrorRatio;
+    return this;
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  public long getRateLimitedCount() {
+    return rateLimited.get();
+  }
+
+  public long getServerErrorCount() {
+    return serverErrors.get();
+  }
+
+  @Override
+  public void close() {
+    if (server != null) {
+      try {
+        server.close();
+      } catch (IOException x) {
+        // the server is stopped anyway
+      }
+      executor.shutdownNow();
+    }
+  }
+
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  private final StubDropbox dropbox;
+  private ServerSocket server;
+  private ExecutorService executor;
+  private volatile int latencyMillis;
+  private volatile int latencyJitterMillis;
+  private volatile long bandwidthBytesPerSecond;
+  private volatile double rateLimitedRatio;
+  private volatile int retryAfterSeconds = 1;
+  private volatile double serverErrorRatio;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong rateLimited = new AtomicLong();
+  private final AtomicLong serverErrors = new AtomicLong();
+}
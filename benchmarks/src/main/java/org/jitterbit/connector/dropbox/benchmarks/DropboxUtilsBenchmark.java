@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.benchmarks;
+
+import org.jitterbit.connector.dropbox.DropboxUtils;
+import org.jitterbit.connector.dropbox.schema.FetchFileResponse;
+import org.jitterbit.connector.dropbox.schema.PutFileRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBContext;
+
+/**
+ * Measures the per-call cost of the JAXB (un)marshalling done by the Fetch File and Put File
+ * activities. The <code>uncached</code> benchmarks create a new JAXB context on every call, as
+ * {@link DropboxUtils} used to; the <code>cached</code> benchmarks go through {@link DropboxUtils}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DropboxUtilsBenchmark {
+
+  @Param({"1024", "1048576"})
+  public int contentSize;
+
+  @Setup
+  public void setup() throws Exception {
+    byte[] content = new byte[contentSize];
+    new Random(42).nextBytes(content);
+
+    response = new FetchFileResponse();
+    response.setName("benchmark.bin");
+    response.setRev("015f3a7bd2c6a1e000000012fd4f2c0");
+    response.setSize(BigInteger.valueOf(contentSize));
+    response.setContent(content);
+
+    PutFileRequest request = new PutFileRequest();
+    request.setPath("/benchmark.bin");
+    request.setContent(content);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DropboxUtils.marshall(PutFileRequest.class, request, os);
+    requestXml = os.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] marshallUncached() throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    JAXBContext.newInstance(FetchFileResponse.class).createMarshaller().marshal(response, os);
+    return os.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] marshallCached() throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DropboxUtils.marshall(FetchFileResponse.class, response, os);
+    return os.toByteArray();
+  }
+
+  @Benchmark
+  public Object unmarshallUncached() throws Exception {
+    return JAXBContext.newInstance(PutFileRequest.class).createUnmarshaller()
+        .unmarshal(new ByteArrayInputStream(requestXml));
+  }
+
+  @Benchmark
+  public PutFileRequest unmarshallCached() throws Exception {
+    return DropboxUtils.unmarshall(PutFileRequest.class, new ByteArrayInputStream(requestXml));
+  }
+
+  private FetchFileResponse response;
+  private byte[] requestXml;
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.benchmarks;
+
+import org.jitterbit.connector.dropbox.DropboxConnector;
+import org.jitterbit.connector.dropbox.DropboxHttpTransport;
+import org.jitterbit.connector.dropbox.DropboxMetrics;
+import org.jitterbit.connector.sdk.ConnectionFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Load test of the connector against a {@link DropboxStubServer}.
+ * <p>
+ * A number of workers execute a weighted mix of activities in a loop, each execution with a new connection
+ * of the connector, as the Jitterbit agent does, over HTTP to the stub server. After a warm-up, the
+ * throughput and the 50th, 99th and 99.9th percentiles of the latency of each activity are reported, with
+ * the faults injected by the server and the retries of the connector. The options are:
+ * </p>
+ * <ul>
+ *   <li><code>--concurrency=16</code>: the number of workers</li>
+ *   <li><code>--duration=30</code> and <code>--warmup=5</code>: the measured and warm-up times, in seconds</li>
+ *   <li><code>--mix=fetch:4,get:2,put:2,batch-fetch:1</code>: the activities and their weights</li>
+ *   <li><code>--file-size=1024</code>: the size of the files read and written, in bytes</li>
+ *   <li><code>--transport=standard</code>: the HTTP transport of the connector, or <code>okhttp</code></li>
+ *   <li><code>--latency-ms=0</code> and <code>--jitter-ms=0</code>: the latency of the server</li>
+ *   <li><code>--bandwidth=0</code>: the bandwidth of each request and response, in bytes per second</li>
+ *   <li><code>--rate-limited=0</code> and <code>--server-errors=0</code>: the ratios of the requests answered
+ *   with a <code>429</code> and with a <code>500</code> or <code>503</code> status</li>
+ * </ul>
+ */
+public final class LoadDriver {
+
+  private LoadDriver() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals < 0 || !DEFAULTS.containsKey(arg.substring(2, equals))) {
+        System.err.println("Usage: LoadDriver [--option=value]... with the options and their defaults " + DEFAULTS);
+        System.exit(1);
+      }
+      options.put(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+    // the endpoints are pointed at the local stub server with their http-base-url property
+    System.setProperty(DropboxHttpTransport.ALLOW_BASE_URL_PROPERTY, "true");
+    // the activities log every execution at the info level, and the retries at the warning level
+    Logger.getLogger("org.jitterbit").setLevel(Level.SEVERE);
+    int concurrency = Integer.parseInt(options.get("concurrency"));
+    long duration = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("duration")));
+    long warmup = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("warmup")));
+    byte[] content = new byte[Integer.parseInt(options.get("file-size"))];
+    new Random(42).nextBytes(content);
+
+    List<ActivityWorkload> workloads = new ArrayList<>();
+    Map<String, Stats> stats = new LinkedHashMap<>();
+    for (String entry : options.get("mix").split(",")) {
+      String[] weighted = entry.trim().split(":");
+      ActivityWorkload workload = ActivityWorkload.create(weighted[0], content);
+      for (int i = weighted.length > 1 ? Integer.parseInt(weighted[1]) : 1; i > 0; i--) {
+        workloads.add(workload);
+      }
+      stats.put(workload.getName(), new Stats());
+    }
+
+    StubDropbox dropbox = new StubDropbox();
+    ActivityWorkload.seed(dropbox, content);
+    try (DropboxStubServer server = new DropboxStubServer(dropbox).start()) {
+      server.setLatency(Integer.parseInt(options.get("latency-ms")), Integer.parseInt(options.get("jitter-ms")))
+          .setBandwidth(Long.parseLong(options.get("bandwidth")))
+          .setRateLimited(Double.parseDouble(options.get("rate-limited")), 1)
+          .setServerErrors(Double.parseDouble(options.get("server-errors")));
+      Map<String, String> endpoint = server.getEndpointProperties(options.get("transport"));
+      ConnectionFactory connections = new DropboxConnector.DropboxConnectorFactory().create().getConnectionFactory();
+      System.out.println("Running " + options + " against " + server.getBaseUrl());
+
+      long started = System.nanoTime();
+      long measured = started + warmup;
+      long deadline = measured + duration;
+      ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+      for (int i = 0; i < concurrency; i++) {
+        workers.execute(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          for (long start = System.nanoTime(); start < deadline; start = System.nanoTime()) {
+            ActivityWorkload workload = workloads.get(random.nextInt(workloads.size()));
+            Exception failure = null;
+            try {
+              workload.execute(connections.createConnection(endpoint));
+            } catch (Exception x) {
+              failure = x;
+            }
+            if (start >= measured) {
+              stats.get(workload.getName()).record(System.nanoTime() - start, failure);
+            }
+          }
+        });
+      }
+      workers.shutdown();
+      workers.awaitTermination(deadline - System.nanoTime() + TimeUnit.MINUTES.toNanos(5), TimeUnit.NANOSECONDS);
+
+      double seconds = duration / 1e9;
+      Stats total = new Stats();
+      System.out.println();
+      System.out.println(String.format("%-16s %10s %8s %12s %10s %10s %10s %10s",
+          "Activity", "Ops", "Errors", "Ops/s", "p50 (ms)", "p99 (ms)", "p99.9 (ms)", "Max (ms)"));
+      for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+        print(entry.getKey(), entry.getValue(), seconds);
+        total.add(entry.getValue());
+      }
+      print("all", total, seconds);
+      stats.forEach((name, activity) -> {
+        if (activity.failure != null) {
+          System.out.println();
+          System.out.println("First failure of " + name + ":");
+          activity.failure.printStackTrace(System.out);
+        }
+      });
+      System.out.println();
+      System.out.println("Stub server: " + server.getRequestCount() + " requests, " + server.getRateLimitedCount() +
+          " rate limited, " + server.getServerErrorCount() + " server errors");
+      System.out.println("Connector: " + DropboxMetrics.INSTANCE.getRetryCount() + " retries, " +
+          DropboxMetrics.INSTANCE.getClients().values());
+    }
+  }
+
+  private static void print(String name, Stats stats, double seconds) {
+    long[] latencies = stats.sorted();
+    System.out.println(String.format("%-16s %10d %8d %12.1f %10.2f %10.2f %10.2f %10.2f", name, latencies.length,
+        stats.errors, latencies.length / seconds, percentile(latencies, 0.5), percentile(latencies, 0.99),
+        percentile(latencies, 0.999), percentile(latencies, 1)));
+  }
+
+  /**
+   * Returns a percentile of sorted latencies, in milliseconds.
+   */
+  private static double percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(percentile * sorted.length) - 1;
+    return sorted[Math.max(0, index)] / 1e6;
+  }
+
+  /**
+   * The latencies of the executions of an activity, failed or not, its number of failures and the first one.
+   */
+  private static final class Stats {
+
+    synchronized void record(long nanos, Exception failure) {
+      if (size == latencies.length) {
+        latencies = Arrays.copyOf(latencies, size * 2);
+      }
+      latencies[size++] = nanos;
+      if (failure != null) {
+        errors++;
+        this.failure = this.failure != null ? this.failure : failure;
+      }
+    }
+
+    synchronized void add(Stats other) {
+      for (long nanos : other.sorted()) {
+        record(nanos, null);
+      }
+      errors += other.errors;
+    }
+
+    synchronized long[] sorted() {
+      long[] sorted = Arrays.copyOf(latencies, size);
+      Arrays.sort(sorted);
+      return sorted;
+    }
+
+    private long[] latencies = new long[1024];
+    private int size;
+    private long errors;
+    private Exception failure;
+  }
+
+  private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+  static {
+    DEFAULTS.put("concurrency", "16");
+    DEFAULTS.put("duration", "30");
+    DEFAULTS.put("warmup", "5");
+    DEFAULTS.put("mix", "fetch:4,get:2,put:2,batch-fetch:1");
+    DEFAULTS.put("file-size", "1024");
+    DEFAULTS.put("transport", "standard");
+    DEFAULTS.put("latency-ms", "0");
+    DEFAULTS.put("jitter-ms", "0");
+    DEFAULTS.put("bandwidth", "0");
+    DEFAULTS.put("rate-limited", "0");
+    DEFAULTS.put("server-errors", "0");
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.benchmarks;
+
+import org.jitterbit.connector.dropbox.activities.BatchFetchFileActivity;
+import org.jitterbit.connector.dropbox.activities.BatchPutFileActivity;
+import org.jitterbit.connector.dropbox.activities.DownloadFolderActivity;
+import org.jitterbit.connector.dropbox.activities.FetchFileActivity;
+import org.jitterbit.connector.dropbox.activities.GetFileActivity;
+import org.jitterbit.connector.dropbox.activities.PutFileActivity;
+import org.jitterbit.connector.sdk.Connection;
+import org.jitterbit.connector.sdk.Discoverable;
+import org.jitterbit.connector.sdk.JitterbitActivity;
+import org.jitterbit.connector.sdk.metadata.ActivityFunctionParameters;
+import org.jitterbit.connector.sdk.metadata.ActivityRequestResponseMetaData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the schema discovery of the activities through <code>getActivityRequestResponseMetadata</code>:
+ * the loading of the XML schemas of the activities with a static schema, and the sampling of a JSON file,
+ * through the schema cache, for the Get File activity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchemaBenchmark {
+
+  @Param({"fetch", "put", "batch-fetch", "batch-put", "download-folder", "get"})
+  public String activity;
+
+  @Setup
+  public void setup() {
+    Logger.getLogger("org.jitterbit").setLevel(Level.WARNING);
+    StubDropbox dropbox = new StubDropbox();
+    StringBuilder json = new StringBuilder("[");
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      json.append(i > 0 ? ", " : "").append("{\"id\": ").append(i).append(", \"value\": \"")
+          .append(Long.toHexString(random.nextLong())).append("\"}");
+    }
+    dropbox.put("/benchmark/sample.json", json.append("]").toString().getBytes());
+    Connection connection = dropbox.newConnection();
+
+    Map<String, String> props = new HashMap<>();
+    props.put("folder", "/benchmark");
+    ActivityFunctionParameters params = new ActivityFunctionParameters().setProperties(props)
+        .setObjectName("sample.json");
+    request = new Discoverable.DiscoverContextRequest<ActivityFunctionParameters>() {
+      @Override
+      public ActivityFunctionParameters getRequest() {
+        return params;
+      }
+
+      @Override
+      public Connection getConnection() {
+        return connection;
+      }
+    };
+    switch (activity) {
+      case "fetch":
+        target = new FetchFileActivity.FetchFileActivityFactory().createActivity();
+        break;
+      case "put":
+        target = new PutFileActivity.PutFileActivityFactory().createActivity();
+        break;
+      case "batch-fetch":
+        target = new BatchFetchFileActivity.BatchFetchFileActivityFactory().createActivity();
+        break;
+      case "batch-put":
+        target = new BatchPutFileActivity.BatchPutFileActivityFactory().createActivity();
+        break;
+      case "download-folder":
+        target = new DownloadFolderActivity.DownloadFolderActivityFactory().createActivity();
+        break;
+      case "get":
+        target = new GetFileActivity.GetFileActivityFactory().createActivity();
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown activity " + activity);
+    }
+  }
+
+  @Benchmark
+  public ActivityRequestResponseMetaData getActivityRequestResponseMetadata() throws Exception {
+    return ((Discoverable) target).getActivityRequestResponseMetadata(request);
+  }
+
+  private JitterbitActivity target;
+  private Discoverable.DiscoverContextRequest<ActivityFunctionParameters> request;
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.benchmarks;
+
+import com.dropbox.core.v2.files.FileMetadata;
+import org.jitterbit.connector.dropbox.DropboxUtils;
+import org.jitterbit.connector.dropbox.FetchFileResponseWriter;
+import org.jitterbit.connector.dropbox.PutFileRequestReader;
+import org.jitterbit.connector.dropbox.schema.PutFileRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the streaming serialization of the Fetch File response and of the Put File request, which
+ * base64-encode and decode the file content on the fly, from 1 KB to 100 MB of content. The response is
+ * written to a discarding output stream, so the measurement holds no copy of the document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamingXmlBenchmark {
+
+  @Param({"1024", "1048576", "104857600"})
+  public int contentSize;
+
+  @Setup
+  public void setup() throws Exception {
+    content = new byte[contentSize];
+    new Random(42).nextBytes(content);
+    metadata = new FileMetadata("benchmark.bin", "id:benchmark", new Date(), new Date(), "015f3a7bd2c6a1e0001",
+        contentSize);
+
+    PutFileRequest request = new PutFileRequest();
+    request.setPath("/benchmark.bin");
+    request.setContent(content);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DropboxUtils.marshall(PutFileRequest.class, request, os);
+    requestXml = os.toByteArray();
+  }
+
+  @Benchmark
+  public long writeFetchFileResponse() throws Exception {
+    CountingOutputStream os = new CountingOutputStream();
+    new FetchFileResponseWriter(os).write(metadata, out -> out.write(content));
+    return os.count;
+  }
+
+  @Benchmark
+  public long readPutFileRequest() throws Exception {
+    PutFileRequestReader reader = new PutFileRequestReader(new ByteArrayInputStream(requestXml));
+    long size = 0;
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream in = reader.getContent()) {
+      for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+        size += read;
+      }
+    }
+    reader.close();
+    return size;
+  }
+
+  /**
+   * An output stream discarding what is written to it.
+   */
+  private static final class CountingOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+
+    private long count;
+  }
+
+  private byte[] content;
+  private FileMetadata metadata;
+  private byte[] requestXml;
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.benchmarks;
+
+import com.dropbox.core.http.HttpRequestor;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.jitterbit.connector.dropbox.DropboxConnection;
+import org.jitterbit.connector.dropbox.DropboxHttpTransport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * In-process stub of the Dropbox API endpoints used by the connector, holding its files in memory.
+ * <p>
+ * It answers the requests of the connector without a network or a Dropbox account, so that the
+ * benchmarks measure the connector itself: metadata, downloads (with ranges), folder listings and zip
+ * downloads, uploads, upload sessions and their batch commit. A connection is pointed at the stub
+ * through the requestor factory of its {@link DropboxHttpTransport} (see {@link #newConnection()}), or
+ * over HTTP through a {@link DropboxStubServer}.
+ * </p>
+ */
+public class StubDropbox extends HttpRequestor {
+
+  public StubDropbox() {
+  }
+
+  /**
+   * Creates a connection whose requests are answered by this stub, without validating its credentials.
+   *
+   * @return the connection
+   */
+  public DropboxConnection newConnection() {
+    DropboxConnection connection = new DropboxConnection("benchmark", "benchmark-" + System.identityHashCode(this),
+        null);
+    connection.setTransport(transport);
+    connection.setValidationEnabled(false);
+    return connection;
+  }
+
+  /**
+   * Adds a file.
+   *
+   * @param path the path of the file
+   * @param content the content of the file
+   */
+  public void put(String path, byte[] content) {
+    files.put(path.toLowerCase(Locale.ROOT), new StoredFile(path, content, revs.incrementAndGet()));
+  }
+
+  public byte[] get(String path) {
+    StoredFile file = files.get(path.toLowerCase(Locale.ROOT));
+    return file != null ? file.content : null;
+  }
+
+  @Override
+  public Response doGet(String url, Iterable<Header> headers) throws IOException {
+    return handle(url, headers, new byte[0]);
+  }
+
+  @Override
+  public Uploader startPost(String url, Iterable<Header> headers) throws IOException {
+    return new StubUploader(url, headers);
+  }
+
+  @Override
+  public Uploader startPut(String url, Iterable<Header> headers) throws IOException {
+    return new StubUploader(url, headers);
+  }
+
+  /**
+   * Answers a request.
+   *
+   * @param url the URL of the request, on a Dropbox host
+   * @param headers the headers of the request
+   * @param body the body of the request
+   * @return the response
+   * @throws IOException if the request cannot be read
+   */
+  Response handle(String url, Iterable<Header> headers, byte[] body) throws IOException {
+    Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    for (Header header : headers) {
+      values.put(header.getKey(), header.getValue());
+    }
+    String endpoint = url.substring(url.indexOf('/', "https://".length()));
+    String arg = values.containsKey("Dropbox-API-Arg") ? values.get("Dropbox-API-Arg") :
+        new String(body, StandardCharsets.UTF_8);
+    JsonObject args = arg.isEmpty() || "null".equals(arg) ? new JsonObject() :
+        new JsonParser().parse(arg).getAsJsonObject();
+    switch (endpoint) {
+      case "/2/users/get_current_account":
+        return json(200, ACCOUNT);
+      case "/2/files/get_metadata":
+        return metadata(args.get("path").getAsString());
+      case "/2/files/download":
+        return download(args.get("path").getAsString(), values.get("Range"));
+      case "/2/files/download_zip":
+        return downloadZip(args.get("path").getAsString());
+      case "/2/files/list_folder":
+        return listFolder(args.get("path").getAsString(),
+            args.has("recursive") && args.get("recursive").getAsBoolean());
+      case "/2/files/list_folder/continue":
+        return json(200, "{\"entries\": [], \"cursor\": \"cursor\", \"has_more\": false}");
+      case "/2/files/upload":
+        return json(200, store(args.get("path").getAsString(), body));
+      case "/2/files/upload_session/start":
+        return startSession(body);
+      case "/2/files/upload_session/append_v2":
+        append(args.getAsJsonObject("cursor"), body);
+        return json(200, "null");
+      case "/2/files/upload_session/finish":
+        append(args.getAsJsonObject("cursor"), body);
+        return json(200, finish(args));
+      case "/2/files/upload_session/finish_batch":
+        return finishBatch(args.getAsJsonArray("entries"));
+      default:
+        return json(400, "Unsupported endpoint " + endpoint);
+    }
+  }
+
+  private Response metadata(String path) {
+    StoredFile file = files.get(path.toLowerCase(Locale.ROOT));
+    if (file == null) {
+      return notFound();
+    }
+    return json(200, file.metadata());
+  }
+
+  private Response download(String path, String range) {
+    StoredFile file = files.get(path.toLowerCase(Locale.ROOT));
+    if (file == null) {
+      return notFound();
+    }
+    int start = 0;
+    int end = file.content.length;
+    if (range != null) {
+      String[] bounds = range.substring("bytes=".length()).split("-");
+      start = Integer.parseInt(bounds[0]);
+      end = bounds.length > 1 ? Math.min(end, Integer.parseInt(bounds[1]) + 1) : end;
+    }
+    Map<String, List<String>> headers = new HashMap<>();
+    headers.put("Dropbox-API-Result", Collections.singletonList(file.metadata()));
+    headers.put("Content-Type", Collections.singletonList("application/octet-stream"));
+    return new Response(range != null ? 206 : 200, new ByteArrayInputStream(file.content, start, end - start), headers);
+  }
+
+  private Response downloadZip(String path) throws IOException {
+    String folder = path.toLowerCase(Locale.ROOT);
+    String name = folder.substring(folder.lastIndexOf('/') + 1);
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    try (ZipOutputStream os = new ZipOutputStream(zip)) {
+      for (StoredFile file : files.values()) {
+        if (file.path.toLowerCase(Locale.ROOT).startsWith(folder + "/")) {
+          os.putNextEntry(new ZipEntry(name + file.path.substring(folder.length())));
+          os.write(file.content);
+          os.closeEntry();
+        }
+      }
+    }
+    String result = "{\"metadata\": {\".tag\": \"folder\", \"name\": \"" + name + "\", \"id\": \"id:" + name +
+        "\", \"path_lower\": \"" + folder + "\", \"path_display\": \"" + path + "\"}}";
+    Map<String, List<String>> headers = new HashMap<>();
+    headers.put("Dropbox-API-Result", Collections.singletonList(result));
+    headers.put("Content-Type", Collections.singletonList("application/zip"));
+    return new Response(200, new ByteArrayInputStream(zip.toByteArray()), headers);
+  }
+
+  private Response listFolder(String path, boolean recursive) {
+    String folder = path.toLowerCase(Locale.ROOT);
+    StringBuilder entries = new StringBuilder();
+    for (Map.Entry<String, StoredFile> file : files.entrySet()) {
+      String key = file.getKey();
+      if (key.startsWith(folder + "/") && (recursive || key.indexOf('/', folder.length() + 1) < 0)) {
+        entries.append(entries.length() > 0 ? ", " : "").append(file.getValue().metadata());
+      }
+    }
+    return json(200, "{\"entries\": [" + entries + "], \"cursor\": \"cursor\", \"has_more\": false}");
+  }
+
+  private Response startSession(byte[] body) throws IOException {
+    String sessionId = "session-" + sessionIds.incrementAndGet();
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    content.write(body);
+    sessions.put(sessionId, content);
+    return json(200, "{\"session_id\": \"" + sessionId + "\"}");
+  }
+
+  private void append(JsonObject cursor, byte[] body) throws IOException {
+    ByteArrayOutputStream content = sessions.get(cursor.get("session_id").getAsString());
+    synchronized (content) {
+      content.write(body);
+    }
+  }
+
+  private String finish(JsonObject entry) {
+    ByteArrayOutputStream content = sessions.remove(entry.getAsJsonObject("cursor").get("session_id").getAsString());
+    return store(entry.getAsJsonObject("commit").get("path").getAsString(), content.toByteArray());
+  }
+
+  private Response finishBatch(JsonArray entries) {
+    StringBuilder results = new StringBuilder();
+    for (JsonElement entry : entries) {
+      String metadata = finish(entry.getAsJsonObject());
+      results.append(results.length() > 0 ? ", " : "")
+          .append(metadata.replace("\".tag\": \"file\"", "\".tag\": \"success\""));
+    }
+    return json(200, "{\".tag\": \"complete\", \"entries\": [" + results + "]}");
+  }
+
+  private String store(String path, byte[] content) {
+    put(path, content);
+    return files.get(path.toLowerCase(Locale.ROOT)).metadata();
+  }
+
+  private static Response notFound() {
+    return json(409, "{\"error_summary\": \"path/not_found/\", " +
+        "\"error\": {\".tag\": \"path\", \"path\": {\".tag\": \"not_found\"}}}");
+  }
+
+  private static Response json(int status, String json) {
+    return new Response(status, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+        Collections.singletonMap("Content-Type", Arrays.asList("application/json")));
+  }
+
+  /**
+   * A file held by the stub.
+   */
+  private static final class StoredFile {
+
+    StoredFile(String path, byte[] content, long rev) {
+      this.path = path;
+      this.content = content;
+      this.rev = String.format("%019x", rev);
+    }
+
+    String metadata() {
+      String name = path.substring(path.lastIndexOf('/') + 1);
+      return "{\".tag\": \"file\", \"name\": \"" + name + "\", \"id\": \"id:" + name + "\", " +
+          "\"client_modified\": \"2020-01-01T00:00:00Z\", \"server_modified\": \"2020-01-01T00:00:00Z\", " +
+          "\"rev\": \"" + rev + "\", \"size\": " + content.length + ", " +
+          "\"path_lower\": \"" + path.toLowerCase(Locale.ROOT) + "\", \"path_display\": \"" + path + "\"}";
+    }
+
+    private final String path;
+    private final byte[] content;
+    private final String rev;
+  }
+
+  /**
+   * An upload whose body is held in memory until it is finished.
+   */
+  private final class StubUploader extends Uploader {
+
+    StubUploader(String url, Iterable<Header> headers) {
+      this.url = url;
+      this.headers = headers;
+    }
+
+    @Override
+    public OutputStream getBody() {
+      return body;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void abort() {
+    }
+
+    @Override
+    public Response finish() throws IOException {
+      return handle(url, headers, body.toByteArray());
+    }
+
+    private final String url;
+    private final Iterable<Header> headers;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+  }
+
+  private static final String ACCOUNT = "{\"account_id\": \"dbid:AAH4f99T0taONIb-OurWxbNQ6ywGRopQngc\", " +
+      "\"name\": {\"given_name\": \"Stub\", \"surname\": \"Dropbox\", \"familiar_name\": \"Stub\", " +
+      "\"display_name\": \"Stub Dropbox\", \"abbreviated_name\": \"SD\"}, \"email\": \"stub@example.com\", " +
+      "\"email_verified\": true, \"disabled\": false, \"locale\": \"en\", " +
+      "\"referral_link\": \"https://db.tt/stub\", \"is_paired\": false, \"account_type\": {\".tag\": \"basic\"}, " +
+      "\"root_info\": {\".tag\": \"user\", \"root_namespace_id\": \"3235641\", \"home_namespace_id\": \"3235641\"}}";
+
+  private final ConcurrentMap<String, StoredFile> files = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ByteArrayOutputStream> sessions = new ConcurrentHashMap<>();
+  private final AtomicLong revs = new AtomicLong(0x15f3a7bd2c6a1e0L);
+  private final AtomicLong sessionIds = new AtomicLong();
+  private final DropboxHttpTransport transport = new DropboxHttpTransport().setRequestorFactory(() -> this);
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the executions of an activity: their count, latency, failures by error code, and the bytes
+ * they downloaded from and uploaded to Dropbox. The metrics of a deployed activity are kept per operation.
+ */
+public class ActivityMetrics implements ActivityMetricsMXBean {
+
+  ActivityMetrics(String activity, String operationGuid, DropboxMetrics metrics) {
+    this.activity = activity;
+    this.operationGuid = operationGuid;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Starts measuring an execution of the activity, which is recorded when it is closed.
+   *
+   * @return the execution
+   */
+  public Execution start() {
+    active.incrementAndGet();
+    return new Execution();
+  }
+
+  @Override
+  public String getActivity() {
+    return activity;
+  }
+
+  @Override
+  public String getOperationGuid() {
+    return operationGuid;
+  }
+
+  @Override
+  public long getExecutionCount() {
+    return latency.getCount();
+  }
+
+  @Override
+  public long getActiveCount() {
+    return active.get();
+  }
+
+  @Override
+  public long getFailureCount() {
+    return failures.get();
+  }
+
+  @Override
+  public Map<String, Long> getFailureCounts() {
+    return DropboxMetrics.snapshot(failuresByCode);
+  }
+
+  @Override
+  public long getBytesIn() {
+    return bytesIn.get();
+  }
+
+  @Override
+  public long getBytesOut() {
+    return bytesOut.get();
+  }
+
+  @Override
+  public double getMeanLatencyMillis() {
+    return latency.getMeanMillis();
+  }
+
+  @Override
+  public long getP50LatencyMillis() {
+    return latency.getPercentileMillis(50);
+  }
+
+  @Override
+  public long getP99LatencyMillis() {
+    return latency.getPercentileMillis(99);
+  }
+
+  @Override
+  public long getMaxLatencyMillis() {
+    return latency.getMaxMillis();
+  }
+
+  @Override
+  public String toString() {
+    return activity + (operationGuid.isEmpty() ? "" : " of operation " + operationGuid) +
+        ": executions=" + getExecutionCount() + ", failures=" + new TreeMap<>(getFailureCounts()) +
+        ", bytesIn=" + getBytesIn() + ", bytesOut=" + getBytesOut() + ", p50=" + getP50LatencyMillis() +
+        " ms, p99=" + getP99LatencyMillis() + " ms";
+  }
+
+  /**
+   * An execution of the activity being measured.
+   */
+  public final class Execution implements AutoCloseable {
+
+    private Execution() {
+    }
+
+    /**
+     * Adds to the bytes downloaded from Dropbox by the execution.
+     *
+     * @param bytes the number of bytes
+     */
+    public void addBytesIn(long bytes) {
+      bytesIn.addAndGet(bytes);
+    }
+
+    /**
+     * Adds to the bytes uploaded to Dropbox by the execution.
+     *
+     * @param bytes the number of bytes
+     */
+    public void addBytesOut(long bytes) {
+      bytesOut.addAndGet(bytes);
+    }
+
+    /**
+     * Records the failure of the execution, which also counts as an error of the connector.
+     *
+     * @param code the code of the error reported, such as <code>Dropbox03</code>
+     */
+    public void fail(String code) {
+      failures.incrementAndGet();
+      failuresByCode.computeIfAbsent(code, c -> new AtomicLong()).incrementAndGet();
+      metrics.recordError(code);
+    }
+
+    /**
+     * Ends the execution, recording its latency.
+     */
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        active.decrementAndGet();
+        latency.record(System.nanoTime() - started);
+      }
+    }
+
+    private final long started = System.nanoTime();
+    private boolean closed;
+  }
+
+  private final String activity;
+  private final String operationGuid;
+  private final DropboxMetrics metrics;
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final AtomicLong active = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final ConcurrentMap<String, AtomicLong> failuresByCode = new ConcurrentHashMap<>();
+  private final AtomicLong bytesIn = new AtomicLong();
+  private final AtomicLong bytesOut = new AtomicLong();
+}
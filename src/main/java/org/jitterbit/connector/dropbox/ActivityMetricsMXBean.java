@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.util.Map;
+
+/**
+ * JMX view of the executions of an activity, within an operation when the activity is deployed.
+ */
+public interface ActivityMetricsMXBean {
+
+  String getActivity();
+
+  String getOperationGuid();
+
+  long getExecutionCount();
+
+  long getActiveCount();
+
+  long getFailureCount();
+
+  /**
+   * Returns the failures of the executions by the code of their error, such as <code>Dropbox03</code>.
+   *
+   * @return the number of failures by error code
+   */
+  Map<String, Long> getFailureCounts();
+
+  long getBytesIn();
+
+  long getBytesOut();
+
+  double getMeanLatencyMillis();
+
+  long getP50LatencyMillis();
+
+  long getP99LatencyMillis();
+
+  long getMaxLatencyMillis();
+}
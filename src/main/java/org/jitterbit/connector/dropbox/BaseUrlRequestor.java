@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.http.HttpRequestor;
+
+import java.io.IOException;
+
+/**
+ * HTTP requestor that sends the requests of the Dropbox clients to another base URL, keeping the
+ * path and query of the Dropbox endpoints. The Dropbox SDK always builds <code>https</code> URLs on
+ * the Dropbox hosts; this lets a connection point at a local stub of the Dropbox API instead.
+ */
+final class BaseUrlRequestor extends HttpRequestor {
+
+  BaseUrlRequestor(HttpRequestor requestor, String baseUrl) {
+    this.requestor = requestor;
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+  }
+
+  @Override
+  public Response doGet(String url, Iterable<Header> headers) throws IOException {
+    return requestor.doGet(rebase(url), headers);
+  }
+
+  @Override
+  public Uploader startPost(String url, Iterable<Header> headers) throws IOException {
+    return requestor.startPost(rebase(url), headers);
+  }
+
+  @Override
+  public Uploader startPut(String url, Iterable<Header> headers) throws IOException {
+    return requestor.startPut(rebase(url), headers);
+  }
+
+  HttpRequestor getRequestor() {
+    return requestor;
+  }
+
+  /**
+   * Returns a URL with the scheme, host and port replaced by the base URL.
+   */
+  String rebase(String url) {
+    int start = url.indexOf("://");
+    start = url.indexOf('/', start < 0 ? 0 : start + 3);
+    return baseUrl + (start < 0 ? "/" : url.substring(start));
+  }
+
+  private final HttpRequestor requestor;
+  private final String baseUrl;
+}
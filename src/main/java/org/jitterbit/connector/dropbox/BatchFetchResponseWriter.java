@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxException;
+import com.dropbox.core.v2.files.FileMetadata;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a <code>batchFetchFileResponse</code> document, conforming with the
+ * <code>resources/xsds/batch-fetch-file-response.xsd</code> XML Schema, directly to an output stream.
+ * <p>
+ * Each file is written as a <code>fetchFileResponse</code> element, with the same children as the
+ * response of the Fetch File activity followed by the path of the file, as soon as it is received.
+ * </p>
+ */
+public class BatchFetchResponseWriter extends FetchFileResponseWriter {
+
+  /**
+   * Creates a writer of a response to an output stream. The output stream is not closed by the writer.
+   *
+   * @param os the output stream
+   * @throws XMLStreamException if the XML writer cannot be created
+   */
+  public BatchFetchResponseWriter(OutputStream os) throws XMLStreamException {
+    super(os);
+  }
+
+  /**
+   * Writes the start of the document.
+   *
+   * @throws XMLStreamException if the response cannot be written
+   */
+  public void start() throws XMLStreamException {
+    XMLStreamWriter writer = getXMLStreamWriter();
+    writer.writeStartDocument("UTF-8", "1.0");
+    writer.setDefaultNamespace(DropboxConstants.FETCH_FILE_NAMESPACE);
+    writer.writeStartElement(DropboxConstants.FETCH_FILE_NAMESPACE, DropboxConstants.BATCH_FETCH_FILE_RSP_ROOT);
+    writer.writeDefaultNamespace(DropboxConstants.FETCH_FILE_NAMESPACE);
+  }
+
+  /**
+   * Writes the element of a file.
+   *
+   * @param path the path of the file, as requested
+   * @param metadata the metadata of the file
+   * @param content writes the content of the file, or null to leave the content out
+   * @throws XMLStreamException if the response cannot be written
+   * @throws DbxException if the content cannot be downloaded
+   * @throws IOException if the content cannot be written
+   */
+  public void writeFile(String path, FileMetadata metadata, Content content)
+      throws XMLStreamException, DbxException, IOException {
+    XMLStreamWriter writer = getXMLStreamWriter();
+    writer.writeStartElement(DropboxConstants.FETCH_FILE_NAMESPACE, DropboxConstants.FETCH_FILE_RSP_ROOT);
+    writeFile(metadata, content);
+    writer.writeStartElement(DropboxConstants.FETCH_FILE_NAMESPACE, "path");
+    writer.writeCharacters(path);
+    writer.writeEndElement();
+    writer.writeEndElement();
+  }
+
+  /**
+   * Writes the end of the document.
+   *
+   * @throws XMLStreamException if the response cannot be written
+   */
+  public void end() throws XMLStreamException {
+    XMLStreamWriter writer = getXMLStreamWriter();
+    writer.writeEndElement();
+    writer.writeEndDocument();
+    writer.flush();
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads a <code>batchPutFileRequest</code> document, conforming with the
+ * <code>resources/xsds/batch-put-file-request.xsd</code> XML Schema, one file at a time.
+ * <p>
+ * Each <code>putFileRequest</code> element is read by a {@link PutFileRequestReader}, which decodes
+ * its content as it is read, so that the whole request never has to be held in memory.
+ * </p>
+ */
+public class BatchPutFileRequestReader implements AutoCloseable {
+
+  /**
+   * Creates a reader of a request. The input stream is not closed by the reader.
+   *
+   * @param is the input stream of the request
+   * @throws XMLStreamException if the request is not a valid <code>batchPutFileRequest</code> document
+   */
+  public BatchPutFileRequestReader(InputStream is) throws XMLStreamException {
+    reader = PutFileRequestReader.nextTag(PutFileRequestReader.INPUT_FACTORY.createXMLStreamReader(is));
+    reader.require(XMLStreamConstants.START_ELEMENT, null, DropboxConstants.BATCH_PUT_FILE_REQ_ROOT);
+  }
+
+  /**
+   * Returns the reader of the next file of the batch. The content of the previous file is skipped if
+   * it was not read. The returned reader must not be closed; it is only valid until the next call.
+   *
+   * @return the reader of the next file, or null if there are no more files
+   * @throws XMLStreamException if the request is not a valid <code>batchPutFileRequest</code> document
+   * @throws IOException if the content of the previous file is not valid base64
+   */
+  public PutFileRequestReader next() throws XMLStreamException, IOException {
+    if (current != null) {
+      current.skipToEnd();
+      current = null;
+    }
+    if (ended || reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+      ended = true;
+      return null;
+    }
+    current = new PutFileRequestReader(reader);
+    return current;
+  }
+
+  @Override
+  public void close() throws XMLStreamException {
+    reader.close();
+  }
+
+  private final XMLStreamReader reader;
+  private PutFileRequestReader current;
+  private boolean ended;
+}
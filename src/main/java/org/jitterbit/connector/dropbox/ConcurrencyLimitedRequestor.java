@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.http.HttpRequestor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * HTTP requestor that sends the requests of another requestor within the limit of a
+ * {@link DropboxConcurrencyLimiter}.
+ * <p>
+ * A permit is taken before a request is started and released with the status of its response. The
+ * body of an upload is written while the permit is held, the body of a download is read after it
+ * has been released.
+ * </p>
+ */
+final class ConcurrencyLimitedRequestor extends HttpRequestor {
+
+  ConcurrencyLimitedRequestor(HttpRequestor requestor, DropboxConcurrencyLimiter limiter) {
+    this.requestor = requestor;
+    this.limiter = limiter;
+  }
+
+  @Override
+  public Response doGet(String url, Iterable<Header> headers) throws IOException {
+    DropboxConcurrencyLimiter.Permit permit = limiter.acquire();
+    try {
+      Response response = requestor.doGet(url, headers);
+      permit.release(response.getStatusCode());
+      return response;
+    } finally {
+      permit.release();
+    }
+  }
+
+  @Override
+  public Uploader startPost(String url, Iterable<Header> headers) throws IOException {
+    DropboxConcurrencyLimiter.Permit permit = limiter.acquire();
+    try {
+      return new LimitedUploader(requestor.startPost(url, headers), permit);
+    } catch (IOException | RuntimeException x) {
+      permit.release();
+      throw x;
+    }
+  }
+
+  @Override
+  public Uploader startPut(String url, Iterable<Header> headers) throws IOException {
+    DropboxConcurrencyLimiter.Permit permit = limiter.acquire();
+    try {
+      return new LimitedUploader(requestor.startPut(url, headers), permit);
+    } catch (IOException | RuntimeException x) {
+      permit.release();
+      throw x;
+    }
+  }
+
+  /**
+   * An upload holding a permit until its response arrives, or until it is closed or aborted.
+   */
+  private static final class LimitedUploader extends Uploader {
+
+    LimitedUploader(Uploader uploader, DropboxConcurrencyLimiter.Permit permit) {
+      this.uploader = uploader;
+      this.permit = permit;
+    }
+
+    @Override
+    public OutputStream getBody() {
+      return uploader.getBody();
+    }
+
+    @Override
+    public void close() {
+      try {
+        uploader.close();
+      } finally {
+        permit.release();
+      }
+    }
+
+    @Override
+    public void abort() {
+      try {
+        uploader.abort();
+      } finally {
+        permit.release();
+      }
+    }
+
+    @Override
+    public Response finish() throws IOException {
+      try {
+        Response response = uploader.finish();
+        permit.release(response.getStatusCode());
+        return response;
+      } finally {
+        permit.release();
+      }
+    }
+
+    private final Uploader uploader;
+    private final DropboxConcurrencyLimiter.Permit permit;
+  }
+
+  private final HttpRequestor requestor;
+  private final DropboxConcurrencyLimiter limiter;
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Holds file content written to it, in memory while it is small and in a temporary file once it
+ * grows past the memory threshold of its {@link ContentBufferFactory}. Content held in a file is
+ * read back through memory-mapped regions of the file, so it never has to fit on the heap.
+ * <p>
+ * A buffer is written first and read afterwards; it can be read any number of times. Closing it
+ * deletes its temporary file.
+ * </p>
+ */
+public class ContentBuffer extends OutputStream {
+
+  /**
+   * Size of the regions of a temporary file mapped at a time when reading it.
+   */
+  static final int MAP_REGION_SIZE = 64 * 1024 * 1024;
+
+  ContentBuffer(ContentBufferFactory factory, int initialCapacity) {
+    this.factory = factory;
+    this.memory = new byte[Math.max(0, Math.min(initialCapacity, factory.getMemoryThreshold()))];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) throws IOException {
+    if (closed) {
+      throw new IOException("The content buffer is closed");
+    }
+    long maxSize = factory.getMaxSize();
+    if (maxSize > 0 && size + len > maxSize) {
+      throw new IOException("The content exceeds the maximum buffer size of " + maxSize + " bytes");
+    }
+    if (channel == null && size + len > factory.getMemoryThreshold()) {
+      spill();
+    }
+    if (channel == null) {
+      if (size + len > memory.length) {
+        memory = Arrays.copyOf(memory, (int) Math.min(factory.getMemoryThreshold(),
+            Math.max(size + len, Math.max(memory.length * 2L, 8192))));
+      }
+      System.arraycopy(b, off, memory, (int) size, len);
+    } else {
+      ByteBuffer src = ByteBuffer.wrap(b, off, len);
+      while (src.hasRemaining()) {
+        channel.write(src, size + src.position() - off);
+      }
+    }
+    size += len;
+  }
+
+  /**
+   * Copies the rest of a stream into the buffer.
+   *
+   * @param in the stream; it is not closed
+   * @param limit the largest number of bytes copied
+   * @return the number of bytes copied, less than the limit only when the stream ended
+   * @throws IOException if the stream cannot be read or the buffer cannot be written
+   */
+  public long writeFrom(InputStream in, long limit) throws IOException {
+    byte[] buffer = new byte[(int) Math.min(COPY_BUFFER_SIZE, Math.max(1, limit))];
+    long copied = 0;
+    int n;
+    while (copied < limit && (n = in.read(buffer, 0, (int) Math.min(buffer.length, limit - copied))) != -1) {
+      write(buffer, 0, n);
+      copied += n;
+    }
+    return copied;
+  }
+
+  /**
+   * Writes the content of the buffer to an output stream.
+   *
+   * @param os the output stream; it is not closed
+   * @throws IOException if the content cannot be read or written
+   */
+  public void writeTo(OutputStream os) throws IOException {
+    if (channel == null) {
+      os.write(memory, 0, (int) size);
+      return;
+    }
+    byte[] buffer = new byte[COPY_BUFFER_SIZE];
+    try (InputStream in = getInputStream(0)) {
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        os.write(buffer, 0, n);
+      }
+    }
+  }
+
+  /**
+   * Returns a stream reading the content of the buffer from an offset.
+   *
+   * @param offset the offset of the first byte read
+   * @return the stream
+   * @throws IOException if the buffer is closed
+   */
+  public InputStream getInputStream(long offset) throws IOException {
+    if (closed) {
+      throw new IOException("The content buffer is closed");
+    }
+    if (channel == null) {
+      return new ByteArrayInputStream(memory, (int) offset, (int) (size - offset));
+    }
+    return new MappedInputStream(channel, offset, size);
+  }
+
+  /**
+   * Returns the content of the buffer as a string.
+   *
+   * @param charset the encoding of the content
+   * @return the content
+   * @throws IOException if the content cannot be read
+   */
+  public String toString(Charset charset) throws IOException {
+    if (channel == null) {
+      return new String(memory, 0, (int) size, charset);
+    }
+    ByteArrayOutputStream os = new ByteArrayOutputStream((int) Math.min(size, Integer.MAX_VALUE));
+    writeTo(os);
+    return new String(os.toByteArray(), charset);
+  }
+
+  /**
+   * Returns the number of bytes written to the buffer.
+   *
+   * @return the size of the content
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Returns whether the content has been moved to a temporary file.
+   *
+   * @return true if the content is held in a file
+   */
+  public boolean isSpilled() {
+    return channel != null;
+  }
+
+  /**
+   * Releases the memory of the buffer and deletes its temporary file.
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    memory = null;
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException x) {
+        logger.warning("Cannot close content buffer file " + file + ": " + x.getLocalizedMessage());
+      }
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException x) {
+        // a region may still be mapped on platforms that lock mapped files
+        file.toFile().deleteOnExit();
+      }
+    }
+    factory.released(this);
+  }
+
+  private void spill() throws IOException {
+    Path directory = factory.getDirectory();
+    file = directory == null ? Files.createTempFile("dropbox-", ".buf") :
+        Files.createTempFile(directory, "dropbox-", ".buf");
+    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    ByteBuffer src = ByteBuffer.wrap(memory, 0, (int) size);
+    while (src.hasRemaining()) {
+      channel.write(src, src.position());
+    }
+    memory = null;
+    logger.fine("Content larger than " + factory.getMemoryThreshold() + " bytes moved to " + file);
+  }
+
+  /**
+   * Reads a temporary file through memory-mapped regions.
+   */
+  private static final class MappedInputStream extends InputStream {
+
+    MappedInputStream(FileChannel channel, long position, long end) {
+      this.channel = channel;
+      this.position = position;
+      this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (region == null || !region.hasRemaining()) {
+        if (position >= end) {
+          return -1;
+        }
+        long length = Math.min(MAP_REGION_SIZE, end - position);
+        region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        position += length;
+      }
+      int n = Math.min(len, region.remaining());
+      region.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return region == null ? 0 : region.remaining();
+    }
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+    private MappedByteBuffer region;
+  }
+
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+  private final ContentBufferFactory factory;
+  private byte[] memory;
+  private long size;
+  private Path file;
+  private FileChannel channel;
+  private boolean closed;
+
+  private static Logger logger = Logger.getLogger(ContentBuffer.class.getName());
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import org.jitterbit.connector.sdk.util.Utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Creates the {@link ContentBuffer}s of an activity, and deletes the ones still open when the
+ * activity completes.
+ * <p>
+ * The settings are given by the <code>buffer-directory</code>, <code>buffer-memory-threshold-mb</code>
+ * and <code>buffer-max-size-mb</code> properties of the Dropbox endpoint. Each execution of an activity
+ * uses its own factory, obtained from {@link DropboxConnection#createContentBufferFactory()}, and closes
+ * it when it completes.
+ * </p>
+ */
+public class ContentBufferFactory implements AutoCloseable {
+
+  public static final int MB = 1024 * 1024;
+
+  public static final int DEFAULT_MEMORY_THRESHOLD = 16 * MB;
+
+  /**
+   * Default maximum size of a buffer; zero means unlimited.
+   */
+  public static final long DEFAULT_MAX_SIZE = 0;
+
+  public ContentBufferFactory() {
+  }
+
+  /**
+   * Creates a factory from the properties of a Dropbox endpoint. Settings that are missing or
+   * invalid keep their default value.
+   *
+   * @param props properties of the endpoint
+   * @return the factory
+   */
+  public static ContentBufferFactory fromProperties(Map<String, String> props) {
+    ContentBufferFactory factory = new ContentBufferFactory()
+        .setMemoryThreshold(
+            Utils.valueOfProp(DropboxConstants.BUFFER_MEMORY_THRESHOLD, props, DEFAULT_MEMORY_THRESHOLD / MB) * MB)
+        .setMaxSize(
+            (long) Utils.valueOfProp(DropboxConstants.BUFFER_MAX_SIZE, props, (int) (DEFAULT_MAX_SIZE / MB)) * MB);
+    String directory = props.get(DropboxConstants.BUFFER_DIRECTORY);
+    if (directory != null && directory.trim().length() > 0) {
+      factory.setDirectory(Paths.get(directory.trim()));
+    }
+    return factory;
+  }
+
+  /**
+   * Returns a new factory with the same settings as this one, and no buffers.
+   *
+   * @return the new factory
+   */
+  public ContentBufferFactory copy() {
+    return new ContentBufferFactory()
+        .setDirectory(directory)
+        .setMemoryThreshold(memoryThreshold)
+        .setMaxSize(maxSize);
+  }
+
+  /**
+   * Creates a buffer.
+   *
+   * @return the buffer
+   * @throws IOException if the factory is closed
+   */
+  public ContentBuffer newBuffer() throws IOException {
+    return newBuffer(0);
+  }
+
+  /**
+   * Creates a buffer for content of an expected size, which is allocated up front when it is
+   * below the memory threshold.
+   *
+   * @param expectedSize the expected size of the content in bytes
+   * @return the buffer
+   * @throws IOException if the factory is closed
+   */
+  public ContentBuffer newBuffer(long expectedSize) throws IOException {
+    synchronized (buffers) {
+      if (closed) {
+        throw new IOException("The content buffers have been released");
+      }
+      ContentBuffer buffer = new ContentBuffer(this, (int) Math.min(expectedSize, memoryThreshold));
+      buffers.add(buffer);
+      return buffer;
+    }
+  }
+
+  /**
+   * Closes the buffers still open, deleting their temporary files. No buffer can be created afterwards.
+   */
+  @Override
+  public void close() {
+    List<ContentBuffer> open;
+    synchronized (buffers) {
+      closed = true;
+      open = new ArrayList<>(buffers);
+    }
+    for (ContentBuffer buffer : open) {
+      buffer.close();
+    }
+    if (!open.isEmpty()) {
+      logger.fine("Released " + open.size() + " content buffers left open");
+    }
+  }
+
+  void released(ContentBuffer buffer) {
+    synchronized (buffers) {
+      buffers.remove(buffer);
+    }
+  }
+
+  /**
+   * Returns the directory of the temporary files; null means the default temporary directory.
+   *
+   * @return the directory
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  public ContentBufferFactory setDirectory(Path directory) {
+    this.directory = directory;
+    return this;
+  }
+
+  public int getMemoryThreshold() {
+    return memoryThreshold;
+  }
+
+  /**
+   * Sets the size above which the content of a buffer is moved to a temporary file.
+   *
+   * @param memoryThreshold the threshold in bytes
+   * @return this factory
+   */
+  public ContentBufferFactory setMemoryThreshold(int memoryThreshold) {
+    this.memoryThreshold = Math.max(0, memoryThreshold);
+    return this;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Sets the largest content a buffer accepts; writing more fails.
+   *
+   * @param maxSize the maximum size in bytes, or zero for no limit
+   * @return this factory
+   */
+  public ContentBufferFactory setMaxSize(long maxSize) {
+    this.maxSize = Math.max(0, maxSize);
+    return this;
+  }
+
+  private Path directory;
+  private int memoryThreshold = DEFAULT_MEMORY_THRESHOLD;
+  private long maxSize = DEFAULT_MAX_SIZE;
+  private final Set<ContentBuffer> buffers = Collections.newSetFromMap(new IdentityHashMap<>());
+  private boolean closed;
+
+  private static Logger logger = Logger.getLogger(ContentBufferFactory.class.getName());
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxException;
+import com.dropbox.core.v2.files.FolderMetadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a <code>downloadFolderResponse</code> document, conforming with the
+ * <code>resources/xsds/download-folder-response.xsd</code> XML Schema, directly to an output stream
+ * from the zip archive of a Dropbox folder.
+ * <p>
+ * The archive is either written as is, base64-encoded, or unpacked as it is read: each file of the
+ * archive is then written as a <code>file</code> element with its path and content. Neither the
+ * archive nor its files are held in memory.
+ * </p>
+ */
+public class DownloadFolderResponseWriter extends FetchFileResponseWriter {
+
+  /**
+   * Creates a writer of a response to an output stream. The output stream is not closed by the writer.
+   *
+   * @param os the output stream
+   * @throws XMLStreamException if the XML writer cannot be created
+   */
+  public DownloadFolderResponseWriter(OutputStream os) throws XMLStreamException {
+    super(os);
+  }
+
+  /**
+   * Writes the response document with the zip archive as its content.
+   *
+   * @param folder the metadata of the folder
+   * @param zip the zip archive of the folder; it is read to its end but not closed
+   * @throws XMLStreamException if the response cannot be written
+   * @throws DbxException if the archive cannot be downloaded
+   * @throws IOException if the archive cannot be read
+   */
+  public void writeZip(FolderMetadata folder, InputStream zip) throws XMLStreamException, DbxException, IOException {
+    writeStart(folder);
+    writeContent("content", os -> bytes += copy(zip, os));
+    writeEnd();
+  }
+
+  /**
+   * Writes the response document with a <code>file</code> element for each file of the zip archive
+   * whose name matches a pattern.
+   *
+   * @param folder the metadata of the folder
+   * @param zip the zip archive of the folder; it is read to its end but not closed
+   * @param names the pattern of the names of the files to write, or null to write all the files
+   * @throws XMLStreamException if the response cannot be written
+   * @throws DbxException if the archive cannot be downloaded
+   * @throws IOException if the archive cannot be read
+   */
+  public void writeFiles(FolderMetadata folder, InputStream zip, Pattern names)
+      throws XMLStreamException, DbxException, IOException {
+    writeStart(folder);
+    XMLStreamWriter writer = getXMLStreamWriter();
+    ZipInputStream entries = new ZipInputStream(zip);
+    for (ZipEntry entry = entries.getNextEntry(); entry != null; entry = entries.getNextEntry()) {
+      String name = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+      if (entry.isDirectory() || (names != null && !names.matcher(name).matches())) {
+        continue;
+      }
+      writer.writeStartElement(DropboxConstants.FETCH_FILE_NAMESPACE, "file");
+      writeElement("path", getPath(folder, entry.getName()));
+      if (entry.getTime() != -1) {
+        writeElement("lastModified", toXml(new Date(entry.getTime())));
+      }
+      long[] size = new long[1];
+      writeContent("content", os -> size[0] = copy(entries, os));
+      writeElement("size", String.valueOf(size[0]));
+      writer.writeEndElement();
+      writer.flush();
+      files++;
+      bytes += size[0];
+    }
+    writeEnd();
+  }
+
+  /**
+   * Returns the number of files written, when the archive is unpacked.
+   *
+   * @return the number of files
+   */
+  public int getFileCount() {
+    return files;
+  }
+
+  /**
+   * Returns the size of the archive, or of the files written when it is unpacked.
+   *
+   * @return the number of bytes
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the Dropbox path of an entry. The entries of the archive are in a folder named after
+   * the folder downloaded.
+   */
+  static String getPath(FolderMetadata folder, String entry) {
+    String relative = entry.substring(entry.indexOf('/') + 1);
+    String parent = folder.getPathDisplay() == null ? "" : folder.getPathDisplay();
+    return parent.endsWith("/") ? parent + relative : parent + "/" + relative;
+  }
+
+  private void writeStart(FolderMetadata folder) throws XMLStreamException {
+    XMLStreamWriter writer = getXMLStreamWriter();
+    writer.writeStartDocument("UTF-8", "1.0");
+    writer.setDefaultNamespace(DropboxConstants.FETCH_FILE_NAMESPACE);
+    writer.writeStartElement(DropboxConstants.FETCH_FILE_NAMESPACE, DropboxConstants.DOWNLOAD_FOLDER_RSP_ROOT);
+    writer.writeDefaultNamespace(DropboxConstants.FETCH_FILE_NAMESPACE);
+    writeElement("name", folder.getName());
+    writeElement("id", folder.getId());
+    writeElement("pathDisplay", folder.getPathDisplay());
+  }
+
+  private void writeEnd() throws XMLStreamException {
+    XMLStreamWriter writer = getXMLStreamWriter();
+    writer.writeEndElement();
+    writer.writeEndDocument();
+    writer.flush();
+  }
+
+  private static long copy(InputStream in, OutputStream os) throws IOException {
+    byte[] buffer = new byte[CHUNK_SIZE];
+    long count = 0;
+    for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+      os.write(buffer, 0, n);
+      count += n;
+    }
+    return count;
+  }
+
+  private int files;
+  private long bytes;
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.Metadata;
+import org.jitterbit.connector.sdk.util.Utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Fetches many files from Dropbox, several at a time, and hands them over in the order requested.
+ * <p>
+ * Up to <code>parallelism</code> files are downloaded at the same time with a single Dropbox client,
+ * each into a {@link ContentBuffer}. The files are handed to a {@link Receiver} in order, as soon as
+ * each one and the ones before it are complete, so that at most <code>parallelism</code> files are
+ * held at a time. Each file is read through the {@link DropboxFileCache} and downloaded, in parallel
+ * segments if it is large, by a {@link DropboxSegmentedDownloader}. When the content is not needed,
+ * only the metadata of the files is requested.
+ * </p>
+ * <p>
+ * The first file that cannot be fetched fails the batch; the files still being downloaded are cancelled.
+ * </p>
+ */
+public class DropboxBatchFetcher {
+
+  public static final int DEFAULT_PARALLELISM = 4;
+
+  /**
+   * Receives the fetched files.
+   */
+  public interface Receiver {
+
+    /**
+     * Receives a file. The content is only available until this method returns.
+     *
+     * @param path the path of the file, as requested
+     * @param metadata the metadata of the file
+     * @param content writes the content of the file, or null if the content was not downloaded
+     * @throws Exception if the file cannot be processed, which fails the batch
+     */
+    void receive(String path, FileMetadata metadata, FetchFileResponseWriter.Content content) throws Exception;
+  }
+
+  /**
+   * Creates a fetcher using a Dropbox client.
+   *
+   * @param client the Dropbox version 2 client
+   */
+  public DropboxBatchFetcher(DbxClientV2 client) {
+    this.client = client;
+    this.downloader = new DropboxSegmentedDownloader(client);
+  }
+
+  /**
+   * Creates a fetcher configured from the function parameters of an activity, including the settings
+   * of the downloads. Parameters that are missing or invalid keep their default value.
+   *
+   * @param client the Dropbox version 2 client
+   * @param params the function parameters of the activity
+   * @return the fetcher
+   */
+  public static DropboxBatchFetcher fromParameters(DbxClientV2 client, Map<String, String> params) {
+    return new DropboxBatchFetcher(client)
+        .setDownloader(DropboxSegmentedDownloader.fromParameters(client, params))
+        .setParallelism(Utils.valueOfProp(DropboxConstants.BATCH_PARALLELISM, params, DEFAULT_PARALLELISM));
+  }
+
+  /**
+   * Fetches files by path.
+   *
+   * @param paths the paths of the files
+   * @param receiver receives the files, in the order of their paths
+   * @return the number of files fetched
+   * @throws Exception if a file cannot be fetched, or if the receiver fails
+   */
+  public int fetchPaths(List<String> paths, Receiver receiver) throws Exception {
+    List<Target> targets = new ArrayList<>(paths.size());
+    for (String path : paths) {
+      targets.add(new Target(path, null));
+    }
+    return fetch(targets, receiver);
+  }
+
+  /**
+   * Fetches listed files. Their metadata is used as is when the content is not downloaded.
+   *
+   * @param files the metadata of the files, as listed
+   * @param receiver receives the files, in the order of the list
+   * @return the number of files fetched
+   * @throws Exception if a file cannot be fetched, or if the receiver fails
+   */
+  public int fetchFiles(List<FileMetadata> files, Receiver receiver) throws Exception {
+    List<Target> targets = new ArrayList<>(files.size());
+    for (FileMetadata file : files) {
+      targets.add(new Target(file.getPathDisplay(), file));
+    }
+    return fetch(targets, receiver);
+  }
+
+  private int fetch(List<Target> targets, Receiver receiver) throws Exception {
+    if (targets.isEmpty()) {
+      return 0;
+    }
+    AtomicInteger threads = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, targets.size()), r -> {
+      Thread thread = new Thread(r, "dropbox-batch-fetch-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    Deque<Future<Fetched>> window = new ArrayDeque<>();
+    long started = System.currentTimeMillis();
+    try {
+      int submitted = 0;
+      for (int i = 0; i < targets.size(); i++) {
+        while (submitted < targets.size() && submitted < i + parallelism) {
+          Target target = targets.get(submitted++);
+          window.add(executor.submit(() -> fetch(target)));
+        }
+        try (Fetched fetched = await(window.poll())) {
+          receiver.receive(fetched.path, fetched.metadata, fetched.content == null ? null : fetched.content::writeTo);
+          bytes += fetched.metadata.getSize();
+        }
+        files++;
+      }
+      logger.fine("Fetched " + files + " files (" + bytes + " bytes) in " + (System.currentTimeMillis() - started) +
+          " ms, " + parallelism + " at a time");
+      return files;
+    } finally {
+      executor.shutdownNow();
+      for (Future<Fetched> pending : window) {
+        pending.cancel(true);
+        if (pending.isDone() && !pending.isCancelled()) {
+          try {
+            await(pending).close();
+          } catch (Exception x) {
+            // the fetch failed, so it holds no buffer
+          }
+        }
+      }
+    }
+  }
+
+  private Fetched fetch(Target target) throws Exception {
+    if (!downloadContent) {
+      return new Fetched(target.path, target.listed != null ? target.listed : getFile(target.path), null);
+    }
+    ContentBuffer content = buffers.newBuffer(target.listed != null ? target.listed.getSize() : 0);
+    try {
+      FileMetadata metadata = fileCache.open(client, downloader, target.path).download(content);
+      return new Fetched(target.path, metadata, content);
+    } catch (Exception x) {
+      content.close();
+      throw x;
+    }
+  }
+
+  private FileMetadata getFile(String path) throws Exception {
+    Metadata metadata = DropboxRetries.call(() -> client.files().getMetadata(path), downloader.getMaxRetries());
+    if (!(metadata instanceof FileMetadata)) {
+      throw new IOException(path + " is not a file");
+    }
+    return (FileMetadata) metadata;
+  }
+
+  private static Fetched await(Future<Fetched> fetched) throws Exception {
+    try {
+      return fetched.get();
+    } catch (InterruptedException x) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching");
+    } catch (ExecutionException x) {
+      if (x.getCause() instanceof Exception) {
+        throw (Exception) x.getCause();
+      }
+      throw new IOException(x.getCause());
+    }
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Sets how many files are fetched at the same time.
+   *
+   * @param parallelism the number of concurrent files
+   * @return this fetcher
+   */
+  public DropboxBatchFetcher setParallelism(int parallelism) {
+    this.parallelism = Math.max(1, parallelism);
+    return this;
+  }
+
+  public boolean isDownloadContent() {
+    return downloadContent;
+  }
+
+  /**
+   * Sets whether the content of the files is downloaded, or only their metadata.
+   *
+   * @param downloadContent false to only fetch the metadata
+   * @return this fetcher
+   */
+  public DropboxBatchFetcher setDownloadContent(boolean downloadContent) {
+    this.downloadContent = downloadContent;
+    return this;
+  }
+
+  /**
+   * Sets the downloader of the files, shared by the concurrent downloads.
+   *
+   * @param downloader the downloader
+   * @return this fetcher
+   */
+  public DropboxBatchFetcher setDownloader(DropboxSegmentedDownloader downloader) {
+    this.downloader = downloader;
+    return this;
+  }
+
+  /**
+   * Sets the factory of the buffers holding the files, and the segments of their downloads.
+   *
+   * @param buffers the content buffer factory
+   * @return this fetcher
+   */
+  public DropboxBatchFetcher setContentBufferFactory(ContentBufferFactory buffers) {
+    this.buffers = buffers;
+    downloader.setContentBufferFactory(buffers);
+    return this;
+  }
+
+  public DropboxBatchFetcher setFileCache(DropboxFileCache fileCache) {
+    this.fileCache = fileCache;
+    return this;
+  }
+
+  public int getFileCount() {
+    return files;
+  }
+
+  /**
+   * Returns the size of the files fetched.
+   *
+   * @return the number of bytes
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * A file to fetch, by path, with its metadata when it was listed.
+   */
+  private static final class Target {
+
+    Target(String path, FileMetadata listed) {
+      this.path = path;
+      this.listed = listed;
+    }
+
+    private final String path;
+    private final FileMetadata listed;
+  }
+
+  /**
+   * A fetched file, with its content when it was downloaded.
+   */
+  private static final class Fetched implements AutoCloseable {
+
+    Fetched(String path, FileMetadata metadata, ContentBuffer content) {
+      this.path = path;
+      this.metadata = metadata;
+      this.content = content;
+    }
+
+    @Override
+    public void close() {
+      if (content != null) {
+        content.close();
+      }
+    }
+
+    private final String path;
+    private final FileMetadata metadata;
+    private final ContentBuffer content;
+  }
+
+  private final DbxClientV2 client;
+  private DropboxSegmentedDownloader downloader;
+  private int parallelism = DEFAULT_PARALLELISM;
+  private boolean downloadContent = true;
+  private ContentBufferFactory buffers = new ContentBufferFactory();
+  private DropboxFileCache fileCache = new DropboxFileCache();
+  private int files;
+  private long bytes;
+
+  private static Logger logger = Logger.getLogger(DropboxBatchFetcher.class.getName());
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxException;
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.CommitInfo;
+import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.UploadSessionCursor;
+import com.dropbox.core.v2.files.UploadSessionFinishArg;
+import com.dropbox.core.v2.files.UploadSessionFinishBatchJobStatus;
+import com.dropbox.core.v2.files.UploadSessionFinishBatchLaunch;
+import com.dropbox.core.v2.files.UploadSessionFinishBatchResultEntry;
+import org.jitterbit.connector.sdk.util.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Uploads many files to Dropbox and commits them together.
+ * <p>
+ * Dropbox serializes the commits to a namespace, so that files uploaded one after the other each
+ * wait for a lock, and concurrent uploads fail with <code>too_many_write_operations</code>. Instead,
+ * the content of each file is sent to its own upload session, up to <code>parallelism</code> sessions
+ * at a time, and the sessions are closed without being committed. Once all the content is sent, the
+ * files are committed by a single <code>upload_session/finish_batch</code> call per 1000 files, which
+ * takes the lock once.
+ * </p>
+ * <p>
+ * The batch is committed asynchronously by Dropbox: its job is polled, shortly after it is launched
+ * since most batches complete quickly, and then less and less often. Files that fail to commit
+ * because of <code>too_many_write_operations</code> are committed again in a batch of their own;
+ * any other failure of a file is reported in its {@link Result}, since the other files of the batch
+ * are committed regardless. A batch whose job does not complete within the maximum commit wait fails
+ * the upload.
+ * </p>
+ */
+public class DropboxBatchUploader implements AutoCloseable {
+
+  public static final int DEFAULT_PARALLELISM = 4;
+
+  /**
+   * Largest number of files committed by a single <code>upload_session/finish_batch</code> call.
+   */
+  public static final int MAX_BATCH_SIZE = 1000;
+
+  /**
+   * Default longest time the job of a batch is polled before the upload fails, in milliseconds.
+   */
+  public static final long DEFAULT_MAX_COMMIT_WAIT_MS = 10 * 60 * 1000;
+
+  static final long INITIAL_POLL_MS = 100;
+  static final long MAX_POLL_MS = 2000;
+
+  /**
+   * Creates an uploader using a Dropbox client.
+   *
+   * @param client the Dropbox version 2 client
+   */
+  public DropboxBatchUploader(DbxClientV2 client) {
+    this.client = client;
+    this.uploader = new DropboxChunkedUploader(client);
+  }
+
+  /**
+   * Creates an uploader configured from the function parameters of an activity, including the settings
+   * of the upload sessions. Parameters that are missing or invalid keep their default value.
+   *
+   * @param client the Dropbox version 2 client
+   * @param params the function parameters of the activity
+   * @return the uploader
+   */
+  public static DropboxBatchUploader fromParameters(DbxClientV2 client, Map<String, String> params) {
+    return new DropboxBatchUploader(client)
+        .setUploader(DropboxChunkedUploader.fromParameters(client, params))
+        .setParallelism(Utils.valueOfProp(DropboxConstants.BATCH_PARALLELISM, params, DEFAULT_PARALLELISM))
+        .setMaxRetries(Utils.valueOfProp(DropboxConstants.UPLOAD_MAX_RETRIES, params,
+            DropboxChunkedUploader.DEFAULT_MAX_RETRIES));
+  }
+
+  /**
+   * Adds a file to the batch. Its content is read into a buffer, and sent to an upload session in the
+   * background; this method waits while <code>parallelism</code> files are already being sent.
+   *
+   * @param content the content of the file; it is read to its end but not closed
+   * @param commit the path and write mode of the file
+   * @throws DbxException if the content of a previous file could not be sent
+   * @throws IOException if the content cannot be read
+   */
+  public void add(InputStream content, CommitInfo commit) throws DbxException, IOException {
+    while (sessions.size() - sent >= parallelism) {
+      await(sessions.get(sent++));
+    }
+    if (executor == null) {
+      AtomicInteger threads = new AtomicInteger();
+      executor = Executors.newFixedThreadPool(parallelism, r -> {
+        Thread thread = new Thread(r, "dropbox-batch-upload-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    ContentBuffer buffer = buffers.newBuffer();
+    try {
+      buffer.writeFrom(content, Long.MAX_VALUE);
+    } catch (IOException x) {
+      buffer.close();
+      throw x;
+    }
+    bytes += buffer.size();
+    commits.add(commit);
+    sessions.add(executor.submit(() -> {
+      try {
+        return uploader.uploadSession(buffer.getInputStream(0));
+      } finally {
+        buffer.close();
+      }
+    }));
+  }
+
+  /**
+   * Waits for the content of all the files to be sent, and commits them. A file that Dropbox fails to
+   * commit does not fail the upload, since the other files of its batch are committed: its failure is
+   * reported in its result instead.
+   *
+   * @return the result of each file, in the order they were added
+   * @throws DbxException if the content of a file could not be sent, or a batch could not be committed
+   * @throws IOException if a batch could not be committed, or did not complete within the maximum commit
+   *     wait; the message tells how many files of the previous batches were committed
+   */
+  public List<Result> finish() throws DbxException, IOException {
+    List<UploadSessionFinishArg> entries = new ArrayList<>(commits.size());
+    for (int i = 0; i < sessions.size(); i++) {
+      entries.add(new UploadSessionFinishArg(await(sessions.get(i)), commits.get(i)));
+    }
+    sent = sessions.size();
+    List<Result> results = new ArrayList<>(entries.size());
+    for (int from = 0; from < entries.size(); from += MAX_BATCH_SIZE) {
+      try {
+        results.addAll(commit(entries.subList(from, Math.min(entries.size(), from + MAX_BATCH_SIZE))));
+      } catch (DbxException | IOException x) {
+        if (from == 0 || x instanceof InterruptedIOException) {
+          throw x;
+        }
+        long committed = results.stream().filter(Result::isSuccess).count();
+        throw new IOException("Cannot commit the files after " + committed + " files were committed: " +
+            x.getMessage(), x);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Commits files, committing again those that failed because of concurrent writes.
+   */
+  private List<Result> commit(List<UploadSessionFinishArg> entries) throws DbxException, IOException {
+    Result[] files = new Result[entries.size()];
+    List<Integer> pending = new ArrayList<>(entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      pending.add(i);
+    }
+    for (int attempt = 0; true; attempt++) {
+      List<UploadSessionFinishArg> batch = new ArrayList<>(pending.size());
+      for (int i : pending) {
+        batch.add(entries.get(i));
+      }
+      List<UploadSessionFinishBatchResultEntry> results = finishBatch(batch);
+      if (results.size() != batch.size()) {
+        throw new IOException("Dropbox committed " + results.size() + " files instead of " + batch.size());
+      }
+      List<Integer> conflicts = new ArrayList<>();
+      for (int i = 0; i < results.size(); i++) {
+        UploadSessionFinishBatchResultEntry result = results.get(i);
+        int index = pending.get(i);
+        String path = entries.get(index).getCommit().getPath();
+        if (result.isSuccess()) {
+          files[index] = new Result(path, result.getSuccessValue(), null);
+        } else if (result.getFailureValue().isTooManyWriteOperations() && attempt < maxRetries) {
+          conflicts.add(index);
+        } else {
+          logger.warning("Cannot commit " + path + ": " + result.getFailureValue());
+          files[index] = new Result(path, null, result.getFailureValue().toString());
+        }
+      }
+      if (conflicts.isEmpty()) {
+        return Arrays.asList(files);
+      }
+      retries.incrementAndGet();
+      DropboxRetries.backoff(conflicts.size() + " files failed with too_many_write_operations", attempt);
+      pending = conflicts;
+    }
+  }
+
+  /**
+   * Launches the commit of a batch and polls its job until it completes.
+   */
+  private List<UploadSessionFinishBatchResultEntry> finishBatch(List<UploadSessionFinishArg> batch)
+      throws DbxException, IOException {
+    UploadSessionFinishBatchLaunch launch = null;
+    for (int attempt = 0; launch == null; attempt++) {
+      try {
+        launch = client.files().uploadSessionFinishBatch(batch);
+      } catch (DbxException x) {
+        retryOrThrow(x, attempt);
+      }
+    }
+    if (launch.isComplete()) {
+      return launch.getCompleteValue().getEntries();
+    }
+    if (!launch.isAsyncJobId()) {
+      throw new IOException("Unexpected result of the commit of " + batch.size() + " files: " + launch);
+    }
+    String jobId = launch.getAsyncJobIdValue();
+    long started = System.currentTimeMillis();
+    long wait = INITIAL_POLL_MS;
+    int failed = 0;
+    while (true) {
+      long elapsed = System.currentTimeMillis() - started;
+      if (elapsed >= maxCommitWait) {
+        throw new IOException("The commit of " + batch.size() + " files did not complete within " + elapsed +
+            " ms (job " + jobId + ")");
+      }
+      DropboxRetries.sleep(Math.min(wait, maxCommitWait - elapsed));
+      wait = Math.min(MAX_POLL_MS, wait * 2);
+      UploadSessionFinishBatchJobStatus status;
+      try {
+        status = client.files().uploadSessionFinishBatchCheck(jobId);
+        polls.incrementAndGet();
+      } catch (DbxException x) {
+        retryOrThrow(x, failed++);
+        continue;
+      }
+      if (status.isComplete()) {
+        logger.fine("Committed " + batch.size() + " files in " + (System.currentTimeMillis() - started) + " ms");
+        return status.getCompleteValue().getEntries();
+      }
+    }
+  }
+
+  private void retryOrThrow(DbxException x, int attempt) throws DbxException, IOException {
+    if (!DropboxRetries.isRetryable(x) || attempt >= maxRetries) {
+      throw x;
+    }
+    retries.incrementAndGet();
+    DropboxRetries.backoff(x, attempt);
+  }
+
+  private static UploadSessionCursor await(Future<UploadSessionCursor> session) throws DbxException, IOException {
+    try {
+      return session.get();
+    } catch (InterruptedException x) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while uploading");
+    } catch (ExecutionException x) {
+      if (x.getCause() instanceof DbxException) {
+        throw (DbxException) x.getCause();
+      } else if (x.getCause() instanceof IOException) {
+        throw (IOException) x.getCause();
+      }
+      throw new IOException(x.getCause());
+    }
+  }
+
+  /**
+   * Stops the uploads still running. The sessions that were not committed expire on their own.
+   */
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    for (Future<UploadSessionCursor> session : sessions) {
+      session.cancel(true);
+    }
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Sets how many files are sent to their upload session at the same time.
+   *
+   * @param parallelism the number of concurrent upload sessions
+   * @return this uploader
+   */
+  public DropboxBatchUploader setParallelism(int parallelism) {
+    this.parallelism = Math.max(1, parallelism);
+    return this;
+  }
+
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  public DropboxBatchUploader setMaxRetries(int maxRetries) {
+    this.maxRetries = Math.max(0, maxRetries);
+    return this;
+  }
+
+  /**
+   * Sets the uploader of the content of the files, shared by the concurrent upload sessions.
+   *
+   * @param uploader the uploader
+   * @return this uploader
+   */
+  public DropboxBatchUploader setUploader(DropboxChunkedUploader uploader) {
+    this.uploader = uploader;
+    return this;
+  }
+
+  /**
+   * Sets the factory of the buffers holding the files, and the chunks of their upload sessions.
+   *
+   * @param buffers the content buffer factory
+   * @return this uploader
+   */
+  public DropboxBatchUploader setContentBufferFactory(ContentBufferFactory buffers) {
+    this.buffers = buffers;
+    uploader.setContentBufferFactory(buffers);
+    return this;
+  }
+
+  public long getMaxCommitWaitMillis() {
+    return maxCommitWait;
+  }
+
+  /**
+   * Sets how long the job of a batch is polled before the upload fails. Dropbox may still commit the
+   * files of the batch after that.
+   *
+   * @param maxCommitWait the longest wait, in milliseconds
+   * @return this uploader
+   */
+  public DropboxBatchUploader setMaxCommitWaitMillis(long maxCommitWait) {
+    this.maxCommitWait = Math.max(0, maxCommitWait);
+    return this;
+  }
+
+  public int getFileCount() {
+    return commits.size();
+  }
+
+  /**
+   * Returns the size of the files added.
+   *
+   * @return the number of bytes
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the number of times the job of a batch was polled before it completed.
+   *
+   * @return the number of polls
+   */
+  public int getPollCount() {
+    return polls.get();
+  }
+
+  public int getRetryCount() {
+    return retries.get();
+  }
+
+  private final DbxClientV2 client;
+  private DropboxChunkedUploader uploader;
+  private int parallelism = DEFAULT_PARALLELISM;
+  private int maxRetries = DropboxChunkedUploader.DEFAULT_MAX_RETRIES;
+  private long maxCommitWait = DEFAULT_MAX_COMMIT_WAIT_MS;
+  private ContentBufferFactory buffers = new ContentBufferFactory();
+  private ExecutorService executor;
+  private final List<CommitInfo> commits = new ArrayList<>();
+  private final List<Future<UploadSessionCursor>> sessions = new ArrayList<>();
+  private int sent;
+  private long bytes;
+  private final AtomicInteger polls = new AtomicInteger();
+  private final AtomicInteger retries = new AtomicInteger();
+
+  /**
+   * The outcome of the commit of a file: its metadata once committed, or the failure reported by
+   * Dropbox.
+   */
+  public static final class Result {
+
+    Result(String path, FileMetadata metadata, String error) {
+      this.path = path;
+      this.metadata = metadata;
+      this.error = error;
+    }
+
+    /**
+     * Returns the path the file was committed to, as it was added.
+     *
+     * @return the path of the file
+     */
+    public String getPath() {
+      return path;
+    }
+
+    public boolean isSuccess() {
+      return metadata != null;
+    }
+
+    /**
+     * Returns the metadata of the file.
+     *
+     * @return the metadata, or <code>null</code> if the file was not committed
+     */
+    public FileMetadata getMetadata() {
+      return metadata;
+    }
+
+    /**
+     * Returns the failure of the commit of the file, as reported by Dropbox.
+     *
+     * @return the failure, or <code>null</code> if the file was committed
+     */
+    public String getError() {
+      return error;
+    }
+
+    @Override
+    public String toString() {
+      return isSuccess() ? path : path + " (" + error + ")";
+    }
+
+    private final String path;
+    private final FileMetadata metadata;
+    private final String error;
+  }
+
+  private static Logger logger = Logger.getLogger(DropboxBatchUploader.class.getName());
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxException;
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.CommitInfo;
+import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.UploadSessionCursor;
+import com.dropbox.core.v2.files.UploadSessionFinishErrorException;
+import com.dropbox.core.v2.files.UploadSessionLookupError;
+import com.dropbox.core.v2.files.UploadSessionLookupErrorException;
+import org.jitterbit.connector.sdk.util.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Uploads a file to Dropbox from a stream of unknown length.
+ * <p>
+ * Content up to the session threshold is sent with a single <code>files/upload</code> call. Larger
+ * content is sent in chunks through an upload session (<code>upload_session/start</code>,
+ * <code>append_v2</code> and <code>finish</code>), which also lifts the 150 MB limit of a single
+ * upload. The next chunk is read from the source stream while the current one is being sent.
+ * Chunks are held in {@link ContentBuffer}s, so large chunks do not have to fit on the heap.
+ * </p>
+ * <p>
+ * A chunk that fails with a network, server or rate limit error is retried on its own, at the
+ * offset expected by Dropbox, without restarting the file.
+ * </p>
+ */
+public class DropboxChunkedUploader {
+
+  public static final int MB = 1024 * 1024;
+
+  /**
+   * Largest content accepted by a single <code>files/upload</code> call.
+   */
+  public static final int MAX_SINGLE_UPLOAD_SIZE = 150 * MB;
+
+  public static final int DEFAULT_SESSION_THRESHOLD = 8 * MB;
+  public static final int DEFAULT_CHUNK_SIZE = 8 * MB;
+  public static final int DEFAULT_MAX_RETRIES = 3;
+
+  /**
+   * Creates an uploader using a Dropbox client.
+   *
+   * @param client the Dropbox version 2 client
+   */
+  public DropboxChunkedUploader(DbxClientV2 client) {
+    this.client = client;
+  }
+
+  /**
+   * Creates an uploader configured from the function parameters of an activity. Sizes are given in
+   * megabytes; parameters that are missing or invalid keep their default value.
+   *
+   * @param client the Dropbox version 2 client
+   * @param params the function parameters of the activity
+   * @return the uploader
+   */
+  public static DropboxChunkedUploader fromParameters(DbxClientV2 client, Map<String, String> params) {
+    return new DropboxChunkedUploader(client)
+        .setSessionThreshold(
+            Utils.valueOfProp(DropboxConstants.UPLOAD_SESSION_THRESHOLD, params, DEFAULT_SESSION_THRESHOLD / MB) * MB)
+        .setChunkSize(Utils.valueOfProp(DropboxConstants.UPLOAD_CHUNK_SIZE, params, DEFAULT_CHUNK_SIZE / MB) * MB)
+        .setMaxRetries(Utils.valueOfProp(DropboxConstants.UPLOAD_MAX_RETRIES, params, DEFAULT_MAX_RETRIES));
+  }
+
+  /**
+   * Uploads the content of a stream.
+   *
+   * @param content the content of the file; it is read to its end but not closed
+   * @param commit the path and write mode of the file
+   * @return the metadata of the uploaded file
+   * @throws DbxException if Dropbox rejects the upload, or a chunk still fails after the retries
+   * @throws IOException if the content cannot be read
+   */
+  public FileMetadata upload(InputStream content, CommitInfo commit) throws DbxException, IOException {
+    List<Chunk> head = new ArrayList<>();
+    Future<Chunk> next = null;
+    ExecutorService readAhead = null;
+    try {
+      long size = 0;
+      boolean ended = false;
+      while (!ended && size <= sessionThreshold) {
+        Chunk chunk = Chunk.read(content, chunkSize, buffers);
+        head.add(chunk);
+        size += chunk.length;
+        ended = chunk.isLast(chunkSize);
+      }
+      if (ended && size <= sessionThreshold) {
+        return uploadSingle(head, commit);
+      }
+
+      readAhead = newReadAhead();
+      Chunk first = head.remove(0);
+      String sessionId;
+      try {
+        sessionId = start(first, false);
+      } finally {
+        first.close();
+      }
+      long offset = first.length;
+      next = head.isEmpty() ? readAhead.submit(() -> Chunk.read(content, chunkSize, buffers)) : null;
+      while (true) {
+        Chunk chunk = next == null ? head.remove(0) : await(next);
+        boolean readNext = head.isEmpty() && !chunk.isLast(chunkSize);
+        next = readNext ? readAhead.submit(() -> Chunk.read(content, chunkSize, buffers)) : null;
+        try {
+          if (chunk.isLast(chunkSize)) {
+            FileMetadata metadata = finish(sessionId, offset, chunk, commit);
+            logger.fine("Uploaded " + (offset + chunk.length) + " bytes to " + commit.getPath() + " in " + chunks +
+                " chunks with " + retries + " retries");
+            return metadata;
+          }
+          append(sessionId, offset, chunk, false);
+          offset += chunk.length;
+        } finally {
+          chunk.close();
+        }
+      }
+    } finally {
+      for (Chunk chunk : head) {
+        chunk.close();
+      }
+      shutdown(readAhead, next);
+    }
+  }
+
+  /**
+   * Uploads the content of a stream to an upload session and closes the session without committing
+   * it, so that it can be committed together with other sessions by
+   * <code>upload_session/finish_batch</code>. The content is always sent through a session, whatever
+   * its size.
+   *
+   * @param content the content of the file; it is read to its end but not closed
+   * @return the cursor at the end of the closed session
+   * @throws DbxException if Dropbox rejects the upload, or a chunk still fails after the retries
+   * @throws IOException if the content cannot be read
+   */
+  public UploadSessionCursor uploadSession(InputStream content) throws DbxException, IOException {
+    Future<Chunk> next = null;
+    ExecutorService readAhead = null;
+    try {
+      Chunk chunk = Chunk.read(content, chunkSize, buffers);
+      String sessionId = null;
+      long offset = 0;
+      while (true) {
+        boolean last = chunk.isLast(chunkSize);
+        if (!last) {
+          readAhead = readAhead == null ? newReadAhead() : readAhead;
+          next = readAhead.submit(() -> Chunk.read(content, chunkSize, buffers));
+        }
+        try {
+          if (sessionId == null) {
+            sessionId = start(chunk, last);
+          } else {
+            append(sessionId, offset, chunk, last);
+          }
+          offset += chunk.length;
+        } finally {
+          chunk.close();
+        }
+        if (last) {
+          logger.fine("Uploaded " + offset + " bytes to session " + sessionId);
+          return new UploadSessionCursor(sessionId, offset);
+        }
+        chunk = await(next);
+        next = null;
+      }
+    } finally {
+      shutdown(readAhead, next);
+    }
+  }
+
+  private static ExecutorService newReadAhead() {
+    return Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "dropbox-upload-read-ahead");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private static void shutdown(ExecutorService readAhead, Future<Chunk> next) {
+    if (readAhead != null) {
+      readAhead.shutdownNow();
+    }
+    if (next != null && next.isDone()) {
+      try {
+        await(next).close();
+      } catch (IOException x) {
+        // the read failed, so it holds no buffer
+      }
+    }
+  }
+
+  private FileMetadata uploadSingle(List<Chunk> chunks, CommitInfo commit) throws DbxException, IOException {
+    for (int attempt = 0; true; attempt++) {
+      List<InputStream> streams = new ArrayList<>();
+      for (Chunk chunk : chunks) {
+        streams.add(chunk.stream(0));
+      }
+      try {
+        return client.files().uploadBuilder(commit.getPath())
+            .withMode(commit.getMode())
+            .withAutorename(commit.getAutorename())
+            .withMute(commit.getMute())
+            .withClientModified(commit.getClientModified())
+            .uploadAndFinish(new SequenceInputStream(Collections.enumeration(streams)));
+      } catch (DbxException x) {
+        retryOrThrow(x, attempt);
+      }
+    }
+  }
+
+  private String start(Chunk chunk, boolean close) throws DbxException, IOException {
+    for (int attempt = 0; true; attempt++) {
+      try {
+        String sessionId = client.files().uploadSessionStart(close).uploadAndFinish(chunk.stream(0)).getSessionId();
+        chunks.incrementAndGet();
+        return sessionId;
+      } catch (DbxException x) {
+        retryOrThrow(x, attempt);
+      }
+    }
+  }
+
+  private void append(String sessionId, long offset, Chunk chunk, boolean close) throws DbxException, IOException {
+    int sent = 0;
+    for (int attempt = 0; true; attempt++) {
+      try {
+        client.files().uploadSessionAppendV2(new UploadSessionCursor(sessionId, offset + sent), close)
+            .uploadAndFinish(chunk.stream(sent));
+        chunks.incrementAndGet();
+        return;
+      } catch (UploadSessionLookupErrorException x) {
+        sent = resume(x, x.errorValue, offset, chunk, attempt);
+        if (sent == chunk.length) {
+          chunks.incrementAndGet();
+          return;
+        }
+      } catch (DbxException x) {
+        retryOrThrow(x, attempt);
+      }
+    }
+  }
+
+  private FileMetadata finish(String sessionId, long offset, Chunk chunk, CommitInfo commit)
+      throws DbxException, IOException {
+    int sent = 0;
+    for (int attempt = 0; true; attempt++) {
+      try {
+        FileMetadata metadata = client.files().uploadSessionFinish(new UploadSessionCursor(sessionId, offset + sent),
+            commit).uploadAndFinish(chunk.stream(sent));
+        chunks.incrementAndGet();
+        return metadata;
+      } catch (UploadSessionFinishErrorException x) {
+        if (!x.errorValue.isLookupFailed()) {
+          throw x;
+        }
+        sent = resume(x, x.errorValue.getLookupFailedValue(), offset, chunk, attempt);
+      } catch (DbxException x) {
+        retryOrThrow(x, attempt);
+      }
+    }
+  }
+
+  /**
+   * Returns how much of a chunk Dropbox already has, when a retried request reports that part
+   * of the chunk was received by a previous attempt.
+   */
+  private int resume(DbxException x, UploadSessionLookupError error, long offset, Chunk chunk, int attempt)
+      throws DbxException {
+    if (!error.isIncorrectOffset() || attempt >= maxRetries) {
+      throw x;
+    }
+    long correct = error.getIncorrectOffsetValue().getCorrectOffset();
+    if (correct < offset || correct > offset + chunk.length) {
+      throw x;
+    }
+    retries.incrementAndGet();
+    logger.info("Resuming upload session at offset " + correct + " instead of " + offset);
+    return (int) (correct - offset);
+  }
+
+  private void retryOrThrow(DbxException x, int attempt) throws DbxException, IOException {
+    if (!DropboxRetries.isRetryable(x) || attempt >= maxRetries) {
+      throw x;
+    }
+    retries.incrementAndGet();
+    DropboxRetries.backoff(x, attempt);
+  }
+
+  private static Chunk await(Future<Chunk> next) throws IOException {
+    try {
+      return next.get();
+    } catch (InterruptedException x) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading the content");
+    } catch (ExecutionException x) {
+      if (x.getCause() instanceof IOException) {
+        throw (IOException) x.getCause();
+      }
+      throw new IOException(x.getCause());
+    }
+  }
+
+  public long getSessionThreshold() {
+    return sessionThreshold;
+  }
+
+  /**
+   * Sets the size above which content is uploaded through an upload session. It cannot exceed
+   * {@link #MAX_SINGLE_UPLOAD_SIZE}.
+   *
+   * @param sessionThreshold the threshold in bytes
+   * @return this uploader
+   */
+  public DropboxChunkedUploader setSessionThreshold(long sessionThreshold) {
+    this.sessionThreshold = Math.max(0, Math.min(MAX_SINGLE_UPLOAD_SIZE, sessionThreshold));
+    return this;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Sets the size of the chunks of an upload session. It cannot exceed {@link #MAX_SINGLE_UPLOAD_SIZE}.
+   *
+   * @param chunkSize the chunk size in bytes
+   * @return this uploader
+   */
+  public DropboxChunkedUploader setChunkSize(int chunkSize) {
+    this.chunkSize = Math.max(1, Math.min(MAX_SINGLE_UPLOAD_SIZE, chunkSize));
+    return this;
+  }
+
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  public DropboxChunkedUploader setMaxRetries(int maxRetries) {
+    this.maxRetries = Math.max(0, maxRetries);
+    return this;
+  }
+
+  /**
+   * Returns the number of requests that carried content, including single uploads.
+   *
+   * @return the number of chunks sent
+   */
+  public int getChunkCount() {
+    return chunks.get();
+  }
+
+  public int getRetryCount() {
+    return retries.get();
+  }
+
+  /**
+   * Sets the factory of the buffers holding the chunks, which keeps small chunks in memory and
+   * moves larger ones to temporary files.
+   *
+   * @param buffers the content buffer factory
+   * @return this uploader
+   */
+  public DropboxChunkedUploader setContentBufferFactory(ContentBufferFactory buffers) {
+    this.buffers = buffers;
+    return this;
+  }
+
+  /**
+   * Part of the content, read into a {@link ContentBuffer}.
+   */
+  private static final class Chunk implements AutoCloseable {
+
+    private Chunk(ContentBuffer data) {
+      this.data = data;
+      this.length = (int) data.size();
+    }
+
+    static Chunk read(InputStream in, int size, ContentBufferFactory buffers) throws IOException {
+      ContentBuffer data = buffers.newBuffer(size);
+      try {
+        data.writeFrom(in, size);
+      } catch (IOException x) {
+        data.close();
+        throw x;
+      }
+      return new Chunk(data);
+    }
+
+    /**
+     * A chunk shorter than the chunk size can only be the last one. A full chunk may be the last
+     * one too; the next, empty, chunk then finishes the upload.
+     */
+    boolean isLast(int size) {
+      return length < size;
+    }
+
+    InputStream stream(int offset) throws IOException {
+      return data.getInputStream(offset);
+    }
+
+    @Override
+    public void close() {
+      data.close();
+    }
+
+    private final ContentBuffer data;
+    private final int length;
+  }
+
+  private final DbxClientV2 client;
+  private long sessionThreshold = DEFAULT_SESSION_THRESHOLD;
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+  private int maxRetries = DEFAULT_MAX_RETRIES;
+  private ContentBufferFactory buffers = new ContentBufferFactory();
+  private final AtomicInteger chunks = new AtomicInteger();
+  private final AtomicInteger retries = new AtomicInteger();
+
+  private static Logger logger = Logger.getLogger(DropboxChunkedUploader.class.getName());
+}
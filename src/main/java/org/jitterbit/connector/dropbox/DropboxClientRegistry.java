@@ -0,0 +1,593 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxException;
+import com.dropbox.core.DbxRequestConfig;
+import com.dropbox.core.http.HttpRequestor;
+import com.dropbox.core.v2.DbxClientV2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide registry of Dropbox version 2 clients, keyed by app key, access token and locale.
+ * <p>
+ * A {@link DropboxConnection} acquires a {@link SharedClient} when it is opened and releases it
+ * when it is closed, so that connections are cheap logical handles over a long-lived client.
+ * Clients are created lazily on first use, reference counted while connections hold them, and
+ * evicted once they have been unused for longer than the idle timeout.
+ * </p>
+ * <p>
+ * Each shared client also owns the {@link DropboxConnectionPool} bounding the number of
+ * connections open at the same time with its credentials, one per pool configuration. The
+ * maximum life time, the idle timeout and the minimum size of the pool configurations apply to
+ * the shared client itself: the shortest life time and idle timeout, and any minimum size.
+ * The HTTP requestors of a shared client are created from the {@link DropboxHttpTransport} of
+ * each endpoint, so that the connections with the same credentials and transport share the same
+ * HTTP connections; replaced requestors are closed once no connection uses them. The requestors
+ * of a transport share a {@link DropboxConcurrencyLimiter}, with the maximum of the transport,
+ * adapting the number of requests made at the same time to the rate limits of Dropbox. The
+ * requests are recorded in the {@link DropboxMetrics} of their endpoint.
+ * </p>
+ */
+public final class DropboxClientRegistry {
+
+  public static final DropboxClientRegistry INSTANCE = new DropboxClientRegistry();
+
+  public static final long DEFAULT_IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+
+  DropboxClientRegistry() {
+  }
+
+  /**
+   * Acquires the shared client associated with the given credentials, creating a registry
+   * entry if there is none. Every call must be balanced by a call to {@link SharedClient#release()}.
+   *
+   * @param appKey Dropbox app key
+   * @param accessToken Dropbox OAuth 2 access token
+   * @param locale IETF BCP 47 language tag of the locale, or null
+   * @return the shared client, with its reference count incremented
+   */
+  public SharedClient acquire(String appKey, String accessToken, String locale) {
+    Key key = new Key(appKey, accessToken, locale);
+    while (true) {
+      SharedClient shared = clients.computeIfAbsent(key, SharedClient::new);
+      if (shared.retain()) {
+        evictIdle();
+        return shared;
+      }
+      // lost a race with the eviction of the entry, retry with a fresh one
+      clients.remove(key, shared);
+    }
+  }
+
+  /**
+   * Removes every client that is not referenced by a connection and has been idle for
+   * longer than the idle timeout.
+   */
+  public void evictIdle() {
+    long now = System.currentTimeMillis();
+    Iterator<SharedClient> it = clients.values().iterator();
+    while (it.hasNext()) {
+      SharedClient shared = it.next();
+      if (shared.evictIfIdle(now, idleTimeoutMillis)) {
+        it.remove();
+        shared.dispose();
+        logger.fine("Evicted idle Dropbox client for app-key: " + shared.key.appKey);
+      }
+    }
+  }
+
+  /**
+   * Removes every client, referenced or not, and deletes the files they cached. Called when
+   * the connector shuts down.
+   */
+  public void shutdown() {
+    Iterator<SharedClient> it = clients.values().iterator();
+    while (it.hasNext()) {
+      SharedClient shared = it.next();
+      it.remove();
+      shared.dispose();
+    }
+  }
+
+  /**
+   * Returns a snapshot of the clients currently held by the registry.
+   *
+   * @return the registered clients
+   */
+  public Collection<SharedClient> getClients() {
+    return Collections.unmodifiableList(new ArrayList<>(clients.values()));
+  }
+
+  /**
+   * Returns the number of clients currently held by the registry.
+   *
+   * @return the number of registered clients
+   */
+  public int size() {
+    return clients.size();
+  }
+
+  public long getIdleTimeoutMillis() {
+    return idleTimeoutMillis;
+  }
+
+  /**
+   * Sets how long an unreferenced client is kept before it is evicted.
+   *
+   * @param idleTimeoutMillis the idle timeout in milliseconds
+   */
+  public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+    this.idleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  /**
+   * A Dropbox client shared by all the connections opened with the same credentials.
+   */
+  public static final class SharedClient {
+
+    SharedClient(Key key) {
+      this.key = key;
+      this.lastReleased = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the Dropbox version 2 client of the HTTP transport last set on this client.
+     *
+     * @return the Dropbox version 2 client
+     * @see #getClient(DropboxHttpTransport)
+     */
+    public DbxClientV2 getClient() {
+      return getClient(transport);
+    }
+
+    /**
+     * Returns the Dropbox version 2 client sending its requests with the given HTTP transport,
+     * creating it on first use and replacing it once it has outlived the shortest maximum life
+     * time of the pool configurations.
+     *
+     * @param transport the HTTP transport of the endpoint
+     * @return the Dropbox version 2 client
+     */
+    public DbxClientV2 getClient(DropboxHttpTransport transport) {
+      return getTransportClients(transport).getClient();
+    }
+
+    /**
+     * Returns the Dropbox version 2 client for long polls sending its requests with the given HTTP
+     * transport. Its read timeout outlasts the longest wait of <code>files/list_folder/longpoll</code>.
+     * Its requests are not concurrency limited: each one holds an HTTP connection for minutes without
+     * loading Dropbox, and would hold a permit as long.
+     *
+     * @param transport the HTTP transport of the endpoint
+     * @return the Dropbox version 2 client for long polls
+     */
+    public DbxClientV2 getLongpollClient(DropboxHttpTransport transport) {
+      return getTransportClients(transport).getLongpollClient();
+    }
+
+    /**
+     * Sets the HTTP transport of this client. Endpoints sharing the credentials but not the
+     * transport each get their own clients, so that they do not replace each other's clients,
+     * and HTTP connections, when they alternate. Each transport keeps its own concurrency
+     * limiter, so that its maximum does not change with the endpoint opened last, and what it
+     * learned of the rate limits of Dropbox is not lost when its clients are replaced.
+     *
+     * @param transport the HTTP transport of the endpoint
+     */
+    public synchronized void setTransport(DropboxHttpTransport transport) {
+      if (!this.transport.equals(transport)) {
+        if (!transports.isEmpty() && !transports.containsKey(transport)) {
+          logger.info("Adding HTTP transport for " + key + ": " + transport);
+        }
+        this.transport = transport;
+      }
+    }
+
+    /**
+     * Returns the connection pool of this client for the given configuration, creating it on
+     * first use. Endpoints sharing the credentials but not the pool configuration each get
+     * their own pool, so that they do not replace each other's pool, and its bounds, when
+     * they alternate.
+     *
+     * @param config the pool configuration of the endpoint
+     * @return the connection pool
+     */
+    public DropboxConnectionPool getPool(DropboxPoolConfiguration config) {
+      DropboxConnectionPool result = pools.computeIfAbsent(config, c -> {
+        DropboxConnectionPool created = new DropboxConnectionPool(c);
+        DropboxMetrics.INSTANCE.addPool(getName(), created);
+        return created;
+      });
+      pool = result;
+      return result;
+    }
+
+    /**
+     * Returns the connection pool this client was last opened with.
+     *
+     * @return the connection pool, or null if no connection has been opened yet
+     */
+    public DropboxConnectionPool getPool() {
+      return pool;
+    }
+
+    /**
+     * Returns a description of the client that does not include the access token.
+     *
+     * @return the name of the client
+     */
+    public String getName() {
+      return key.toString();
+    }
+
+    /**
+     * Returns when the credentials of this client were last validated against Dropbox.
+     *
+     * @return the time of the last successful validation in milliseconds, or zero if there is none
+     */
+    public long getValidatedAt() {
+      return validatedAt;
+    }
+
+    public void setValidatedAt(long validatedAt) {
+      this.validatedAt = validatedAt;
+    }
+
+    /**
+     * Returns the id of the Dropbox account of these credentials, asking Dropbox on first use
+     * unless a validation already did.
+     *
+     * @return the account id
+     * @throws DbxException if Dropbox rejects the credentials or cannot be reached
+     */
+    public String getAccountId() throws DbxException {
+      String result = accountId;
+      if (result == null) {
+        result = getClient().users().getCurrentAccount().getAccountId();
+        accountId = result;
+      }
+      return result;
+    }
+
+    public void setAccountId(String accountId) {
+      this.accountId = accountId;
+    }
+
+    /**
+     * Releases a reference obtained through {@link DropboxClientRegistry#acquire(String, String, String)}.
+     */
+    public synchronized void release() {
+      if (refCount > 0) {
+        refCount--;
+      }
+      if (refCount == 0) {
+        lastReleased = System.currentTimeMillis();
+        closeRetired();
+      }
+    }
+
+    public synchronized int getRefCount() {
+      return refCount;
+    }
+
+    /**
+     * Returns the cache of the folder listings made with these credentials.
+     *
+     * @return the folder listing cache
+     */
+    public FolderListingCache getListingCache() {
+      return listingCache;
+    }
+
+    /**
+     * Returns the cursors of the folders watched with these credentials, so that a watch goes on
+     * from where the previous one stopped.
+     *
+     * @return the cursors, by folder
+     */
+    public ConcurrentMap<String, String> getWatchCursors() {
+      return watchCursors;
+    }
+
+    /**
+     * Returns the cache of the schemas sampled from files with these credentials.
+     *
+     * @return the schema cache
+     */
+    public SchemaSampleCache getSchemaCache() {
+      return schemaCache;
+    }
+
+    /**
+     * Returns the cache of the files downloaded with these credentials and the given settings.
+     * Endpoints sharing the credentials but not the settings each get their own cache, so that
+     * they do not discard each other's files.
+     *
+     * @param settings the file cache settings of the endpoint
+     * @return the file cache
+     */
+    public synchronized DropboxFileCache getFileCache(DropboxFileCache settings) {
+      for (DropboxFileCache fileCache : fileCaches) {
+        if (fileCache.hasSameSettings(settings)) {
+          return fileCache;
+        }
+      }
+      DropboxFileCache fileCache = settings.copy();
+      fileCaches.add(fileCache);
+      return fileCache;
+    }
+
+    /**
+     * Returns the caches of the files downloaded with these credentials, one per settings.
+     *
+     * @return a snapshot of the file caches
+     */
+    public synchronized List<DropboxFileCache> getFileCaches() {
+      return new ArrayList<>(fileCaches);
+    }
+
+    /**
+     * Returns the limiters of the requests made at the same time with these credentials, one per
+     * HTTP transport whose requests are limited.
+     *
+     * @return a snapshot of the concurrency limiters
+     */
+    public List<DropboxConcurrencyLimiter> getConcurrencyLimiters() {
+      List<DropboxConcurrencyLimiter> limiters = new ArrayList<>();
+      for (TransportClients clients : transports.values()) {
+        if (clients.limiter != null) {
+          limiters.add(clients.limiter);
+        }
+      }
+      return limiters;
+    }
+
+    /**
+     * Returns the statistics of the files uploaded with these credentials.
+     *
+     * @return the upload statistics
+     */
+    public DropboxUploadStatistics getUploadStatistics() {
+      return uploadStatistics;
+    }
+
+    synchronized boolean retain() {
+      if (evicted) {
+        return false;
+      }
+      refCount++;
+      return true;
+    }
+
+    synchronized boolean evictIfIdle(long now, long defaultIdleTimeoutMillis) {
+      long idleTimeoutMillis = pools.isEmpty() ? defaultIdleTimeoutMillis : Long.MAX_VALUE;
+      for (DropboxPoolConfiguration config : pools.keySet()) {
+        if (config.getMinSize() > 0) {
+          return false;
+        }
+        idleTimeoutMillis = Math.min(idleTimeoutMillis, config.getMaxIdleTimeMillis());
+      }
+      if (!evicted && refCount == 0 && now - lastReleased >= idleTimeoutMillis) {
+        evicted = true;
+      }
+      return evicted;
+    }
+
+    /**
+     * Releases the resources of an evicted client: its HTTP requestors are closed, and the files of
+     * its caches are deleted, as their indexes are only held in memory.
+     */
+    synchronized void dispose() {
+      evicted = true;
+      for (TransportClients clients : transports.values()) {
+        clients.retire();
+      }
+      transports.clear();
+      closeRetired();
+      for (DropboxConnectionPool pool : pools.values()) {
+        DropboxMetrics.INSTANCE.removePool(pool);
+      }
+      for (DropboxFileCache fileCache : fileCaches) {
+        fileCache.clear();
+      }
+      fileCaches.clear();
+    }
+
+    private TransportClients getTransportClients(DropboxHttpTransport transport) {
+      TransportClients clients = transports.get(transport);
+      if (clients == null) {
+        synchronized (this) {
+          clients = transports.computeIfAbsent(transport, TransportClients::new);
+        }
+      }
+      return clients;
+    }
+
+    private boolean isExpired(long createdAt) {
+      long age = System.currentTimeMillis() - createdAt;
+      for (DropboxPoolConfiguration config : pools.keySet()) {
+        if (config.getMaxLifeTimeMillis() > 0 && age >= config.getMaxLifeTimeMillis()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Keeps a replaced HTTP requestor until no connection can be using it any longer.
+     */
+    private synchronized void retire(HttpRequestor requestor) {
+      if (requestor != null) {
+        retired.add(requestor);
+        if (refCount == 0) {
+          closeRetired();
+        }
+      }
+    }
+
+    private synchronized void closeRetired() {
+      for (HttpRequestor requestor : retired) {
+        DropboxHttpTransport.close(requestor);
+      }
+      retired.clear();
+    }
+
+    /**
+     * The Dropbox clients of a shared client sending their requests with one HTTP transport.
+     */
+    private final class TransportClients {
+
+      TransportClients(DropboxHttpTransport transport) {
+        this.transport = transport;
+        int maxConcurrentRequests = transport.getMaxConcurrentRequests();
+        this.limiter = maxConcurrentRequests > 0 ? new DropboxConcurrencyLimiter(maxConcurrentRequests) : null;
+      }
+
+      DbxClientV2 getClient() {
+        DbxClientV2 result = client;
+        if (result == null || isExpired(createdAt)) {
+          synchronized (SharedClient.this) {
+            result = client;
+            if (result == null || isExpired(createdAt)) {
+              SharedClient.this.retire(requestor);
+              requestor = transport.createRequestor();
+              HttpRequestor metered = new MeteredRequestor(requestor, DropboxMetrics.INSTANCE);
+              result = createClient(limiter != null ? new ConcurrencyLimitedRequestor(metered, limiter) : metered);
+              createdAt = System.currentTimeMillis();
+              client = result;
+            }
+          }
+        }
+        return result;
+      }
+
+      DbxClientV2 getLongpollClient() {
+        DbxClientV2 result = longpollClient;
+        if (result == null) {
+          synchronized (SharedClient.this) {
+            result = longpollClient;
+            if (result == null) {
+              longpollRequestor = transport.createRequestor(DropboxFolderWatcher.LONGPOLL_READ_TIMEOUT_MS);
+              result = createClient(new MeteredRequestor(longpollRequestor, DropboxMetrics.INSTANCE));
+              longpollClient = result;
+            }
+          }
+        }
+        return result;
+      }
+
+      /**
+       * Retires the requestors of these clients, which are closed once no connection uses them.
+       */
+      void retire() {
+        SharedClient.this.retire(requestor);
+        SharedClient.this.retire(longpollRequestor);
+        client = null;
+        longpollClient = null;
+        requestor = null;
+        longpollRequestor = null;
+      }
+
+      private DbxClientV2 createClient(HttpRequestor requestor) {
+        DbxRequestConfig dbxConfig = DbxRequestConfig.newBuilder(key.appKey)
+            .withUserLocale(key.locale)
+            .withHttpRequestor(requestor)
+            .build();
+        return new DbxClientV2(dbxConfig, key.accessToken);
+      }
+
+      private final DropboxHttpTransport transport;
+      private final DropboxConcurrencyLimiter limiter;
+      private volatile DbxClientV2 client;
+      private volatile DbxClientV2 longpollClient;
+      private volatile long createdAt;
+      private HttpRequestor requestor;
+      private HttpRequestor longpollRequestor;
+    }
+
+    private final Key key;
+    private volatile DropboxConnectionPool pool;
+    private final ConcurrentMap<DropboxPoolConfiguration, DropboxConnectionPool> pools = new ConcurrentHashMap<>();
+    private volatile DropboxHttpTransport transport = new DropboxHttpTransport();
+    private final ConcurrentMap<DropboxHttpTransport, TransportClients> transports = new ConcurrentHashMap<>();
+    private final List<HttpRequestor> retired = new ArrayList<>();
+    private volatile long validatedAt;
+    private volatile String accountId;
+    private final FolderListingCache listingCache = new FolderListingCache();
+    private final ConcurrentMap<String, String> watchCursors = new ConcurrentHashMap<>();
+    private final SchemaSampleCache schemaCache = new SchemaSampleCache();
+    private final DropboxUploadStatistics uploadStatistics = new DropboxUploadStatistics();
+    private final List<DropboxFileCache> fileCaches = new ArrayList<>();
+    private int refCount;
+    private long lastReleased;
+    private boolean evicted;
+  }
+
+  /**
+   * Credentials identifying a shared client. The access token is deliberately left out of
+   * {@link #toString()}.
+   */
+  static final class Key {
+
+    Key(String appKey, String accessToken, String locale) {
+      this.appKey = appKey;
+      this.accessToken = accessToken;
+      this.locale = locale;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return Objects.equals(appKey, other.appKey) &&
+          Objects.equals(accessToken, other.accessToken) &&
+          Objects.equals(locale, other.locale);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(appKey, accessToken, locale);
+    }
+
+    @Override
+    public String toString() {
+      return "app-key: " + appKey + ", locale: " + locale;
+    }
+
+    private final String appKey;
+    private final String accessToken;
+    private final String locale;
+  }
+
+  private final ConcurrentMap<Key, SharedClient> clients = new ConcurrentHashMap<>();
+  private volatile long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MS;
+
+  private static Logger logger = Logger.getLogger(DropboxClientRegistry.class.getName());
+}
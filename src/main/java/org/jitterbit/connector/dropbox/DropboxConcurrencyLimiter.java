@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Adaptive limit of the number of requests made to Dropbox at the same time with the same credentials.
+ * <p>
+ * The limit follows an additive increase, multiplicative decrease (AIMD) rule. It starts at its maximum;
+ * each request answered without throttling raises it by <code>1 / limit</code>, that is by one request
+ * per round of requests, and each request throttled by Dropbox with a <code>429</code> (rate limited) or
+ * <code>503</code> (unavailable) status halves it. Only the first throttled request of a round lowers
+ * the limit: requests started before the last decrease were sent under the previous limit, so their
+ * throttling says nothing about the new one. The limit never goes below one request, so that the
+ * connector always makes progress.
+ * </p>
+ * <p>
+ * A request takes a {@link Permit} before it is sent, waiting while the limit is reached, and gives it
+ * back with its HTTP status once the response arrives (see {@link ConcurrencyLimitedRequestor}).
+ * </p>
+ */
+public class DropboxConcurrencyLimiter {
+
+  public static final int DEFAULT_MAX_LIMIT = 64;
+
+  /**
+   * Creates a limiter starting at its maximum.
+   *
+   * @param maxLimit the maximum number of concurrent requests
+   */
+  public DropboxConcurrencyLimiter(int maxLimit) {
+    this.maxLimit = Math.max(1, maxLimit);
+    this.limit = this.maxLimit;
+  }
+
+  /**
+   * Takes a permit to send a request, waiting while the limit is reached.
+   *
+   * @return the permit, to release once the response status is known
+   * @throws InterruptedIOException if the thread is interrupted while waiting
+   */
+  public Permit acquire() throws InterruptedIOException {
+    synchronized (lock) {
+      if (inFlight >= (int) limit) {
+        waits++;
+        while (inFlight >= (int) limit) {
+          try {
+            lock.wait();
+          } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to send a Dropbox request");
+          }
+        }
+      }
+      inFlight++;
+      return new Permit(started++);
+    }
+  }
+
+  private void release(Permit permit, int status) {
+    synchronized (lock) {
+      inFlight--;
+      if (status == 429 || status == 503) {
+        throttled++;
+        if (permit.sequence >= decreasedAt) {
+          limit = Math.max(1, limit / 2);
+          decreasedAt = started;
+          decreases++;
+          logger.info("Dropbox throttled a request with status " + status + ", lowering the concurrency limit to " +
+              (int) limit);
+        }
+      } else if (status >= 200 && status < 500) {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Returns the current limit.
+   *
+   * @return the number of requests that can be made at the same time
+   */
+  public int getLimit() {
+    synchronized (lock) {
+      return (int) limit;
+    }
+  }
+
+  public int getMaxLimit() {
+    synchronized (lock) {
+      return maxLimit;
+    }
+  }
+
+  public int getInFlight() {
+    synchronized (lock) {
+      return inFlight;
+    }
+  }
+
+  /**
+   * Returns how many requests had to wait for a permit.
+   *
+   * @return the number of waits
+   */
+  public long getWaitCount() {
+    synchronized (lock) {
+      return waits;
+    }
+  }
+
+  /**
+   * Returns how many requests were throttled by Dropbox.
+   *
+   * @return the number of responses with a 429 or 503 status
+   */
+  public long getThrottledCount() {
+    synchronized (lock) {
+      return throttled;
+    }
+  }
+
+  public long getDecreaseCount() {
+    synchronized (lock) {
+      return decreases;
+    }
+  }
+
+  @Override
+  public String toString() {
+    synchronized (lock) {
+      return "limit=" + (int) limit + ", maxLimit=" + maxLimit + ", inFlight=" + inFlight + ", throttled=" + throttled;
+    }
+  }
+
+  /**
+   * The permission to send one request. It is released once, further releases are ignored.
+   */
+  public final class Permit {
+
+    private Permit(long sequence) {
+      this.sequence = sequence;
+    }
+
+    /**
+     * Releases the permit with the HTTP status of the response, which adjusts the limit.
+     *
+     * @param status the HTTP status code of the response
+     */
+    public void release(int status) {
+      if (released.compareAndSet(false, true)) {
+        DropboxConcurrencyLimiter.this.release(this, status);
+      }
+    }
+
+    /**
+     * Releases the permit of a request that got no response, such as a network error, without
+     * adjusting the limit.
+     */
+    public void release() {
+      release(0);
+    }
+
+    private final long sequence;
+    private final AtomicBoolean released = new AtomicBoolean();
+  }
+
+  private final Object lock = new Object();
+  private final int maxLimit;
+  private double limit;
+  private int inFlight;
+  private long started;
+  private long decreasedAt;
+  private long waits;
+  private long throttled;
+  private long decreases;
+
+  private static Logger logger = Logger.getLogger(DropboxConcurrencyLimiter.class.getName());
+}
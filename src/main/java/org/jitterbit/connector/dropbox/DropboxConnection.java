@@ -13,18 +13,23 @@
 
 package org.jitterbit.connector.dropbox;
 
-import com.dropbox.core.DbxRequestConfig;
+import com.dropbox.core.DbxException;
 import com.dropbox.core.v2.DbxClientV2;
-import com.dropbox.core.v2.files.ListFolderResult;
 import org.jitterbit.connector.sdk.Connection;
 
 import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 /**
  * Connection to a Dropbox endpoint. Uses the
  * <a href="https://dropbox.github.io/dropbox-sdk-java/api-docs/v2.1.x/"
  * target="_blank">Official Dropbox Java SDK 2.1.2 API</a>.
+ * <p>
+ * The underlying client is shared with every other connection using the same credentials
+ * through the {@link DropboxClientRegistry}; opening and closing a connection only acquires
+ * and releases a reference to it.
+ * </p>
  */
 public class DropboxConnection implements Connection {
 
@@ -44,20 +49,55 @@ public class DropboxConnection implements Connection {
   }
 
   /**
-   * Opens a Dropbox version 2 connection.
+   * Opens a Dropbox version 2 connection. The connection waits for a slot of the connection pool
+   * of its credentials. Unless validation is disabled, the credentials are then validated with
+   * the {@link DropboxConnectionValidator}, which reuses a successful validation of the same
+   * credentials made within the validation time to live.
    *
-   * @throws ConnectionException if there is an error while creating the client
+   * @throws ConnectionException if there is an error while creating the client, or if no pool
+   * slot became available within the maximum wait time or the wait queue of the pool is full
    */
   public void open() throws ConnectionException {
     if (client != null) {
       return;
     }
+    DropboxClientRegistry.SharedClient acquired = DropboxClientRegistry.INSTANCE.acquire(appKey, accessToken, locale);
+    acquired.setTransport(transport);
+    DropboxConnectionPool acquiredPool = acquired.getPool(poolConfig);
     try {
-      DbxRequestConfig dbxConfig = new DbxRequestConfig(appKey, locale);
-      client = new DbxClientV2(dbxConfig, accessToken);
-      ListFolderResult results = client.files().listFolder("");
-      logger.info("Dropbox Connection successful -> app-key: " + appKey + ", access-token: " + accessToken);
+      DropboxConnectionPool.Acquisition acquisition = acquiredPool.tryAcquire();
+      if (acquisition == DropboxConnectionPool.Acquisition.REJECTED) {
+        DropboxMetrics.INSTANCE.recordError(Messages.DROPBOX_CODE09);
+        throw new ConnectionException(Messages.DROPBOX_CODE09,
+            Messages.getMessage(Messages.DROPBOX_CODE09_MSG, new Object[]{appKey, acquiredPool.toString()}), null);
+      } else if (acquisition == DropboxConnectionPool.Acquisition.TIMED_OUT) {
+        DropboxMetrics.INSTANCE.recordError(Messages.DROPBOX_CODE08);
+        throw new ConnectionException(Messages.DROPBOX_CODE08,
+            Messages.getMessage(Messages.DROPBOX_CODE08_MSG, new Object[]{appKey, acquiredPool.toString()}), null);
+      }
+    } catch (InterruptedException x) {
+      Thread.currentThread().interrupt();
+      acquired.release();
+      DropboxMetrics.INSTANCE.recordError(Messages.DROPBOX_CODE08);
+      throw new ConnectionException(Messages.DROPBOX_CODE08,
+          Messages.getMessage(Messages.DROPBOX_CODE08_MSG, new Object[]{appKey, acquiredPool.toString()}), x);
+    } catch (ConnectionException x) {
+      acquired.release();
+      throw x;
+    }
+    try {
+      DbxClientV2 dbxClient = acquired.getClient(transport);
+      if (validationEnabled) {
+        DropboxConnectionValidator.INSTANCE.validate(acquired, validationTtlMillis);
+      }
+      shared = acquired;
+      pool = acquiredPool;
+      client = dbxClient;
+      DropboxMetrics.INSTANCE.recordConnectionOpen();
     } catch (Exception x) {
+      acquiredPool.release();
+      acquired.release();
+      DropboxMetrics.INSTANCE.recordError(Messages.DROPBOX_CODE07);
       x.printStackTrace();
       throw new ConnectionException(Messages.DROPBOX_CODE07,
           Messages.getMessage(Messages.DROPBOX_CODE07_MSG, new Object[]{x.getLocalizedMessage()}), x);
@@ -79,14 +119,182 @@ public class DropboxConnection implements Connection {
   }
 
   /**
-   * Closes the Dropbox connection.
+   * Returns the Dropbox version 2 client for long polls of the connection, opening the connection
+   * if needed (see {@link DropboxClientRegistry.SharedClient#getLongpollClient(DropboxHttpTransport)}).
+   *
+   * @return the Dropbox version 2 client for long polls
+   * @throws ConnectionException if the connection cannot be opened
+   */
+  public DbxClientV2 getLongpollClient() throws ConnectionException {
+    getClient();
+    return shared.getLongpollClient(transport);
+  }
+
+  /**
+   * Returns the app key and the id of the Dropbox account of this connection, opening the
+   * connection if needed, so that state kept across executions can tell when the credentials
+   * of an endpoint change.
+   *
+   * @return the app key and the account id
+   * @throws ConnectionException if the connection cannot be opened
+   * @throws DbxException if Dropbox cannot tell the account of the credentials
+   */
+  public String getAccount() throws ConnectionException, DbxException {
+    getClient();
+    return appKey + " " + shared.getAccountId();
+  }
+
+  /**
+   * Returns the cache of the folder listings made with the credentials of this connection,
+   * opening the connection if needed.
+   *
+   * @return the folder listing cache
+   * @throws ConnectionException if the connection cannot be opened
+   */
+  public FolderListingCache getListingCache() throws ConnectionException {
+    getClient();
+    return shared.getListingCache();
+  }
+
+  /**
+   * Returns the cursors of the folders watched with the credentials of this connection,
+   * opening the connection if needed.
+   *
+   * @return the cursors, by folder
+   * @throws ConnectionException if the connection cannot be opened
+   */
+  public ConcurrentMap<String, String> getWatchCursors() throws ConnectionException {
+    getClient();
+    return shared.getWatchCursors();
+  }
+
+  /**
+   * Returns the cache of the schemas sampled from files with the credentials of this connection,
+   * opening the connection if needed.
+   *
+   * @return the schema cache
+   * @throws ConnectionException if the connection cannot be opened
+   */
+  public SchemaSampleCache getSchemaCache() throws ConnectionException {
+    getClient();
+    return shared.getSchemaCache();
+  }
+
+  /**
+   * Returns the cache of the files downloaded with the credentials of this connection, with the
+   * settings of this connection, opening the connection if needed.
+   *
+   * @return the file cache, which is disabled unless a maximum size is set
+   * @throws ConnectionException if the connection cannot be opened
+   */
+  public DropboxFileCache getFileCache() throws ConnectionException {
+    getClient();
+    return shared.getFileCache(fileCacheSettings);
+  }
+
+  /**
+   * Sets the settings of the cache of downloaded files, as a cache that is copied by the shared client.
+   *
+   * @param fileCacheSettings the file cache settings
+   */
+  public void setFileCacheSettings(DropboxFileCache fileCacheSettings) {
+    this.fileCacheSettings = fileCacheSettings;
+  }
+
+  /**
+   * Returns the statistics of the files uploaded with the credentials of this connection,
+   * opening the connection if needed.
+   *
+   * @return the upload statistics
+   * @throws ConnectionException if the connection cannot be opened
+   */
+  public DropboxUploadStatistics getUploadStatistics() throws ConnectionException {
+    getClient();
+    return shared.getUploadStatistics();
+  }
+
+  /**
+   * Enables or disables the validation of the credentials when the connection is opened.
+   * Disabling it is only advisable for trusted credentials on hot paths.
+   *
+   * @param validationEnabled false to skip the validation
+   */
+  public void setValidationEnabled(boolean validationEnabled) {
+    this.validationEnabled = validationEnabled;
+  }
+
+  /**
+   * Sets how long a successful validation of the credentials is reused.
+   *
+   * @param validationTtlMillis the validation time to live in milliseconds; zero or less always validates
+   */
+  public void setValidationTtlMillis(long validationTtlMillis) {
+    this.validationTtlMillis = validationTtlMillis;
+  }
+
+  /**
+   * Sets the configuration of the pool bounding the number of connections open at the same
+   * time with the credentials of this connection.
+   *
+   * @param poolConfig the pool configuration
+   */
+  public void setPoolConfiguration(DropboxPoolConfiguration poolConfig) {
+    this.poolConfig = poolConfig;
+  }
+
+  /**
+   * Sets the HTTP transport used by the client of this connection.
+   *
+   * @param transport the HTTP transport
+   */
+  public void setTransport(DropboxHttpTransport transport) {
+    this.transport = transport;
+  }
+
+  /**
+   * Sets the settings of the buffers holding file content, as a factory that is copied for each use.
+   *
+   * @param contentBuffers the content buffer settings
+   */
+  public void setContentBufferFactory(ContentBufferFactory contentBuffers) {
+    this.contentBuffers = contentBuffers;
+  }
+
+  /**
+   * Returns a new factory of buffers for file content, with the settings of this connection. The
+   * caller closes it when it is done with the content, which deletes the buffers left open.
+   *
+   * @return the content buffer factory
+   */
+  public ContentBufferFactory createContentBufferFactory() {
+    return contentBuffers.copy();
+  }
+
+  /**
+   * Closes the Dropbox connection, releasing its pool slot and its reference to the shared client.
    */
   public void close() {
+    if (pool != null) {
+      pool.release();
+      pool = null;
+    }
+    if (shared != null) {
+      shared.release();
+      shared = null;
+    }
     client = null;
   }
   private Logger logger = Logger.getLogger(DropboxConnection.class.getName());
   private DbxClientV2 client;
+  private DropboxClientRegistry.SharedClient shared;
+  private DropboxConnectionPool pool;
+  private DropboxPoolConfiguration poolConfig = new DropboxPoolConfiguration();
+  private DropboxHttpTransport transport = new DropboxHttpTransport();
+  private ContentBufferFactory contentBuffers = new ContentBufferFactory();
+  private DropboxFileCache fileCacheSettings = new DropboxFileCache();
   private String accessToken;
   private String appKey;
   private String locale;
+  private boolean validationEnabled = true;
+  private long validationTtlMillis = DropboxConnectionValidator.DEFAULT_VALIDATION_TTL_MS;
 }
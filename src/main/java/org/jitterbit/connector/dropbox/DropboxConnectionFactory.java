@@ -15,6 +15,7 @@ package org.jitterbit.connector.dropbox;
 
 import org.jitterbit.connector.sdk.Connection;
 import org.jitterbit.connector.sdk.ConnectionFactory;
+import org.jitterbit.connector.sdk.util.Utils;
 
 import java.util.Locale;
 import java.util.Map;
@@ -49,16 +50,26 @@ public class DropboxConnectionFactory implements DropboxConstants, ConnectionFac
       throw new RuntimeException("App Key property cannot be empty. " +
         "Specify the app key associated with the registered Dropbox application.");
     }
-    return new DropboxConnection(appKey, accessToken, locale);
+    DropboxConnection connection = new DropboxConnection(appKey, accessToken, locale);
+    connection.setValidationEnabled(!"false".equalsIgnoreCase(props.get(VALIDATE_CONNECTION)));
+    connection.setValidationTtlMillis(
+        Utils.valueOfProp(VALIDATION_TTL, props, DropboxConnectionValidator.DEFAULT_VALIDATION_TTL_MS));
+    connection.setPoolConfiguration(DropboxPoolConfiguration.fromProperties(props));
+    connection.setTransport(DropboxHttpTransport.fromProperties(props));
+    connection.setContentBufferFactory(ContentBufferFactory.fromProperties(props));
+    connection.setFileCacheSettings(DropboxFileCache.fromProperties(props));
+    return connection;
   }
 
   /**
-   * Returns the pool size configuration.
+   * Returns the default pool size configuration. The pool settings of each endpoint, given by its
+   * <code>connectionPooling</code> property, are enforced by the {@link DropboxConnectionPool}
+   * of its credentials.
    *
    * @return the pool size configuration
    */
   @Override
   public PoolSizeConfiguration getPoolSizeConfiguration() {
-    return new PoolSizeConfiguration();
+    return new DropboxPoolConfiguration().toPoolSizeConfiguration();
   }
 }
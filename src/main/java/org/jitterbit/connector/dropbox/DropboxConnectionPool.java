@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the number of connections that can be open at the same time against one Dropbox
+ * account. Connections beyond the maximum size wait, in arrival order, for up to the maximum
+ * wait time; callers beyond the maximum wait queue size are rejected immediately.
+ * <p>
+ * The pool keeps statistics on the active connections, the free slots, the waiting callers and on
+ * the time spent acquiring a connection, exposed over JMX by the {@link DropboxMetrics}.
+ * </p>
+ */
+public class DropboxConnectionPool implements DropboxConnectionPoolMXBean {
+
+  /**
+   * Creates a pool enforcing the given configuration.
+   *
+   * @param config the pool configuration
+   */
+  public DropboxConnectionPool(DropboxPoolConfiguration config) {
+    this.config = config;
+    this.permits = new Semaphore(config.getMaxSize(), true);
+  }
+
+  /**
+   * The outcome of an attempt to acquire a connection slot.
+   */
+  public enum Acquisition {
+    /** A slot was acquired. */
+    ACQUIRED,
+    /** No slot became free within the maximum wait time. */
+    TIMED_OUT,
+    /** The wait queue was full; the caller did not wait. */
+    REJECTED
+  }
+
+  /**
+   * Acquires a connection slot, waiting up to the maximum wait time of the pool.
+   *
+   * @return true if a slot was acquired, false if the pool was exhausted
+   * @throws InterruptedException if the thread was interrupted while waiting
+   */
+  public boolean acquire() throws InterruptedException {
+    return tryAcquire() == Acquisition.ACQUIRED;
+  }
+
+  /**
+   * Acquires a connection slot, waiting up to the maximum wait time of the pool, and tells
+   * why when no slot was acquired.
+   *
+   * @return the outcome of the attempt
+   * @throws InterruptedException if the thread was interrupted while waiting
+   */
+  public Acquisition tryAcquire() throws InterruptedException {
+    long start = System.nanoTime();
+    boolean acquired = permits.tryAcquire();
+    if (!acquired) {
+      if (waiters.incrementAndGet() > config.getMaxWaitQueueSize()) {
+        waiters.decrementAndGet();
+        rejected.incrementAndGet();
+        return Acquisition.REJECTED;
+      }
+      try {
+        acquired = permits.tryAcquire(config.getMaxWaitTimeMillis(), TimeUnit.MILLISECONDS);
+      } finally {
+        waiters.decrementAndGet();
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    totalAcquireNanos.addAndGet(elapsed);
+    maxAcquireNanos.accumulateAndGet(elapsed, Math::max);
+    if (!acquired) {
+      timeouts.incrementAndGet();
+      return Acquisition.TIMED_OUT;
+    }
+    acquisitions.incrementAndGet();
+    active.incrementAndGet();
+    return Acquisition.ACQUIRED;
+  }
+
+  /**
+   * Releases a slot obtained through {@link #acquire()} or {@link #tryAcquire()}.
+   */
+  public void release() {
+    active.decrementAndGet();
+    permits.release();
+  }
+
+  public DropboxPoolConfiguration getConfiguration() {
+    return config;
+  }
+
+  @Override
+  public int getMaxSize() {
+    return config.getMaxSize();
+  }
+
+  /**
+   * Returns the number of connections currently in use.
+   *
+   * @return the number of active connections
+   */
+  @Override
+  public int getActive() {
+    return active.get();
+  }
+
+  /**
+   * Returns the number of connections that can be opened without waiting.
+   *
+   * @return the number of free slots
+   */
+  @Override
+  public int getAvailable() {
+    return permits.availablePermits();
+  }
+
+  /**
+   * Returns the number of callers waiting for a connection.
+   *
+   * @return the number of waiters
+   */
+  @Override
+  public int getWaiters() {
+    return waiters.get();
+  }
+
+  @Override
+  public long getAcquisitionCount() {
+    return acquisitions.get();
+  }
+
+  @Override
+  public long getTimeoutCount() {
+    return timeouts.get();
+  }
+
+  @Override
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+  /**
+   * Returns the average time spent acquiring a connection, including failed attempts.
+   *
+   * @return the average acquisition latency in milliseconds
+   */
+  @Override
+  public double getAverageAcquireMillis() {
+    long count = acquisitions.get() + timeouts.get();
+    return count == 0 ? 0 : totalAcquireNanos.get() / (count * 1_000_000.0);
+  }
+
+  /**
+   * Returns the longest time spent acquiring a connection.
+   *
+   * @return the maximum acquisition latency in milliseconds
+   */
+  @Override
+  public double getMaxAcquireMillis() {
+    return maxAcquireNanos.get() / 1_000_000.0;
+  }
+
+  @Override
+  public String toString() {
+    return "active=" + getActive() + ", available=" + getAvailable() + ", waiters=" + getWaiters() +
+        ", avgAcquireMs=" + String.format("%.3f", getAverageAcquireMillis()) +
+        ", timeouts=" + getTimeoutCount() + ", rejected=" + getRejectedCount();
+  }
+
+  private final DropboxPoolConfiguration config;
+  private final Semaphore permits;
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger waiters = new AtomicInteger();
+  private final AtomicLong acquisitions = new AtomicLong();
+  private final AtomicLong timeouts = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong totalAcquireNanos = new AtomicLong();
+  private final AtomicLong maxAcquireNanos = new AtomicLong();
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+/**
+ * JMX view of a pool bounding the connections open at the same time against one Dropbox account.
+ */
+public interface DropboxConnectionPoolMXBean {
+
+  int getMaxSize();
+
+  int getActive();
+
+  /**
+   * Returns the number of connections that can be opened without waiting.
+   *
+   * @return the number of free slots
+   */
+  int getAvailable();
+
+  int getWaiters();
+
+  long getAcquisitionCount();
+
+  long getTimeoutCount();
+
+  long getRejectedCount();
+
+  double getAverageAcquireMillis();
+
+  double getMaxAcquireMillis();
+}
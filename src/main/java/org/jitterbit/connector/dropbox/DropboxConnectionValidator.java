@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Validates the credentials of a shared Dropbox client using a lightweight
+ * <code>users/get_current_account</code> call. A successful validation is remembered
+ * for a time to live (TTL), so that connections opened within the TTL do not call Dropbox again.
+ * <p>
+ * The validator keeps statistics on the number of validations, the validation latency
+ * and the cache hit rate.
+ * </p>
+ */
+public class DropboxConnectionValidator {
+
+  public static final DropboxConnectionValidator INSTANCE = new DropboxConnectionValidator();
+
+  public static final int DEFAULT_VALIDATION_TTL_MS = (int) TimeUnit.MINUTES.toMillis(5);
+
+  DropboxConnectionValidator() {
+  }
+
+  /**
+   * Validates the credentials of a shared client, unless a previous validation is still
+   * within the time to live.
+   *
+   * @param shared the shared client to validate
+   * @param ttlMillis how long a successful validation remains valid; zero or less always validates
+   * @throws DbxException if Dropbox rejects the credentials or cannot be reached
+   */
+  public void validate(DropboxClientRegistry.SharedClient shared, long ttlMillis) throws DbxException {
+    long validatedAt = shared.getValidatedAt();
+    if (ttlMillis > 0 && validatedAt > 0 && System.currentTimeMillis() - validatedAt < ttlMillis) {
+      cacheHits.incrementAndGet();
+      return;
+    }
+    long start = System.nanoTime();
+    try {
+      shared.setAccountId(shared.getClient().users().getCurrentAccount().getAccountId());
+      shared.setValidatedAt(System.currentTimeMillis());
+    } catch (DbxException x) {
+      shared.setValidatedAt(0);
+      failures.incrementAndGet();
+      throw x;
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      validations.incrementAndGet();
+      totalLatencyNanos.addAndGet(elapsed);
+      maxLatencyNanos.accumulateAndGet(elapsed, Math::max);
+      logger.fine("Dropbox connection validated in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
+    }
+  }
+
+  /**
+   * Returns the number of validation calls made to Dropbox.
+   *
+   * @return the number of validation calls
+   */
+  public long getValidationCount() {
+    return validations.get();
+  }
+
+  /**
+   * Returns the number of validations answered from the cache.
+   *
+   * @return the number of cache hits
+   */
+  public long getCacheHitCount() {
+    return cacheHits.get();
+  }
+
+  /**
+   * Returns the number of validation calls that failed.
+   *
+   * @return the number of failed validations
+   */
+  public long getFailureCount() {
+    return failures.get();
+  }
+
+  /**
+   * Returns the ratio of validations answered from the cache, between 0 and 1.
+   *
+   * @return the cache hit rate
+   */
+  public double getCacheHitRate() {
+    long hits = cacheHits.get();
+    long total = hits + validations.get();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /**
+   * Returns the average latency of the validation calls made to Dropbox.
+   *
+   * @return the average validation latency in milliseconds
+   */
+  public double getAverageLatencyMillis() {
+    long count = validations.get();
+    return count == 0 ? 0 : totalLatencyNanos.get() / (count * 1_000_000.0);
+  }
+
+  /**
+   * Returns the highest latency of the validation calls made to Dropbox.
+   *
+   * @return the maximum validation latency in milliseconds
+   */
+  public double getMaxLatencyMillis() {
+    return maxLatencyNanos.get() / 1_000_000.0;
+  }
+
+  private final AtomicLong validations = new AtomicLong();
+  private final AtomicLong cacheHits = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong totalLatencyNanos = new AtomicLong();
+  private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+  private static Logger logger = Logger.getLogger(DropboxConnectionValidator.class.getName());
+}
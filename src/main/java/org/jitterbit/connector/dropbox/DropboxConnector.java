@@ -15,6 +15,7 @@ package org.jitterbit.connector.dropbox;
 
 import org.jitterbit.connector.dropbox.activities.FetchFileActivity;
 import org.jitterbit.connector.sdk.BaseJitterbitConnector;
+import org.jitterbit.connector.sdk.Connection;
 import org.jitterbit.connector.sdk.ConnectionFactory;
 import org.jitterbit.connector.sdk.Discoverable;
 import org.jitterbit.connector.sdk.JitterbitConnector;
@@ -29,17 +30,25 @@ import org.jitterbit.connector.sdk.metadata.SchemaMetaData;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * The Dropbox connector has four activities (functions): Fetch File, Get File, Process File, and Put File.
+ * The Dropbox connector has nine activities (functions): Fetch File, Batch Fetch File, Download Folder,
+ * Watch Folder, Sync Folder, Get File, Process File, Put File, and Batch Put File.
  *
  * <ul>
- *   <li>Fetch File Activity: Downloads the metadata and content associated with a specified file<li>
+ *   <li>Fetch File Activity: Downloads the metadata and content associated with a specified file</li>
+ *   <li>Batch Fetch File Activity: Downloads the metadata and content of many files in a single run</li>
+ *   <li>Download Folder Activity: Downloads a whole folder as a zip archive</li>
+ *   <li>Watch Folder Activity: Waits until a folder changes and lists the files and folders changed</li>
+ *   <li>Sync Folder Activity: Lists the files and folders changed in a folder since the previous run</li>
  *   <li>Get File Activity: From a displayed list of files, downloads and parses it using a specified schema</li>
  *   <li>Process File Activity: Downloads a file from Dropbox and parses it using a specified schema</li>
  *   <li>Put File Activity: Puts (saves) a file to Dropbox</li>
+ *   <li>Batch Put File Activity: Puts (saves) many files to Dropbox in a single run</li>
  * </ul>
  *
  */
@@ -61,7 +70,42 @@ public class DropboxConnector extends BaseJitterbitConnector implements DropboxC
     return CONNECTOR_NAME;
   }
 
+  /**
+   * Initializes the connector, loading the schemas of the activities so that design-time
+   * discovery does not read them from the class path.
+   */
+  @Override
+  public void onInit() {
+    super.onInit();
+    DropboxUtils.preloadResources();
+    if (shutdownHookAdded.compareAndSet(false, true)) {
+      // the SDK does not tell the connector when it stops: delete the cached files when the process exits
+      Runtime.getRuntime().addShutdownHook(new Thread(DropboxClientRegistry.INSTANCE::shutdown,
+          "dropbox-client-registry-shutdown"));
+    }
+  }
+
+  /**
+   * Tests a connection to Dropbox. The credentials are always validated against Dropbox,
+   * regardless of the validation settings of the endpoint and of any cached validation.
+   *
+   * @param props properties for configuring and creating a Dropbox connection
+   * @throws Connection.ConnectionException if the connection cannot be established
+   */
+  @Override
+  public void testConnection(Map<String, String> props) throws Connection.ConnectionException {
+    DropboxConnection connection = (DropboxConnection) getConnectionFactory().createConnection(props);
+    connection.setValidationEnabled(true);
+    connection.setValidationTtlMillis(0);
+    try {
+      connection.open();
+    } finally {
+      connection.close();
+    }
+  }
+
   private static ConnectionFactory connectionFactory;
+  private static final AtomicBoolean shutdownHookAdded = new AtomicBoolean();
 
   /**
    * A {@link JitterbitConnector} factory for a Dropbox connector.
@@ -22,11 +22,54 @@ public interface DropboxConstants {
   String APP_KEY = "app-key";
   String CONNECTOR_NAME = "Dropbox";
   String LOCALE = "locale";
+  String VALIDATE_CONNECTION = "validate-connection";
+  String VALIDATION_TTL = "validation-ttl-ms";
+  String CONNECTION_POOLING = "connectionPooling";
+  String HTTP_TRANSPORT = "http-transport";
+  String HTTP_CONNECT_TIMEOUT = "http-connect-timeout-ms";
+  String HTTP_READ_TIMEOUT = "http-read-timeout-ms";
+  String HTTP_MAX_IDLE_CONNECTIONS = "http-max-idle-connections";
+  String HTTP_KEEP_ALIVE = "http-keep-alive-ms";
+  String HTTP2 = "http2";
+  String MAX_CONCURRENT_REQUESTS = "max-concurrent-requests";
+  String HTTP_BASE_URL = "http-base-url";
+  String BUFFER_DIRECTORY = "buffer-directory";
+  String BUFFER_MEMORY_THRESHOLD = "buffer-memory-threshold-mb";
+  String BUFFER_MAX_SIZE = "buffer-max-size-mb";
+  String FILE_CACHE_DIRECTORY = "file-cache-directory";
+  String FILE_CACHE_MAX_SIZE = "file-cache-max-size-mb";
+  String FILE_CACHE_MAX_ENTRIES = "file-cache-max-entries";
+
+  String UPLOAD_SESSION_THRESHOLD = "uploadSessionThresholdMB";
+  String UPLOAD_CHUNK_SIZE = "uploadChunkSizeMB";
+  String UPLOAD_MAX_RETRIES = "uploadMaxRetries";
+  String UPLOAD_SKIP_UNCHANGED = "skipUnchanged";
+  String DOWNLOAD_PARALLELISM = "downloadParallelism";
+  String DOWNLOAD_SEGMENT_SIZE = "downloadSegmentSizeMB";
+  String DOWNLOAD_THRESHOLD = "downloadThresholdMB";
+  String DOWNLOAD_MAX_RETRIES = "downloadMaxRetries";
+  String LIST_RECURSIVE = "recursive";
+  String LIST_PAGE_SIZE = "listPageSize";
+  String LIST_MAX_FILES = "listMaxFiles";
+  String LIST_CACHE_TTL = "listCacheTtlSeconds";
+  String SCHEMA_SAMPLE_SIZE = "schemaSampleSizeKB";
+  String BATCH_PATTERN = "pattern";
+  String BATCH_PARALLELISM = "batchParallelism";
+  String BATCH_DOWNLOAD_CONTENT = "downloadContent";
+  String DOWNLOAD_UNZIP = "unzip";
+  String WATCH_MAX_WAIT = "maxWaitSeconds";
+  String SYNC_MAX_ENTRIES = "maxEntries";
+  String SYNC_STATE_DIRECTORY = "stateDirectory";
 
   String FETCH_FILE = "fetch";
   String GET_FILE = "get";
   String PROCESS_FILE = "process";
   String PUT_FILE = "put";
+  String BATCH_FETCH_FILE = "batch-fetch";
+  String BATCH_PUT_FILE = "batch-put";
+  String DOWNLOAD_FOLDER = "download-folder";
+  String WATCH_FOLDER = "watch-folder";
+  String SYNC_FOLDER = "sync-folder";
 
   String FETCH_FILE_REQ_XSD = "fetch-file-request.xsd";
   String FETCH_FILE_RSP_XSD = "fetch-file-response.xsd";
@@ -34,12 +77,38 @@ public interface DropboxConstants {
   String PUT_FILE_REQ_XSD = "put-file-request.xsd";
   String PUT_FILE_RSP_XSD = "put-file-response.xsd";
 
+  String BATCH_FETCH_FILE_REQ_XSD = "batch-fetch-file-request.xsd";
+  String BATCH_FETCH_FILE_RSP_XSD = "batch-fetch-file-response.xsd";
+
+  String BATCH_PUT_FILE_REQ_XSD = "batch-put-file-request.xsd";
+  String BATCH_PUT_FILE_RSP_XSD = "batch-put-file-response.xsd";
+
+  String DOWNLOAD_FOLDER_RSP_XSD = "download-folder-response.xsd";
+
+  String WATCH_FOLDER_REQ_XSD = "watch-folder-request.xsd";
+  String WATCH_FOLDER_RSP_XSD = "watch-folder-response.xsd";
+  String SYNC_FOLDER_REQ_XSD = "sync-folder-request.xsd";
+  String SYNC_FOLDER_RSP_XSD = "sync-folder-response.xsd";
+
   String FETCH_FILE_REQ_ROOT = "fetchFileRequest";
   String FETCH_FILE_RSP_ROOT = "fetchFileResponse";
 
   String PUT_FILE_REQ_ROOT = "putFileRequest";
   String PUT_FILE_RSP_ROOT = "putFileResponse";
 
+  String BATCH_FETCH_FILE_REQ_ROOT = "batchFetchFileRequest";
+  String BATCH_FETCH_FILE_RSP_ROOT = "batchFetchFileResponse";
+
+  String BATCH_PUT_FILE_REQ_ROOT = "batchPutFileRequest";
+  String BATCH_PUT_FILE_RSP_ROOT = "batchPutFileResponse";
+
+  String DOWNLOAD_FOLDER_RSP_ROOT = "downloadFolderResponse";
+
+  String WATCH_FOLDER_REQ_ROOT = "watchFolderRequest";
+  String WATCH_FOLDER_RSP_ROOT = "watchFolderResponse";
+  String SYNC_FOLDER_REQ_ROOT = "syncFolderRequest";
+  String SYNC_FOLDER_RSP_ROOT = "syncFolderResponse";
+
   String FETCH_FILE_NAMESPACE = "http://org.jitterbit.connector/dropbox/fetchfile";
   String PROCESS_FILE_NAMESPACE = "http://org.jitterbit.connector/dropbox/processfile";
   String PUT_FILE_NAMESPACE = "http://org.jitterbit.connector/dropbox/putfile";
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the Dropbox content hash of the bytes written to it, as reported by
+ * {@link com.dropbox.core.v2.files.FileMetadata#getContentHash()}.
+ * <p>
+ * The content is split into blocks of 4 MB, the last one possibly shorter. Each block is hashed
+ * with SHA-256, and the content hash is the SHA-256 of the concatenation of the block hashes,
+ * written as 64 lower case hexadecimal digits.
+ * </p>
+ */
+public class DropboxContentHasher extends OutputStream {
+
+  public static final int BLOCK_SIZE = 4 * 1024 * 1024;
+
+  public DropboxContentHasher() {
+    this.overall = sha256();
+    this.block = sha256();
+  }
+
+  @Override
+  public void write(int b) {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    if (hash != null) {
+      throw new IllegalStateException("The content hash has already been computed");
+    }
+    while (len > 0) {
+      int n = Math.min(len, BLOCK_SIZE - blockPosition);
+      block.update(b, off, n);
+      blockPosition += n;
+      size += n;
+      off += n;
+      len -= n;
+      if (blockPosition == BLOCK_SIZE) {
+        overall.update(block.digest());
+        blockPosition = 0;
+      }
+    }
+  }
+
+  /**
+   * Returns the content hash of the bytes written so far. No more bytes can be written afterwards.
+   *
+   * @return the content hash in lower case hexadecimal
+   */
+  public String getHash() {
+    if (hash == null) {
+      if (blockPosition > 0) {
+        overall.update(block.digest());
+      }
+      StringBuilder hex = new StringBuilder(64);
+      for (byte b : overall.digest()) {
+        hex.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+      }
+      hash = hex.toString();
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the number of bytes written.
+   *
+   * @return the size of the content
+   */
+  public long getSize() {
+    return size;
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException x) {
+      // every Java platform supports SHA-256
+      throw new IllegalStateException(x);
+    }
+  }
+
+  private final MessageDigest overall;
+  private final MessageDigest block;
+  private int blockPosition;
+  private long size;
+  private String hash;
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+}
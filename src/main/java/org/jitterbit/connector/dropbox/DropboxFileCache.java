@@ -0,0 +1,428 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxException;
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.Metadata;
+import org.jitterbit.connector.sdk.util.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the files downloaded with the same credentials on the local disk, by path and revision.
+ * <p>
+ * Before a cached file is read, its metadata is requested from Dropbox with
+ * <code>files/get_metadata</code>: the local copy is used only if it has the current revision.
+ * Otherwise the file is downloaded, and saved to the cache while it is written to its destination.
+ * The least recently used files are deleted once the cache holds more bytes or more files than
+ * its limits. The settings are given by the <code>file-cache-directory</code>,
+ * <code>file-cache-max-size-mb</code> and <code>file-cache-max-entries</code> properties of the
+ * Dropbox endpoint; the cache is disabled when its maximum size is zero, the default.
+ * </p>
+ * <p>
+ * The index of the cache is held in memory, so the cache starts empty with each process. Its files
+ * are kept in a directory of their own, created within the configured directory.
+ * </p>
+ */
+public class DropboxFileCache {
+
+  public static final int MB = 1024 * 1024;
+
+  /**
+   * Default maximum size of the cache; zero disables it.
+   */
+  public static final long DEFAULT_MAX_SIZE = 0;
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+  public DropboxFileCache() {
+  }
+
+  /**
+   * Creates a cache from the properties of a Dropbox endpoint. Settings that are missing or
+   * invalid keep their default value.
+   *
+   * @param props properties of the endpoint
+   * @return the cache
+   */
+  public static DropboxFileCache fromProperties(Map<String, String> props) {
+    DropboxFileCache cache = new DropboxFileCache()
+        .setMaxSize((long) Utils.valueOfProp(DropboxConstants.FILE_CACHE_MAX_SIZE, props, 0) * MB)
+        .setMaxEntries(Utils.valueOfProp(DropboxConstants.FILE_CACHE_MAX_ENTRIES, props, DEFAULT_MAX_ENTRIES));
+    String directory = props.get(DropboxConstants.FILE_CACHE_DIRECTORY);
+    if (directory != null && directory.trim().length() > 0) {
+      cache.setDirectory(Paths.get(directory.trim()));
+    }
+    return cache;
+  }
+
+  /**
+   * Returns a new, empty, cache with the same settings as this one.
+   *
+   * @return the new cache
+   */
+  public DropboxFileCache copy() {
+    return new DropboxFileCache()
+        .setDirectory(directory)
+        .setMaxSize(maxSize)
+        .setMaxEntries(maxEntries);
+  }
+
+  /**
+   * Returns whether a cache has the same settings as this one.
+   *
+   * @param other the other cache
+   * @return true if the settings are the same
+   */
+  public boolean hasSameSettings(DropboxFileCache other) {
+    return Objects.equals(directory, other.directory) && maxSize == other.maxSize && maxEntries == other.maxEntries;
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0 && maxEntries > 0;
+  }
+
+  /**
+   * Opens a file, from the cache when it holds the current revision of the file, and from Dropbox
+   * otherwise. When the cache is disabled, the file is downloaded without requesting its metadata first.
+   *
+   * @param client the Dropbox version 2 client
+   * @param downloader the downloader used when the file is not cached
+   * @param path the path of the file
+   * @return the file being read
+   * @throws DbxException if the file cannot be downloaded
+   * @throws IOException if the download is interrupted, or the cached file cannot be read
+   */
+  public Read open(DbxClientV2 client, DropboxSegmentedDownloader downloader, String path)
+      throws DbxException, IOException {
+    if (!isEnabled()) {
+      return new Read(downloader.open(path), false);
+    }
+    Metadata current = DropboxRetries.call(() -> client.files().getMetadata(path), downloader.getMaxRetries());
+    if (current instanceof FileMetadata) {
+      InputStream cached = get((FileMetadata) current);
+      if (cached != null) {
+        hits.incrementAndGet();
+        savedBytes.addAndGet(((FileMetadata) current).getSize());
+        return new Read((FileMetadata) current, cached);
+      }
+    }
+    misses.incrementAndGet();
+    DropboxSegmentedDownloader.Download download = downloader.open(path);
+    return new Read(download, download.getResult().getSize() <= maxSize);
+  }
+
+  /**
+   * A file being read, from the cache or from Dropbox.
+   */
+  public final class Read implements AutoCloseable {
+
+    private Read(FileMetadata metadata, InputStream cached) {
+      this.metadata = metadata;
+      this.cached = cached;
+      this.download = null;
+      this.store = false;
+    }
+
+    private Read(DropboxSegmentedDownloader.Download download, boolean store) {
+      this.metadata = download.getResult();
+      this.cached = null;
+      this.download = download;
+      this.store = store;
+    }
+
+    /**
+     * Returns the metadata of the file being read.
+     *
+     * @return the metadata of the file
+     */
+    public FileMetadata getResult() {
+      return metadata;
+    }
+
+    /**
+     * Returns whether the file is read from the cache.
+     *
+     * @return true if the file is cached
+     */
+    public boolean isCached() {
+      return cached != null;
+    }
+
+    /**
+     * Writes the content of the file to an output stream, and closes the read. A downloaded
+     * file is saved to the cache at the same time.
+     *
+     * @param os the output stream; it is not closed
+     * @return the metadata of the file
+     * @throws DbxException if the content cannot be downloaded
+     * @throws IOException if the content cannot be read or written
+     */
+    public FileMetadata download(OutputStream os) throws DbxException, IOException {
+      try {
+        if (cached != null) {
+          byte[] buffer = new byte[DropboxSegmentedDownloader.BUFFER_SIZE];
+          int n;
+          while ((n = cached.read(buffer)) != -1) {
+            os.write(buffer, 0, n);
+          }
+          return metadata;
+        }
+        if (!store) {
+          return download.download(os);
+        }
+        Path file = Files.createTempFile(getFilesDirectory(), "file-", ".cache");
+        boolean stored = false;
+        try {
+          try (OutputStream copy = Files.newOutputStream(file)) {
+            download.download(new Tee(os, copy));
+          }
+          stored = put(metadata, file);
+        } finally {
+          if (!stored) {
+            delete(file);
+          }
+        }
+        return metadata;
+      } finally {
+        close();
+      }
+    }
+
+    @Override
+    public void close() {
+      if (cached != null) {
+        try {
+          cached.close();
+        } catch (IOException x) {
+          logger.fine("Cannot close cached file: " + x.getLocalizedMessage());
+        }
+      } else {
+        download.close();
+      }
+    }
+
+    private final FileMetadata metadata;
+    private final InputStream cached;
+    private final DropboxSegmentedDownloader.Download download;
+    private final boolean store;
+  }
+
+  /**
+   * Deletes every cached file.
+   */
+  public synchronized void clear() {
+    for (Entry entry : entries.values()) {
+      delete(entry.file);
+    }
+    entries.clear();
+    bytes = 0;
+    if (filesDirectory != null) {
+      delete(filesDirectory);
+      filesDirectory = null;
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the size of the cached files.
+   *
+   * @return the number of bytes held on disk
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the number of files read from the cache.
+   *
+   * @return the number of cache hits
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of files downloaded while the cache was enabled.
+   *
+   * @return the number of cache misses
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the size of the files read from the cache, which were not downloaded.
+   *
+   * @return the number of bytes saved
+   */
+  public long getSavedBytes() {
+    return savedBytes.get();
+  }
+
+  /**
+   * Returns the directory in which the directory of the cached files is created; null means
+   * the default temporary directory.
+   *
+   * @return the directory
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  public DropboxFileCache setDirectory(Path directory) {
+    this.directory = directory;
+    return this;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Sets the largest number of bytes held by the cache. Larger files are not cached.
+   *
+   * @param maxSize the maximum size in bytes, or zero to disable the cache
+   * @return this cache
+   */
+  public DropboxFileCache setMaxSize(long maxSize) {
+    this.maxSize = Math.max(0, maxSize);
+    return this;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public DropboxFileCache setMaxEntries(int maxEntries) {
+    this.maxEntries = Math.max(0, maxEntries);
+    return this;
+  }
+
+  private synchronized InputStream get(FileMetadata metadata) throws IOException {
+    Entry entry = entries.get(metadata.getPathLower());
+    if (entry == null || !entry.rev.equals(metadata.getRev())) {
+      return null;
+    }
+    // opened while holding the lock, so that the file is not evicted before
+    return Files.newInputStream(entry.file);
+  }
+
+  private synchronized boolean put(FileMetadata metadata, Path file) throws IOException {
+    if (filesDirectory == null || !file.startsWith(filesDirectory)) {
+      // the cache was cleared during the download
+      return false;
+    }
+    long size = Files.size(file);
+    Entry old = entries.put(metadata.getPathLower(), new Entry(metadata.getRev(), file, size));
+    if (old != null) {
+      delete(old.file);
+      bytes -= old.size;
+    }
+    bytes += size;
+    Iterator<Entry> eldest = entries.values().iterator();
+    while ((bytes > maxSize || entries.size() > maxEntries) && eldest.hasNext()) {
+      Entry evicted = eldest.next();
+      eldest.remove();
+      delete(evicted.file);
+      bytes -= evicted.size;
+    }
+    return entries.containsKey(metadata.getPathLower());
+  }
+
+  private synchronized Path getFilesDirectory() throws IOException {
+    if (filesDirectory == null) {
+      filesDirectory = directory != null ? Files.createTempDirectory(directory, "dropbox-files-")
+          : Files.createTempDirectory("dropbox-files-");
+    }
+    return filesDirectory;
+  }
+
+  private static void delete(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException x) {
+      logger.warning("Cannot delete cached file " + file + ": " + x.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * A cached revision of a file.
+   */
+  private static final class Entry {
+
+    Entry(String rev, Path file, long size) {
+      this.rev = rev;
+      this.file = file;
+      this.size = size;
+    }
+
+    private final String rev;
+    private final Path file;
+    private final long size;
+  }
+
+  /**
+   * Writes the content to its destination and to the cache at the same time.
+   */
+  private static final class Tee extends OutputStream {
+
+    Tee(OutputStream os, OutputStream copy) {
+      this.os = os;
+      this.copy = copy;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      os.write(b);
+      copy.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      os.write(b, off, len);
+      copy.write(b, off, len);
+    }
+
+    private final OutputStream os;
+    private final OutputStream copy;
+  }
+
+  private Path directory;
+  private long maxSize = DEFAULT_MAX_SIZE;
+  private int maxEntries = DEFAULT_MAX_ENTRIES;
+  private Path filesDirectory;
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong savedBytes = new AtomicLong();
+
+  private static Logger logger = Logger.getLogger(DropboxFileCache.class.getName());
+}
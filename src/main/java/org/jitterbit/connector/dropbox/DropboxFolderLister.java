@@ -0,0 +1,212 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxException;
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.ListFolderResult;
+import com.dropbox.core.v2.files.Metadata;
+import org.jitterbit.connector.sdk.util.Utils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Lists the entries of a Dropbox folder, page by page.
+ * <p>
+ * The first page is requested with <code>files/list_folder</code> and the following ones with
+ * <code>files/list_folder/continue</code>, until Dropbox reports that there are no more entries.
+ * Each page is handed to a {@link Visitor} as soon as it arrives, so that large folders are never
+ * held in memory as a whole. The listing can include the content of subfolders, and the visitor
+ * can stop it at any entry.
+ * </p>
+ */
+public class DropboxFolderLister {
+
+  public static final int DEFAULT_PAGE_SIZE = 2000;
+
+  /**
+   * Receives the entries of a folder listing.
+   */
+  public interface Visitor {
+
+    /**
+     * Receives an entry of the listing.
+     *
+     * @param entry the file, folder or deleted entry
+     * @return false to stop the listing
+     * @throws Exception if the entry cannot be processed, which stops the listing
+     */
+    boolean visit(Metadata entry) throws Exception;
+  }
+
+  /**
+   * Creates a lister using a Dropbox client.
+   *
+   * @param client the Dropbox version 2 client
+   */
+  public DropboxFolderLister(DbxClientV2 client) {
+    this.client = client;
+  }
+
+  /**
+   * Creates a lister configured from the properties of an activity. Settings that are missing
+   * or invalid keep their default value.
+   *
+   * @param client the Dropbox version 2 client
+   * @param props the properties of the activity
+   * @return the lister
+   */
+  public static DropboxFolderLister fromProperties(DbxClientV2 client, Map<String, String> props) {
+    return new DropboxFolderLister(client)
+        .setRecursive("true".equalsIgnoreCase(props.get(DropboxConstants.LIST_RECURSIVE)))
+        .setPageSize(Utils.valueOfProp(DropboxConstants.LIST_PAGE_SIZE, props, DEFAULT_PAGE_SIZE));
+  }
+
+  /**
+   * Lists the entries of a folder.
+   *
+   * @param folder the path of the folder; the empty string is the root folder
+   * @param visitor receives the entries, page by page
+   * @return the cursor of the listing, which gives the changes made to the folder afterwards
+   * through <code>files/list_folder/continue</code>; null if the listing was stopped before
+   * its end
+   * @throws DbxException if the folder cannot be listed
+   * @throws Exception if the visitor fails
+   */
+  public String list(String folder, Visitor visitor) throws Exception {
+    return visit(folder, listFirstPage(folder), visitor);
+  }
+
+  /**
+   * Lists the changes made to a folder since a listing, as entries added, modified or deleted.
+   * The changes are listed with the recursion and the page size of that listing.
+   *
+   * @param cursor the cursor returned by the listing, or by a previous listing of changes
+   * @param visitor receives the entries, page by page
+   * @return the cursor giving the changes made afterwards; null if the listing was stopped before its end
+   * @throws com.dropbox.core.v2.files.ListFolderContinueErrorException if the cursor is no longer valid
+   * @throws DbxException if the changes cannot be listed
+   * @throws Exception if the visitor fails
+   */
+  public String listChanges(String cursor, Visitor visitor) throws Exception {
+    return visit("changes", listFolderContinue(cursor), visitor);
+  }
+
+  /**
+   * Returns a cursor giving the changes made to a folder from now on, without listing it.
+   *
+   * @param folder the path of the folder; the empty string is the root folder
+   * @return the latest cursor of the folder, with the recursion and the page size of this lister
+   * @throws DbxException if the folder cannot be listed
+   * @throws IOException if the cursor cannot be requested
+   */
+  public String getLatestCursor(String folder) throws DbxException, IOException {
+    return DropboxRetries.call(() -> client.files().listFolderGetLatestCursorBuilder(folder)
+        .withRecursive(recursive)
+        .withLimit((long) pageSize)
+        .start(), DropboxRetries.DEFAULT_MAX_RETRIES).getCursor();
+  }
+
+  /**
+   * Lists the first page of the entries of a folder, for callers that handle the pages themselves.
+   *
+   * @param folder the path of the folder; the empty string is the root folder
+   * @return the first page, whose cursor gives the next page or, after the last one, the changes
+   * @throws DbxException if the folder cannot be listed
+   * @throws IOException if the listing is interrupted
+   */
+  public ListFolderResult listFirstPage(String folder) throws DbxException, IOException {
+    return DropboxRetries.call(() -> client.files().listFolderBuilder(folder)
+        .withRecursive(recursive)
+        .withLimit((long) pageSize)
+        .start(), DropboxRetries.DEFAULT_MAX_RETRIES);
+  }
+
+  /**
+   * Lists the page following a cursor: the next page of a listing, or the first page of the changes
+   * made after it.
+   *
+   * @param cursor the cursor of the previous page
+   * @return the page
+   * @throws com.dropbox.core.v2.files.ListFolderContinueErrorException if the cursor is no longer valid
+   * @throws DbxException if the page cannot be listed
+   * @throws IOException if the listing is interrupted
+   */
+  public ListFolderResult listNextPage(String cursor) throws DbxException, IOException {
+    return listFolderContinue(cursor);
+  }
+
+  private String visit(String folder, ListFolderResult page, Visitor visitor) throws Exception {
+    int visited = 0;
+    int pages = 1;
+    while (true) {
+      for (Metadata entry : page.getEntries()) {
+        visited++;
+        if (!visitor.visit(entry)) {
+          logger.fine("Stopped listing " + folder + " after " + visited + " entries");
+          return null;
+        }
+      }
+      if (!page.getHasMore()) {
+        logger.fine("Listed " + visited + " entries of " + folder + " in " + pages + " pages");
+        return page.getCursor();
+      }
+      page = listFolderContinue(page.getCursor());
+      pages++;
+    }
+  }
+
+  private ListFolderResult listFolderContinue(String cursor) throws DbxException, IOException {
+    return DropboxRetries.call(() -> client.files().listFolderContinue(cursor), DropboxRetries.DEFAULT_MAX_RETRIES);
+  }
+
+  public boolean isRecursive() {
+    return recursive;
+  }
+
+  /**
+   * Sets whether the content of subfolders is listed too.
+   *
+   * @param recursive true to list subfolders
+   * @return this lister
+   */
+  public DropboxFolderLister setRecursive(boolean recursive) {
+    this.recursive = recursive;
+    return this;
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * Sets the number of entries requested for each page. Dropbox treats it as an approximate
+   * upper bound, between 1 and 2000.
+   *
+   * @param pageSize the page size
+   * @return this lister
+   */
+  public DropboxFolderLister setPageSize(int pageSize) {
+    this.pageSize = Math.max(1, Math.min(DEFAULT_PAGE_SIZE, pageSize));
+    return this;
+  }
+
+  private final DbxClientV2 client;
+  private boolean recursive;
+  private int pageSize = DEFAULT_PAGE_SIZE;
+
+  private static Logger logger = Logger.getLogger(DropboxFolderLister.class.getName());
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.files.DeletedMetadata;
+import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.ListFolderContinueErrorException;
+import com.dropbox.core.v2.files.ListFolderResult;
+import com.dropbox.core.v2.files.Metadata;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Synchronizes a Dropbox folder incrementally: each synchronization reports the entries added, modified
+ * and deleted since the previous one, as recorded in a {@link DropboxSyncState}.
+ * <p>
+ * The first synchronization lists the whole folder, and reports all of its entries as added. The following
+ * ones list the changes made after the cursor of the state with <code>files/list_folder/continue</code>;
+ * an entry is reported as added or modified depending on whether its path is known, and an entry that is
+ * listed again with the same revision is not reported. Deleting a folder reports each known entry it held.
+ * When Dropbox resets the cursor, the whole folder is listed again and compared with the state, so that
+ * the changes made in between are still reported, including the entries deleted.
+ * </p>
+ * <p>
+ * A synchronization stops at the end of the first page after <code>maxEntries</code> entries were listed,
+ * and reports that more changes remain: the next synchronization goes on from the cursor of that page.
+ * A folder of millions of entries is thus listed over several executions, each of them checkpointed.
+ * The state only moves on when {@link #commit()} is called, once the changes are delivered; a
+ * synchronization that fails is repeated by the next one.
+ * </p>
+ */
+public class DropboxFolderSync {
+
+  public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+  public static final String ADDED = "added";
+  public static final String MODIFIED = "modified";
+  public static final String DELETED = "deleted";
+
+  /**
+   * Receives the changes of a synchronization.
+   */
+  public interface Receiver {
+
+    /**
+     * Receives a change.
+     *
+     * @param change {@link #ADDED}, {@link #MODIFIED} or {@link #DELETED}
+     * @param entry the file or folder, or the deleted entry
+     * @throws Exception if the change cannot be processed, which fails the synchronization
+     */
+    void receive(String change, Metadata entry) throws Exception;
+  }
+
+  /**
+   * Creates a synchronization.
+   *
+   * @param lister lists the folder and its changes, with its recursion and page size
+   * @param state the state of the synchronization
+   */
+  public DropboxFolderSync(DropboxFolderLister lister, DropboxSyncState state) {
+    this.lister = lister;
+    this.state = state;
+  }
+
+  /**
+   * Returns the default directory of the synchronization states, in the home directory of the user.
+   *
+   * @return the directory
+   */
+  public static Path getDefaultStateDirectory() {
+    return Paths.get(System.getProperty("user.home"), ".jitterbit", "dropbox-sync");
+  }
+
+  /**
+   * Reports the changes made to a folder since the previous synchronization. If the account, the folder,
+   * the recursion or the pattern differ from the previous synchronization, the state is discarded and the
+   * whole folder is reported as added.
+   *
+   * @param folder the path of the folder; the empty string is the root folder
+   * @param receiver receives the changes
+   * @return true if more changes remain, to be reported by the next synchronization
+   * @throws Exception if the folder cannot be listed, or the receiver fails
+   */
+  public boolean sync(String folder, Receiver receiver) throws Exception {
+    signature = (account == null ? "" : account + " ") + folder.toLowerCase() +
+        (lister.isRecursive() ? "/**" : "/*") + (pattern == null ? "" : " " + pattern.pattern());
+    if (state.getSignature() != null && !signature.equals(state.getSignature())) {
+      logger.info("The synchronization of " + folder + " changed from " + state.getSignature() + ", starting over");
+      state.startFullListing(true);
+    }
+    ListFolderResult page = null;
+    if (state.getCursor() != null) {
+      try {
+        page = lister.listNextPage(state.getCursor());
+      } catch (ListFolderContinueErrorException x) {
+        if (!x.errorValue.isReset()) {
+          throw x;
+        }
+        logger.warning("Dropbox reset the cursor of " + folder + ", listing it again");
+        resets++;
+        state.startFullListing(false);
+      }
+    } else if (!state.isFullListing()) {
+      state.startFullListing(true);
+    }
+    if (page == null) {
+      page = lister.listFirstPage(folder);
+    }
+    fullListing = state.isFullListing();
+    int listed = 0;
+    while (true) {
+      for (Metadata entry : page.getEntries()) {
+        listed++;
+        apply(entry, receiver);
+      }
+      cursor = page.getCursor();
+      if (!page.getHasMore()) {
+        if (state.isFullListing()) {
+          for (String path : state.endFullListing()) {
+            report(DELETED, deleted(path), receiver);
+          }
+        }
+        return false;
+      }
+      if (listed >= maxEntries) {
+        logger.fine("Stopped the synchronization of " + folder + " after " + listed + " entries");
+        return true;
+      }
+      page = lister.listNextPage(cursor);
+    }
+  }
+
+  private void apply(Metadata entry, Receiver receiver) throws Exception {
+    String path = entry.getPathLower();
+    if (entry instanceof DeletedMetadata) {
+      Collection<String> removed = state.recordRemove(path);
+      for (String known : removed) {
+        report(DELETED, known.equals(path) ? entry : deleted(known), receiver);
+      }
+      return;
+    }
+    if (pattern != null && !pattern.matcher(entry.getName()).matches()) {
+      return;
+    }
+    String rev = entry instanceof FileMetadata ? ((FileMetadata) entry).getRev() : DropboxSyncState.FOLDER_REV;
+    String known = state.getRev(path);
+    if (known == null) {
+      state.recordPut(path, rev);
+      report(ADDED, entry, receiver);
+    } else if (!known.equals(rev)) {
+      state.recordPut(path, rev);
+      report(MODIFIED, entry, receiver);
+    } else if (state.isFullListing()) {
+      // unchanged, but listed
+      state.recordPut(path, rev);
+    }
+  }
+
+  private void report(String change, Metadata entry, Receiver receiver) throws Exception {
+    receiver.receive(change, entry);
+    changes++;
+  }
+
+  /**
+   * Returns a deleted entry known by its lower-case path only.
+   */
+  private static DeletedMetadata deleted(String path) {
+    return new DeletedMetadata(path.substring(path.lastIndexOf('/') + 1), path, path, null);
+  }
+
+  /**
+   * Commits the changes reported by the last synchronization to its state, so that the next
+   * synchronization reports the changes made afterwards.
+   *
+   * @throws IOException if the state cannot be written
+   */
+  public void commit() throws IOException {
+    state.commit(signature, cursor);
+  }
+
+  /**
+   * Sets the account whose folder is synchronized. The cursor and the entries of the state belong to
+   * that account: a synchronization with another account starts over.
+   *
+   * @param account identifies the app and the account of the credentials, or null if it is not known
+   * @return this synchronization
+   */
+  public DropboxFolderSync setAccount(String account) {
+    this.account = account;
+    return this;
+  }
+
+  /**
+   * Sets the pattern of the names of the files and folders to synchronize.
+   *
+   * @param pattern the pattern, or null to synchronize all of them
+   * @return this synchronization
+   */
+  public DropboxFolderSync setPattern(Pattern pattern) {
+    this.pattern = pattern;
+    return this;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * Sets how many entries are listed, at least, before a synchronization stops at the end of a page.
+   *
+   * @param maxEntries the number of entries
+   * @return this synchronization
+   */
+  public DropboxFolderSync setMaxEntries(int maxEntries) {
+    this.maxEntries = Math.max(1, maxEntries);
+    return this;
+  }
+
+  /**
+   * Returns whether the last synchronization was part of a full listing of the folder, which happens
+   * the first time, and after Dropbox reset the cursor.
+   *
+   * @return true if the whole folder was being listed
+   */
+  public boolean isFullListing() {
+    return fullListing;
+  }
+
+  public int getChangeCount() {
+    return changes;
+  }
+
+  /**
+   * Returns how many times Dropbox reset the cursor.
+   *
+   * @return the number of resets
+   */
+  public int getResetCount() {
+    return resets;
+  }
+
+  private final DropboxFolderLister lister;
+  private final DropboxSyncState state;
+  private String account;
+  private Pattern pattern;
+  private int maxEntries = DEFAULT_MAX_ENTRIES;
+  private String signature;
+  private String cursor;
+  private boolean fullListing;
+  private int changes;
+  private int resets;
+
+  private static Logger logger = Logger.getLogger(DropboxFolderSync.class.getName());
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.ListFolderContinueErrorException;
+import com.dropbox.core.v2.files.ListFolderLongpollError;
+import com.dropbox.core.v2.files.ListFolderLongpollErrorException;
+import com.dropbox.core.v2.files.ListFolderLongpollResult;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Waits for the changes of a Dropbox folder and lists them.
+ * <p>
+ * The watcher holds a <code>files/list_folder/longpoll</code> request open until Dropbox reports a
+ * change after a cursor, then lists the changes with <code>files/list_folder/continue</code> (see
+ * {@link DropboxFolderLister#listChanges}). While the folder does not change, watching it costs one
+ * request every few minutes. The long polls use a client whose read timeout outlasts them, and wait
+ * as long as Dropbox asks between two of them.
+ * </p>
+ * <p>
+ * When Dropbox resets a cursor, which it may do at any time, the changes made since the cursor are
+ * lost; the watcher logs a warning and goes on from the latest cursor of the folder.
+ * </p>
+ */
+public class DropboxFolderWatcher {
+
+  public static final int MIN_TIMEOUT_S = 30;
+  public static final int MAX_TIMEOUT_S = 480;
+
+  /**
+   * Read timeout of the long polls: Dropbox adds up to 90 seconds to their timeout to spread the responses.
+   */
+  public static final int LONGPOLL_READ_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(MAX_TIMEOUT_S + 120);
+
+  /**
+   * Creates a watcher.
+   *
+   * @param lister lists the changes, with its recursion and page size
+   * @param longpollClient the Dropbox version 2 client of the long polls
+   * (see {@link DropboxConnection#getLongpollClient()})
+   */
+  public DropboxFolderWatcher(DropboxFolderLister lister, DbxClientV2 longpollClient) {
+    this.lister = lister;
+    this.longpollClient = longpollClient;
+  }
+
+  /**
+   * Waits until a folder changes after a cursor, then lists the changes. A wait of zero lists the
+   * changes made so far without waiting; otherwise Dropbox is polled for at least {@link #MIN_TIMEOUT_S}
+   * seconds.
+   *
+   * @param folder the path of the folder, to get a new cursor if the cursor is reset
+   * @param cursor the cursor of the folder, or null or empty to watch the changes made from now on
+   * @param maxWaitMillis how long to wait for a change, in milliseconds
+   * @param visitor receives the changed entries, page by page
+   * @return the cursor giving the changes made afterwards, which is the cursor itself if the folder did
+   * not change in time; null if the listing was stopped before its end
+   * @throws Exception if Dropbox cannot be polled, or the visitor fails
+   */
+  public String watch(String folder, String cursor, long maxWaitMillis, DropboxFolderLister.Visitor visitor)
+      throws Exception {
+    long deadline = System.currentTimeMillis() + maxWaitMillis;
+    if (cursor == null || cursor.isEmpty()) {
+      cursor = lister.getLatestCursor(folder);
+    }
+    if (maxWaitMillis <= 0) {
+      return listChanges(folder, cursor, visitor);
+    }
+    while (true) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (backoffMillis > 0) {
+        DropboxRetries.sleep(Math.min(backoffMillis, Math.max(0, remaining)));
+        backoffMillis = 0;
+        remaining = deadline - System.currentTimeMillis();
+      }
+      long timeout = Math.max(MIN_TIMEOUT_S, Math.min(MAX_TIMEOUT_S, TimeUnit.MILLISECONDS.toSeconds(remaining + 999)));
+      ListFolderLongpollResult result;
+      try {
+        String polled = cursor;
+        result = DropboxRetries.call(() -> longpollClient.files().listFolderLongpoll(polled, timeout),
+            DropboxRetries.DEFAULT_MAX_RETRIES);
+      } catch (ListFolderLongpollErrorException x) {
+        if (x.errorValue != ListFolderLongpollError.RESET) {
+          throw x;
+        }
+        cursor = reset(folder);
+        continue;
+      }
+      longpolls++;
+      if (result.getBackoff() != null) {
+        backoffMillis = TimeUnit.SECONDS.toMillis(result.getBackoff());
+      }
+      if (result.getChanges()) {
+        return listChanges(folder, cursor, visitor);
+      }
+      if (System.currentTimeMillis() >= deadline) {
+        logger.fine("No change of " + folder + " after " + longpolls + " long polls");
+        return cursor;
+      }
+    }
+  }
+
+  private String listChanges(String folder, String cursor, DropboxFolderLister.Visitor visitor) throws Exception {
+    try {
+      return lister.listChanges(cursor, visitor);
+    } catch (ListFolderContinueErrorException x) {
+      if (!x.errorValue.isReset()) {
+        throw x;
+      }
+      return reset(folder);
+    }
+  }
+
+  private String reset(String folder) throws Exception {
+    logger.warning("Dropbox reset the cursor of " + folder + ", the changes made since are lost");
+    resets++;
+    return lister.getLatestCursor(folder);
+  }
+
+  /**
+   * Returns how many long polls were made.
+   *
+   * @return the number of long polls
+   */
+  public int getLongpollCount() {
+    return longpolls;
+  }
+
+  /**
+   * Returns how many times Dropbox reset the cursor.
+   *
+   * @return the number of resets
+   */
+  public int getResetCount() {
+    return resets;
+  }
+
+  private final DropboxFolderLister lister;
+  private final DbxClientV2 longpollClient;
+  private long backoffMillis;
+  private int longpolls;
+  private int resets;
+
+  private static Logger logger = Logger.getLogger(DropboxFolderWatcher.class.getName());
+}
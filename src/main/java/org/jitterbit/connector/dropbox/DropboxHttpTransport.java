@@ -0,0 +1,329 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.http.HttpRequestor;
+import com.dropbox.core.http.OkHttp3Requestor;
+import com.dropbox.core.http.StandardHttpRequestor;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.jitterbit.connector.sdk.util.Utils;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * HTTP transport used by the Dropbox clients, configured from the properties of a Dropbox endpoint.
+ * <p>
+ * Two transports are available:
+ * </p>
+ * <ul>
+ *   <li><code>standard</code> (the default): the Dropbox SDK <code>StandardHttpRequestor</code>, built on
+ *   <code>HttpsURLConnection</code> and the keep-alive cache of the JVM</li>
+ *   <li><code>okhttp</code>: an OkHttp client with its own connection pool, HTTP/2 multiplexing and
+ *   transparent gzip compression of the JSON responses</li>
+ * </ul>
+ * <p>
+ * A requestor is created once per shared client, so that all the connections opened with the same
+ * credentials share one pool of HTTP connections. The requests of a shared client are sent within the
+ * adaptive limit of a {@link DropboxConcurrencyLimiter}, whose maximum is part of the transport.
+ * </p>
+ * <p>
+ * The requests can be sent to a base URL other than the Dropbox hosts, such as a local stub of the
+ * Dropbox API used for load tests, with the <code>http-base-url</code> property of the endpoint. As
+ * such a URL would receive the access token of the endpoint, the property is ignored unless the
+ * <code>org.jitterbit.connector.dropbox.allowHttpBaseUrl</code> system property is <code>true</code>,
+ * and the URL must be on a loopback host.
+ * </p>
+ */
+public class DropboxHttpTransport {
+
+  public static final String STANDARD = "standard";
+  public static final String OKHTTP = "okhttp";
+
+  public static final int DEFAULT_CONNECT_TIMEOUT_MS = (int) HttpRequestor.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+  public static final int DEFAULT_READ_TIMEOUT_MS = (int) HttpRequestor.DEFAULT_READ_TIMEOUT_MILLIS;
+  public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+  public static final int DEFAULT_KEEP_ALIVE_MS = (int) TimeUnit.MINUTES.toMillis(5);
+  public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 64;
+  public static final String ALLOW_BASE_URL_PROPERTY = "org.jitterbit.connector.dropbox.allowHttpBaseUrl";
+
+  public DropboxHttpTransport() {
+  }
+
+  /**
+   * Creates a transport from the properties of a Dropbox endpoint. Properties that are
+   * missing or invalid keep their default value.
+   *
+   * @param props properties of the endpoint
+   * @return the transport
+   */
+  public static DropboxHttpTransport fromProperties(Map<String, String> props) {
+    DropboxHttpTransport transport = new DropboxHttpTransport();
+    String type = props.get(DropboxConstants.HTTP_TRANSPORT);
+    transport.type = OKHTTP.equalsIgnoreCase(type) ? OKHTTP : STANDARD;
+    transport.connectTimeoutMillis =
+        Utils.valueOfProp(DropboxConstants.HTTP_CONNECT_TIMEOUT, props, DEFAULT_CONNECT_TIMEOUT_MS);
+    transport.readTimeoutMillis = Utils.valueOfProp(DropboxConstants.HTTP_READ_TIMEOUT, props, DEFAULT_READ_TIMEOUT_MS);
+    transport.maxIdleConnections =
+        Utils.valueOfProp(DropboxConstants.HTTP_MAX_IDLE_CONNECTIONS, props, DEFAULT_MAX_IDLE_CONNECTIONS);
+    transport.keepAliveMillis = Utils.valueOfProp(DropboxConstants.HTTP_KEEP_ALIVE, props, DEFAULT_KEEP_ALIVE_MS);
+    transport.http2Enabled = !"false".equalsIgnoreCase(props.get(DropboxConstants.HTTP2));
+    transport.maxConcurrentRequests = Utils.valueOfProp(DropboxConstants.MAX_CONCURRENT_REQUESTS, props,
+        DropboxConcurrencyLimiter.DEFAULT_MAX_LIMIT);
+    String baseUrl = props.get(DropboxConstants.HTTP_BASE_URL);
+    if (baseUrl != null && !baseUrl.trim().isEmpty()) {
+      if (!Boolean.getBoolean(ALLOW_BASE_URL_PROPERTY)) {
+        logger.warning("Ignoring " + DropboxConstants.HTTP_BASE_URL + ": the " + ALLOW_BASE_URL_PROPERTY +
+            " system property is not set");
+      } else if (!isLoopback(baseUrl.trim())) {
+        logger.warning("Ignoring " + DropboxConstants.HTTP_BASE_URL + " " + baseUrl + ": not a loopback host");
+      } else {
+        transport.baseUrl = baseUrl.trim();
+      }
+    }
+    return transport;
+  }
+
+  /**
+   * Returns whether a URL points at a loopback host, without resolving its name.
+   */
+  static boolean isLoopback(String url) {
+    try {
+      String host = new URI(url).getHost();
+      return host != null && (host.equalsIgnoreCase("localhost") || host.startsWith("127.") ||
+          host.equals("[::1]") || host.equals("::1"));
+    } catch (URISyntaxException x) {
+      return false;
+    }
+  }
+
+  /**
+   * Creates the HTTP requestor of this transport.
+   *
+   * @return a new HTTP requestor
+   */
+  public HttpRequestor createRequestor() {
+    return createRequestor(readTimeoutMillis);
+  }
+
+  /**
+   * Creates an HTTP requestor of this transport with another read timeout, such as one outlasting
+   * the long polls of Dropbox.
+   *
+   * @param readTimeoutMillis the read timeout in milliseconds
+   * @return a new HTTP requestor
+   */
+  public HttpRequestor createRequestor(int readTimeoutMillis) {
+    HttpRequestor requestor = createTypeRequestor(readTimeoutMillis);
+    return baseUrl != null ? new BaseUrlRequestor(requestor, baseUrl) : requestor;
+  }
+
+  /**
+   * Closes a requestor created by a transport once it is no longer used: the threads and the idle
+   * HTTP connections of an OkHttp client are released. The standard requestor has nothing to close,
+   * its HTTP connections are held by the keep-alive cache of the JVM.
+   *
+   * @param requestor a requestor created by {@link #createRequestor()}
+   */
+  public static void close(HttpRequestor requestor) {
+    if (requestor instanceof BaseUrlRequestor) {
+      requestor = ((BaseUrlRequestor) requestor).getRequestor();
+    }
+    if (requestor instanceof OkHttp3Requestor) {
+      OkHttpClient client = ((OkHttp3Requestor) requestor).getClient();
+      client.dispatcher().executorService().shutdown();
+      client.connectionPool().evictAll();
+    }
+  }
+
+  private HttpRequestor createTypeRequestor(int readTimeoutMillis) {
+    if (requestorFactory != null) {
+      return requestorFactory.get();
+    }
+    if (OKHTTP.equals(type)) {
+      Dispatcher dispatcher = new Dispatcher();
+      dispatcher.setMaxRequestsPerHost(DEFAULT_MAX_REQUESTS_PER_HOST);
+      OkHttpClient client = OkHttp3Requestor.defaultOkHttpClientBuilder()
+          .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+          .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+          .writeTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+          .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+          .dispatcher(dispatcher)
+          .protocols(http2Enabled ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1) :
+              Collections.singletonList(Protocol.HTTP_1_1))
+          .build();
+      return new OkHttp3Requestor(client);
+    }
+    return new StandardHttpRequestor(StandardHttpRequestor.Config.builder()
+        .withConnectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+        .withReadTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+        .build());
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public DropboxHttpTransport setType(String type) {
+    this.type = type;
+    return this;
+  }
+
+  public int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  public DropboxHttpTransport setConnectTimeoutMillis(int connectTimeoutMillis) {
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    return this;
+  }
+
+  public int getReadTimeoutMillis() {
+    return readTimeoutMillis;
+  }
+
+  public DropboxHttpTransport setReadTimeoutMillis(int readTimeoutMillis) {
+    this.readTimeoutMillis = readTimeoutMillis;
+    return this;
+  }
+
+  public int getMaxIdleConnections() {
+    return maxIdleConnections;
+  }
+
+  public DropboxHttpTransport setMaxIdleConnections(int maxIdleConnections) {
+    this.maxIdleConnections = maxIdleConnections;
+    return this;
+  }
+
+  public int getKeepAliveMillis() {
+    return keepAliveMillis;
+  }
+
+  public DropboxHttpTransport setKeepAliveMillis(int keepAliveMillis) {
+    this.keepAliveMillis = keepAliveMillis;
+    return this;
+  }
+
+  public boolean isHttp2Enabled() {
+    return http2Enabled;
+  }
+
+  public DropboxHttpTransport setHttp2Enabled(boolean http2Enabled) {
+    this.http2Enabled = http2Enabled;
+    return this;
+  }
+
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  /**
+   * Sets the maximum number of requests made at the same time with the same credentials.
+   *
+   * @param maxConcurrentRequests the maximum of the adaptive limit, or 0 to send the requests without limit
+   * @return this transport
+   */
+  public DropboxHttpTransport setMaxConcurrentRequests(int maxConcurrentRequests) {
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    return this;
+  }
+
+  public Supplier<HttpRequestor> getRequestorFactory() {
+    return requestorFactory;
+  }
+
+  /**
+   * Sets the factory of the HTTP requestors, used in place of the standard and OkHttp ones. It lets
+   * benchmarks and tests run the connector against an in-process stub of Dropbox.
+   *
+   * @param requestorFactory the factory of the requestors, or null for the requestors of the transport type
+   * @return this transport
+   */
+  public DropboxHttpTransport setRequestorFactory(Supplier<HttpRequestor> requestorFactory) {
+    this.requestorFactory = requestorFactory;
+    return this;
+  }
+
+  public String getBaseUrl() {
+    return baseUrl;
+  }
+
+  /**
+   * Sets the URL the requests are sent to in place of the Dropbox hosts, such as
+   * <code>http://localhost:8080</code>. The path of the Dropbox endpoints is kept.
+   *
+   * @param baseUrl the scheme, host and port of the requests, or null to send them to Dropbox
+   * @return this transport
+   */
+  public DropboxHttpTransport setBaseUrl(String baseUrl) {
+    this.baseUrl = baseUrl;
+    return this;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof DropboxHttpTransport)) {
+      return false;
+    }
+    DropboxHttpTransport other = (DropboxHttpTransport) o;
+    return Objects.equals(type, other.type) &&
+        connectTimeoutMillis == other.connectTimeoutMillis &&
+        readTimeoutMillis == other.readTimeoutMillis &&
+        maxIdleConnections == other.maxIdleConnections &&
+        keepAliveMillis == other.keepAliveMillis &&
+        http2Enabled == other.http2Enabled &&
+        maxConcurrentRequests == other.maxConcurrentRequests &&
+        Objects.equals(baseUrl, other.baseUrl) &&
+        Objects.equals(requestorFactory, other.requestorFactory);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, connectTimeoutMillis, readTimeoutMillis, maxIdleConnections, keepAliveMillis,
+        http2Enabled, maxConcurrentRequests, baseUrl, requestorFactory);
+  }
+
+  @Override
+  public String toString() {
+    return "type=" + type + ", connectTimeoutMs=" + connectTimeoutMillis + ", readTimeoutMs=" + readTimeoutMillis +
+        ", maxIdleConnections=" + maxIdleConnections + ", keepAliveMs=" + keepAliveMillis + ", http2=" + http2Enabled +
+        ", maxConcurrentRequests=" + maxConcurrentRequests + (baseUrl != null ? ", baseUrl=" + baseUrl : "");
+  }
+
+  private String type = STANDARD;
+  private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MS;
+  private int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MS;
+  private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+  private int keepAliveMillis = DEFAULT_KEEP_ALIVE_MS;
+  private boolean http2Enabled = true;
+  private int maxConcurrentRequests = DropboxConcurrencyLimiter.DEFAULT_MAX_LIMIT;
+  private String baseUrl;
+  private Supplier<HttpRequestor> requestorFactory;
+
+  private static Logger logger = Logger.getLogger(DropboxHttpTransport.class.getName());
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide registry of the metrics of the Dropbox connector, exposed over JMX.
+ * <p>
+ * The registry keeps the {@link ActivityMetrics} of each activity, per operation when the activity is
+ * deployed, the {@link EndpointMetrics} of each Dropbox API endpoint called, and counters of the connector
+ * as a whole: connections opened, credential validations (see {@link DropboxConnectionValidator}), retries
+ * and errors by code. Each of them is
+ * registered with the platform MBean server when it is first used, under the
+ * <code>org.jitterbit.connector.dropbox</code> domain:
+ * </p>
+ * <ul>
+ *   <li><code>type=Connector</code>: the counters of the connector, and the state of the shared clients</li>
+ *   <li><code>type=Activity,name=fetch[,operation=&lt;guid&gt;]</code>: the executions of an activity</li>
+ *   <li><code>type=Endpoint,name=/2/files/download</code>: the requests made to an endpoint</li>
+ *   <li><code>type=Pool,client=&lt;client&gt;,configuration=&lt;settings&gt;</code>: the connections of a pool</li>
+ * </ul>
+ */
+public final class DropboxMetrics implements DropboxMetricsMXBean {
+
+  public static final DropboxMetrics INSTANCE = new DropboxMetrics(ManagementFactory.getPlatformMBeanServer());
+
+  public static final String DOMAIN = "org.jitterbit.connector.dropbox";
+
+  DropboxMetrics(MBeanServer server) {
+    this.server = server;
+    register("type=Connector", this);
+  }
+
+  /**
+   * Returns the metrics of an activity, within an operation.
+   *
+   * @param activity the name of the activity
+   * @param operationGuid the GUID of the operation, or the empty string outside of an operation
+   * @return the activity metrics
+   */
+  public ActivityMetrics getActivity(String activity, String operationGuid) {
+    String guid = operationGuid == null ? "" : operationGuid;
+    return activities.computeIfAbsent(activity + '\n' + guid, key -> {
+      ActivityMetrics metrics = new ActivityMetrics(activity, guid, this);
+      register("type=Activity,name=" + value(activity) + (guid.isEmpty() ? "" : ",operation=" + value(guid)), metrics);
+      return metrics;
+    });
+  }
+
+  /**
+   * Removes the metrics of an activity within an operation, such as when the operation is undeployed.
+   *
+   * @param activity the name of the activity
+   * @param operationGuid the GUID of the operation
+   */
+  public void removeActivity(String activity, String operationGuid) {
+    ActivityMetrics metrics = activities.remove(activity + '\n' + (operationGuid == null ? "" : operationGuid));
+    if (metrics != null) {
+      unregister(metrics);
+    }
+  }
+
+  public Collection<ActivityMetrics> getActivities() {
+    return Collections.unmodifiableCollection(activities.values());
+  }
+
+  /**
+   * Returns the metrics of a Dropbox API endpoint.
+   *
+   * @param endpoint the path of the endpoint, such as <code>/2/files/download</code>
+   * @return the endpoint metrics
+   */
+  public EndpointMetrics getEndpoint(String endpoint) {
+    return endpoints.computeIfAbsent(endpoint, key -> {
+      EndpointMetrics metrics = new EndpointMetrics(endpoint);
+      register("type=Endpoint,name=" + value(endpoint), metrics);
+      return metrics;
+    });
+  }
+
+  /**
+   * Registers the pool of a shared client with JMX.
+   *
+   * @param client the name of the shared client
+   * @param pool the connection pool
+   */
+  public void addPool(String client, DropboxConnectionPool pool) {
+    register("type=Pool,client=" + value(client) + ",configuration=" + value(pool.getConfiguration().toString()), pool);
+  }
+
+  /**
+   * Unregisters the pool of a shared client, such as when the client is evicted.
+   *
+   * @param pool the connection pool
+   */
+  public void removePool(DropboxConnectionPool pool) {
+    unregister(pool);
+  }
+
+  public Collection<EndpointMetrics> getEndpoints() {
+    return Collections.unmodifiableCollection(endpoints.values());
+  }
+
+  public void recordConnectionOpen() {
+    connectionOpens.incrementAndGet();
+  }
+
+  public void recordRetry() {
+    retries.incrementAndGet();
+  }
+
+  /**
+   * Records an error reported by the connector.
+   *
+   * @param code the error code, such as <code>Dropbox07</code>
+   */
+  public void recordError(String code) {
+    errors.computeIfAbsent(code, c -> new AtomicLong()).incrementAndGet();
+  }
+
+  @Override
+  public long getConnectionOpenCount() {
+    return connectionOpens.get();
+  }
+
+  @Override
+  public long getValidationCount() {
+    return DropboxConnectionValidator.INSTANCE.getValidationCount();
+  }
+
+  @Override
+  public long getValidationCacheHitCount() {
+    return DropboxConnectionValidator.INSTANCE.getCacheHitCount();
+  }
+
+  @Override
+  public double getValidationCacheHitRate() {
+    return DropboxConnectionValidator.INSTANCE.getCacheHitRate();
+  }
+
+  @Override
+  public long getValidationFailureCount() {
+    return DropboxConnectionValidator.INSTANCE.getFailureCount();
+  }
+
+  @Override
+  public double getAverageValidationMillis() {
+    return DropboxConnectionValidator.INSTANCE.getAverageLatencyMillis();
+  }
+
+  @Override
+  public double getMaxValidationMillis() {
+    return DropboxConnectionValidator.INSTANCE.getMaxLatencyMillis();
+  }
+
+  @Override
+  public long getRetryCount() {
+    return retries.get();
+  }
+
+  @Override
+  public Map<String, Long> getErrorCounts() {
+    return snapshot(errors);
+  }
+
+  @Override
+  public Map<String, String> getClients() {
+    Map<String, String> clients = new TreeMap<>();
+    for (DropboxClientRegistry.SharedClient shared : DropboxClientRegistry.INSTANCE.getClients()) {
+      List<DropboxConcurrencyLimiter> limiters = shared.getConcurrencyLimiters();
+      long fileCacheHits = 0;
+      long fileCacheMisses = 0;
+      long fileCacheSavedBytes = 0;
+      long fileCacheBytes = 0;
+      for (DropboxFileCache fileCache : shared.getFileCaches()) {
+        fileCacheHits += fileCache.getHitCount();
+        fileCacheMisses += fileCache.getMissCount();
+        fileCacheSavedBytes += fileCache.getSavedBytes();
+        fileCacheBytes += fileCache.getBytes();
+      }
+      clients.put(shared.getName(), "references=" + shared.getRefCount() +
+          ", concurrency=" + (limiters.isEmpty() ? "[unlimited]" : limiters) +
+          ", listingCache=[hits=" + shared.getListingCache().getHitCount() +
+          ", misses=" + shared.getListingCache().getMissCount() + "]" +
+          ", schemaCache=[hits=" + shared.getSchemaCache().getHitCount() +
+          ", misses=" + shared.getSchemaCache().getMissCount() + "]" +
+          ", fileCache=[hits=" + fileCacheHits + ", misses=" + fileCacheMisses +
+          ", savedBytes=" + fileCacheSavedBytes + ", bytes=" + fileCacheBytes + "]" +
+          ", uploads=[" + shared.getUploadStatistics() + "]");
+    }
+    return clients;
+  }
+
+  static Map<String, Long> snapshot(Map<String, AtomicLong> counters) {
+    Map<String, Long> snapshot = new HashMap<>();
+    counters.forEach((key, value) -> snapshot.put(key, value.get()));
+    return snapshot;
+  }
+
+  private void register(String properties, Object bean) {
+    if (server == null) {
+      return;
+    }
+    try {
+      ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(bean, name);
+      names.put(bean, name);
+    } catch (JMException | RuntimeException x) {
+      // the connector bean is registered while the class, and its logger, are being initialized
+      Logger.getLogger(DropboxMetrics.class.getName())
+          .log(Level.FINE, "Cannot register the metrics " + properties + " with JMX", x);
+    }
+  }
+
+  private static String value(String value) {
+    return value.isEmpty() || value.matches("(?s).*[,=:\"*?\\n].*") ? ObjectName.quote(value) : value;
+  }
+
+  private void unregister(Object bean) {
+    ObjectName name = names.remove(bean);
+    if (name != null) {
+      try {
+        server.unregisterMBean(name);
+      } catch (JMException x) {
+        logger.log(Level.FINE, "Cannot unregister the metrics " + name + " from JMX", x);
+      }
+    }
+  }
+
+  private final MBeanServer server;
+  private final ConcurrentMap<String, ActivityMetrics> activities = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Object, ObjectName> names = new ConcurrentHashMap<>();
+  private final AtomicLong connectionOpens = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<>();
+
+  private static Logger logger = Logger.getLogger(DropboxMetrics.class.getName());
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics of the Dropbox connector as a whole.
+ */
+public interface DropboxMetricsMXBean {
+
+  long getConnectionOpenCount();
+
+  /**
+   * Returns the validations of credentials made with a call to Dropbox.
+   *
+   * @return the number of validation calls
+   */
+  long getValidationCount();
+
+  /**
+   * Returns the validations of credentials that reused a recent successful validation.
+   *
+   * @return the number of validations without a call to Dropbox
+   */
+  long getValidationCacheHitCount();
+
+  /**
+   * Returns the share of the validations of credentials that reused a recent successful validation.
+   *
+   * @return the cache hit rate, between 0 and 1
+   */
+  double getValidationCacheHitRate();
+
+  /**
+   * Returns the validation calls made to Dropbox that failed.
+   *
+   * @return the number of failed validations
+   */
+  long getValidationFailureCount();
+
+  double getAverageValidationMillis();
+
+  double getMaxValidationMillis();
+
+  long getRetryCount();
+
+  /**
+   * Returns the errors reported by the connector, by error code, such as <code>Dropbox07</code>.
+   *
+   * @return the number of errors by code
+   */
+  Map<String, Long> getErrorCounts();
+
+  /**
+   * Returns the state of the shared clients: their concurrency limit, caches and upload statistics.
+   *
+   * @return a description of the state of each client, by client name
+   */
+  Map<String, String> getClients();
+}
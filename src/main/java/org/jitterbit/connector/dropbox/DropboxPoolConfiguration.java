@@ -0,0 +1,235 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.jitterbit.connector.sdk.ConnectionFactory.PoolSizeConfiguration;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+/**
+ * Connection pool settings of a Dropbox endpoint, as declared by the <code>connectionPooling</code>
+ * endpoint property of the <code>adapter.json</code> file.
+ * <p>
+ * The property is a list of name/value pairs, where the name is either the name of the setting
+ * (for example <code>maxSize</code>) or its position in the <code>adapter.json</code> enumeration
+ * (for example <code>0</code>). The settings can also be given as individual endpoint properties.
+ * </p>
+ */
+public class DropboxPoolConfiguration {
+
+  public static final String MAX_SIZE = "maxSize";
+  public static final String MIN_SIZE = "minSize";
+  public static final String MAX_WAIT_QUEUE_SIZE = "maxWaitQueueSize";
+  public static final String MAX_WAIT_TIME_MS = "maxWaitTimeMS";
+  public static final String MAX_CONNECTION_LIFE_TIME_MS = "maxConnectionLifeTimeMS";
+  public static final String MAX_CONNECTION_IDLE_TIME_MS = "maxConnectionIdleTimeMS";
+
+  public static final int DEFAULT_MAX_WAIT_QUEUE_SIZE = 500;
+
+  /**
+   * Names of the settings, in the order of the <code>adapter.json</code> enumeration.
+   */
+  private static final String[] SETTINGS = {
+    MAX_SIZE, MIN_SIZE, MAX_WAIT_QUEUE_SIZE, MAX_WAIT_TIME_MS, MAX_CONNECTION_LIFE_TIME_MS, MAX_CONNECTION_IDLE_TIME_MS
+  };
+
+  public DropboxPoolConfiguration() {
+  }
+
+  /**
+   * Creates a pool configuration from the properties of a Dropbox endpoint. Settings that are
+   * missing or invalid keep their default value.
+   *
+   * @param props properties of the endpoint
+   * @return the pool configuration
+   */
+  public static DropboxPoolConfiguration fromProperties(Map<String, String> props) {
+    DropboxPoolConfiguration config = new DropboxPoolConfiguration();
+    for (String setting : SETTINGS) {
+      if (props.get(setting) != null) {
+        config.set(setting, props.get(setting));
+      }
+    }
+    String pooling = props.get(DropboxConstants.CONNECTION_POOLING);
+    if (pooling != null && pooling.trim().length() > 0) {
+      try {
+        JsonElement json = new JsonParser().parse(pooling);
+        JsonArray entries = json.isJsonArray() ? json.getAsJsonArray() : new JsonArray();
+        if (json.isJsonObject()) {
+          entries.add(json);
+        }
+        for (JsonElement entry : entries) {
+          JsonObject pair = entry.getAsJsonObject();
+          config.set(pair.get("name").getAsString(), pair.get("value").getAsString());
+        }
+      } catch (RuntimeException x) {
+        logger.warning("Ignoring invalid connection pooling configuration: " + x.getLocalizedMessage());
+      }
+    }
+    return config;
+  }
+
+  /**
+   * Returns the configuration reported to the Jitterbit agent through
+   * {@link org.jitterbit.connector.sdk.ConnectionFactory#getPoolSizeConfiguration()}.
+   *
+   * @return the pool size configuration
+   */
+  public PoolSizeConfiguration toPoolSizeConfiguration() {
+    return new PoolSizeConfiguration()
+        .setMaxActive(maxSize)
+        .setMaxTotal(Math.max(maxSize, PoolSizeConfiguration.MAX_TOTAL))
+        .setMaxWait(maxWaitTimeMillis);
+  }
+
+  private void set(String name, String value) {
+    String setting = name.trim();
+    if (setting.matches("\\d+") && Integer.parseInt(setting) < SETTINGS.length) {
+      setting = SETTINGS[Integer.parseInt(setting)];
+    }
+    int parsed;
+    try {
+      parsed = Integer.parseInt(value.trim());
+    } catch (NumberFormatException x) {
+      logger.warning("Ignoring connection pooling setting " + name + ": " + value + " is not a number");
+      return;
+    }
+    switch (setting) {
+      case MAX_SIZE:
+        setMaxSize(parsed);
+        break;
+      case MIN_SIZE:
+        setMinSize(parsed);
+        break;
+      case MAX_WAIT_QUEUE_SIZE:
+        setMaxWaitQueueSize(parsed);
+        break;
+      case MAX_WAIT_TIME_MS:
+        setMaxWaitTimeMillis(parsed);
+        break;
+      case MAX_CONNECTION_LIFE_TIME_MS:
+        setMaxLifeTimeMillis(parsed);
+        break;
+      case MAX_CONNECTION_IDLE_TIME_MS:
+        setMaxIdleTimeMillis(parsed);
+        break;
+      default:
+        logger.warning("Ignoring unknown connection pooling setting " + name);
+    }
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public DropboxPoolConfiguration setMaxSize(int maxSize) {
+    this.maxSize = Math.max(1, maxSize);
+    return this;
+  }
+
+  public int getMinSize() {
+    return minSize;
+  }
+
+  public DropboxPoolConfiguration setMinSize(int minSize) {
+    this.minSize = Math.max(0, minSize);
+    return this;
+  }
+
+  public int getMaxWaitQueueSize() {
+    return maxWaitQueueSize;
+  }
+
+  public DropboxPoolConfiguration setMaxWaitQueueSize(int maxWaitQueueSize) {
+    this.maxWaitQueueSize = Math.max(0, maxWaitQueueSize);
+    return this;
+  }
+
+  public int getMaxWaitTimeMillis() {
+    return maxWaitTimeMillis;
+  }
+
+  public DropboxPoolConfiguration setMaxWaitTimeMillis(int maxWaitTimeMillis) {
+    this.maxWaitTimeMillis = Math.max(0, maxWaitTimeMillis);
+    return this;
+  }
+
+  /**
+   * Returns how long a shared client is used before it is replaced; zero means forever.
+   *
+   * @return the maximum life time in milliseconds
+   */
+  public int getMaxLifeTimeMillis() {
+    return maxLifeTimeMillis;
+  }
+
+  public DropboxPoolConfiguration setMaxLifeTimeMillis(int maxLifeTimeMillis) {
+    this.maxLifeTimeMillis = Math.max(0, maxLifeTimeMillis);
+    return this;
+  }
+
+  public int getMaxIdleTimeMillis() {
+    return maxIdleTimeMillis;
+  }
+
+  public DropboxPoolConfiguration setMaxIdleTimeMillis(int maxIdleTimeMillis) {
+    this.maxIdleTimeMillis = Math.max(0, maxIdleTimeMillis);
+    return this;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof DropboxPoolConfiguration)) {
+      return false;
+    }
+    DropboxPoolConfiguration other = (DropboxPoolConfiguration) o;
+    return maxSize == other.maxSize &&
+        minSize == other.minSize &&
+        maxWaitQueueSize == other.maxWaitQueueSize &&
+        maxWaitTimeMillis == other.maxWaitTimeMillis &&
+        maxLifeTimeMillis == other.maxLifeTimeMillis &&
+        maxIdleTimeMillis == other.maxIdleTimeMillis;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(maxSize, minSize, maxWaitQueueSize, maxWaitTimeMillis, maxLifeTimeMillis, maxIdleTimeMillis);
+  }
+
+  @Override
+  public String toString() {
+    return MAX_SIZE + "=" + maxSize + ", " + MIN_SIZE + "=" + minSize + ", " +
+        MAX_WAIT_QUEUE_SIZE + "=" + maxWaitQueueSize + ", " + MAX_WAIT_TIME_MS + "=" + maxWaitTimeMillis + ", " +
+        MAX_CONNECTION_LIFE_TIME_MS + "=" + maxLifeTimeMillis + ", " + MAX_CONNECTION_IDLE_TIME_MS + "=" +
+        maxIdleTimeMillis;
+  }
+
+  private int maxSize = PoolSizeConfiguration.MAX_ACTIVE;
+  private int minSize = 0;
+  private int maxWaitQueueSize = DEFAULT_MAX_WAIT_QUEUE_SIZE;
+  private int maxWaitTimeMillis = PoolSizeConfiguration.MAX_WAIT;
+  private int maxLifeTimeMillis = 0;
+  private int maxIdleTimeMillis = (int) DropboxClientRegistry.DEFAULT_IDLE_TIMEOUT_MS;
+
+  private static Logger logger = Logger.getLogger(DropboxPoolConfiguration.class.getName());
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxException;
+import com.dropbox.core.NetworkIOException;
+import com.dropbox.core.RetryException;
+import com.dropbox.core.ServerException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * Decides which failed Dropbox calls can be retried, and how long to wait before retrying them.
+ * <p>
+ * When Dropbox tells how long to wait, as it does when it rate limits a request, the call is retried
+ * after that time plus a small random delay. Otherwise the wait grows exponentially with the number of
+ * attempts, up to a cap, and a random half of it is left out ("equal jitter"), so that the calls failed
+ * together by an overloaded Dropbox are not all retried at the same time.
+ * </p>
+ */
+public final class DropboxRetries {
+
+  public static final int DEFAULT_MAX_RETRIES = 3;
+
+  static final long INITIAL_BACKOFF_MS = 500;
+  static final long MAX_BACKOFF_MS = 30_000;
+
+  private DropboxRetries() {
+  }
+
+  /**
+   * A call to Dropbox.
+   *
+   * @param <T> type of the result of the call
+   */
+  public interface Call<T> {
+    T call() throws DbxException, IOException;
+  }
+
+  /**
+   * Makes a call to Dropbox, retrying it after a wait while it fails with a transient error.
+   * The call must not have side effects that make a retry unsafe, such as consuming a stream.
+   *
+   * @param call the call
+   * @param maxRetries how many times the call is retried, at most
+   * @param <T> type of the result of the call
+   * @return the result of the call
+   * @throws DbxException if the call fails with an error that is not transient, or too many times
+   * @throws IOException if the call fails with a network error too many times
+   */
+  public static <T> T call(Call<T> call, int maxRetries) throws DbxException, IOException {
+    for (int attempt = 0; true; attempt++) {
+      try {
+        return call.call();
+      } catch (DbxException | IOException x) {
+        if (!isRetryable(x) || attempt >= maxRetries) {
+          throw x;
+        }
+        backoff(x, attempt);
+      }
+    }
+  }
+
+  /**
+   * Returns whether a call that failed with an exception can be retried: network errors,
+   * server errors and rate limiting are transient, other errors are not.
+   *
+   * @param x the exception
+   * @return true if the call can be retried
+   */
+  static boolean isRetryable(Exception x) {
+    return x instanceof NetworkIOException || x instanceof RetryException || x instanceof ServerException ||
+        (x instanceof IOException && !(x instanceof InterruptedIOException));
+  }
+
+  /**
+   * Waits before a retry. The wait is the one requested by Dropbox for rate limiting, or grows
+   * exponentially with the number of attempts.
+   *
+   * @param x the exception of the failed attempt
+   * @param attempt the number of the failed attempt, starting at zero
+   * @throws InterruptedIOException if the thread is interrupted while waiting
+   */
+  static void backoff(Exception x, int attempt) throws InterruptedIOException {
+    long backoff = getBackoffMillis(x, attempt);
+    logger.warning("Retrying Dropbox call in " + backoff + " ms after: " + x.getLocalizedMessage());
+    DropboxMetrics.INSTANCE.recordRetry();
+    sleep(backoff);
+  }
+
+  /**
+   * Waits before retrying a call whose result, rather than an exception, reports a transient failure.
+   * The wait grows exponentially with the number of attempts.
+   *
+   * @param reason the transient failure, for the log
+   * @param attempt the number of the failed attempt, starting at zero
+   * @throws InterruptedIOException if the thread is interrupted while waiting
+   */
+  static void backoff(String reason, int attempt) throws InterruptedIOException {
+    long backoff = getBackoffMillis(null, attempt);
+    logger.warning("Retrying Dropbox call in " + backoff + " ms after: " + reason);
+    DropboxMetrics.INSTANCE.recordRetry();
+    sleep(backoff);
+  }
+
+  /**
+   * Returns how long to wait before retrying a failed attempt: at least the wait requested by Dropbox,
+   * if any, otherwise between half and all of the exponential backoff of the attempt.
+   *
+   * @param x the exception of the failed attempt, or null
+   * @param attempt the number of the failed attempt, starting at zero
+   * @return the wait in milliseconds
+   */
+  static long getBackoffMillis(Exception x, int attempt) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long requested = x instanceof RetryException ? ((RetryException) x).getBackoffMillis() : 0;
+    if (requested > 0) {
+      return requested + random.nextLong(INITIAL_BACKOFF_MS);
+    }
+    long backoff = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(attempt, 16));
+    return backoff / 2 + random.nextLong(backoff / 2 + 1);
+  }
+
+  /**
+   * Waits, turning an interruption into an {@link InterruptedIOException}.
+   *
+   * @param millis the time to wait
+   * @throws InterruptedIOException if the thread is interrupted while waiting
+   */
+  static void sleep(long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for Dropbox");
+    }
+  }
+
+  private static Logger logger = Logger.getLogger(DropboxRetries.class.getName());
+}
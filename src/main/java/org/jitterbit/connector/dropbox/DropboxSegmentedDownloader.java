@@ -0,0 +1,399 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxDownloader;
+import com.dropbox.core.DbxException;
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.FileMetadata;
+import org.jitterbit.connector.sdk.util.Utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Downloads a file from Dropbox, in parallel byte ranges when it is large.
+ * <p>
+ * A download always starts with a plain <code>files/download</code> call, which returns the metadata
+ * of the file. Files up to the download threshold are then streamed from that response. Larger files
+ * are split into segments: the first segment is read from that response, and the others are requested
+ * as byte ranges of the same revision, several at a time. Segments are written to the output stream
+ * in order, so at most <code>parallelism</code> segments are held at a time, in {@link ContentBuffer}s
+ * that move large segments out of the heap.
+ * </p>
+ * <p>
+ * A segment that fails with a network, server or rate limit error is requested again on its own.
+ * A streamed download that fails is resumed from the last byte received.
+ * </p>
+ */
+public class DropboxSegmentedDownloader {
+
+  public static final int MB = 1024 * 1024;
+
+  public static final int DEFAULT_PARALLELISM = 4;
+  public static final int DEFAULT_SEGMENT_SIZE = 8 * MB;
+  public static final int DEFAULT_THRESHOLD = 64 * MB;
+  public static final int DEFAULT_MAX_RETRIES = 3;
+
+  static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Creates a downloader using a Dropbox client.
+   *
+   * @param client the Dropbox version 2 client
+   */
+  public DropboxSegmentedDownloader(DbxClientV2 client) {
+    this.client = client;
+  }
+
+  /**
+   * Creates a downloader configured from the function parameters of an activity. Sizes are given in
+   * megabytes; parameters that are missing or invalid keep their default value.
+   *
+   * @param client the Dropbox version 2 client
+   * @param params the function parameters of the activity
+   * @return the downloader
+   */
+  public static DropboxSegmentedDownloader fromParameters(DbxClientV2 client, Map<String, String> params) {
+    return new DropboxSegmentedDownloader(client)
+        .setParallelism(Utils.valueOfProp(DropboxConstants.DOWNLOAD_PARALLELISM, params, DEFAULT_PARALLELISM))
+        .setSegmentSize(
+            Utils.valueOfProp(DropboxConstants.DOWNLOAD_SEGMENT_SIZE, params, DEFAULT_SEGMENT_SIZE / MB) * MB)
+        .setThreshold(
+            (long) Utils.valueOfProp(DropboxConstants.DOWNLOAD_THRESHOLD, params, DEFAULT_THRESHOLD / MB) * MB)
+        .setMaxRetries(Utils.valueOfProp(DropboxConstants.DOWNLOAD_MAX_RETRIES, params, DEFAULT_MAX_RETRIES));
+  }
+
+  /**
+   * Starts the download of a file. The metadata of the file is available as soon as this method
+   * returns; the content is transferred by {@link Download#download(OutputStream)}.
+   *
+   * @param path the path of the file
+   * @return the download
+   * @throws DbxException if the file cannot be downloaded
+   * @throws IOException if the download is interrupted
+   */
+  public Download open(String path) throws DbxException, IOException {
+    return new Download(path, withRetries(() -> client.files().download(path)));
+  }
+
+  /**
+   * A download in progress.
+   */
+  public final class Download implements AutoCloseable {
+
+    private Download(String path, DbxDownloader<FileMetadata> first) {
+      this.path = path;
+      this.first = first;
+      this.metadata = first.getResult();
+    }
+
+    /**
+     * Returns the metadata of the file being downloaded.
+     *
+     * @return the metadata of the file
+     */
+    public FileMetadata getResult() {
+      return metadata;
+    }
+
+    /**
+     * Writes the content of the file to an output stream, and closes the download.
+     *
+     * @param os the output stream; it is not closed
+     * @return the metadata of the file
+     * @throws DbxException if the content cannot be downloaded
+     * @throws IOException if the content cannot be written
+     */
+    public FileMetadata download(OutputStream os) throws DbxException, IOException {
+      try {
+        if (parallelism > 1 && metadata.getSize() > threshold && metadata.getSize() > segmentSize) {
+          downloadSegments(os);
+        } else {
+          downloadStream(os);
+        }
+        return metadata;
+      } finally {
+        close();
+      }
+    }
+
+    @Override
+    public void close() {
+      first.close();
+    }
+
+    private void downloadStream(OutputStream os) throws DbxException, IOException {
+      DbxDownloader<FileMetadata> current = first;
+      InputStream in = current.getInputStream();
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long written = 0;
+      int attempt = 0;
+      while (written < metadata.getSize()) {
+        int n;
+        try {
+          n = in.read(buffer);
+          if (n == -1) {
+            throw new EOFException("Download of " + path + " ended after " + written + " bytes");
+          }
+        } catch (IOException x) {
+          if (x instanceof InterruptedIOException || attempt >= maxRetries) {
+            throw x;
+          }
+          retries.incrementAndGet();
+          DropboxRetries.backoff(x, attempt++);
+          if (current != first) {
+            current.close();
+          }
+          current = openRange(written, metadata.getSize() - written);
+          in = current.getInputStream();
+          continue;
+        }
+        os.write(buffer, 0, n);
+        written += n;
+        attempt = 0;
+      }
+      if (current != first) {
+        current.close();
+      }
+    }
+
+    private void downloadSegments(OutputStream os) throws DbxException, IOException {
+      long size = metadata.getSize();
+      int count = (int) ((size + segmentSize - 1) / segmentSize);
+      AtomicInteger threads = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, count), r -> {
+        Thread thread = new Thread(r, "dropbox-download-segment-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      Deque<Future<ContentBuffer>> window = new ArrayDeque<>();
+      try {
+        int submitted = 0;
+        for (int i = 0; i < count; i++) {
+          while (submitted < count && submitted < i + parallelism) {
+            long start = (long) submitted * segmentSize;
+            int length = (int) Math.min(segmentSize, size - start);
+            boolean fromFirst = submitted == 0;
+            window.add(executor.submit(() -> fromFirst ? readFirstSegment(length) : readSegment(start, length)));
+            submitted++;
+          }
+          try (ContentBuffer segment = await(window.poll())) {
+            segment.writeTo(os);
+          }
+          segments.incrementAndGet();
+        }
+        logger.fine("Downloaded " + path + " (" + size + " bytes) in " + count + " segments with " + retries +
+            " retries");
+      } finally {
+        executor.shutdownNow();
+        for (Future<ContentBuffer> pending : window) {
+          pending.cancel(true);
+          if (pending.isDone() && !pending.isCancelled()) {
+            try {
+              await(pending).close();
+            } catch (DbxException | IOException x) {
+              // the segment failed, so it holds no buffer
+            }
+          }
+        }
+      }
+    }
+
+    private ContentBuffer readFirstSegment(int length) throws DbxException, IOException {
+      ContentBuffer data = buffers.newBuffer(length);
+      try {
+        readFully(first.getInputStream(), data, length);
+        return data;
+      } catch (IOException x) {
+        data.close();
+        if (x instanceof InterruptedIOException || maxRetries == 0) {
+          throw x;
+        }
+        retries.incrementAndGet();
+        DropboxRetries.backoff(x, 0);
+        return readSegment(0, length);
+      } finally {
+        // the rest of the file is requested in ranges
+        first.close();
+      }
+    }
+
+    private ContentBuffer readSegment(long start, int length) throws DbxException, IOException {
+      for (int attempt = 0; true; attempt++) {
+        ContentBuffer data = buffers.newBuffer(length);
+        DbxDownloader<FileMetadata> downloader = null;
+        try {
+          downloader = openRange(start, length);
+          readFully(downloader.getInputStream(), data, length);
+          return data;
+        } catch (DbxException x) {
+          data.close();
+          throw x;
+        } catch (IOException x) {
+          data.close();
+          if (x instanceof InterruptedIOException || attempt >= maxRetries) {
+            throw x;
+          }
+          retries.incrementAndGet();
+          DropboxRetries.backoff(x, attempt);
+        } finally {
+          if (downloader != null) {
+            downloader.close();
+          }
+        }
+      }
+    }
+
+    private DbxDownloader<FileMetadata> openRange(long start, long length) throws DbxException, IOException {
+      return withRetries(() -> client.files().downloadBuilder(path)
+          .withRev(metadata.getRev())
+          .range(start, length)
+          .start());
+    }
+
+    private final String path;
+    private final DbxDownloader<FileMetadata> first;
+    private final FileMetadata metadata;
+  }
+
+  private <T> T withRetries(DropboxRetries.Call<T> call) throws DbxException, IOException {
+    for (int attempt = 0; true; attempt++) {
+      try {
+        return call.call();
+      } catch (DbxException x) {
+        if (!DropboxRetries.isRetryable(x) || attempt >= maxRetries) {
+          throw x;
+        }
+        retries.incrementAndGet();
+        DropboxRetries.backoff(x, attempt);
+      }
+    }
+  }
+
+  private static void readFully(InputStream in, ContentBuffer data, int length) throws IOException {
+    long read = data.writeFrom(in, length);
+    if (read < length) {
+      throw new EOFException("Segment ended after " + read + " of " + length + " bytes");
+    }
+  }
+
+  private static ContentBuffer await(Future<ContentBuffer> segment) throws DbxException, IOException {
+    try {
+      return segment.get();
+    } catch (InterruptedException x) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while downloading");
+    } catch (ExecutionException x) {
+      if (x.getCause() instanceof DbxException) {
+        throw (DbxException) x.getCause();
+      }
+      if (x.getCause() instanceof IOException) {
+        throw (IOException) x.getCause();
+      }
+      throw new IOException(x.getCause());
+    }
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Sets how many segments are downloaded at the same time; 1 disables segmented downloads.
+   *
+   * @param parallelism the number of concurrent segments
+   * @return this downloader
+   */
+  public DropboxSegmentedDownloader setParallelism(int parallelism) {
+    this.parallelism = Math.max(1, parallelism);
+    return this;
+  }
+
+  public int getSegmentSize() {
+    return segmentSize;
+  }
+
+  public DropboxSegmentedDownloader setSegmentSize(int segmentSize) {
+    this.segmentSize = Math.max(1, segmentSize);
+    return this;
+  }
+
+  public long getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Sets the size above which files are downloaded in segments.
+   *
+   * @param threshold the threshold in bytes
+   * @return this downloader
+   */
+  public DropboxSegmentedDownloader setThreshold(long threshold) {
+    this.threshold = Math.max(0, threshold);
+    return this;
+  }
+
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  public DropboxSegmentedDownloader setMaxRetries(int maxRetries) {
+    this.maxRetries = Math.max(0, maxRetries);
+    return this;
+  }
+
+  /**
+   * Sets the factory of the buffers holding the segments, which keeps small segments in memory
+   * and moves larger ones to temporary files.
+   *
+   * @param buffers the content buffer factory
+   * @return this downloader
+   */
+  public DropboxSegmentedDownloader setContentBufferFactory(ContentBufferFactory buffers) {
+    this.buffers = buffers;
+    return this;
+  }
+
+  public int getSegmentCount() {
+    return segments.get();
+  }
+
+  public int getRetryCount() {
+    return retries.get();
+  }
+
+  private final DbxClientV2 client;
+  private int parallelism = DEFAULT_PARALLELISM;
+  private int segmentSize = DEFAULT_SEGMENT_SIZE;
+  private long threshold = DEFAULT_THRESHOLD;
+  private int maxRetries = DEFAULT_MAX_RETRIES;
+  private ContentBufferFactory buffers = new ContentBufferFactory();
+  private final AtomicInteger segments = new AtomicInteger();
+  private final AtomicInteger retries = new AtomicInteger();
+
+  private static Logger logger = Logger.getLogger(DropboxSegmentedDownloader.class.getName());
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+/**
+ * State of the synchronization of a folder, kept on the local disk between the executions of an activity.
+ * <p>
+ * The state holds the Dropbox cursor giving the changes made after the last synchronization, and the
+ * revision of each entry synchronized so far, by lower-case path, to tell the entries added from the
+ * entries modified. While a full listing of the folder is in progress, either the first one or one made
+ * after Dropbox reset the cursor, it also holds the paths listed so far, so that the entries missing
+ * from the listing can be reported as deleted once it ends.
+ * </p>
+ * <p>
+ * The changes are made in memory, then committed together with the new cursor: they are appended to a
+ * journal, which is forced to the disk, so that a commit costs as much as the changes it holds, whatever
+ * the size of the folder. A commit that is only partly written is ignored when the state is opened.
+ * Once the journal outgrows the snapshot of the state, a new snapshot is written and the journal
+ * is emptied. Changes that are not committed are lost when the state is closed.
+ * </p>
+ * <p>
+ * A state is opened by one execution at a time within a process; other executions wait for it to be closed.
+ * </p>
+ */
+public class DropboxSyncState implements AutoCloseable {
+
+  /**
+   * Revision recorded for the folders, which have none.
+   */
+  public static final String FOLDER_REV = "";
+
+  /**
+   * Size of the journal below which no snapshot is written.
+   */
+  public static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+  private DropboxSyncState(Path snapshot, Path journal, Semaphore lock) {
+    this.snapshot = snapshot;
+    this.journal = journal;
+    this.lock = lock;
+  }
+
+  /**
+   * Opens the state of a synchronization, waiting while another execution holds it.
+   *
+   * @param directory the directory of the states, created if needed
+   * @param key the key of the synchronization, such as the GUID of an operation
+   * @return the state, empty if it was never committed
+   * @throws IOException if the state cannot be read
+   */
+  public static DropboxSyncState open(Path directory, String key) throws IOException {
+    String name = key.replaceAll("[^A-Za-z0-9._-]", "_");
+    Path snapshot = directory.resolve(name + ".snapshot").toAbsolutePath();
+    Semaphore lock = LOCKS.computeIfAbsent(snapshot, p -> new Semaphore(1));
+    try {
+      lock.acquire();
+    } catch (InterruptedException x) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the synchronization state " + key);
+    }
+    DropboxSyncState state = new DropboxSyncState(snapshot, directory.resolve(name + ".journal").toAbsolutePath(),
+        lock);
+    try {
+      Files.createDirectories(directory);
+      state.load();
+      return state;
+    } catch (IOException | RuntimeException x) {
+      state.close();
+      throw x;
+    }
+  }
+
+  private void load() throws IOException {
+    if (Files.exists(snapshot)) {
+      snapshotSize = Files.size(snapshot);
+      try (InputStream in = Files.newInputStream(snapshot)) {
+        replay(in);
+      }
+    }
+    if (Files.exists(journal)) {
+      try (InputStream in = Files.newInputStream(journal)) {
+        journalSize = replay(in);
+      }
+      if (journalSize < Files.size(journal)) {
+        logger.warning("Ignoring the last, incomplete, commit of " + journal);
+      }
+    }
+    pendingBytes.reset();
+  }
+
+  /**
+   * Applies the operations read from a stream, up to the last complete commit.
+   *
+   * @return the number of bytes of the complete commits
+   */
+  private long replay(InputStream in) throws IOException {
+    CountingInputStream counter = new CountingInputStream(new BufferedInputStream(in));
+    DataInputStream data = new DataInputStream(counter);
+    List<String[]> operations = new ArrayList<>();
+    long committed = 0;
+    try {
+      while (true) {
+        int op = data.read();
+        if (op == -1) {
+          break;
+        }
+        switch (op) {
+          case PUT:
+            operations.add(new String[] {"P", data.readUTF(), data.readUTF()});
+            break;
+          case REMOVE:
+            operations.add(new String[] {"D", data.readUTF()});
+            break;
+          case CLEAR:
+            operations.add(new String[] {"X", String.valueOf(data.readBoolean())});
+            break;
+          case COMMIT:
+            boolean fullListing = data.readBoolean();
+            String signature = data.readUTF();
+            String cursor = data.readUTF();
+            for (String[] operation : operations) {
+              apply(operation);
+            }
+            operations.clear();
+            this.fullListing = fullListing;
+            if (!fullListing) {
+              listed.clear();
+            }
+            this.signature = signature;
+            this.cursor = cursor.isEmpty() ? null : cursor;
+            committed = counter.count;
+            break;
+          default:
+            throw new EOFException("Unknown operation " + op);
+        }
+      }
+    } catch (EOFException x) {
+      // an incomplete commit, which was being written when the process stopped
+    }
+    return committed;
+  }
+
+  private void apply(String[] operation) {
+    switch (operation[0]) {
+      case "P":
+        put(operation[1], operation[2]);
+        break;
+      case "D":
+        remove(operation[1]);
+        break;
+      default:
+        clear(Boolean.parseBoolean(operation[1]));
+        break;
+    }
+  }
+
+  /**
+   * Returns the cursor giving the changes made after the last commit.
+   *
+   * @return the cursor, or null if there is none, such as before the first listing
+   */
+  public String getCursor() {
+    return cursor;
+  }
+
+  /**
+   * Returns the signature of the settings of the synchronization, such as its folder, at the last commit.
+   *
+   * @return the signature, or null if the state was never committed
+   */
+  public String getSignature() {
+    return signature;
+  }
+
+  /**
+   * Returns whether a full listing of the folder is in progress.
+   *
+   * @return true during the first listing, or the listing following a cursor reset
+   */
+  public boolean isFullListing() {
+    return fullListing;
+  }
+
+  /**
+   * Returns the revision of an entry.
+   *
+   * @param path the lower-case path of the entry
+   * @return the revision, {@link #FOLDER_REV} for a folder, or null if the entry is not known
+   */
+  public String getRev(String path) {
+    return revs.get(path);
+  }
+
+  public int size() {
+    return revs.size();
+  }
+
+  /**
+   * Records the revision of an entry, added or modified. During a full listing, the entry is also
+   * recorded as listed.
+   *
+   * @param path the lower-case path of the entry
+   * @param rev the revision of the file, or {@link #FOLDER_REV} for a folder
+   * @throws IOException if the change cannot be recorded
+   */
+  public void recordPut(String path, String rev) throws IOException {
+    put(path, rev);
+    writePut(pending, path, rev);
+  }
+
+  /**
+   * Removes an entry and, if it is a folder, the entries it contains.
+   *
+   * @param path the lower-case path of the entry
+   * @return the paths removed
+   * @throws IOException if the change cannot be recorded
+   */
+  public Collection<String> recordRemove(String path) throws IOException {
+    Collection<String> removed = remove(path);
+    pending.writeByte(REMOVE);
+    pending.writeUTF(path);
+    return removed;
+  }
+
+  /**
+   * Starts a full listing of the folder: the entries listed are recorded until {@link #endFullListing()}.
+   *
+   * @param forget true to forget the entries known so far, which are then all reported as added
+   * @throws IOException if the change cannot be recorded
+   */
+  public void startFullListing(boolean forget) throws IOException {
+    clear(forget);
+    pending.writeByte(CLEAR);
+    pending.writeBoolean(forget);
+  }
+
+  /**
+   * Ends a full listing of the folder, and removes the entries that were not listed.
+   *
+   * @return the paths of the entries removed
+   * @throws IOException if the change cannot be recorded
+   */
+  public List<String> endFullListing() throws IOException {
+    List<String> missing = new ArrayList<>();
+    for (String path : revs.keySet()) {
+      if (!listed.contains(path)) {
+        missing.add(path);
+      }
+    }
+    for (String path : missing) {
+      revs.remove(path);
+      pending.writeByte(REMOVE);
+      pending.writeUTF(path);
+    }
+    fullListing = false;
+    listed.clear();
+    return missing;
+  }
+
+  private void put(String path, String rev) {
+    revs.put(path, rev);
+    if (fullListing) {
+      listed.add(path);
+    }
+  }
+
+  private Collection<String> remove(String path) {
+    List<String> removed = new ArrayList<>();
+    if (revs.remove(path) != null) {
+      removed.add(path);
+    }
+    // the entries of a deleted folder
+    NavigableMap<String, String> children = revs.subMap(path + "/", true, path + "0", false);
+    removed.addAll(children.keySet());
+    children.clear();
+    listed.removeAll(removed);
+    return removed;
+  }
+
+  private void clear(boolean forget) {
+    if (forget) {
+      revs.clear();
+    }
+    listed.clear();
+    fullListing = true;
+    cursor = null;
+  }
+
+  /**
+   * Commits the changes recorded since the last commit, with the cursor giving the changes made afterwards.
+   *
+   * @param signature the signature of the settings of the synchronization
+   * @param cursor the new cursor; null if there is none yet
+   * @throws IOException if the changes cannot be written
+   */
+  public void commit(String signature, String cursor) throws IOException {
+    this.signature = signature;
+    this.cursor = cursor;
+    pending.writeByte(COMMIT);
+    pending.writeBoolean(fullListing);
+    pending.writeUTF(signature);
+    pending.writeUTF(cursor == null ? "" : cursor);
+    try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      // drop an incomplete commit left by a process that stopped while writing it
+      channel.truncate(journalSize);
+      channel.position(journalSize);
+      ByteBuffer buffer = ByteBuffer.wrap(pendingBytes.toByteArray());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+      journalSize = channel.size();
+    }
+    pendingBytes.reset();
+    if (journalSize > Math.max(MIN_COMPACTION_SIZE, snapshotSize)) {
+      writeSnapshot();
+    }
+  }
+
+  /**
+   * Writes the state at the last commit to a new snapshot, then empties the journal.
+   *
+   * @throws IOException if the snapshot cannot be written
+   */
+  public void writeSnapshot() throws IOException {
+    Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      // the entries not listed yet by a full listing in progress, then the ones listed
+      for (Map.Entry<String, String> entry : revs.entrySet()) {
+        if (!listed.contains(entry.getKey())) {
+          writePut(out, entry.getKey(), entry.getValue());
+        }
+      }
+      if (fullListing) {
+        out.writeByte(CLEAR);
+        out.writeBoolean(false);
+        for (String path : listed) {
+          writePut(out, path, revs.get(path));
+        }
+      }
+      out.writeByte(COMMIT);
+      out.writeBoolean(fullListing);
+      out.writeUTF(signature == null ? "" : signature);
+      out.writeUTF(cursor == null ? "" : cursor);
+      out.flush();
+      channel.force(false);
+      snapshotSize = channel.size();
+    }
+    Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    // replaying the journal over the new snapshot gives the same state, should the process stop here
+    Files.deleteIfExists(journal);
+    journalSize = 0;
+    logger.fine("Wrote a snapshot of " + revs.size() + " entries to " + snapshot);
+  }
+
+  private static void writePut(DataOutputStream out, String path, String rev) throws IOException {
+    out.writeByte(PUT);
+    out.writeUTF(path);
+    out.writeUTF(rev);
+  }
+
+  /**
+   * Deletes the state from the disk, and forgets it.
+   *
+   * @throws IOException if the state cannot be deleted
+   */
+  public void delete() throws IOException {
+    Files.deleteIfExists(journal);
+    Files.deleteIfExists(snapshot);
+    revs.clear();
+    listed.clear();
+    pendingBytes.reset();
+    fullListing = false;
+    cursor = null;
+    signature = null;
+    journalSize = 0;
+    snapshotSize = 0;
+  }
+
+  /**
+   * Closes the state, letting other executions open it. Changes that are not committed are lost.
+   */
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      lock.release();
+    }
+  }
+
+  public long getJournalSize() {
+    return journalSize;
+  }
+
+  public long getSnapshotSize() {
+    return snapshotSize;
+  }
+
+  /**
+   * Input stream counting the bytes read.
+   */
+  private static final class CountingInputStream extends FilterInputStream {
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    private long count;
+  }
+
+  private static final int PUT = 'P';
+  private static final int REMOVE = 'D';
+  private static final int CLEAR = 'X';
+  private static final int COMMIT = 'C';
+
+  private static final ConcurrentMap<Path, Semaphore> LOCKS = new ConcurrentHashMap<>();
+
+  private final Path snapshot;
+  private final Path journal;
+  private final Semaphore lock;
+  private final TreeMap<String, String> revs = new TreeMap<>();
+  private final Set<String> listed = new HashSet<>();
+  private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+  private final DataOutputStream pending = new DataOutputStream(pendingBytes);
+  private boolean fullListing;
+  private String cursor;
+  private String signature;
+  private long journalSize;
+  private long snapshotSize;
+  private boolean closed;
+
+  private static Logger logger = Logger.getLogger(DropboxSyncState.class.getName());
+}
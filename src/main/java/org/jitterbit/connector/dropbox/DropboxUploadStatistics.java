@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the files uploaded with the same credentials, and the ones whose upload was skipped
+ * because Dropbox already had the same content at their path.
+ */
+public class DropboxUploadStatistics {
+
+  public DropboxUploadStatistics() {
+  }
+
+  public void recordUploaded(long bytes) {
+    uploads.incrementAndGet();
+    uploadedBytes.addAndGet(bytes);
+  }
+
+  public void recordSkipped(long bytes) {
+    skips.incrementAndGet();
+    skippedBytes.addAndGet(bytes);
+  }
+
+  public long getUploadCount() {
+    return uploads.get();
+  }
+
+  public long getUploadedBytes() {
+    return uploadedBytes.get();
+  }
+
+  /**
+   * Returns the number of uploads skipped because the file was unchanged.
+   *
+   * @return the number of skipped uploads
+   */
+  public long getSkipCount() {
+    return skips.get();
+  }
+
+  /**
+   * Returns the size of the content of the skipped uploads, which was not sent to Dropbox.
+   *
+   * @return the number of bytes not uploaded
+   */
+  public long getSkippedBytes() {
+    return skippedBytes.get();
+  }
+
+  @Override
+  public String toString() {
+    return "uploads=" + getUploadCount() + ", uploadedBytes=" + getUploadedBytes() +
+        ", skipped=" + getSkipCount() + ", skippedBytes=" + getSkippedBytes();
+  }
+
+  private final AtomicLong uploads = new AtomicLong();
+  private final AtomicLong uploadedBytes = new AtomicLong();
+  private final AtomicLong skips = new AtomicLong();
+  private final AtomicLong skippedBytes = new AtomicLong();
+}
@@ -22,7 +22,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 
@@ -31,6 +37,11 @@ import javax.xml.bind.Unmarshaller;
  */
 public class DropboxUtils {
 
+  /**
+   * Maximum number of idle marshallers (and unmarshallers) kept for reuse for each class.
+   */
+  static final int MAX_POOLED_MARSHALLERS = 16;
+
   /**
    * Returns a named resource from a specified class loader. If the <code>cls</code>
    * class loader is null, it uses the current thread context class loader.
@@ -44,10 +55,76 @@ public class DropboxUtils {
     if (cls == null) {
       cls = Thread.currentThread().getContextClassLoader();
     }
-    InputStream is = cls.getResourceAsStream(resourceName);
-    StringWriter writer = new StringWriter();
-    IOUtils.copy(is, writer, "UTF-8");
-    return writer.toString();
+    try (InputStream is = cls.getResourceAsStream(resourceName)) {
+      if (is == null) {
+        throw new IOException("Resource not found: " + resourceName);
+      }
+      StringWriter writer = new StringWriter();
+      IOUtils.copy(is, writer, "UTF-8");
+      return writer.toString();
+    }
+  }
+
+  /**
+   * Returns a named resource of the connector. The resource is loaded once, from the class loader
+   * of the connector, and cached afterwards.
+   *
+   * @param resourceName name of the resource
+   * @return the content of the resource
+   * @throws IOException if there is an error while loading the resource
+   */
+  public static String getResource(String resourceName) throws IOException {
+    String content = RESOURCES.get(resourceName);
+    if (content == null) {
+      content = loadResource(DropboxUtils.class.getClassLoader(), resourceName);
+      String existing = RESOURCES.putIfAbsent(resourceName, content);
+      if (existing != null) {
+        content = existing;
+      }
+    }
+    return content;
+  }
+
+  /**
+   * Returns the schema metadata of a resource of the connector. The metadata is built once and
+   * shared by every caller afterwards, so it must not be modified.
+   *
+   * @param name name of the schema
+   * @param contentType type of the schema content, or null if it is not set
+   * @param resourceName name of the resource containing the schema
+   * @return the schema metadata
+   * @throws IOException if there is an error while loading the resource
+   */
+  public static SchemaMetaData getSchema(String name, SchemaContentType contentType, String resourceName)
+      throws IOException {
+    String key = name + "|" + contentType + "|" + resourceName;
+    SchemaMetaData schema = SCHEMAS.get(key);
+    if (schema == null) {
+      schema = new SchemaMetaData()
+          .setName(name)
+          .setSchemaContentType(contentType)
+          .setContent(getResource(resourceName));
+      SchemaMetaData existing = SCHEMAS.putIfAbsent(key, schema);
+      if (existing != null) {
+        schema = existing;
+      }
+    }
+    return schema;
+  }
+
+  /**
+   * Loads the schemas of the connector into the resource cache, so that the first discovery
+   * of each activity does not have to read them. Resources that cannot be loaded are skipped;
+   * loading them again is attempted on their first use.
+   */
+  public static void preloadResources() {
+    for (String resourceName : PRELOADED_RESOURCES) {
+      try {
+        getResource(resourceName);
+      } catch (IOException x) {
+        logger.warning("Cannot preload resource " + resourceName + ": " + x.getLocalizedMessage());
+      }
+    }
   }
 
   /**
@@ -65,17 +142,13 @@ public class DropboxUtils {
                                                String requestResourceName,
                                                String responseResourceName) throws IOException {
     if (requestResourceName != null) {
-      activitySchemaResponse.setRequestSchema(
-        new SchemaMetaData()
-          .setName(DropboxConstants.CONNECTOR_NAME + "_" + requestResourceName)
-          .setContent(loadResource(DropboxUtils.class.getClassLoader(), pathResource + "/" + requestResourceName)));
+      activitySchemaResponse.setRequestSchema(getSchema(DropboxConstants.CONNECTOR_NAME + "_" + requestResourceName,
+          null, pathResource + "/" + requestResourceName));
     }
 
     if (responseResourceName != null) {
-      activitySchemaResponse.setResponseSchema(
-        new SchemaMetaData()
-          .setName(DropboxConstants.CONNECTOR_NAME + "_" + responseResourceName)
-          .setContent(loadResource(DropboxUtils.class.getClassLoader(), pathResource + "/" + responseResourceName)));
+      activitySchemaResponse.setResponseSchema(getSchema(DropboxConstants.CONNECTOR_NAME + "_" + responseResourceName,
+          null, pathResource + "/" + responseResourceName));
     }
   }
   /**
@@ -101,24 +174,19 @@ public class DropboxUtils {
                                         String rspFileName,
                                         SchemaContentType rspProtocol) throws IOException {
     if (requestResourceName != null) {
-      activitySchemaResponse.setRequestSchema(
-        new SchemaMetaData()
-          .setName(DropboxConstants.CONNECTOR_NAME + "_" +  requestResourceName)
-          .setSchemaContentType(reqProtocol)
-          .setContent(loadResource(DropboxUtils.class.getClassLoader(), pathResource + "/" + reqFileName))
-      );
+      activitySchemaResponse.setRequestSchema(getSchema(DropboxConstants.CONNECTOR_NAME + "_" +  requestResourceName,
+          reqProtocol, pathResource + "/" + reqFileName));
     }
 
     if (responseResourceName != null) {
-      activitySchemaResponse.setResponseSchema(new SchemaMetaData()
-        .setName(DropboxConstants.CONNECTOR_NAME + "_" + responseResourceName)
-        .setSchemaContentType(rspProtocol)
-        .setContent(loadResource(DropboxUtils.class.getClassLoader(), pathResource + "/" + rspFileName)));
+      activitySchemaResponse.setResponseSchema(getSchema(DropboxConstants.CONNECTOR_NAME + "_" + responseResourceName,
+          rspProtocol, pathResource + "/" + rspFileName));
     }
   }
 
   /**
-   * Serialize an JAXB-annotated object to an output stream.
+   * Serialize an JAXB-annotated object to an output stream. The JAXB context of the class is
+   * created once and its marshallers are pooled.
    *
    * @param clz class (type) of the object being serialized
    * @param instance object being serialized
@@ -126,13 +194,18 @@ public class DropboxUtils {
    * @throws Exception if there is an exception serializing the object
    */
   public static void marshall(Class clz, Object instance, OutputStream os) throws Exception {
-    JAXBContext context = JAXBContext.newInstance(new Class[]{clz});
-    Marshaller m = context.createMarshaller();
+    Queue<Marshaller> pool = MARSHALLERS.computeIfAbsent(clz, c -> new ConcurrentLinkedQueue<>());
+    Marshaller m = pool.poll();
+    if (m == null) {
+      m = getContext(clz).createMarshaller();
+    }
     m.marshal(instance, os);
+    release(pool, m);
   }
 
   /**
-   * Create an instance of a JAXB object of type <code>clz</code>.
+   * Create an instance of a JAXB object of type <code>clz</code>. The JAXB context of the class
+   * is created once and its unmarshallers are pooled.
    *
    * @param <T> type of the JAXB instance being created
    * @param clz class of the JAXB instance being created
@@ -141,12 +214,81 @@ public class DropboxUtils {
    * @throws Exception if there is an exception instantiating the object
    */
   public static <T> T unmarshall(Class<T> clz, InputStream is) throws Exception {
-    JAXBContext context = JAXBContext.newInstance(new Class[]{clz});
-    Unmarshaller um = context.createUnmarshaller();
-    return (T) um.unmarshal(is);
+    Queue<Unmarshaller> pool = UNMARSHALLERS.computeIfAbsent(clz, c -> new ConcurrentLinkedQueue<>());
+    Unmarshaller um = pool.poll();
+    if (um == null) {
+      um = getContext(clz).createUnmarshaller();
+    }
+    T result = (T) um.unmarshal(is);
+    release(pool, um);
+    return result;
+  }
+
+  /**
+   * Returns the cached JAXB context of a class, creating it on first use.
+   *
+   * @param clz class bound by the JAXB context
+   * @return the JAXB context
+   * @throws JAXBException if the JAXB context cannot be created
+   */
+  public static JAXBContext getContext(Class<?> clz) throws JAXBException {
+    JAXBContext context = CONTEXTS.get(clz);
+    if (context == null) {
+      context = JAXBContext.newInstance(new Class[]{clz});
+      JAXBContext existing = CONTEXTS.putIfAbsent(clz, context);
+      if (existing != null) {
+        context = existing;
+      }
+    }
+    return context;
+  }
+
+  private static <M> void release(Queue<M> pool, M marshaller) {
+    // the size of a concurrent queue is approximate, which is fine for bounding the pool
+    if (pool.size() < MAX_POOLED_MARSHALLERS) {
+      pool.offer(marshaller);
+    }
   }
 
   public static String getFileContent(String path) throws Exception {
-    return loadResource(DropboxUtils.class.getClassLoader(), path);
+    return getResource(path);
   }
+
+  /**
+   * Resources loaded by {@link #preloadResources()}.
+   */
+  private static final String[] PRELOADED_RESOURCES = {
+    "xsds/" + DropboxConstants.FETCH_FILE_REQ_XSD,
+    "xsds/" + DropboxConstants.FETCH_FILE_RSP_XSD,
+    "xsds/" + DropboxConstants.PUT_FILE_REQ_XSD,
+    "xsds/" + DropboxConstants.PUT_FILE_RSP_XSD,
+    "xsds/" + DropboxConstants.BATCH_FETCH_FILE_REQ_XSD,
+    "xsds/" + DropboxConstants.BATCH_FETCH_FILE_RSP_XSD,
+    "xsds/" + DropboxConstants.BATCH_PUT_FILE_REQ_XSD,
+    "xsds/" + DropboxConstants.BATCH_PUT_FILE_RSP_XSD,
+    "xsds/" + DropboxConstants.DOWNLOAD_FOLDER_RSP_XSD,
+    "xsds/" + DropboxConstants.WATCH_FOLDER_REQ_XSD,
+    "xsds/" + DropboxConstants.WATCH_FOLDER_RSP_XSD,
+    "xsds/" + DropboxConstants.SYNC_FOLDER_REQ_XSD,
+    "xsds/" + DropboxConstants.SYNC_FOLDER_RSP_XSD,
+    "support-xsds/account.xsd",
+    "support-xsds/company.xsd",
+    "support-xsds/customer.xsd",
+    "support-xsds/m1.xsd",
+    "support-xsds/m2.xsd",
+    "support-xsds/myschema1.xsd",
+    "support-xsds/myschema2.xsd",
+    "support-xsds/myschema3.xsd",
+    "support-xsds/myschema4.xsd",
+    "sample-json/customers.json",
+    "sample-xml/contacts.xml"
+  };
+
+  private static final ConcurrentMap<Class<?>, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<Class<?>, Queue<Marshaller>> MARSHALLERS = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<Class<?>, Queue<Unmarshaller>> UNMARSHALLERS = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<String, String> RESOURCES = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<String, SchemaMetaData> SCHEMAS = new ConcurrentHashMap<>();
+
+  private static Logger logger = Logger.getLogger(DropboxUtils.class.getName());
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the requests made to a Dropbox API endpoint: their count, latency up to the response status,
+ * errors, throttling, and the bytes of their bodies.
+ */
+public class EndpointMetrics implements EndpointMetricsMXBean {
+
+  EndpointMetrics(String endpoint) {
+    this.endpoint = endpoint;
+  }
+
+  /**
+   * Records a request.
+   *
+   * @param nanos the time from the start of the request to its response status
+   * @param status the HTTP status code of the response, or zero if there was no response
+   */
+  public void recordRequest(long nanos, int status) {
+    latency.record(nanos);
+    if (status == 0 || status >= 400) {
+      errors.incrementAndGet();
+    }
+    if (status == 429 || status == 503) {
+      throttled.incrementAndGet();
+    }
+  }
+
+  public void addBytesSent(long bytes) {
+    bytesSent.addAndGet(bytes);
+  }
+
+  public void addBytesReceived(long bytes) {
+    bytesReceived.addAndGet(bytes);
+  }
+
+  @Override
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  @Override
+  public long getRequestCount() {
+    return latency.getCount();
+  }
+
+  @Override
+  public long getErrorCount() {
+    return errors.get();
+  }
+
+  @Override
+  public long getThrottledCount() {
+    return throttled.get();
+  }
+
+  @Override
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  @Override
+  public long getBytesReceived() {
+    return bytesReceived.get();
+  }
+
+  @Override
+  public double getMeanLatencyMillis() {
+    return latency.getMeanMillis();
+  }
+
+  @Override
+  public long getP50LatencyMillis() {
+    return latency.getPercentileMillis(50);
+  }
+
+  @Override
+  public long getP99LatencyMillis() {
+    return latency.getPercentileMillis(99);
+  }
+
+  @Override
+  public long getMaxLatencyMillis() {
+    return latency.getMaxMillis();
+  }
+
+  @Override
+  public String toString() {
+    return endpoint + ": requests=" + getRequestCount() + ", errors=" + getErrorCount() + ", throttled=" +
+        getThrottledCount() + ", bytesSent=" + getBytesSent() + ", bytesReceived=" + getBytesReceived() +
+        ", p50=" + getP50LatencyMillis() + " ms, p99=" + getP99LatencyMillis() + " ms";
+  }
+
+  private final String endpoint;
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong throttled = new AtomicLong();
+  private final AtomicLong bytesSent = new AtomicLong();
+  private final AtomicLong bytesReceived = new AtomicLong();
+}
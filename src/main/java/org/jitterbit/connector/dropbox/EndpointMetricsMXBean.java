@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+/**
+ * JMX view of the requests made to a Dropbox API endpoint, such as <code>/2/files/download</code>.
+ */
+public interface EndpointMetricsMXBean {
+
+  String getEndpoint();
+
+  long getRequestCount();
+
+  /**
+   * Returns the requests that failed: without a response, or with an error status.
+   *
+   * @return the number of failed requests
+   */
+  long getErrorCount();
+
+  /**
+   * Returns the requests throttled by Dropbox, with a 429 or 503 status.
+   *
+   * @return the number of throttled requests
+   */
+  long getThrottledCount();
+
+  long getBytesSent();
+
+  long getBytesReceived();
+
+  double getMeanLatencyMillis();
+
+  long getP50LatencyMillis();
+
+  long getP99LatencyMillis();
+
+  long getMaxLatencyMillis();
+}
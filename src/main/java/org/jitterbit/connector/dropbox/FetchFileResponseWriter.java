@@ -0,0 +1,240 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxDownloader;
+import com.dropbox.core.DbxException;
+import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.FileSharingInfo;
+import org.jitterbit.connector.sdk.util.Utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.Date;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a <code>fetchFileResponse</code> document, conforming with the
+ * <code>resources/xsds/fetch-file-response.xsd</code> XML Schema, directly to an output stream.
+ * <p>
+ * The metadata elements are written first, then the content of the file is base64-encoded
+ * in fixed-size chunks as it is read from Dropbox, so that the memory used does not depend
+ * on the size of the file.
+ * </p>
+ */
+public class FetchFileResponseWriter {
+
+  /**
+   * Number of bytes encoded at a time; a multiple of 3 so that chunks need no padding.
+   */
+  static final int CHUNK_SIZE = 3 * 16 * 1024;
+
+  /**
+   * Creates a writer of a response to an output stream. The output stream is not closed by the writer.
+   *
+   * @param os the output stream
+   * @throws XMLStreamException if the XML writer cannot be created
+   */
+  public FetchFileResponseWriter(OutputStream os) throws XMLStreamException {
+    this.writer = OUTPUT_FACTORY.createXMLStreamWriter(os, "UTF-8");
+  }
+
+  /**
+   * Writes the response document of a file being downloaded. The downloader is closed once
+   * the content has been written.
+   *
+   * @param metadata the metadata of the file
+   * @param downloader the download of the file content, or null to leave the content out
+   * @throws XMLStreamException if the response cannot be written
+   * @throws DbxException if the content cannot be downloaded
+   * @throws IOException if the content cannot be written
+   */
+  public void write(FileMetadata metadata, DbxDownloader<?> downloader)
+      throws XMLStreamException, DbxException, IOException {
+    write(metadata, downloader == null ? null : downloader::download);
+  }
+
+  /**
+   * Writes the response document of a file, with content written by a callback.
+   *
+   * @param metadata the metadata of the file
+   * @param content writes the content of the file, or null to leave the content out
+   * @throws XMLStreamException if the response cannot be written
+   * @throws DbxException if the content cannot be downloaded
+   * @throws IOException if the content cannot be written
+   */
+  public void write(FileMetadata metadata, Content content) throws XMLStreamException, DbxException, IOException {
+    writer.writeStartDocument("UTF-8", "1.0");
+    writer.setDefaultNamespace(DropboxConstants.FETCH_FILE_NAMESPACE);
+    writer.writeStartElement(DropboxConstants.FETCH_FILE_NAMESPACE, DropboxConstants.FETCH_FILE_RSP_ROOT);
+    writer.writeDefaultNamespace(DropboxConstants.FETCH_FILE_NAMESPACE);
+    writeFile(metadata, content);
+    writer.writeEndElement();
+    writer.writeEndDocument();
+    writer.flush();
+  }
+
+  /**
+   * Writes the metadata and content elements of a file, in the order of the XML Schema, inside
+   * the current element.
+   *
+   * @param metadata the metadata of the file
+   * @param content writes the content of the file, or null to leave the content out
+   * @throws XMLStreamException if the elements cannot be written
+   * @throws DbxException if the content cannot be downloaded
+   * @throws IOException if the content cannot be written
+   */
+  protected void writeFile(FileMetadata metadata, Content content)
+      throws XMLStreamException, DbxException, IOException {
+    writeElement("name", metadata.getName());
+    writeElement("clientModified", toXml(metadata.getClientModified()));
+    writeElement("serverModified", toXml(metadata.getServerModified()));
+    writeElement("rev", metadata.getRev());
+    writeElement("size", String.valueOf(metadata.getSize()));
+    FileSharingInfo sharing = metadata.getSharingInfo();
+    if (sharing != null) {
+      writer.writeStartElement(DropboxConstants.FETCH_FILE_NAMESPACE, "sharingInfo");
+      writeElement("readOnly", String.valueOf(sharing.getReadOnly()));
+      writeElement("parentSharedFolderId", sharing.getParentSharedFolderId());
+      writeElement("modifiedBy", sharing.getModifiedBy());
+      writer.writeEndElement();
+    }
+    if (content != null) {
+      writeContent("content", content);
+    }
+    writer.flush();
+  }
+
+  /**
+   * Writes an element whose text is the base64-encoded content written by a callback.
+   *
+   * @param name the local name of the element
+   * @param content writes the content
+   * @throws XMLStreamException if the element cannot be written
+   * @throws DbxException if the content cannot be downloaded
+   * @throws IOException if the content cannot be written
+   */
+  protected void writeContent(String name, Content content) throws XMLStreamException, DbxException, IOException {
+    writer.writeStartElement(DropboxConstants.FETCH_FILE_NAMESPACE, name);
+    Base64ContentStream os = new Base64ContentStream();
+    content.writeTo(os);
+    os.close();
+    writer.writeEndElement();
+  }
+
+  /**
+   * Writes the content of a file to an output stream.
+   */
+  public interface Content {
+
+    /**
+     * Writes the content of the file.
+     *
+     * @param os the output stream
+     * @throws DbxException if the content cannot be downloaded
+     * @throws IOException if the content cannot be written
+     */
+    void writeTo(OutputStream os) throws DbxException, IOException;
+  }
+
+  protected XMLStreamWriter getXMLStreamWriter() {
+    return writer;
+  }
+
+  protected void writeElement(String name, String value) throws XMLStreamException {
+    writer.writeStartElement(DropboxConstants.FETCH_FILE_NAMESPACE, name);
+    if (value != null) {
+      writer.writeCharacters(value);
+    }
+    writer.writeEndElement();
+  }
+
+  protected static String toXml(Date date) throws XMLStreamException {
+    try {
+      return date == null ? null : Utils.convertDateTo(date).toXMLFormat();
+    } catch (DatatypeConfigurationException x) {
+      throw new XMLStreamException(x);
+    }
+  }
+
+  /**
+   * Output stream base64-encoding the bytes written to it as the text of the current element.
+   */
+  private final class Base64ContentStream extends OutputStream {
+
+    @Override
+    public void write(int b) throws IOException {
+      if (count == buffer.length) {
+        encode();
+      }
+      buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (count == buffer.length) {
+          encode();
+        }
+        int n = Math.min(len, buffer.length - count);
+        System.arraycopy(b, off, buffer, count, n);
+        count += n;
+        off += n;
+        len -= n;
+      }
+    }
+
+    /**
+     * Encodes the remaining bytes, with padding. The underlying writer is left open.
+     */
+    @Override
+    public void close() throws IOException {
+      if (count > 0) {
+        encode();
+      }
+    }
+
+    private void encode() throws IOException {
+      int length = Base64.getEncoder().encode(count == buffer.length ? buffer : copyOfBuffer(), encoded);
+      for (int i = 0; i < length; i++) {
+        chars[i] = (char) encoded[i];
+      }
+      try {
+        writer.writeCharacters(chars, 0, length);
+      } catch (XMLStreamException x) {
+        throw new IOException(x);
+      }
+      count = 0;
+    }
+
+    private byte[] copyOfBuffer() {
+      byte[] copy = new byte[count];
+      System.arraycopy(buffer, 0, copy, 0, count);
+      return copy;
+    }
+
+    private final byte[] buffer = new byte[CHUNK_SIZE];
+    private final byte[] encoded = new byte[CHUNK_SIZE / 3 * 4];
+    private final char[] chars = new char[CHUNK_SIZE / 3 * 4];
+    private int count;
+  }
+
+  private final XMLStreamWriter writer;
+
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.files.DeletedMetadata;
+import com.dropbox.core.v2.files.ListFolderContinueErrorException;
+import com.dropbox.core.v2.files.Metadata;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Caches the entries of folder listings, and keeps them up to date with the changes reported
+ * by Dropbox for the cursor of each listing.
+ * <p>
+ * The first listing of a folder is a full listing. Later listings of the same folder only request
+ * the changes made since the previous one, with <code>files/list_folder/continue</code>, and apply
+ * them to the cached entries. A folder is listed in full again once its last full listing is older
+ * than the time to live, or when Dropbox no longer accepts its cursor. The least recently used
+ * folders are evicted beyond the maximum number of folders, and folders with more entries than the
+ * maximum are not cached.
+ * </p>
+ */
+public class FolderListingCache {
+
+  public static final long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+  public static final int DEFAULT_MAX_FOLDERS = 100;
+  public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+  public FolderListingCache() {
+  }
+
+  /**
+   * Lists the entries of a folder, from the cache when it holds a listing of the folder made
+   * with the same recursion within the time to live.
+   *
+   * @param lister the lister of the folder
+   * @param folder the path of the folder; the empty string is the root folder
+   * @param ttlMillis how long a full listing is kept up to date with changes; zero or less
+   * bypasses the cache
+   * @param visitor receives the entries
+   * @throws Exception if the folder cannot be listed, or if the visitor fails
+   */
+  public void list(DropboxFolderLister lister, String folder, long ttlMillis, DropboxFolderLister.Visitor visitor)
+      throws Exception {
+    String key = (lister.isRecursive() ? "recursive:" : "folder:") + folder.toLowerCase();
+    Listing listing = ttlMillis > 0 ? get(key, ttlMillis) : null;
+    if (listing != null) {
+      List<Metadata> entries = listing.update(lister);
+      if (entries != null) {
+        hits.incrementAndGet();
+        for (Metadata entry : entries) {
+          if (!visitor.visit(entry)) {
+            return;
+          }
+        }
+        return;
+      }
+      remove(key, listing);
+    }
+    misses.incrementAndGet();
+
+    Listing fresh = new Listing();
+    String cursor = lister.list(folder, entry -> {
+      fresh.apply(entry);
+      return visitor.visit(entry);
+    });
+    if (cursor != null && ttlMillis > 0 && fresh.entries.size() <= maxEntries) {
+      fresh.cursor = cursor;
+      put(key, fresh);
+    }
+  }
+
+  /**
+   * Removes every listing from the cache.
+   */
+  public synchronized void clear() {
+    listings.clear();
+  }
+
+  public synchronized int size() {
+    return listings.size();
+  }
+
+  /**
+   * Returns the number of listings answered from the cache, with a listing of the changes.
+   *
+   * @return the number of cache hits
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of full listings made.
+   *
+   * @return the number of cache misses
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public int getMaxFolders() {
+    return maxFolders;
+  }
+
+  public synchronized FolderListingCache setMaxFolders(int maxFolders) {
+    this.maxFolders = Math.max(0, maxFolders);
+    return this;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * Sets the largest number of entries of a cached folder.
+   *
+   * @param maxEntries the maximum number of entries
+   * @return this cache
+   */
+  public FolderListingCache setMaxEntries(int maxEntries) {
+    this.maxEntries = Math.max(0, maxEntries);
+    return this;
+  }
+
+  private synchronized Listing get(String key, long ttlMillis) {
+    Listing listing = listings.get(key);
+    if (listing != null && System.currentTimeMillis() - listing.listedAt >= ttlMillis) {
+      listings.remove(key);
+      return null;
+    }
+    return listing;
+  }
+
+  private synchronized void put(String key, Listing listing) {
+    listings.put(key, listing);
+    Iterator<Listing> eldest = listings.values().iterator();
+    while (listings.size() > maxFolders && eldest.hasNext()) {
+      eldest.next();
+      eldest.remove();
+    }
+  }
+
+  private synchronized void remove(String key, Listing listing) {
+    listings.remove(key, listing);
+  }
+
+  /**
+   * The entries of a folder, by lower case path, and the cursor giving their later changes.
+   */
+  private final class Listing {
+
+    /**
+     * Applies the changes made since the last listing and returns the entries, or null if the
+     * listing cannot be brought up to date.
+     */
+    synchronized List<Metadata> update(DropboxFolderLister lister) throws Exception {
+      String next;
+      try {
+        next = lister.listChanges(cursor, entry -> {
+          apply(entry);
+          return true;
+        });
+      } catch (ListFolderContinueErrorException x) {
+        logger.info("Listing the folder again, its cursor is no longer valid: " + x.getLocalizedMessage());
+        return null;
+      }
+      if (entries.size() > maxEntries) {
+        return null;
+      }
+      cursor = next;
+      return new ArrayList<>(entries.values());
+    }
+
+    void apply(Metadata entry) {
+      String path = entry.getPathLower();
+      if (entry instanceof DeletedMetadata) {
+        entries.remove(path);
+        // a deleted folder takes its content along
+        entries.keySet().removeIf(p -> p.startsWith(path + "/"));
+      } else {
+        entries.put(path, entry);
+      }
+    }
+
+    private final Map<String, Metadata> entries = new LinkedHashMap<>();
+    private final long listedAt = System.currentTimeMillis();
+    private String cursor;
+  }
+
+  private final Map<String, Listing> listings = new LinkedHashMap<>(16, 0.75f, true);
+  private int maxFolders = DEFAULT_MAX_FOLDERS;
+  private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  private static Logger logger = Logger.getLogger(FolderListingCache.class.getName());
+}
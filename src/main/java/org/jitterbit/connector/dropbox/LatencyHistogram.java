@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies, in buckets whose bounds double from one millisecond up to about
+ * 17 minutes. A percentile is reported as the upper bound of the bucket holding it, so it is exact
+ * within a factor of two, which is enough to tell where time goes without keeping every sample.
+ */
+public class LatencyHistogram {
+
+  static final int BUCKETS = 22;
+
+  public LatencyHistogram() {
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    long millis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, nanos));
+    int bucket = millis == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+    counts.incrementAndGet(bucket);
+    count.incrementAndGet();
+    totalMillis.addAndGet(millis);
+    max.accumulateAndGet(millis, Math::max);
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public double getMeanMillis() {
+    long n = count.get();
+    return n == 0 ? 0 : (double) totalMillis.get() / n;
+  }
+
+  public long getMaxMillis() {
+    return max.get();
+  }
+
+  /**
+   * Returns a percentile of the recorded latencies, as the upper bound of the bucket holding it.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the latency in milliseconds, or zero if nothing was recorded
+   */
+  public long getPercentileMillis(double percentile) {
+    long total = 0;
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS - 1; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min((1L << i) - 1, getMaxMillis());
+      }
+    }
+    return getMaxMillis();
+  }
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalMillis = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+}
@@ -47,6 +47,14 @@ public class Messages {
   public static final String DROPBOX_CODE07_MSG = "dropbox.07";
   // "Error creating connection {0}"
 
+  public static final String DROPBOX_CODE08 = "Dropbox08";
+  public static final String DROPBOX_CODE08_MSG = "dropbox.08";
+  // "Timed out waiting for a connection for app key {0}. Pool: {1}"
+
+  public static final String DROPBOX_CODE09 = "Dropbox09";
+  public static final String DROPBOX_CODE09_MSG = "dropbox.09";
+  // "Rejected a connection for app key {0}: too many connections are waiting. Pool: {1}"
+
   /**
    * Returns a formatted message using a template from a keyed message store
    * and specified parameters.
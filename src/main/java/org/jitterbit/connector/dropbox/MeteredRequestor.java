@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.http.HttpRequestor;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * HTTP requestor that records the requests of another requestor in the {@link EndpointMetrics} of
+ * their endpoint: the latency up to the response status, the status, and the bytes of the request
+ * and response bodies as they are written and read.
+ */
+final class MeteredRequestor extends HttpRequestor {
+
+  MeteredRequestor(HttpRequestor requestor, DropboxMetrics metrics) {
+    this.requestor = requestor;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Response doGet(String url, Iterable<Header> headers) throws IOException {
+    EndpointMetrics endpoint = metrics.getEndpoint(getEndpoint(url));
+    long started = System.nanoTime();
+    int status = 0;
+    try {
+      Response response = requestor.doGet(url, headers);
+      status = response.getStatusCode();
+      return metered(response, endpoint);
+    } finally {
+      endpoint.recordRequest(System.nanoTime() - started, status);
+    }
+  }
+
+  @Override
+  public Uploader startPost(String url, Iterable<Header> headers) throws IOException {
+    return new MeteredUploader(requestor.startPost(url, headers), metrics.getEndpoint(getEndpoint(url)));
+  }
+
+  @Override
+  public Uploader startPut(String url, Iterable<Header> headers) throws IOException {
+    return new MeteredUploader(requestor.startPut(url, headers), metrics.getEndpoint(getEndpoint(url)));
+  }
+
+  /**
+   * Returns the path of the endpoint of a URL, such as <code>/2/files/download</code>.
+   */
+  static String getEndpoint(String url) {
+    int start = url.indexOf("://");
+    start = url.indexOf('/', start < 0 ? 0 : start + 3);
+    if (start < 0) {
+      return "/";
+    }
+    int end = url.indexOf('?', start);
+    return end < 0 ? url.substring(start) : url.substring(start, end);
+  }
+
+  private static Response metered(Response response, EndpointMetrics endpoint) {
+    if (response.getBody() == null) {
+      return response;
+    }
+    InputStream body = new FilterInputStream(response.getBody()) {
+      @Override
+      public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+          endpoint.addBytesReceived(1);
+        }
+        return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+          endpoint.addBytesReceived(read);
+        }
+        return read;
+      }
+    };
+    return new Response(response.getStatusCode(), body, response.getHeaders());
+  }
+
+  /**
+   * An upload counting the bytes of its body, and recorded when its response arrives.
+   */
+  private static final class MeteredUploader extends Uploader {
+
+    MeteredUploader(Uploader uploader, EndpointMetrics endpoint) {
+      this.uploader = uploader;
+      this.endpoint = endpoint;
+    }
+
+    @Override
+    public OutputStream getBody() {
+      // the body of the requestor is only asked for when it is written, as some requestors start sending it then
+      if (body == null) {
+        body = new FilterOutputStream(uploader.getBody()) {
+          @Override
+          public void write(int b) throws IOException {
+            out.write(b);
+            endpoint.addBytesSent(1);
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            endpoint.addBytesSent(len);
+          }
+        };
+      }
+      return body;
+    }
+
+    @Override
+    public void close() {
+      uploader.close();
+    }
+
+    @Override
+    public void abort() {
+      uploader.abort();
+    }
+
+    @Override
+    public Response finish() throws IOException {
+      int status = 0;
+      try {
+        Response response = uploader.finish();
+        status = response.getStatusCode();
+        return metered(response, endpoint);
+      } finally {
+        endpoint.recordRequest(System.nanoTime() - started, status);
+      }
+    }
+
+    private final Uploader uploader;
+    private final EndpointMetrics endpoint;
+    private OutputStream body;
+    private final long started = System.nanoTime();
+  }
+
+  private final HttpRequestor requestor;
+  private final DropboxMetrics metrics;
+}
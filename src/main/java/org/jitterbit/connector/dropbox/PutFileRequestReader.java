@@ -0,0 +1,276 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads a <code>putFileRequest</code> document, conforming with the
+ * <code>resources/xsds/put-file-request.xsd</code> XML Schema, without loading its content in memory.
+ * <p>
+ * The <code>path</code>, <code>mode</code>, <code>autorename</code> and <code>mute</code> elements,
+ * which come before the content in the XML Schema, are read when the reader is created. The base64
+ * <code>content</code> element is then decoded incrementally as {@link #getContent()} is read, so that
+ * an upload can start before the whole request has been received.
+ * </p>
+ */
+public class PutFileRequestReader implements AutoCloseable {
+
+  /**
+   * Creates a reader of a request and reads the elements preceding its content. The input stream
+   * is not closed by the reader.
+   *
+   * @param is the input stream of the request
+   * @throws XMLStreamException if the request is not a valid <code>putFileRequest</code> document
+   */
+  public PutFileRequestReader(InputStream is) throws XMLStreamException {
+    this(nextTag(INPUT_FACTORY.createXMLStreamReader(is)));
+  }
+
+  /**
+   * Creates a reader of a request whose start element is the current event of an XML reader, such as
+   * a request of a batch (see {@link BatchPutFileRequestReader}), and reads the elements preceding its
+   * content.
+   *
+   * @param reader the XML reader, positioned on the <code>putFileRequest</code> start element
+   * @throws XMLStreamException if the request is not a valid <code>putFileRequest</code> element
+   */
+  PutFileRequestReader(XMLStreamReader reader) throws XMLStreamException {
+    this.reader = reader;
+    reader.require(XMLStreamConstants.START_ELEMENT, null, DropboxConstants.PUT_FILE_REQ_ROOT);
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      switch (reader.getLocalName()) {
+        case "path":
+          path = reader.getElementText();
+          break;
+        case "mode":
+          mode = reader.getElementText().trim();
+          break;
+        case "autorename":
+          autorename = parseBoolean(reader.getElementText());
+          break;
+        case "mute":
+          mute = parseBoolean(reader.getElementText());
+          break;
+        case "content":
+          content = new ContentInputStream();
+          return;
+        default:
+          skipElement();
+      }
+    }
+    throw new XMLStreamException("Missing content element in " + DropboxConstants.PUT_FILE_REQ_ROOT,
+        reader.getLocation());
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public String getMode() {
+    return mode;
+  }
+
+  public boolean isAutorename() {
+    return autorename;
+  }
+
+  public boolean isMute() {
+    return mute;
+  }
+
+  /**
+   * Returns the decoded content of the request. The stream can be read only once.
+   *
+   * @return the content of the file to upload
+   */
+  public InputStream getContent() {
+    return content;
+  }
+
+  @Override
+  public void close() throws XMLStreamException {
+    reader.close();
+  }
+
+  /**
+   * Reads the rest of the request, including the content not read yet, up to its end element.
+   *
+   * @throws XMLStreamException if the request is not a valid <code>putFileRequest</code> element
+   * @throws IOException if the content is not valid base64
+   */
+  void skipToEnd() throws XMLStreamException, IOException {
+    byte[] discarded = new byte[8192];
+    int n;
+    do {
+      n = content.read(discarded, 0, discarded.length);
+    } while (n != -1);
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      skipElement();
+    }
+  }
+
+  static XMLStreamReader nextTag(XMLStreamReader reader) throws XMLStreamException {
+    reader.nextTag();
+    return reader;
+  }
+
+  private void skipElement() throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  private static boolean parseBoolean(String value) {
+    String trimmed = value.trim();
+    return "true".equals(trimmed) || "1".equals(trimmed);
+  }
+
+  /**
+   * Input stream decoding the base64 text of the current element, one text event at a time.
+   * Whitespace, comments and processing instructions within the element are ignored.
+   */
+  private final class ContentInputStream extends InputStream {
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      try {
+        while (decodedOffset == decodedLength) {
+          if (ended) {
+            return -1;
+          }
+          decode();
+        }
+      } catch (XMLStreamException x) {
+        throw new IOException(x);
+      }
+      int n = Math.min(len, decodedLength - decodedOffset);
+      System.arraycopy(decoded, decodedOffset, b, off, n);
+      decodedOffset += n;
+      return n;
+    }
+
+    private void decode() throws XMLStreamException, IOException {
+      decodedOffset = 0;
+      decodedLength = 0;
+      while (textOffset >= textLength) {
+        if (!nextText()) {
+          // flush the last, padded quantum
+          if (quantumSize == 2) {
+            decoded[decodedLength++] = (byte) (quantum >> 4);
+          } else if (quantumSize == 3) {
+            decoded[decodedLength++] = (byte) (quantum >> 10);
+            decoded[decodedLength++] = (byte) (quantum >> 2);
+          } else if (quantumSize == 1) {
+            throw new IOException("Truncated base64 content");
+          }
+          ended = true;
+          return;
+        }
+      }
+      int n = reader.getTextCharacters(textOffset, chars, 0, chars.length);
+      textOffset += n;
+      for (int i = 0; i < n; i++) {
+        char c = chars[i];
+        int value = c < DECODE.length ? DECODE[c] : -1;
+        if (value >= 0 && !padded) {
+          quantum = quantum << 6 | value;
+          if (++quantumSize == 4) {
+            decoded[decodedLength++] = (byte) (quantum >> 16);
+            decoded[decodedLength++] = (byte) (quantum >> 8);
+            decoded[decodedLength++] = (byte) quantum;
+            quantum = 0;
+            quantumSize = 0;
+          }
+        } else if (c == '=') {
+          padded = true;
+        } else if (!Character.isWhitespace(c)) {
+          throw new IOException("Illegal base64 character '" + c + "' in content");
+        }
+      }
+    }
+
+    private boolean nextText() throws XMLStreamException {
+      textOffset = 0;
+      textLength = 0;
+      switch (reader.next()) {
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          textLength = reader.getTextLength();
+          return true;
+        case XMLStreamConstants.COMMENT:
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          return true;
+        case XMLStreamConstants.END_ELEMENT:
+          return false;
+        default:
+          throw new XMLStreamException("Unexpected markup in content element", reader.getLocation());
+      }
+    }
+
+    private final char[] chars = new char[8192];
+    private final byte[] decoded = new byte[8192 / 4 * 3 + 3];
+    private int decodedOffset;
+    private int decodedLength;
+    private int textOffset;
+    private int textLength;
+    private int quantum;
+    private int quantumSize;
+    private boolean padded;
+    private boolean ended;
+  }
+
+  private final XMLStreamReader reader;
+  private String path;
+  private String mode;
+  private boolean autorename;
+  private boolean mute;
+  private InputStream content;
+
+  static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+  private static final int[] DECODE = new int[128];
+
+  static {
+    String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    Arrays.fill(DECODE, -1);
+    for (int i = 0; i < alphabet.length(); i++) {
+      DECODE[alphabet.charAt(i)] = i;
+    }
+    INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, false);
+  }
+}
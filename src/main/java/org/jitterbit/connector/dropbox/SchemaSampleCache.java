@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.files.FileMetadata;
+import org.jitterbit.connector.sdk.metadata.SchemaMetaData;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the schemas sampled from Dropbox files, by path and revision.
+ * <p>
+ * The files listed by the Get File activity are recorded with their revision, so that a schema
+ * can be looked up for the current revision of a file without requesting its metadata. A schema
+ * sampled from a revision stays valid as long as that revision is the current one; a listing
+ * reporting a new revision makes it unreachable, and it is eventually evicted. Both the files
+ * and the schemas are evicted least recently used first.
+ * </p>
+ */
+public class SchemaSampleCache {
+
+  public static final int DEFAULT_MAX_FILES = 10_000;
+  public static final int DEFAULT_MAX_SCHEMAS = 100;
+
+  public SchemaSampleCache() {
+  }
+
+  /**
+   * Records the current revision of a file.
+   *
+   * @param file the metadata of the file, as listed
+   */
+  public synchronized void recordFile(FileMetadata file) {
+    put(files, file.getPathLower(), file, maxFiles);
+  }
+
+  /**
+   * Returns the last recorded metadata of a file.
+   *
+   * @param path the path of the file, in any case
+   * @return the metadata, or null if the file has not been recorded
+   */
+  public synchronized FileMetadata getFile(String path) {
+    return files.get(path.toLowerCase());
+  }
+
+  /**
+   * Returns the schema sampled from a revision of a file.
+   *
+   * @param file the metadata of the file
+   * @param sampleSize the size of the sampled prefix in bytes; zero for the whole file
+   * @return the schema, or null if there is none
+   */
+  public synchronized SchemaMetaData get(FileMetadata file, long sampleSize) {
+    SchemaMetaData schema = schemas.get(key(file, sampleSize));
+    if (schema != null) {
+      hits.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
+    }
+    return schema;
+  }
+
+  /**
+   * Caches the schema sampled from a revision of a file, and records that revision as the
+   * current one.
+   *
+   * @param file the metadata of the file
+   * @param sampleSize the size of the sampled prefix in bytes; zero for the whole file
+   * @param schema the schema
+   */
+  public synchronized void put(FileMetadata file, long sampleSize, SchemaMetaData schema) {
+    recordFile(file);
+    put(schemas, key(file, sampleSize), schema, maxSchemas);
+  }
+
+  /**
+   * Removes every file and schema from the cache.
+   */
+  public synchronized void clear() {
+    files.clear();
+    schemas.clear();
+  }
+
+  public synchronized int size() {
+    return schemas.size();
+  }
+
+  /**
+   * Returns the number of schemas answered from the cache.
+   *
+   * @return the number of cache hits
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of schemas looked up and not found.
+   *
+   * @return the number of cache misses
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public synchronized SchemaSampleCache setMaxFiles(int maxFiles) {
+    this.maxFiles = Math.max(0, maxFiles);
+    return this;
+  }
+
+  public synchronized SchemaSampleCache setMaxSchemas(int maxSchemas) {
+    this.maxSchemas = Math.max(0, maxSchemas);
+    return this;
+  }
+
+  private static String key(FileMetadata file, long sampleSize) {
+    return file.getPathLower() + "@" + file.getRev() + "#" + sampleSize;
+  }
+
+  private static <V> void put(Map<String, V> map, String key, V value, int max) {
+    map.put(key, value);
+    Iterator<V> eldest = map.values().iterator();
+    while (map.size() > max && eldest.hasNext()) {
+      eldest.next();
+      eldest.remove();
+    }
+  }
+
+  private final Map<String, FileMetadata> files = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, SchemaMetaData> schemas = new LinkedHashMap<>(16, 0.75f, true);
+  private int maxFiles = DEFAULT_MAX_FILES;
+  private int maxSchemas = DEFAULT_MAX_SCHEMAS;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+}
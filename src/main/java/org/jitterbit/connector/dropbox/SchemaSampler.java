@@ -0,0 +1,243 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Turns the beginning of an XML or JSON document into a complete document, to be used as a
+ * sample describing the structure of the whole document.
+ * <p>
+ * The sample keeps the elements that are complete in the prefix, then closes the elements left
+ * open. An element, object or array cut by the end of the prefix is kept with its complete
+ * content, so that a large collection nested in the root still samples its first items; it is
+ * dropped when it has no complete content and a complete sibling already describes it.
+ * </p>
+ */
+public final class SchemaSampler {
+
+  private SchemaSampler() {
+  }
+
+  /**
+   * Returns a well-formed XML document made of the complete elements of a prefix.
+   *
+   * @param prefix the beginning of an XML document
+   * @return the sample, or null if the prefix does not even contain the start of the root element
+   */
+  public static String sampleXml(String prefix) {
+    StringWriter out = new StringWriter();
+    StartElement root = null;
+    boolean rootClosed = false;
+    boolean rootHasChildren = false;
+    try {
+      XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(new StringReader(prefix));
+      XMLEventWriter writer = OUTPUT_FACTORY.createXMLEventWriter(out);
+      Deque<Element> open = new ArrayDeque<>();
+      try {
+        while (reader.hasNext()) {
+          XMLEvent event = reader.nextEvent();
+          if (event.getEventType() == XMLEvent.DTD) {
+            continue;
+          }
+          if (event.isStartElement() && root == null) {
+            root = event.asStartElement();
+            writer.add(event);
+          } else if (event.isStartElement()) {
+            open.push(new Element(event.asStartElement()));
+          } else if (event.isEndElement() && open.isEmpty()) {
+            rootClosed = true;
+            writer.add(event);
+          } else if (event.isEndElement()) {
+            Element element = open.pop();
+            element.events.add(event);
+            rootHasChildren |= add(element, open, writer);
+          } else if (!open.isEmpty()) {
+            open.peek().events.add(event);
+          } else {
+            writer.add(event);
+          }
+        }
+      } catch (XMLStreamException truncated) {
+        // the prefix ends here: the open elements are closed below
+      }
+      if (root == null) {
+        return null;
+      }
+      while (!open.isEmpty()) {
+        // an open element is kept if it holds complete elements, or if it is the only sample of its parent
+        Element element = open.pop();
+        boolean parentHasChildren = open.isEmpty() ? rootHasChildren : open.peek().hasChildren;
+        if (element.hasChildren || !parentHasChildren) {
+          element.events.add(EVENT_FACTORY.createEndElement(element.start.getName(), element.start.getNamespaces()));
+          rootHasChildren |= add(element, open, writer);
+        }
+      }
+      if (!rootClosed) {
+        writer.add(EVENT_FACTORY.createEndElement(root.getName(), root.getNamespaces()));
+        writer.add(EVENT_FACTORY.createEndDocument());
+      }
+      writer.close();
+    } catch (XMLStreamException x) {
+      return null;
+    }
+    return out.toString();
+  }
+
+  /**
+   * Adds a closed element to its parent, or writes it if its parent is the root.
+   *
+   * @return true if the element was written as a child of the root
+   */
+  private static boolean add(Element element, Deque<Element> open, XMLEventWriter writer)
+      throws XMLStreamException {
+    if (open.isEmpty()) {
+      for (XMLEvent e : element.events) {
+        writer.add(e);
+      }
+      return true;
+    }
+    open.peek().events.addAll(element.events);
+    open.peek().hasChildren = true;
+    return false;
+  }
+
+  /**
+   * Returns a valid JSON document made of the complete members or items of a prefix.
+   *
+   * @param prefix the beginning of a JSON document
+   * @return the sample, or null if the prefix contains no value
+   */
+  public static String sampleJson(String prefix) {
+    JsonReader reader = new JsonReader(new StringReader(prefix));
+    reader.setLenient(true);
+    boolean[] truncated = new boolean[1];
+    JsonElement value = readJson(reader, truncated);
+    return value == null ? null : GSON.toJson(value);
+  }
+
+  /**
+   * Reads a value, or the complete part of a container value. Sets the truncation flag when
+   * the prefix ends within the value.
+   */
+  private static JsonElement readJson(JsonReader reader, boolean[] truncated) {
+    try {
+      switch (reader.peek()) {
+        case BEGIN_ARRAY:
+          JsonArray array = new JsonArray();
+          reader.beginArray();
+          while (reader.hasNext()) {
+            JsonElement item = readJson(reader, truncated);
+            if (truncated[0]) {
+              // a truncated item only samples the items when none is complete
+              if (array.size() == 0 && isSample(item)) {
+                array.add(item);
+              }
+              return array;
+            }
+            array.add(item);
+          }
+          reader.endArray();
+          return array;
+        case BEGIN_OBJECT:
+          JsonObject object = new JsonObject();
+          reader.beginObject();
+          while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonElement member = readJson(reader, truncated);
+            if (truncated[0]) {
+              if (isSample(member)) {
+                object.add(name, member);
+              }
+              return object;
+            }
+            object.add(name, member);
+          }
+          reader.endObject();
+          return object;
+        case STRING:
+          return new JsonPrimitive(reader.nextString());
+        case NUMBER:
+          return new JsonPrimitive(new BigDecimal(reader.nextString()));
+        case BOOLEAN:
+          return new JsonPrimitive(reader.nextBoolean());
+        case NULL:
+          reader.nextNull();
+          return JsonNull.INSTANCE;
+        default:
+          truncated[0] = true;
+          return null;
+      }
+    } catch (IOException | IllegalStateException | NumberFormatException x) {
+      truncated[0] = true;
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether the complete part of a truncated value tells something of its structure.
+   */
+  private static boolean isSample(JsonElement value) {
+    return value != null && (value.isJsonArray() && value.getAsJsonArray().size() > 0 ||
+        value.isJsonObject() && !value.getAsJsonObject().entrySet().isEmpty());
+  }
+
+  /**
+   * An element below the root that is not closed yet, with the events of its complete content.
+   */
+  private static final class Element {
+
+    Element(StartElement start) {
+      this.start = start;
+      events.add(start);
+    }
+
+    private final StartElement start;
+    private final List<XMLEvent> events = new ArrayList<>();
+    private boolean hasChildren;
+  }
+
+  private static final Gson GSON = new Gson();
+  private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+  private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  static {
+    INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.files.Metadata;
+
+import java.io.OutputStream;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Writes a <code>syncFolderResponse</code> document, conforming with the
+ * <code>resources/xsds/sync-folder-response.xsd</code> XML Schema, directly to an output stream.
+ * <p>
+ * Each change reported by a {@link DropboxFolderSync} is written as an <code>entry</code> element as
+ * soon as it is listed, with the <code>change</code>: <code>added</code>, <code>modified</code> or
+ * <code>deleted</code>. Whether more changes remain, and whether the whole folder was listed, are
+ * written last.
+ * </p>
+ */
+public class SyncFolderResponseWriter extends WatchFolderResponseWriter {
+
+  /**
+   * Creates a writer of a response to an output stream. The output stream is not closed by the writer.
+   *
+   * @param os the output stream
+   * @throws XMLStreamException if the XML writer cannot be created
+   */
+  public SyncFolderResponseWriter(OutputStream os) throws XMLStreamException {
+    super(os);
+  }
+
+  @Override
+  public void start() throws XMLStreamException {
+    start(DropboxConstants.SYNC_FOLDER_RSP_ROOT);
+  }
+
+  /**
+   * Writes the element of a change.
+   *
+   * @param change {@link DropboxFolderSync#ADDED}, {@link DropboxFolderSync#MODIFIED} or
+   * {@link DropboxFolderSync#DELETED}
+   * @param entry the file or folder, or the deleted entry
+   * @throws XMLStreamException if the response cannot be written
+   */
+  public void writeChange(String change, Metadata entry) throws XMLStreamException {
+    writeEntry(change, entry);
+  }
+
+  /**
+   * Writes the end of the document.
+   *
+   * @param hasMore whether more changes remain, to be reported by the next execution
+   * @param fullSync whether the whole folder was being listed
+   * @throws XMLStreamException if the response cannot be written
+   */
+  public void end(boolean hasMore, boolean fullSync) throws XMLStreamException {
+    writeElement("hasMore", String.valueOf(hasMore));
+    writeElement("fullSync", String.valueOf(fullSync));
+    end();
+  }
+}
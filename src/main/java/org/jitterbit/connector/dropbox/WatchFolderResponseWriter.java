@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.files.DeletedMetadata;
+import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.FolderMetadata;
+import com.dropbox.core.v2.files.Metadata;
+
+import java.io.OutputStream;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a <code>watchFolderResponse</code> document, conforming with the
+ * <code>resources/xsds/watch-folder-response.xsd</code> XML Schema, directly to an output stream.
+ * <p>
+ * Each changed entry of the folder is written as an <code>entry</code> element as soon as it is listed,
+ * with its <code>type</code>: <code>file</code> for a file added or modified, <code>folder</code> for a
+ * folder added, and <code>deleted</code> for a file or folder deleted. The cursor giving the following
+ * changes is written last.
+ * </p>
+ */
+public class WatchFolderResponseWriter extends FetchFileResponseWriter {
+
+  /**
+   * Creates a writer of a response to an output stream. The output stream is not closed by the writer.
+   *
+   * @param os the output stream
+   * @throws XMLStreamException if the XML writer cannot be created
+   */
+  public WatchFolderResponseWriter(OutputStream os) throws XMLStreamException {
+    super(os);
+  }
+
+  /**
+   * Writes the start of the document.
+   *
+   * @throws XMLStreamException if the response cannot be written
+   */
+  public void start() throws XMLStreamException {
+    start(DropboxConstants.WATCH_FOLDER_RSP_ROOT);
+  }
+
+  protected void start(String root) throws XMLStreamException {
+    XMLStreamWriter writer = getXMLStreamWriter();
+    writer.writeStartDocument("UTF-8", "1.0");
+    writer.setDefaultNamespace(DropboxConstants.FETCH_FILE_NAMESPACE);
+    writer.writeStartElement(DropboxConstants.FETCH_FILE_NAMESPACE, root);
+    writer.writeDefaultNamespace(DropboxConstants.FETCH_FILE_NAMESPACE);
+  }
+
+  /**
+   * Writes the element of a changed entry.
+   *
+   * @param entry the file, folder or deleted entry
+   * @throws XMLStreamException if the response cannot be written
+   */
+  public void writeEntry(Metadata entry) throws XMLStreamException {
+    writeEntry(null, entry);
+  }
+
+  /**
+   * Writes the element of an entry, with the change made to it.
+   *
+   * @param change the change, or null to leave it out
+   * @param entry the file, folder or deleted entry
+   * @throws XMLStreamException if the response cannot be written
+   */
+  protected void writeEntry(String change, Metadata entry) throws XMLStreamException {
+    XMLStreamWriter writer = getXMLStreamWriter();
+    writer.writeStartElement(DropboxConstants.FETCH_FILE_NAMESPACE, "entry");
+    if (change != null) {
+      writeElement("change", change);
+    }
+    writeElement("type", getType(entry));
+    writeElement("name", entry.getName());
+    writeElement("pathLower", entry.getPathLower());
+    writeElement("pathDisplay", entry.getPathDisplay());
+    if (entry instanceof FileMetadata) {
+      FileMetadata file = (FileMetadata) entry;
+      writeElement("id", file.getId());
+      writeElement("clientModified", toXml(file.getClientModified()));
+      writeElement("serverModified", toXml(file.getServerModified()));
+      writeElement("rev", file.getRev());
+      writeElement("size", String.valueOf(file.getSize()));
+      writeElement("contentHash", file.getContentHash());
+    } else if (entry instanceof FolderMetadata) {
+      writeElement("id", ((FolderMetadata) entry).getId());
+    }
+    writer.writeEndElement();
+    entries++;
+  }
+
+  /**
+   * Writes the cursor and the end of the document.
+   *
+   * @param cursor the cursor giving the changes made after the entries written
+   * @throws XMLStreamException if the response cannot be written
+   */
+  public void end(String cursor) throws XMLStreamException {
+    writeElement("cursor", cursor);
+    end();
+  }
+
+  protected void end() throws XMLStreamException {
+    XMLStreamWriter writer = getXMLStreamWriter();
+    writer.writeEndElement();
+    writer.writeEndDocument();
+    writer.flush();
+  }
+
+  public int getEntryCount() {
+    return entries;
+  }
+
+  /**
+   * Returns the type of an entry: <code>file</code>, <code>folder</code> or <code>deleted</code>.
+   *
+   * @param entry the entry of a listing
+   * @return the type of the entry
+   */
+  public static String getType(Metadata entry) {
+    if (entry instanceof DeletedMetadata) {
+      return "deleted";
+    }
+    return entry instanceof FolderMetadata ? "folder" : "file";
+  }
+
+  private int entries;
+}
@@ -13,13 +13,16 @@
 
 package org.jitterbit.connector.dropbox.activities;
 
+import org.jitterbit.connector.dropbox.ActivityMetrics;
 import org.jitterbit.connector.dropbox.DropboxConstants;
+import org.jitterbit.connector.dropbox.DropboxMetrics;
 import org.jitterbit.connector.sdk.DeployedEntity;
 import org.jitterbit.connector.sdk.JitterbitActivity;
 import org.jitterbit.connector.sdk.metadata.ActivityFunctionParameters;
 import org.jitterbit.connector.sdk.metadata.ActivityRequestResponseMetaData;
 
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 /**
  * Abstract class that all Dropbox connector activities extend.
@@ -57,6 +60,9 @@ public abstract class BaseDropboxActivity implements JitterbitActivity, DropboxC
   @Override
   public void onUnDeploy(DeployedEntity entity) {
     logger.info("onUnDeploy() - " + entity.toString());
+    if (!getOperationGuid().isEmpty()) {
+      DropboxMetrics.INSTANCE.removeActivity(getName(), getOperationGuid());
+    }
   }
 
   @Override
@@ -72,6 +78,44 @@ public abstract class BaseDropboxActivity implements JitterbitActivity, DropboxC
     }
     return "";
   }
+
+  /**
+   * Starts measuring an execution of this activity, in the {@link DropboxMetrics} of its operation.
+   * The execution is recorded when it is closed.
+   *
+   * @return the execution
+   */
+  protected ActivityMetrics.Execution startExecution() {
+    return DropboxMetrics.INSTANCE.getActivity(getName(), getOperationGuid()).start();
+  }
+
+  /**
+   * Returns the regular expression of a file name pattern, where <code>*</code> matches any
+   * characters and <code>?</code> exactly one. Dropbox names are matched regardless of case.
+   *
+   * @param glob the file name pattern, such as <code>*.csv</code>
+   * @return the regular expression
+   */
+  protected static Pattern toPattern(String glob) {
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for (char c : glob.toCharArray()) {
+      if (c == '*' || c == '?') {
+        if (literal.length() > 0) {
+          regex.append(Pattern.quote(literal.toString()));
+          literal.setLength(0);
+        }
+        regex.append(c == '*' ? ".*" : ".");
+      } else {
+        literal.append(c);
+      }
+    }
+    if (literal.length() > 0) {
+      regex.append(Pattern.quote(literal.toString()));
+    }
+    return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+  }
+
   protected State state = State.INIT;
 
   protected DeployedEntity entity;
@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.activities;
+
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.FileMetadata;
+import org.jitterbit.connector.dropbox.ActivityMetrics;
+import org.jitterbit.connector.dropbox.BatchFetchResponseWriter;
+import org.jitterbit.connector.dropbox.ContentBufferFactory;
+import org.jitterbit.connector.dropbox.DropboxBatchFetcher;
+import org.jitterbit.connector.dropbox.DropboxConnection;
+import org.jitterbit.connector.dropbox.DropboxConstants;
+import org.jitterbit.connector.dropbox.DropboxFolderLister;
+import org.jitterbit.connector.dropbox.DropboxUtils;
+import org.jitterbit.connector.dropbox.FolderListingCache;
+import org.jitterbit.connector.dropbox.Messages;
+import org.jitterbit.connector.dropbox.schema.BatchFetchFileRequest;
+import org.jitterbit.connector.sdk.Discoverable;
+import org.jitterbit.connector.sdk.JitterbitActivity;
+import org.jitterbit.connector.sdk.annotation.Activity;
+import org.jitterbit.connector.sdk.exceptions.ActivityExecutionException;
+import org.jitterbit.connector.sdk.metadata.ActivityFunctionParameters;
+import org.jitterbit.connector.sdk.metadata.ActivityRequestResponseMetaData;
+
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.xml.namespace.QName;
+
+/**
+ * Implements the Batch Fetch File activity of a Dropbox connector. This activity
+ * downloads the metadata and content of many files in a single execution.
+ * <p>
+ * The files are given either by the <code>path</code> elements of the <code>request</code>,
+ * conforming with the <code>resources/xsds/batch-fetch-file-request.xsd</code> XML Schema, or by
+ * a <code>folder</code> and a file name <code>pattern</code>, such as <code>*.csv</code>. The folder,
+ * pattern and recursion are configured in the Cloud Studio UI, and can be overridden by the request.
+ * </p>
+ * <p>
+ * The files are downloaded several at a time with a single connection, as configured by the
+ * <code>batchParallelism</code> parameter (see {@link DropboxBatchFetcher}). The response of this
+ * activity will be written to the response payload (see {@link ExecutionContext#getResponsePayload()}
+ * as an XML document that conforms with the <code>resources/xsds/batch-fetch-file-response.xsd</code>,
+ * with a <code>fetchFileResponse</code> element for each file written as soon as the file is
+ * downloaded (see {@link BatchFetchResponseWriter}).
+ * </p>
+ */
+@Activity(
+    name = DropboxConstants.BATCH_FETCH_FILE,
+    factory = BatchFetchFileActivity.BatchFetchFileActivityFactory.class)
+public class BatchFetchFileActivity extends BaseDropboxActivity {
+
+  BatchFetchFileActivity() {
+  }
+
+  @Override
+  public String getName() {
+    return BATCH_FETCH_FILE;
+  }
+
+  /**
+   * Fetches files from Dropbox. The files are given by the request, or by the folder and pattern
+   * properties provided as part of the <code>context</code>.
+   *
+   * @param context the context for the activity
+   * @throws ActivityExecutionException if there is an error while executing the activity
+   * @throws RuntimeException if there is an error while closing the activity
+   */
+  @Override
+  public void execute(JitterbitActivity.ExecutionContext context) throws ActivityExecutionException {
+    logger.info("Executing Activity: " + getName());
+    ActivityMetrics.Execution execution = startExecution();
+    DropboxConnection connection = null;
+    ContentBufferFactory buffers = null;
+    Map<String, String> params = context.getFunctionParameters();
+    String folder = params.get("folder");
+    try {
+      String pattern = params.get(BATCH_PATTERN);
+      boolean recursive = "true".equalsIgnoreCase(params.get(LIST_RECURSIVE));
+      boolean downloadContent = !"false".equalsIgnoreCase(params.get(BATCH_DOWNLOAD_CONTENT));
+      List<String> paths = Collections.emptyList();
+      BatchFetchFileRequest request = readRequest(context);
+      if (request != null) {
+        paths = request.getPath();
+        folder = request.getFolder() != null ? request.getFolder() : folder;
+        pattern = request.getPattern() != null ? request.getPattern() : pattern;
+        recursive = request.isRecursive() != null ? request.isRecursive() : recursive;
+        downloadContent = request.isDownloadContent() != null ? request.isDownloadContent() : downloadContent;
+      }
+      connection = (DropboxConnection) context.getConnection();
+      DbxClientV2 client = connection.getClient();
+      buffers = connection.createContentBufferFactory();
+      DropboxBatchFetcher fetcher = DropboxBatchFetcher.fromParameters(client, params)
+          .setContentBufferFactory(buffers)
+          .setFileCache(connection.getFileCache())
+          .setDownloadContent(downloadContent);
+
+      // Write each file to the response payload output stream as soon as it is fetched
+      BatchFetchResponseWriter writer = new BatchFetchResponseWriter(context.getResponsePayload().getOutputStream());
+      writer.start();
+      if (!paths.isEmpty()) {
+        logger.info("Fetching " + paths.size() + " files");
+        fetcher.fetchPaths(paths, writer::writeFile);
+      } else {
+        List<FileMetadata> files = listFiles(connection, client, folder, pattern, recursive);
+        logger.info("Fetching " + files.size() + " files of " + folder + " matching " + pattern);
+        fetcher.fetchFiles(files, writer::writeFile);
+      }
+      writer.end();
+      logger.info("Fetched " + fetcher.getFileCount() + " files (" + fetcher.getBytes() + " bytes)");
+      execution.addBytesIn(downloadContent ? fetcher.getBytes() : 0);
+    } catch (Throwable x) {
+      execution.fail(Messages.DROPBOX_CODE03);
+      logger.log(Level.SEVERE, x.getLocalizedMessage(), x);
+      throw new ActivityExecutionException(Messages.DROPBOX_CODE03,
+          Messages.getMessage(Messages.DROPBOX_CODE03_MSG, new Object[]{folder}), x);
+    } finally {
+      execution.close();
+      try {
+        context.getResponsePayload().getOutputStream().flush();
+        context.getResponsePayload().getOutputStream().close();
+        if (buffers != null) {
+          buffers.close();
+        }
+        if (connection != null) {
+          connection.close();
+        }
+      } catch (Exception x) {
+        String message = "Getting exception while closing: " + x.getLocalizedMessage();
+        logger.severe(message);
+        x.printStackTrace();
+        throw new RuntimeException(message, x);
+      }
+    }
+  }
+
+  /**
+   * Returns the request/response associated with this activity. For the <code>BATCH-FETCH</code>
+   * activity, both the request and response data structures are being returned.
+   *
+   * @param activityConfigProps the properties for the activity
+   * @return the response metadata of the activity
+   * @throws DiscoveryException if there is an error while configuring the activity
+   */
+  @Override
+  public ActivityRequestResponseMetaData
+        getActivityRequestResponseMetadata(Discoverable.DiscoverContextRequest<ActivityFunctionParameters>
+          activityConfigProps)
+      throws DiscoveryException {
+    ActivityRequestResponseMetaData activitySchemaResponse = new ActivityRequestResponseMetaData();
+    try {
+      DropboxUtils.setRequestResponseSchemas(activitySchemaResponse,
+          "xsds",
+          BATCH_FETCH_FILE_REQ_XSD,
+          BATCH_FETCH_FILE_RSP_XSD);
+      activitySchemaResponse
+          .setRequestRootElement(new QName(FETCH_FILE_NAMESPACE, BATCH_FETCH_FILE_REQ_ROOT))
+          .setResponseRootElement(new QName(FETCH_FILE_NAMESPACE, BATCH_FETCH_FILE_RSP_ROOT));
+      return activitySchemaResponse;
+    } catch (Exception x) {
+      logger.log(Level.SEVERE, x.getLocalizedMessage(), x);
+      throw new Discoverable.DiscoveryException(Messages.DROPBOX_CODE01,
+          Messages.getMessage(Messages.DROPBOX_CODE01_MSG, new Object[]{getName()}), x);
+    }
+  }
+
+  /**
+   * Returns the request, or null if the request payload is empty.
+   */
+  private static BatchFetchFileRequest readRequest(ExecutionContext context) throws Exception {
+    if (context.getRequestPayload() == null || context.getRequestPayload().getInputStream() == null) {
+      return null;
+    }
+    PushbackInputStream in = new PushbackInputStream(context.getRequestPayload().getInputStream());
+    int first = in.read();
+    if (first == -1) {
+      return null;
+    }
+    in.unread(first);
+    return DropboxUtils.unmarshall(BatchFetchFileRequest.class, in);
+  }
+
+  /**
+   * Lists the files of a folder whose name matches a pattern, through the folder listing cache.
+   */
+  private static List<FileMetadata> listFiles(DropboxConnection connection, DbxClientV2 client, String folder,
+      String pattern, boolean recursive) throws Exception {
+    if (folder == null || "/".equals(folder)) {
+      folder = "";
+    }
+    Pattern names = toPattern(pattern == null || pattern.isEmpty() ? "*" : pattern);
+    List<FileMetadata> files = new ArrayList<>();
+    DropboxFolderLister lister = new DropboxFolderLister(client).setRecursive(recursive);
+    connection.getListingCache().list(lister, folder, FolderListingCache.DEFAULT_TTL_MS, m -> {
+      if (m instanceof FileMetadata && names.matcher(m.getName()).matches()) {
+        files.add((FileMetadata) m);
+      }
+      return true;
+    });
+    return files;
+  }
+
+  /**
+   * Factory for creating the activity.
+   */
+  public static class BatchFetchFileActivityFactory implements JitterbitActivity.Factory {
+    @Override
+    public JitterbitActivity createActivity() {
+      return new BatchFetchFileActivity();
+    }
+  }
+
+  private static Logger logger = Logger.getLogger(BatchFetchFileActivity.class.getName());
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.activities;
+
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.CommitInfo;
+import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.WriteMode;
+import org.jitterbit.connector.dropbox.ActivityMetrics;
+import org.jitterbit.connector.dropbox.BatchPutFileRequestReader;
+import org.jitterbit.connector.dropbox.ContentBufferFactory;
+import org.jitterbit.connector.dropbox.DropboxBatchUploader;
+import org.jitterbit.connector.dropbox.DropboxConnection;
+import org.jitterbit.connector.dropbox.DropboxConstants;
+import org.jitterbit.connector.dropbox.DropboxUploadStatistics;
+import org.jitterbit.connector.dropbox.DropboxUtils;
+import org.jitterbit.connector.dropbox.Messages;
+import org.jitterbit.connector.dropbox.PutFileRequestReader;
+import org.jitterbit.connector.dropbox.schema.BatchPutFileResponse;
+import org.jitterbit.connector.sdk.Discoverable;
+import org.jitterbit.connector.sdk.JitterbitActivity;
+import org.jitterbit.connector.sdk.annotation.Activity;
+import org.jitterbit.connector.sdk.exceptions.ActivityExecutionException;
+import org.jitterbit.connector.sdk.metadata.ActivityFunctionParameters;
+import org.jitterbit.connector.sdk.metadata.ActivityRequestResponseMetaData;
+
+import java.io.PushbackInputStream;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.namespace.QName;
+
+/**
+ * Implements the Batch Put File activity of a Dropbox connector. This activity
+ * saves (puts) many files to Dropbox in a single execution, and commits them together.
+ * <p>
+ * The <code>request</code>, conforming with the <code>resources/xsds/batch-put-file-request.xsd</code>
+ * XML Schema, has a <code>putFileRequest</code> element for each file, with the same children as the
+ * request of the Put File activity. Paths that are not absolute are relative to the <code>folder</code>
+ * parameter configured in the Cloud Studio UI. The request is read one file at a time (see
+ * {@link BatchPutFileRequestReader}).
+ * </p>
+ * <p>
+ * The content of the files is sent to upload sessions several at a time, as configured by the
+ * <code>batchParallelism</code> parameter, and the files are then committed by a single
+ * <code>upload_session/finish_batch</code> call, which avoids the lock contention of committing them
+ * one by one (see {@link DropboxBatchUploader}). The response of this activity will be written to the
+ * response payload (see {@link ExecutionContext#getResponsePayload()} as an XML document that conforms
+ * with the <code>resources/xsds/batch-put-file-response.xsd</code>, with a <code>putFileResponse</code>
+ * element for each file, in the order of the request. Since Dropbox commits the other files of a batch
+ * when some of them fail, a file that could not be committed does not fail the activity: its
+ * <code>putFileResponse</code> has an <code>error</code> instead of the metadata of the file.
+ * </p>
+ */
+@Activity(
+    name = DropboxConstants.BATCH_PUT_FILE,
+    factory = BatchPutFileActivity.BatchPutFileActivityFactory.class)
+public class BatchPutFileActivity extends BaseDropboxActivity {
+
+  BatchPutFileActivity() {
+  }
+
+  @Override
+  public String getName() {
+    return BATCH_PUT_FILE;
+  }
+
+  /**
+   * Puts files to Dropbox. The folder property is provided as part of the <code>context</code>.
+   *
+   * @param context the context for the activity
+   * @throws ActivityExecutionException if there is an error while executing the activity
+   * @throws RuntimeException if there is an error while closing the activity
+   */
+  @Override
+  public void execute(ExecutionContext context) throws ActivityExecutionException {
+    logger.info("Executing Activity: " + getName());
+    ActivityMetrics.Execution execution = startExecution();
+    DropboxConnection connection = null;
+    ContentBufferFactory buffers = null;
+    DropboxBatchUploader uploader = null;
+    String folder = context.getFunctionParameters().get("folder");
+    String dropboxPath = folder;
+    try {
+      connection = (DropboxConnection) context.getConnection();
+      DbxClientV2 client = connection.getClient();
+      buffers = connection.createContentBufferFactory();
+      uploader = DropboxBatchUploader.fromParameters(client, context.getFunctionParameters())
+          .setContentBufferFactory(buffers);
+
+      // Read the request one file at a time, sending the content of each file to its upload session
+      PushbackInputStream in = new PushbackInputStream(context.getRequestPayload().getInputStream());
+      int first = in.read();
+      if (first != -1) {
+        in.unread(first);
+        try (BatchPutFileRequestReader req = new BatchPutFileRequestReader(in)) {
+          Date clientModified = new Date();
+          for (PutFileRequestReader file = req.next(); file != null; file = req.next()) {
+            dropboxPath = getPath(folder, file.getPath());
+            CommitInfo commit = CommitInfo.newBuilder(dropboxPath)
+                .withMute(file.isMute())
+                .withAutorename(file.isAutorename())
+                .withMode(getMode(file.getMode()))
+                .withClientModified(clientModified)
+                .build();
+            uploader.add(file.getContent(), commit);
+          }
+        }
+      }
+      dropboxPath = folder;
+      logger.info("Committing " + uploader.getFileCount() + " files (" + uploader.getBytes() + " bytes)");
+      List<DropboxBatchUploader.Result> results = uploader.finish();
+      execution.addBytesOut(uploader.getBytes());
+
+      DropboxUploadStatistics statistics = connection.getUploadStatistics();
+      BatchPutFileResponse response = new BatchPutFileResponse();
+      int failures = 0;
+      for (DropboxBatchUploader.Result result : results) {
+        BatchPutFileResponse.PutFileResponse file = new BatchPutFileResponse.PutFileResponse();
+        file.setPath(result.getPath());
+        if (result.isSuccess()) {
+          FileMetadata metadata = result.getMetadata();
+          statistics.recordUploaded(metadata.getSize());
+          file.setName(metadata.getName());
+          file.setPathLower(metadata.getPathLower());
+          file.setContentHash(metadata.getContentHash());
+          file.setId(metadata.getId());
+          file.setRev(metadata.getRev());
+          file.setSize(BigInteger.valueOf(metadata.getSize()));
+        } else {
+          failures++;
+          file.setError(result.getError());
+        }
+        response.getPutFileResponse().add(file);
+      }
+      logger.info("Committed " + (results.size() - failures) + " files after " + uploader.getPollCount() +
+          " polls and " + uploader.getRetryCount() + " retries");
+      if (failures > 0) {
+        logger.warning(failures + " files could not be committed, see the error of their putFileResponse");
+      }
+
+      // Marshall the response to the response payload output stream
+      DropboxUtils.marshall(BatchPutFileResponse.class, response, context.getResponsePayload().getOutputStream());
+    } catch (Throwable x) {
+      execution.fail(Messages.DROPBOX_CODE04);
+      logger.log(Level.SEVERE, x.getLocalizedMessage(), x);
+      throw new ActivityExecutionException(Messages.DROPBOX_CODE04,
+          Messages.getMessage(Messages.DROPBOX_CODE04_MSG, new Object[]{dropboxPath}), x);
+    } finally {
+      execution.close();
+      try {
+        context.getResponsePayload().getOutputStream().flush();
+        context.getResponsePayload().getOutputStream().close();
+        if (uploader != null) {
+          uploader.close();
+        }
+        if (buffers != null) {
+          buffers.close();
+        }
+        if (connection != null) {
+          connection.close();
+        }
+      } catch (Exception x) {
+        String message = "Getting exception while closing: " + x.getLocalizedMessage();
+        logger.severe(message);
+        x.printStackTrace();
+        throw new RuntimeException(message, x);
+      }
+    }
+  }
+
+  /**
+   * Returns the request/response associated with this activity. For the <code>BATCH-PUT</code>
+   * activity, both the request and response data structures are being returned.
+   *
+   * @param activityConfigProps the properties for the activity
+   * @return the response metadata of the activity
+   * @throws DiscoveryException if there is an error while configuring the activity
+   */
+  @Override
+  public ActivityRequestResponseMetaData
+        getActivityRequestResponseMetadata(Discoverable.DiscoverContextRequest<ActivityFunctionParameters>
+          activityConfigProps)
+      throws DiscoveryException {
+    ActivityRequestResponseMetaData activitySchemaResponse = new ActivityRequestResponseMetaData();
+    try {
+      DropboxUtils.setRequestResponseSchemas(activitySchemaResponse,
+          "xsds",
+          BATCH_PUT_FILE_REQ_XSD,
+          BATCH_PUT_FILE_RSP_XSD);
+      activitySchemaResponse
+          .setRequestRootElement(new QName(PUT_FILE_NAMESPACE, BATCH_PUT_FILE_REQ_ROOT))
+          .setResponseRootElement(new QName(PUT_FILE_NAMESPACE, BATCH_PUT_FILE_RSP_ROOT));
+      return activitySchemaResponse;
+    } catch (Exception x) {
+      logger.log(Level.SEVERE, x.getLocalizedMessage(), x);
+      throw new DiscoveryException(Messages.DROPBOX_CODE01,
+          Messages.getMessage(Messages.DROPBOX_CODE01_MSG, new Object[]{getName()}), x);
+    }
+  }
+
+  /**
+   * Returns the write mode of a file: <code>ADD</code>, <code>OVERWRITE</code> (the default), or
+   * otherwise, as for the Put File activity, an update of the given revision.
+   */
+  static WriteMode getMode(String mode) {
+    if (mode == null || mode.isEmpty() || "OVERWRITE".equals(mode)) {
+      return WriteMode.OVERWRITE;
+    }
+    return "ADD".equals(mode) ? WriteMode.ADD : WriteMode.update(mode);
+  }
+
+  /**
+   * Returns the path of a file, resolving a relative path against the folder.
+   */
+  static String getPath(String folder, String path) {
+    if (path == null || path.isEmpty()) {
+      throw new IllegalArgumentException("Missing path of a file to put in " + folder);
+    }
+    if (path.startsWith("/") || folder == null || folder.isEmpty()) {
+      return path;
+    }
+    return folder.endsWith("/") ? folder + path : folder + "/" + path;
+  }
+
+  /**
+   * Factory for creating the activity.
+   */
+  public static class BatchPutFileActivityFactory implements Factory {
+    @Override
+    public JitterbitActivity createActivity() {
+      return new BatchPutFileActivity();
+    }
+  }
+
+  private static Logger logger = Logger.getLogger(BatchPutFileActivity.class.getName());
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.activities;
+
+import com.dropbox.core.DbxDownloader;
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.DownloadZipResult;
+import org.jitterbit.connector.dropbox.ActivityMetrics;
+import org.jitterbit.connector.dropbox.DownloadFolderResponseWriter;
+import org.jitterbit.connector.dropbox.DropboxConnection;
+import org.jitterbit.connector.dropbox.DropboxConstants;
+import org.jitterbit.connector.dropbox.DropboxRetries;
+import org.jitterbit.connector.dropbox.DropboxUtils;
+import org.jitterbit.connector.dropbox.Messages;
+import org.jitterbit.connector.sdk.Discoverable;
+import org.jitterbit.connector.sdk.JitterbitActivity;
+import org.jitterbit.connector.sdk.annotation.Activity;
+import org.jitterbit.connector.sdk.exceptions.ActivityExecutionException;
+import org.jitterbit.connector.sdk.metadata.ActivityFunctionParameters;
+import org.jitterbit.connector.sdk.metadata.ActivityRequestResponseMetaData;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.xml.namespace.QName;
+
+/**
+ * Implements the Download Folder activity of a Dropbox connector. This activity
+ * downloads a whole folder with a single <code>files/download_zip</code> call, instead of
+ * listing the folder and fetching its files one by one.
+ * <p>
+ * The <code>folder</code>, <code>unzip</code> and <code>pattern</code> parameters are declared
+ * as part of the <code>adapter.json</code> file and configured in the Cloud Studio UI by the end user.
+ * </p>
+ * <p>
+ * The response of this activity will be written to the response payload (see
+ * {@link ExecutionContext#getResponsePayload()} as an XML document that conforms
+ * with the <code>resources/xsds/download-folder-response.xsd</code>. The zip archive of the folder
+ * is streamed into the document as it is downloaded or, when <code>unzip</code> is set, unpacked on
+ * the fly into a <code>file</code> element for each file whose name matches the <code>pattern</code>
+ * (see {@link DownloadFolderResponseWriter}).
+ * </p>
+ */
+@Activity(
+    name = DropboxConstants.DOWNLOAD_FOLDER,
+    factory = DownloadFolderActivity.DownloadFolderActivityFactory.class)
+public class DownloadFolderActivity extends BaseDropboxActivity {
+
+  DownloadFolderActivity() {
+  }
+
+  @Override
+  public String getName() {
+    return DOWNLOAD_FOLDER;
+  }
+
+  /**
+   * Downloads a folder from Dropbox. The folder, unzip and pattern properties are provided
+   * as part of the <code>context</code>.
+   *
+   * @param context the context for the activity
+   * @throws ActivityExecutionException if there is an error while executing the activity
+   * @throws RuntimeException if there is an error while closing the activity
+   */
+  @Override
+  public void execute(JitterbitActivity.ExecutionContext context) throws ActivityExecutionException {
+    logger.info("Executing Activity: " + getName());
+    ActivityMetrics.Execution execution = startExecution();
+    DropboxConnection connection = null;
+    Map<String, String> params = context.getFunctionParameters();
+    String folder = params.get("folder");
+    try {
+      boolean unzip = "true".equalsIgnoreCase(params.get(DOWNLOAD_UNZIP));
+      String pattern = params.get(BATCH_PATTERN);
+      logger.info("Downloading folder: " + folder);
+      connection = (DropboxConnection) context.getConnection();
+      DbxClientV2 client = connection.getClient();
+
+      // Stream the zip archive of the folder to the response payload output stream
+      DownloadFolderResponseWriter writer =
+          new DownloadFolderResponseWriter(context.getResponsePayload().getOutputStream());
+      try (DbxDownloader<DownloadZipResult> downloader = DropboxRetries.call(() -> client.files().downloadZip(folder),
+          DropboxRetries.DEFAULT_MAX_RETRIES)) {
+        if (unzip) {
+          Pattern names = pattern == null || pattern.isEmpty() ? null : toPattern(pattern);
+          writer.writeFiles(downloader.getResult().getMetadata(), downloader.getInputStream(), names);
+          logger.info("Downloaded " + writer.getFileCount() + " files (" + writer.getBytes() + " bytes)");
+        } else {
+          writer.writeZip(downloader.getResult().getMetadata(), downloader.getInputStream());
+          logger.info("Downloaded a zip archive of " + writer.getBytes() + " bytes");
+        }
+      }
+      execution.addBytesIn(writer.getBytes());
+    } catch (Throwable x) {
+      execution.fail(Messages.DROPBOX_CODE03);
+      logger.log(Level.SEVERE, x.getLocalizedMessage(), x);
+      throw new ActivityExecutionException(Messages.DROPBOX_CODE03,
+          Messages.getMessage(Messages.DROPBOX_CODE03_MSG, new Object[]{folder}), x);
+    } finally {
+      execution.close();
+      try {
+        context.getResponsePayload().getOutputStream().flush();
+        context.getResponsePayload().getOutputStream().close();
+        if (connection != null) {
+          connection.close();
+        }
+      } catch (Exception x) {
+        String message = "Getting exception while closing: " + x.getLocalizedMessage();
+        logger.severe(message);
+        x.printStackTrace();
+        throw new RuntimeException(message, x);
+      }
+    }
+  }
+
+  /**
+   * Returns the request/response associated with this activity. For the <code>DOWNLOAD-FOLDER</code>
+   * activity, only the response data structure is being returned.
+   *
+   * @param activityConfigProps the properties for the activity
+   * @return the response metadata of the activity
+   * @throws DiscoveryException if there is an error while configuring the activity
+   */
+  @Override
+  public ActivityRequestResponseMetaData
+        getActivityRequestResponseMetadata(Discoverable.DiscoverContextRequest<ActivityFunctionParameters>
+          activityConfigProps)
+      throws DiscoveryException {
+    ActivityRequestResponseMetaData activitySchemaResponse = new ActivityRequestResponseMetaData();
+    try {
+      DropboxUtils.setRequestResponseSchemas(activitySchemaResponse,
+          "xsds",
+          null,
+          DOWNLOAD_FOLDER_RSP_XSD);
+      activitySchemaResponse.setResponseRootElement(new QName(FETCH_FILE_NAMESPACE, DOWNLOAD_FOLDER_RSP_ROOT));
+      return activitySchemaResponse;
+    } catch (Exception x) {
+      logger.log(Level.SEVERE, x.getLocalizedMessage(), x);
+      throw new Discoverable.DiscoveryException(Messages.DROPBOX_CODE02,
+          Messages.getMessage(Messages.DROPBOX_CODE02_MSG, new Object[]{getName()}), x);
+    }
+  }
+
+  /**
+   * Factory for creating the activity.
+   */
+  public static class DownloadFolderActivityFactory implements JitterbitActivity.Factory {
+    @Override
+    public JitterbitActivity createActivity() {
+      return new DownloadFolderActivity();
+    }
+  }
+
+  private static Logger logger = Logger.getLogger(DownloadFolderActivity.class.getName());
+}
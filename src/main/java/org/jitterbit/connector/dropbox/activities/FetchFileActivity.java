@@ -13,24 +13,23 @@
 
 package org.jitterbit.connector.dropbox.activities;
 
-import com.dropbox.core.DbxDownloader;
 import com.dropbox.core.v2.DbxClientV2;
-import com.dropbox.core.v2.files.FileMetadata;
+import org.jitterbit.connector.dropbox.ActivityMetrics;
+import org.jitterbit.connector.dropbox.ContentBufferFactory;
 import org.jitterbit.connector.dropbox.DropboxConnection;
 import org.jitterbit.connector.dropbox.DropboxConstants;
+import org.jitterbit.connector.dropbox.DropboxFileCache;
+import org.jitterbit.connector.dropbox.DropboxSegmentedDownloader;
 import org.jitterbit.connector.dropbox.DropboxUtils;
+import org.jitterbit.connector.dropbox.FetchFileResponseWriter;
 import org.jitterbit.connector.dropbox.Messages;
-import org.jitterbit.connector.dropbox.schema.FetchFileResponse;
 import org.jitterbit.connector.sdk.Discoverable;
 import org.jitterbit.connector.sdk.JitterbitActivity;
 import org.jitterbit.connector.sdk.annotation.Activity;
 import org.jitterbit.connector.sdk.exceptions.ActivityExecutionException;
 import org.jitterbit.connector.sdk.metadata.ActivityFunctionParameters;
 import org.jitterbit.connector.sdk.metadata.ActivityRequestResponseMetaData;
-import org.jitterbit.connector.sdk.util.Utils;
 
-import java.io.ByteArrayOutputStream;
-import java.math.BigInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.namespace.QName;
@@ -55,7 +54,8 @@ import javax.xml.namespace.QName;
  * <p>
  * The response of this activity will be written to the response payload (see
  * {@link ExecutionContext#getResponsePayload()} as an XML document that conforms
- * with the <code>resources/xsds/fetch-file-response.xsd</code>.
+ * with the <code>resources/xsds/fetch-file-response.xsd</code>. The content of the
+ * file is streamed into the document as it is downloaded (see {@link FetchFileResponseWriter}).
  * </p>
  */
 @Activity(
@@ -82,7 +82,9 @@ public class FetchFileActivity extends BaseDropboxActivity {
   @Override
   public void execute(JitterbitActivity.ExecutionContext context) throws ActivityExecutionException {
     logger.info("Executing Activity: " + getName());
+    ActivityMetrics.Execution execution = startExecution();
     DropboxConnection connection = null;
+    ContentBufferFactory buffers = null;
     String path = "";
     try {
       String folder = context.getFunctionParameters().get("folder");
@@ -98,40 +100,29 @@ public class FetchFileActivity extends BaseDropboxActivity {
       logger.info("Fetching: " + path);
       connection = (DropboxConnection) context.getConnection();
       DbxClientV2 client = connection.getClient();
+      buffers = connection.createContentBufferFactory();
 
-      DbxDownloader<FileMetadata> result = client.files().download(path);
-      FetchFileResponse opRsp = new FetchFileResponse();
-
-      opRsp.setName(result.getResult().getName());
-      opRsp.setClientModified(Utils.convertDateTo(result.getResult().getClientModified()));
-      opRsp.setServerModified(Utils.convertDateTo(result.getResult().getServerModified()));
-      opRsp.setRev(result.getResult().getRev());
-      opRsp.setSize(BigInteger.valueOf(result.getResult().getSize()));
-
-      if (result.getResult().getSharingInfo() != null) {
-        FetchFileResponse.SharingInfo sharing = new FetchFileResponse.SharingInfo();
-        sharing.setReadOnly(result.getResult().getSharingInfo().getReadOnly());
-        sharing.setParentSharedFolderId(result.getResult().getSharingInfo().getParentSharedFolderId());
-        sharing.setModifiedBy(result.getResult().getSharingInfo().getModifiedBy());
-        opRsp.setSharingInfo(sharing);
-      }
-
-      // Download content
-      ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      result.download(baos);
-      opRsp.setContent(baos.toByteArray());
-
-      // Marshall the response to the response payload output stream
-      DropboxUtils.marshall(FetchFileResponse.class, opRsp, context.getResponsePayload().getOutputStream());
+      // Write the metadata and then stream the content to the response payload output stream
+      DropboxSegmentedDownloader downloader = DropboxSegmentedDownloader.fromParameters(client,
+          context.getFunctionParameters()).setContentBufferFactory(buffers);
+      DropboxFileCache.Read result = connection.getFileCache().open(client, downloader, path);
+      new FetchFileResponseWriter(context.getResponsePayload().getOutputStream())
+          .write(result.getResult(), result::download);
+      execution.addBytesIn(result.getResult().getSize());
     } catch (Throwable x) {
+      execution.fail(Messages.DROPBOX_CODE03);
       x.printStackTrace();
       logger.severe("Dropbox " + x.getLocalizedMessage());
       throw new ActivityExecutionException(Messages.DROPBOX_CODE03,
           Messages.getMessage(Messages.DROPBOX_CODE03_MSG, new Object[]{path}), x);
     } finally {
+      execution.close();
       try {
         context.getResponsePayload().getOutputStream().flush();
         context.getResponsePayload().getOutputStream().close();
+        if (buffers != null) {
+          buffers.close();
+        }
         if (connection != null) {
           connection.close();
         }
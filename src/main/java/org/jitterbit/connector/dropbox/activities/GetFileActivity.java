@@ -15,28 +15,34 @@ package org.jitterbit.connector.dropbox.activities;
 
 import com.dropbox.core.v2.DbxClientV2;
 import com.dropbox.core.v2.files.FileMetadata;
-import com.dropbox.core.v2.files.FolderMetadata;
-import com.dropbox.core.v2.files.ListFolderResult;
-import com.dropbox.core.v2.files.Metadata;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import org.jitterbit.connector.dropbox.ActivityMetrics;
+import org.jitterbit.connector.dropbox.ContentBuffer;
+import org.jitterbit.connector.dropbox.ContentBufferFactory;
 import org.jitterbit.connector.dropbox.DropboxConnection;
 import org.jitterbit.connector.dropbox.DropboxConstants;
+import org.jitterbit.connector.dropbox.DropboxFileCache;
+import org.jitterbit.connector.dropbox.DropboxFolderLister;
+import org.jitterbit.connector.dropbox.DropboxSegmentedDownloader;
+import org.jitterbit.connector.dropbox.FolderListingCache;
 import org.jitterbit.connector.dropbox.Messages;
+import org.jitterbit.connector.dropbox.SchemaSampleCache;
+import org.jitterbit.connector.dropbox.SchemaSampler;
 import org.jitterbit.connector.sdk.JitterbitActivity;
 import org.jitterbit.connector.sdk.annotation.Activity;
 import org.jitterbit.connector.sdk.exceptions.ActivityExecutionException;
 import org.jitterbit.connector.sdk.metadata.ActivityFunctionParameters;
 import org.jitterbit.connector.sdk.metadata.ActivityRequestResponseMetaData;
-import org.jitterbit.connector.sdk.metadata.DiscoverableField;
 import org.jitterbit.connector.sdk.metadata.DiscoverableObject;
 import org.jitterbit.connector.sdk.metadata.DiscoverableObjectRequest;
 import org.jitterbit.connector.sdk.metadata.SchemaMetaData;
+import org.jitterbit.connector.sdk.util.Utils;
 
-import java.io.ByteArrayOutputStream;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.namespace.QName;
@@ -81,7 +87,9 @@ public class GetFileActivity extends BaseDropboxActivity {
   @Override
   public void execute(ExecutionContext context) throws ActivityExecutionException {
     logger.info("Executing Activity: " + getName());
+    ActivityMetrics.Execution execution = startExecution();
     DropboxConnection connection = null;
+    ContentBufferFactory buffers = null;
     String folder = context.getFunctionParameters().get("folder");
     String obj = context.getFunctionParameters().get("list-object");
     try {
@@ -89,17 +97,27 @@ public class GetFileActivity extends BaseDropboxActivity {
       JsonElement json = new JsonParser().parse(obj);
       String filename = json.getAsJsonObject().getAsJsonPrimitive("name").getAsString();
       DbxClientV2 client = connection.getClient();
+      buffers = connection.createContentBufferFactory();
       String path = getPath(folder, filename);
       logger.info("Downloading " + path);
-      client.files().download(path).download(context.getResponsePayload().getOutputStream());
+      DropboxSegmentedDownloader downloader = DropboxSegmentedDownloader.fromParameters(client,
+          context.getFunctionParameters()).setContentBufferFactory(buffers);
+      DropboxFileCache.Read result = connection.getFileCache().open(client, downloader, path);
+      result.download(context.getResponsePayload().getOutputStream());
+      execution.addBytesIn(result.getResult().getSize());
     } catch (Throwable t) {
+      execution.fail(Messages.DROPBOX_CODE06);
       logger.log(Level.SEVERE, t.getLocalizedMessage(), t);
       throw new ActivityExecutionException(Messages.DROPBOX_CODE06,
         Messages.getMessage(Messages.DROPBOX_CODE06_MSG, new Object[]{getName(), t.getLocalizedMessage()}), t);
     } finally {
+      execution.close();
       try {
         context.getResponsePayload().getOutputStream().flush();
         context.getResponsePayload().getOutputStream().close();
+        if (buffers != null) {
+          buffers.close();
+        }
         if (connection != null) {
           connection.close();
         }
@@ -115,6 +133,13 @@ public class GetFileActivity extends BaseDropboxActivity {
   /**
    * Returns the request/response associated with this activity. For the <code>GET</code>
    * activity, only the response data structure is being returned.
+   * <p>
+   * The schema is sampled from the beginning of the file, of the size given by the
+   * <code>schemaSampleSizeKB</code> property: the complete elements of that prefix are kept and
+   * the root element is closed, see {@link SchemaSampler}. Schemas are cached by path and revision
+   * in the {@link SchemaSampleCache} of the credentials; selecting a file again while the folder
+   * listing reports the same revision does not download it.
+   * </p>
    *
    * @param activityConfigProps the properties for the activity
    * @return the response metadata of the activity
@@ -124,23 +149,44 @@ public class GetFileActivity extends BaseDropboxActivity {
   public ActivityRequestResponseMetaData getActivityRequestResponseMetadata(
       DiscoverContextRequest<ActivityFunctionParameters> activityConfigProps)
       throws DiscoveryException {
-    String folder = activityConfigProps.getRequest().getProperties().get("folder");
+    Map<String, String> props = activityConfigProps.getRequest().getProperties();
+    String folder = props.get("folder");
     String filename = activityConfigProps.getRequest().getObjectName();
+    long sampleSize = Utils.valueOfProp(DropboxConstants.SCHEMA_SAMPLE_SIZE, props, DEFAULT_SCHEMA_SAMPLE_KB) * 1024L;
     ActivityRequestResponseMetaData activitySchemaResponse = new ActivityRequestResponseMetaData();
     DropboxConnection connection = (DropboxConnection) activityConfigProps.getConnection();
-    try {
+    try (ContentBufferFactory buffers = connection.createContentBufferFactory()) {
       DbxClientV2 client = connection.getClient();
-      ByteArrayOutputStream os = new ByteArrayOutputStream();
       String path = getPath(folder, filename);
-      client.files().download(path).download(os);
-      String schemaContent = new String(os.toByteArray());
-      SchemaMetaData md = new SchemaMetaData()
-          .setContent(schemaContent)
-          .setName(filename + ".xsd")
-          .setSchemaContentType(
-              filename.endsWith(".json") || filename.endsWith(".JSON") ? SchemaMetaData.SchemaContentType.JSON :
-                SchemaMetaData.SchemaContentType.XML
-          );
+      boolean json = filename.endsWith(".json") || filename.endsWith(".JSON");
+      SchemaSampleCache schemas = connection.getSchemaCache();
+      FileMetadata file = schemas.getFile(path);
+      SchemaMetaData md = file != null ? schemas.get(file, Math.max(0, sampleSize)) : null;
+      if (md != null) {
+        logger.fine("Using the cached schema of " + path + " at revision " + file.getRev());
+      } else {
+        String schemaContent = null;
+        if (sampleSize > 0 && (file == null || file.getSize() > sampleSize)) {
+          ContentBuffer prefix = buffers.newBuffer(sampleSize);
+          file = client.files().downloadBuilder(path).range(0, sampleSize).start().download(prefix);
+          schemaContent = prefix.toString(Charset.defaultCharset());
+          if (file.getSize() > prefix.size()) {
+            schemaContent = json ? SchemaSampler.sampleJson(schemaContent) : SchemaSampler.sampleXml(schemaContent);
+            logger.fine("Sampled the schema of " + path + " from its first " + prefix.size() + " bytes");
+          }
+        }
+        if (schemaContent == null) {
+          // the file is small enough, or its prefix holds no complete element
+          ContentBuffer content = buffers.newBuffer();
+          file = client.files().download(path).download(content);
+          schemaContent = content.toString(Charset.defaultCharset());
+        }
+        md = new SchemaMetaData()
+            .setContent(schemaContent)
+            .setName(filename + ".xsd")
+            .setSchemaContentType(json ? SchemaMetaData.SchemaContentType.JSON : SchemaMetaData.SchemaContentType.XML);
+        schemas.put(file, Math.max(0, sampleSize), md);
+      }
       activitySchemaResponse.setResponseRootElement(new QName(""));
       activitySchemaResponse.setResponseSchema(md);
       return activitySchemaResponse;
@@ -155,34 +201,56 @@ public class GetFileActivity extends BaseDropboxActivity {
     }
   }
 
+  /**
+   * Returns the JSON and XML files of the configured folder, and of its subfolders when the
+   * listing is recursive. The folder is listed page by page, and each page is filtered as soon
+   * as it arrives. Files in subfolders are named by their path relative to the folder. Folders
+   * listed recently are answered from the {@link FolderListingCache} of the credentials, which
+   * only requests the changes made since. The revisions of the files found are recorded in the
+   * {@link SchemaSampleCache}, so that their schemas can be reused while they are unchanged.
+   *
+   * @param objectListRequest the request, whose properties give the folder and the listing settings
+   * @return the files found, up to the configured maximum
+   * @throws DiscoveryException if the folder cannot be listed
+   */
   @Override
   public List<DiscoverableObject> getObjectList(DiscoverContextRequest<DiscoverableObjectRequest> objectListRequest)
       throws DiscoveryException {
     // return the list of files from the folder
     logger.info("Executing Activity: " + getName());
-    List<DiscoverableObject> res = new LinkedList<>();
+    List<DiscoverableObject> res = new ArrayList<>();
     String folder = "";
     DropboxConnection connection = null;
     try {
-      Iterator<DiscoverableField.Properties> it = objectListRequest.getRequest().getSelectionPath().iterator();
-      folder = objectListRequest.getRequest().getProperties().get("folder");
+      Map<String, String> props = objectListRequest.getRequest().getProperties();
+      folder = props.get("folder");
       if (folder == null) {
         folder = "";
       }
+      String prefix = folder.endsWith("/") ? folder.toLowerCase() : folder.toLowerCase() + "/";
+      int maxFiles = Utils.valueOfProp(DropboxConstants.LIST_MAX_FILES, props, 0);
+      long ttlMillis = Utils.valueOfProp(DropboxConstants.LIST_CACHE_TTL, props,
+          (int) (FolderListingCache.DEFAULT_TTL_MS / 1000)) * 1000L;
       connection = (DropboxConnection) objectListRequest.getConnection();
-      ListFolderResult result = connection.getClient().files().listFolder(folder);
-      for (Metadata m: result.getEntries()) {
-        if (m instanceof FileMetadata && m.getName().endsWith(".xml") ||
-          m.getName().endsWith("json") ||
-          m.getName().endsWith(".XML") ||
-          m.getName().endsWith(".JSON")) {
+      DropboxFolderLister lister = DropboxFolderLister.fromProperties(connection.getClient(), props);
+      SchemaSampleCache schemas = connection.getSchemaCache();
+      connection.getListingCache().list(lister, folder, ttlMillis, m -> {
+        if (m instanceof FileMetadata && isSchemaFile(m.getName())) {
+          String name = m.getName();
+          String pathLower = m.getPathLower();
+          if (pathLower != null && pathLower.startsWith(prefix) && m.getPathDisplay() != null) {
+            // the relative path of files in subfolders, which is the file name for files of the folder
+            name = m.getPathDisplay().substring(prefix.length());
+          }
+          schemas.recordFile((FileMetadata) m);
           res.add(new DiscoverableObject()
-            .setObjectName(m.getName())
+            .setObjectName(name)
             .setObjectDesc(((FileMetadata) m).getServerModified().toString())
             .setObjectType(m.getName().endsWith(".json") || m.getName().endsWith(".JSON") ? "JSON" : "XML")
             .setParentObjectType(m.getParentSharedFolderId()));
         }
-      }
+        return maxFiles <= 0 || res.size() < maxFiles;
+      });
       return res;
     } catch (Throwable t) {
       t.printStackTrace();
@@ -196,6 +264,10 @@ public class GetFileActivity extends BaseDropboxActivity {
     }
   }
 
+  private static boolean isSchemaFile(String name) {
+    return name.endsWith(".xml") || name.endsWith("json") || name.endsWith(".XML") || name.endsWith(".JSON");
+  }
+
   private String getPath(String folder, String filename) {
     return "".equals(folder) ? "/" + filename :
         (folder.endsWith("/") ? folder + filename : folder + "/" + filename);
@@ -211,5 +283,7 @@ public class GetFileActivity extends BaseDropboxActivity {
       }
   }
 
+  private static final int DEFAULT_SCHEMA_SAMPLE_KB = 256;
+
   private static Logger logger = Logger.getLogger(GetFileActivity.class.getName());
 }
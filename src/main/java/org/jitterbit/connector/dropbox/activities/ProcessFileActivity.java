@@ -13,11 +13,13 @@
 
 package org.jitterbit.connector.dropbox.activities;
 
-import com.dropbox.core.DbxDownloader;
 import com.dropbox.core.v2.DbxClientV2;
-import com.dropbox.core.v2.files.FileMetadata;
+import org.jitterbit.connector.dropbox.ActivityMetrics;
+import org.jitterbit.connector.dropbox.ContentBufferFactory;
 import org.jitterbit.connector.dropbox.DropboxConnection;
 import org.jitterbit.connector.dropbox.DropboxConstants;
+import org.jitterbit.connector.dropbox.DropboxFileCache;
+import org.jitterbit.connector.dropbox.DropboxSegmentedDownloader;
 import org.jitterbit.connector.dropbox.DropboxUtils;
 import org.jitterbit.connector.dropbox.Messages;
 import org.jitterbit.connector.sdk.JitterbitActivity;
@@ -27,7 +29,6 @@ import org.jitterbit.connector.sdk.metadata.ActivityFunctionParameters;
 import org.jitterbit.connector.sdk.metadata.ActivityRequestResponseMetaData;
 import org.jitterbit.connector.sdk.metadata.DiscoverableObject;
 import org.jitterbit.connector.sdk.metadata.DiscoverableObjectRequest;
-import org.jitterbit.connector.sdk.metadata.SchemaMetaData;
 import org.jitterbit.connector.sdk.metadata.SchemaMetaData.SchemaContentType;
 
 
@@ -35,8 +36,6 @@ import java.util.List;
 import java.util.logging.Logger;
 import javax.xml.namespace.QName;
 
-import static org.jitterbit.connector.dropbox.DropboxUtils.loadResource;
-
 /**
  * Implements the Process File activity of a Dropbox connector. This activity
  * lets a user select from different XML schemas associated with the connector at
@@ -83,10 +82,11 @@ public class ProcessFileActivity extends BaseDropboxActivity {
   @Override
   public void execute(JitterbitActivity.ExecutionContext context) throws ActivityExecutionException {
     logger.info("Executing Activity: " + getName());
+    ActivityMetrics.Execution execution = startExecution();
     DropboxConnection connection = null;
+    ContentBufferFactory buffers = null;
     String folder = "";
     String path = "";
-    DbxDownloader<FileMetadata> result;
     try {
       String fileName = context.getFunctionParameters().get("fileName");
       folder = context.getFunctionParameters().get("folder");
@@ -101,17 +101,26 @@ public class ProcessFileActivity extends BaseDropboxActivity {
 
       connection = (DropboxConnection) context.getConnection();
       DbxClientV2 client = connection.getClient();
-      result = client.files().download(path);
+      buffers = connection.createContentBufferFactory();
+      DropboxSegmentedDownloader downloader = DropboxSegmentedDownloader.fromParameters(client,
+          context.getFunctionParameters()).setContentBufferFactory(buffers);
+      DropboxFileCache.Read result = connection.getFileCache().open(client, downloader, path);
       result.download(context.getResponsePayload().getOutputStream());
+      execution.addBytesIn(result.getResult().getSize());
     } catch (Throwable x) {
+      execution.fail(Messages.DROPBOX_CODE03);
       x.printStackTrace();
       logger.severe("Dropbox " + x.getLocalizedMessage());
       throw new ActivityExecutionException(Messages.DROPBOX_CODE03,
         Messages.getMessage(Messages.DROPBOX_CODE03_MSG, new Object[]{folder}), x);
     } finally {
+      execution.close();
       try {
         context.getResponsePayload().getOutputStream().flush();
         context.getResponsePayload().getOutputStream().close();
+        if (buffers != null) {
+          buffers.close();
+        }
         if (connection != null) {
           connection.close();
         }
@@ -178,27 +187,14 @@ public class ProcessFileActivity extends BaseDropboxActivity {
     try {
       activitySchemaResponse.setResponseRootElement(new QName("root2"));
       activitySchemaResponse.setResponseSchema(
-          new SchemaMetaData()
-              .setName("myschema1.xsd")
-              .setSchemaContentType(SchemaContentType.XSD)
-              .setContent(loadResource(DropboxUtils.class.getClassLoader(),
-                  "support-xsds/myschema1.xsd")));
+          DropboxUtils.getSchema("myschema1.xsd", SchemaContentType.XSD, "support-xsds/myschema1.xsd"));
       activitySchemaResponse.getResponseSchemaReferences().add(
-          new SchemaMetaData()
-              .setName("myschema2.xsd")
-              .setSchemaContentType(SchemaContentType.XSD)
-              .setContent(loadResource(DropboxUtils.class.getClassLoader(), "support-xsds/myschema2.xsd")));
+          DropboxUtils.getSchema("myschema2.xsd", SchemaContentType.XSD, "support-xsds/myschema2.xsd"));
       activitySchemaResponse.getResponseSchemaReferences().add(
-          new SchemaMetaData()
-              .setName("myschema3.xsd")
-              .setSchemaContentType(SchemaContentType.XSD)
-              .setContent(loadResource(DropboxUtils.class.getClassLoader(), "support-xsds/myschema3.xsd")));
+          DropboxUtils.getSchema("myschema3.xsd", SchemaContentType.XSD, "support-xsds/myschema3.xsd"));
 
       activitySchemaResponse.getResponseSchemaReferences().add(
-          new SchemaMetaData()
-              .setName("myschema4.xsd")
-              .setSchemaContentType(SchemaContentType.XSD)
-              .setContent(loadResource(DropboxUtils.class.getClassLoader(), "support-xsds/myschema4.xsd")));
+          DropboxUtils.getSchema("myschema4.xsd", SchemaContentType.XSD, "support-xsds/myschema4.xsd"));
     } catch (Exception x) {
       Logger.getLogger(ProcessFileActivity.class.getName()).severe(x.getLocalizedMessage());
     }
@@ -210,16 +206,9 @@ public class ProcessFileActivity extends BaseDropboxActivity {
     try {
       activitySchemaResponse.setResponseRootElement(new QName("root"));
       activitySchemaResponse.setResponseSchema(
-          new SchemaMetaData()
-              .setName("m1.xsd")
-              .setSchemaContentType(SchemaContentType.XSD)
-              .setContent(loadResource(DropboxUtils.class.getClassLoader(),
-                  "support-xsds/m1.xsd")));
+          DropboxUtils.getSchema("m1.xsd", SchemaContentType.XSD, "support-xsds/m1.xsd"));
       activitySchemaResponse.getResponseSchemaReferences().add(
-          new SchemaMetaData()
-          .setName("m2.xsd")
-          .setSchemaContentType(SchemaContentType.XSD)
-          .setContent(loadResource(DropboxUtils.class.getClassLoader(), "support-xsds/m2.xsd")));
+          DropboxUtils.getSchema("m2.xsd", SchemaContentType.XSD, "support-xsds/m2.xsd"));
 
     } catch (Exception x) {
       logger.severe(x.getLocalizedMessage());
@@ -13,15 +13,26 @@
 
 package org.jitterbit.connector.dropbox.activities;
 
+import com.dropbox.core.DbxException;
 import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.CommitInfo;
 import com.dropbox.core.v2.files.FileMetadata;
+import com.dropbox.core.v2.files.GetMetadataErrorException;
 import com.dropbox.core.v2.files.ListFolderResult;
+import com.dropbox.core.v2.files.Metadata;
 import com.dropbox.core.v2.files.WriteMode;
+import org.jitterbit.connector.dropbox.ActivityMetrics;
+import org.jitterbit.connector.dropbox.ContentBuffer;
+import org.jitterbit.connector.dropbox.ContentBufferFactory;
+import org.jitterbit.connector.dropbox.DropboxChunkedUploader;
 import org.jitterbit.connector.dropbox.DropboxConnection;
 import org.jitterbit.connector.dropbox.DropboxConstants;
+import org.jitterbit.connector.dropbox.DropboxContentHasher;
+import org.jitterbit.connector.dropbox.DropboxRetries;
+import org.jitterbit.connector.dropbox.DropboxUploadStatistics;
 import org.jitterbit.connector.dropbox.DropboxUtils;
 import org.jitterbit.connector.dropbox.Messages;
-import org.jitterbit.connector.dropbox.schema.PutFileRequest;
+import org.jitterbit.connector.dropbox.PutFileRequestReader;
 import org.jitterbit.connector.dropbox.schema.PutFileResponse;
 import org.jitterbit.connector.sdk.Discoverable;
 import org.jitterbit.connector.sdk.JitterbitActivity;
@@ -30,8 +41,9 @@ import org.jitterbit.connector.sdk.exceptions.ActivityExecutionException;
 import org.jitterbit.connector.sdk.metadata.ActivityFunctionParameters;
 import org.jitterbit.connector.sdk.metadata.ActivityRequestResponseMetaData;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.util.Date;
 import java.util.logging.Level;
@@ -55,7 +67,12 @@ import javax.xml.namespace.QName;
  * The <code>request</code>, conforming with the
  * <code>resources/xsds/put-file-request.xsd</code> XML Schema, represents the input
  * associated to this activity. An end-user will have the option to map data
- * (including the content) to it that needs to be saved.
+ * (including the content) to it that needs to be saved. The content is decoded
+ * while it is uploaded (see {@link PutFileRequestReader}); files larger than the
+ * <code>uploadSessionThresholdMB</code> parameter are uploaded in chunks through an
+ * upload session (see {@link DropboxChunkedUploader}). When the <code>skipUnchanged</code>
+ * parameter is set, the upload is skipped if the file at the path already has the same Dropbox
+ * content hash (see {@link DropboxContentHasher}).
  * </p>
  * <p>
  * The response of this activity will be written to the response payload (see
@@ -87,7 +104,9 @@ public class PutFileActivity extends BaseDropboxActivity {
   @Override
   public void execute(ExecutionContext context) throws ActivityExecutionException {
     logger.info("Executing Activity: " +  getName());
+    ActivityMetrics.Execution execution = startExecution();
     DropboxConnection connection = null;
+    ContentBufferFactory buffers = null;
     String dropboxPath = null;
     String filename = null;
     String folder = "/";
@@ -99,19 +118,46 @@ public class PutFileActivity extends BaseDropboxActivity {
       logger.info("Uploading to filename: " + filename);
       connection = (DropboxConnection) context.getConnection();
       DbxClientV2 client = connection.getClient();
+      buffers = connection.createContentBufferFactory();
 
-      PutFileRequest req = DropboxUtils.unmarshall(PutFileRequest.class, context.getRequestPayload().getInputStream());
-      dropboxPath = getPath(filename, folder, req);
-      logger.info("Uploading file: " + dropboxPath);
-      // Upload file
-      FileMetadata metadata = client.files().uploadBuilder(dropboxPath)
-          .withMute(req.isMute())
-          .withAutorename(req.isAutorename())
-          .withMode(req.getMode() != null && req.getMode().length() > 0 ?
-              WriteMode.update(req.getMode()) : WriteMode.OVERWRITE)
-          .withClientModified(new Date())
-          .start()
-          .uploadAndFinish(new ByteArrayInputStream(req.getContent()));
+      // Read the request up to its content, which is decoded while it is uploaded
+      FileMetadata metadata = null;
+      try (PutFileRequestReader req = new PutFileRequestReader(context.getRequestPayload().getInputStream())) {
+        dropboxPath = getPath(filename, folder, req.getPath());
+        logger.info("Uploading file: " + dropboxPath);
+        // Upload file, through an upload session if it is larger than the session threshold
+        CommitInfo commit = CommitInfo.newBuilder(dropboxPath)
+            .withMute(req.isMute())
+            .withAutorename(req.isAutorename())
+            .withMode(req.getMode() != null && req.getMode().length() > 0 ?
+                WriteMode.update(req.getMode()) : WriteMode.OVERWRITE)
+            .withClientModified(new Date())
+            .build();
+        DropboxUploadStatistics statistics = connection.getUploadStatistics();
+        InputStream content = req.getContent();
+        if ("true".equalsIgnoreCase(context.getFunctionParameters().get(DropboxConstants.UPLOAD_SKIP_UNCHANGED))) {
+          // Hold the content to compare its hash with the one of the existing file before uploading it
+          ContentBuffer buffer = buffers.newBuffer();
+          buffer.writeFrom(content, Long.MAX_VALUE);
+          DropboxContentHasher hasher = new DropboxContentHasher();
+          buffer.writeTo(hasher);
+          metadata = getUnchanged(client, commit, hasher.getHash());
+          if (metadata != null) {
+            statistics.recordSkipped(buffer.size());
+            logger.info("Skipped uploading " + buffer.size() + " bytes to " + dropboxPath +
+                ", the content is unchanged (" + statistics + ")");
+            response.setSkipped(true);
+          }
+          content = buffer.getInputStream(0);
+        }
+        if (metadata == null) {
+          metadata = DropboxChunkedUploader.fromParameters(client, context.getFunctionParameters())
+              .setContentBufferFactory(buffers)
+              .upload(content, commit);
+          statistics.recordUploaded(metadata.getSize());
+          execution.addBytesOut(metadata.getSize());
+        }
+      }
 
       response.setName(metadata.getName());
       response.setPathLower(metadata.getPathLower());
@@ -123,13 +169,18 @@ public class PutFileActivity extends BaseDropboxActivity {
       // Marshall the response to the response payload output stream
       DropboxUtils.marshall(PutFileResponse.class, response, context.getResponsePayload().getOutputStream());
     } catch (Throwable x) {
+      execution.fail(Messages.DROPBOX_CODE04);
       logger.log(Level.SEVERE, x.getLocalizedMessage(), x);
       throw new ActivityExecutionException(Messages.DROPBOX_CODE04,
           Messages.getMessage(Messages.DROPBOX_CODE04_MSG, new Object[]{dropboxPath}), x);
     } finally {
+      execution.close();
       try {
         context.getResponsePayload().getOutputStream().flush();
         context.getResponsePayload().getOutputStream().close();
+        if (buffers != null) {
+          buffers.close();
+        }
         if (connection != null) {
           connection.close();
         }
@@ -172,9 +223,35 @@ public class PutFileActivity extends BaseDropboxActivity {
     }
   }
 
-  private String getPath(String filename, String folder, PutFileRequest req) {
-    if (req.getPath() != null && req.getPath().length() > 0) {
-      return req.getPath();
+  /**
+   * Returns the file at the path of a commit if it has the given content hash, and if the write mode
+   * would accept its replacement: an update of another revision is uploaded to report the conflict.
+   */
+  private static FileMetadata getUnchanged(DbxClientV2 client, CommitInfo commit, String contentHash)
+      throws DbxException, IOException {
+    Metadata existing;
+    try {
+      existing = DropboxRetries.call(() -> client.files().getMetadata(commit.getPath()),
+          DropboxRetries.DEFAULT_MAX_RETRIES);
+    } catch (GetMetadataErrorException x) {
+      if (x.errorValue.isPath() && x.errorValue.getPathValue().isNotFound()) {
+        return null;
+      }
+      throw x;
+    }
+    if (!(existing instanceof FileMetadata) || !contentHash.equals(((FileMetadata) existing).getContentHash())) {
+      return null;
+    }
+    WriteMode mode = commit.getMode();
+    if (mode.isUpdate() && !mode.getUpdateValue().equals(((FileMetadata) existing).getRev())) {
+      return null;
+    }
+    return (FileMetadata) existing;
+  }
+
+  private String getPath(String filename, String folder, String path) {
+    if (path != null && path.length() > 0) {
+      return path;
     }
     if (folder.length() > 0) {
       if (folder.endsWith("/")) {
@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.activities;
+
+import org.jitterbit.connector.dropbox.ActivityMetrics;
+import org.jitterbit.connector.dropbox.DropboxConnection;
+import org.jitterbit.connector.dropbox.DropboxConstants;
+import org.jitterbit.connector.dropbox.DropboxFolderLister;
+import org.jitterbit.connector.dropbox.DropboxFolderSync;
+import org.jitterbit.connector.dropbox.DropboxSyncState;
+import org.jitterbit.connector.dropbox.DropboxUtils;
+import org.jitterbit.connector.dropbox.Messages;
+import org.jitterbit.connector.dropbox.SyncFolderResponseWriter;
+import org.jitterbit.connector.dropbox.schema.SyncFolderRequest;
+import org.jitterbit.connector.sdk.Discoverable;
+import org.jitterbit.connector.sdk.JitterbitActivity;
+import org.jitterbit.connector.sdk.annotation.Activity;
+import org.jitterbit.connector.sdk.exceptions.ActivityExecutionException;
+import org.jitterbit.connector.sdk.metadata.ActivityFunctionParameters;
+import org.jitterbit.connector.sdk.metadata.ActivityRequestResponseMetaData;
+import org.jitterbit.connector.sdk.util.Utils;
+
+import java.io.PushbackInputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.namespace.QName;
+
+/**
+ * Implements the Sync Folder activity of a Dropbox connector. Each execution of this activity lists
+ * the files and folders added, modified or deleted since the previous execution of its operation.
+ * <p>
+ * The <code>folder</code>, file name <code>pattern</code>, recursion and <code>maxEntries</code> are
+ * configured in the Cloud Studio UI. The state of the synchronization, with the Dropbox cursor, is kept
+ * on the local disk of the agent between executions, under the <code>stateDirectory</code>, by operation
+ * GUID (see {@link DropboxSyncState}). The optional <code>request</code>, conforming with the
+ * <code>resources/xsds/sync-folder-request.xsd</code> XML Schema, can <code>restart</code> the
+ * synchronization, reporting the whole folder again, and override <code>maxEntries</code>.
+ * </p>
+ * <p>
+ * The first execution reports the whole folder as added; a large folder is reported over several
+ * executions of at most about <code>maxEntries</code> entries each (see {@link DropboxFolderSync}). The
+ * response of this activity will be written to the response payload (see
+ * {@link ExecutionContext#getResponsePayload()}) as an XML document that conforms with the
+ * <code>resources/xsds/sync-folder-response.xsd</code>, with an <code>entry</code> element for each
+ * change (see {@link SyncFolderResponseWriter}). The state moves on only once the response is written:
+ * an execution that fails reports its changes again in the next one.
+ * </p>
+ */
+@Activity(
+    name = DropboxConstants.SYNC_FOLDER,
+    factory = SyncFolderActivity.SyncFolderActivityFactory.class)
+public class SyncFolderActivity extends BaseDropboxActivity {
+
+  SyncFolderActivity() {
+  }
+
+  @Override
+  public String getName() {
+    return SYNC_FOLDER;
+  }
+
+  /**
+   * Lists the changes made to the folder provided as part of the <code>context</code> since the previous
+   * execution, and writes them to the response payload.
+   *
+   * @param context the context for the activity
+   * @throws ActivityExecutionException if there is an error while executing the activity
+   * @throws RuntimeException if there is an error while closing the activity
+   */
+  @Override
+  public void execute(JitterbitActivity.ExecutionContext context) throws ActivityExecutionException {
+    logger.info("Executing Activity: " + getName());
+    ActivityMetrics.Execution execution = startExecution();
+    DropboxConnection connection = null;
+    DropboxSyncState state = null;
+    Map<String, String> params = context.getFunctionParameters();
+    String folder = params.get("folder");
+    try {
+      String pattern = params.get(BATCH_PATTERN);
+      int maxEntries = Utils.valueOfProp(SYNC_MAX_ENTRIES, params, DropboxFolderSync.DEFAULT_MAX_ENTRIES);
+      boolean restart = false;
+      SyncFolderRequest request = readRequest(context);
+      if (request != null) {
+        restart = Boolean.TRUE.equals(request.isRestart());
+        maxEntries = request.getMaxEntries() != null ? request.getMaxEntries() : maxEntries;
+      }
+      if (folder == null || "/".equals(folder)) {
+        folder = "";
+      }
+      String key = getOperationGuid();
+      if (key.isEmpty()) {
+        logger.warning("The operation of the activity is not known, its synchronization state is shared");
+        key = getName();
+      }
+      state = DropboxSyncState.open(getStateDirectory(params), key);
+      if (restart) {
+        logger.info("Restarting the synchronization of " + folder);
+        state.delete();
+      }
+
+      connection = (DropboxConnection) context.getConnection();
+      DropboxFolderSync sync = new DropboxFolderSync(DropboxFolderLister.fromProperties(connection.getClient(), params),
+          state)
+          .setAccount(connection.getAccount())
+          .setPattern(pattern == null || pattern.isEmpty() ? null : toPattern(pattern))
+          .setMaxEntries(maxEntries);
+
+      // Write each change to the response payload output stream as soon as it is listed
+      SyncFolderResponseWriter writer = new SyncFolderResponseWriter(context.getResponsePayload().getOutputStream());
+      writer.start();
+      boolean hasMore = sync.sync(folder, writer::writeChange);
+      writer.end(hasMore, sync.isFullListing());
+      context.getResponsePayload().getOutputStream().flush();
+      sync.commit();
+      logger.info("Listed " + sync.getChangeCount() + " changes of " + folder + (hasMore ? ", more remain" : ""));
+    } catch (Throwable x) {
+      execution.fail(Messages.DROPBOX_CODE05);
+      logger.log(Level.SEVERE, x.getLocalizedMessage(), x);
+      throw new ActivityExecutionException(Messages.DROPBOX_CODE05,
+          Messages.getMessage(Messages.DROPBOX_CODE05_MSG, new Object[]{folder, x.getLocalizedMessage()}), x);
+    } finally {
+      execution.close();
+      try {
+        if (state != null) {
+          state.close();
+        }
+        context.getResponsePayload().getOutputStream().flush();
+        context.getResponsePayload().getOutputStream().close();
+        if (connection != null) {
+          connection.close();
+        }
+      } catch (Exception x) {
+        String message = "Getting exception while closing: " + x.getLocalizedMessage();
+        logger.severe(message);
+        x.printStackTrace();
+        throw new RuntimeException(message, x);
+      }
+    }
+  }
+
+  /**
+   * Returns the request/response associated with this activity. For the <code>SYNC-FOLDER</code>
+   * activity, both the request and response data structures are being returned.
+   *
+   * @param activityConfigProps the properties for the activity
+   * @return the response metadata of the activity
+   * @throws DiscoveryException if there is an error while configuring the activity
+   */
+  @Override
+  public ActivityRequestResponseMetaData
+        getActivityRequestResponseMetadata(Discoverable.DiscoverContextRequest<ActivityFunctionParameters>
+          activityConfigProps)
+      throws DiscoveryException {
+    ActivityRequestResponseMetaData activitySchemaResponse = new ActivityRequestResponseMetaData();
+    try {
+      DropboxUtils.setRequestResponseSchemas(activitySchemaResponse,
+          "xsds",
+          SYNC_FOLDER_REQ_XSD,
+          SYNC_FOLDER_RSP_XSD);
+      activitySchemaResponse
+          .setRequestRootElement(new QName(FETCH_FILE_NAMESPACE, SYNC_FOLDER_REQ_ROOT))
+          .setResponseRootElement(new QName(FETCH_FILE_NAMESPACE, SYNC_FOLDER_RSP_ROOT));
+      return activitySchemaResponse;
+    } catch (Exception x) {
+      logger.log(Level.SEVERE, x.getLocalizedMessage(), x);
+      throw new Discoverable.DiscoveryException(Messages.DROPBOX_CODE01,
+          Messages.getMessage(Messages.DROPBOX_CODE01_MSG, new Object[]{getName()}), x);
+    }
+  }
+
+  private static Path getStateDirectory(Map<String, String> params) {
+    String directory = params.get(SYNC_STATE_DIRECTORY);
+    if (directory != null && directory.trim().length() > 0) {
+      return Paths.get(directory.trim());
+    }
+    return DropboxFolderSync.getDefaultStateDirectory();
+  }
+
+  /**
+   * Returns the request, or null if the request payload is empty.
+   */
+  private static SyncFolderRequest readRequest(ExecutionContext context) throws Exception {
+    if (context.getRequestPayload() == null || context.getRequestPayload().getInputStream() == null) {
+      return null;
+    }
+    PushbackInputStream in = new PushbackInputStream(context.getRequestPayload().getInputStream());
+    int first = in.read();
+    if (first == -1) {
+      return null;
+    }
+    in.unread(first);
+    return DropboxUtils.unmarshall(SyncFolderRequest.class, in);
+  }
+
+  /**
+   * Factory for creating the activity.
+   */
+  public static class SyncFolderActivityFactory implements JitterbitActivity.Factory {
+    @Override
+    public JitterbitActivity createActivity() {
+      return new SyncFolderActivity();
+    }
+  }
+
+  private static Logger logger = Logger.getLogger(SyncFolderActivity.class.getName());
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox.activities;
+
+import org.jitterbit.connector.dropbox.ActivityMetrics;
+import org.jitterbit.connector.dropbox.DropboxConnection;
+import org.jitterbit.connector.dropbox.DropboxConstants;
+import org.jitterbit.connector.dropbox.DropboxFolderLister;
+import org.jitterbit.connector.dropbox.DropboxFolderWatcher;
+import org.jitterbit.connector.dropbox.DropboxUtils;
+import org.jitterbit.connector.dropbox.Messages;
+import org.jitterbit.connector.dropbox.WatchFolderResponseWriter;
+import org.jitterbit.connector.dropbox.schema.WatchFolderRequest;
+import org.jitterbit.connector.sdk.Discoverable;
+import org.jitterbit.connector.sdk.JitterbitActivity;
+import org.jitterbit.connector.sdk.annotation.Activity;
+import org.jitterbit.connector.sdk.exceptions.ActivityExecutionException;
+import org.jitterbit.connector.sdk.metadata.ActivityFunctionParameters;
+import org.jitterbit.connector.sdk.metadata.ActivityRequestResponseMetaData;
+import org.jitterbit.connector.sdk.util.Utils;
+
+import java.io.PushbackInputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.xml.namespace.QName;
+
+/**
+ * Implements the Watch Folder activity of a Dropbox connector. This activity waits until the
+ * content of a folder changes, then lists the files and folders added, modified or deleted.
+ * <p>
+ * The <code>folder</code>, file name <code>pattern</code>, recursion and <code>maxWaitSeconds</code>
+ * are configured in the Cloud Studio UI, and can be overridden by the optional <code>request</code>,
+ * conforming with the <code>resources/xsds/watch-folder-request.xsd</code> XML Schema. The request
+ * can also give the <code>cursor</code> returned by a previous execution, so that no change is missed
+ * between two executions; without it, the activity goes on from the cursor of its previous execution in the
+ * same operation for the same folder, or watches the changes made from now on. Activities that are not
+ * deployed as part of an operation do not remember their cursor.
+ * </p>
+ * <p>
+ * The activity holds a long poll open with Dropbox (see {@link DropboxFolderWatcher}) until a changed
+ * entry matches the pattern, or until <code>maxWaitSeconds</code> have elapsed; a wait of zero returns
+ * the changes made so far at once. The response of this activity will be written to the response payload
+ * (see {@link ExecutionContext#getResponsePayload()}) as an XML document that conforms with the
+ * <code>resources/xsds/watch-folder-response.xsd</code>, with an <code>entry</code> element for each
+ * changed entry and the <code>cursor</code> of the next changes (see {@link WatchFolderResponseWriter}).
+ * </p>
+ */
+@Activity(
+    name = DropboxConstants.WATCH_FOLDER,
+    factory = WatchFolderActivity.WatchFolderActivityFactory.class)
+public class WatchFolderActivity extends BaseDropboxActivity {
+
+  public static final int DEFAULT_MAX_WAIT_S = DropboxFolderWatcher.MAX_TIMEOUT_S;
+
+  WatchFolderActivity() {
+  }
+
+  @Override
+  public String getName() {
+    return WATCH_FOLDER;
+  }
+
+  /**
+   * Waits for the changes of the folder provided as part of the <code>context</code>, or by the request,
+   * and writes the changed entries to the response payload.
+   *
+   * @param context the context for the activity
+   * @throws ActivityExecutionException if there is an error while executing the activity
+   * @throws RuntimeException if there is an error while closing the activity
+   */
+  @Override
+  public void execute(JitterbitActivity.ExecutionContext context) throws ActivityExecutionException {
+    logger.info("Executing Activity: " + getName());
+    ActivityMetrics.Execution execution = startExecution();
+    DropboxConnection connection = null;
+    Map<String, String> params = context.getFunctionParameters();
+    String folder = params.get("folder");
+    try {
+      String pattern = params.get(BATCH_PATTERN);
+      int maxWaitSeconds = Utils.valueOfProp(WATCH_MAX_WAIT, params, DEFAULT_MAX_WAIT_S);
+      String cursor = null;
+      WatchFolderRequest request = readRequest(context);
+      if (request != null) {
+        cursor = request.getCursor();
+        folder = request.getFolder() != null ? request.getFolder() : folder;
+        maxWaitSeconds = request.getMaxWaitSeconds() != null ? request.getMaxWaitSeconds() : maxWaitSeconds;
+      }
+      if (folder == null || "/".equals(folder)) {
+        folder = "";
+      }
+      boolean recursive = "true".equalsIgnoreCase(params.get(LIST_RECURSIVE));
+      // keyed by operation, so that two operations watching the same folder do not take each other's changes
+      String operation = getOperationGuid();
+      String key = operation.isEmpty() ? null : operation + " " + folder.toLowerCase() + (recursive ? "/**" : "/*");
+      Pattern names = pattern == null || pattern.isEmpty() ? null : toPattern(pattern);
+
+      connection = (DropboxConnection) context.getConnection();
+      if (cursor != null && cursor.isEmpty()) {
+        cursor = null;
+      }
+      if (cursor == null && key != null) {
+        cursor = connection.getWatchCursors().get(key);
+      }
+      DropboxFolderLister lister = DropboxFolderLister.fromProperties(connection.getClient(), params);
+      DropboxFolderWatcher watcher = new DropboxFolderWatcher(lister, connection.getLongpollClient());
+
+      // Write each matching entry to the response payload output stream as soon as it is listed
+      WatchFolderResponseWriter writer = new WatchFolderResponseWriter(context.getResponsePayload().getOutputStream());
+      writer.start();
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Math.max(0, maxWaitSeconds));
+      do {
+        cursor = watcher.watch(folder, cursor, deadline - System.currentTimeMillis(), entry -> {
+          if (names == null || names.matcher(entry.getName()).matches()) {
+            writer.writeEntry(entry);
+          }
+          return true;
+        });
+      } while (writer.getEntryCount() == 0 && System.currentTimeMillis() < deadline);
+      writer.end(cursor);
+      // store the cursor once the changes are written, so that they are listed again if the response fails
+      context.getResponsePayload().getOutputStream().flush();
+      if (key != null) {
+        connection.getWatchCursors().put(key, cursor);
+      }
+      logger.info("Listed " + writer.getEntryCount() + " changes of " + folder + " after " +
+          watcher.getLongpollCount() + " long polls");
+    } catch (Throwable x) {
+      execution.fail(Messages.DROPBOX_CODE05);
+      logger.log(Level.SEVERE, x.getLocalizedMessage(), x);
+      throw new ActivityExecutionException(Messages.DROPBOX_CODE05,
+          Messages.getMessage(Messages.DROPBOX_CODE05_MSG, new Object[]{folder, x.getLocalizedMessage()}), x);
+    } finally {
+      execution.close();
+      try {
+        context.getResponsePayload().getOutputStream().flush();
+        context.getResponsePayload().getOutputStream().close();
+        if (connection != null) {
+          connection.close();
+        }
+      } catch (Exception x) {
+        String message = "Getting exception while closing: " + x.getLocalizedMessage();
+        logger.severe(message);
+        x.printStackTrace();
+        throw new RuntimeException(message, x);
+      }
+    }
+  }
+
+  /**
+   * Returns the request/response associated with this activity. For the <code>WATCH-FOLDER</code>
+   * activity, both the request and response data structures are being returned.
+   *
+   * @param activityConfigProps the properties for the activity
+   * @return the response metadata of the activity
+   * @throws DiscoveryException if there is an error while configuring the activity
+   */
+  @Override
+  public ActivityRequestResponseMetaData
+        getActivityRequestResponseMetadata(Discoverable.DiscoverContextRequest<ActivityFunctionParameters>
+          activityConfigProps)
+      throws DiscoveryException {
+    ActivityRequestResponseMetaData activitySchemaResponse = new ActivityRequestResponseMetaData();
+    try {
+      DropboxUtils.setRequestResponseSchemas(activitySchemaResponse,
+          "xsds",
+          WATCH_FOLDER_REQ_XSD,
+          WATCH_FOLDER_RSP_XSD);
+      activitySchemaResponse
+          .setRequestRootElement(new QName(FETCH_FILE_NAMESPACE, WATCH_FOLDER_REQ_ROOT))
+          .setResponseRootElement(new QName(FETCH_FILE_NAMESPACE, WATCH_FOLDER_RSP_ROOT));
+      return activitySchemaResponse;
+    } catch (Exception x) {
+      logger.log(Level.SEVERE, x.getLocalizedMessage(), x);
+      throw new Discoverable.DiscoveryException(Messages.DROPBOX_CODE01,
+          Messages.getMessage(Messages.DROPBOX_CODE01_MSG, new Object[]{getName()}), x);
+    }
+  }
+
+  /**
+   * Returns the request, or null if the request payload is empty.
+   */
+  private static WatchFolderRequest readRequest(ExecutionContext context) throws Exception {
+    if (context.getRequestPayload() == null || context.getRequestPayload().getInputStream() == null) {
+      return null;
+    }
+    PushbackInputStream in = new PushbackInputStream(context.getRequestPayload().getInputStream());
+    int first = in.read();
+    if (first == -1) {
+      return null;
+    }
+    in.unread(first);
+    return DropboxUtils.unmarshall(WatchFolderRequest.class, in);
+  }
+
+  /**
+   * Factory for creating the activity.
+   */
+  public static class WatchFolderActivityFactory implements JitterbitActivity.Factory {
+    @Override
+    public JitterbitActivity createActivity() {
+      return new WatchFolderActivity();
+    }
+  }
+
+  private static Logger logger = Logger.getLogger(WatchFolderActivity.class.getName());
+}
@@ -21,9 +21,14 @@
  * <ul>
  * <li>Base Dropbox Activity, from which the other activities extend<li>
  * <li>Fetch File Activity: Downloads the metadata and content associated with a specified file<li>
+ * <li>Batch Fetch File Activity: Downloads the metadata and content of many files, several at a time</li>
+ * <li>Download Folder Activity: Downloads a whole folder as a zip archive, optionally unpacking its files</li>
+ * <li>Watch Folder Activity: Waits for the changes of a folder and lists the changed entries</li>
+ * <li>Sync Folder Activity: Lists the entries of a folder added, modified or deleted since the previous run</li>
  * <li>Get File Activity: From a displayed list of files, downloads and parses it using a specified schema</li>
  * <li>Process File Activity: Downloads a file from Dropbox and parses it using a specified schema</li>
  * <li>Put File Activity: Puts (saves) a file to Dropbox</li>
+ * <li>Batch Put File Activity: Puts (saves) many files to Dropbox, and commits them together</li>
  * </ul>
  *
  * @author Jitterbit, Inc.
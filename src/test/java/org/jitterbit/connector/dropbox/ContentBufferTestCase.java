@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Tests for the content buffers spilling to temporary files.
+ */
+public class ContentBufferTestCase {
+
+  @Test
+  public void testSmallContentStaysInMemory() throws Exception {
+    Path directory = Files.createTempDirectory("buffers");
+    try (ContentBufferFactory buffers = new ContentBufferFactory().setDirectory(directory).setMemoryThreshold(1000);
+         ContentBuffer buffer = buffers.newBuffer()) {
+      byte[] content = content(1000);
+      buffer.write(content);
+      Assert.assertFalse(buffer.isSpilled());
+      Assert.assertEquals(0, directory.toFile().list().length);
+      Assert.assertArrayEquals(content, read(buffer.getInputStream(0)));
+    } finally {
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void testLargeContentSpillsToFile() throws Exception {
+    Path directory = Files.createTempDirectory("buffers");
+    try (ContentBufferFactory buffers = new ContentBufferFactory().setDirectory(directory).setMemoryThreshold(1000)) {
+      ContentBuffer buffer = buffers.newBuffer();
+      byte[] content = content(5000);
+      Assert.assertEquals(5000, buffer.writeFrom(new ByteArrayInputStream(content), 10000));
+      Assert.assertTrue(buffer.isSpilled());
+      Assert.assertEquals(1, directory.toFile().list().length);
+      Assert.assertEquals(5000, buffer.size());
+
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      buffer.writeTo(os);
+      Assert.assertArrayEquals(content, os.toByteArray());
+      byte[] tail = new byte[1500];
+      System.arraycopy(content, 3500, tail, 0, tail.length);
+      Assert.assertArrayEquals(tail, read(buffer.getInputStream(3500)));
+
+      buffer.close();
+      Assert.assertEquals(0, directory.toFile().list().length);
+    } finally {
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void testClosingTheFactoryDeletesOpenBuffers() throws Exception {
+    Path directory = Files.createTempDirectory("buffers");
+    ContentBufferFactory buffers = new ContentBufferFactory().setDirectory(directory).setMemoryThreshold(10);
+    buffers.newBuffer().write(content(100));
+    buffers.newBuffer().write(content(100));
+    Assert.assertEquals(2, directory.toFile().list().length);
+
+    buffers.close();
+    Assert.assertEquals(0, directory.toFile().list().length);
+    try {
+      buffers.newBuffer();
+      Assert.fail("A closed factory cannot create buffers");
+    } catch (IOException expected) {
+      // expected
+    } finally {
+      Files.delete(directory);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testContentLargerThanTheMaximumSizeIsRejected() throws Exception {
+    try (ContentBufferFactory buffers = new ContentBufferFactory().setMaxSize(1000);
+         ContentBuffer buffer = buffers.newBuffer()) {
+      buffer.write(content(1001));
+    }
+  }
+
+  private static byte[] content(int size) {
+    byte[] content = new byte[size];
+    new Random(size).nextBytes(content);
+    return content;
+  }
+
+  private static byte[] read(InputStream in) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    byte[] buffer = new byte[333];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      os.write(buffer, 0, n);
+    }
+    return os.toByteArray();
+  }
+}
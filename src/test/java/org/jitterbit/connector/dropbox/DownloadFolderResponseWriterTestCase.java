@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxDownloader;
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.DownloadZipResult;
+import org.jitterbit.connector.dropbox.schema.DownloadFolderResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests for the response of the Download Folder activity, from a stubbed Dropbox zip download.
+ */
+public class DownloadFolderResponseWriterTestCase {
+
+  @Test
+  public void testUnpackedFiles() throws Exception {
+    DbxClientV2 client = StubHttpRequestor.client(request -> {
+      Assert.assertEquals("/2/files/download_zip", request.getPath());
+      return StubHttpRequestor.download(FOLDER, zip());
+    });
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DownloadFolderResponseWriter writer = new DownloadFolderResponseWriter(os);
+    try (DbxDownloader<DownloadZipResult> downloader = client.files().downloadZip("/Reports")) {
+      writer.writeFiles(downloader.getResult().getMetadata(), downloader.getInputStream(), Pattern.compile(".*\\.csv"));
+    }
+    Assert.assertEquals(2, writer.getFileCount());
+
+    DownloadFolderResponse response = DropboxUtils.unmarshall(DownloadFolderResponse.class,
+        new ByteArrayInputStream(os.toByteArray()));
+    Assert.assertEquals("Reports", response.getName());
+    Assert.assertNull(response.getContent());
+    Assert.assertEquals(2, response.getFile().size());
+    Assert.assertEquals("/Reports/a.csv", response.getFile().get(0).getPath());
+    Assert.assertEquals("1,2\n", new String(response.getFile().get(0).getContent(), StandardCharsets.UTF_8));
+    Assert.assertEquals(4, response.getFile().get(0).getSize().intValue());
+    Assert.assertNotNull(response.getFile().get(0).getLastModified());
+    Assert.assertEquals("/Reports/sub/b.csv", response.getFile().get(1).getPath());
+    Assert.assertEquals(0, response.getFile().get(1).getContent().length);
+  }
+
+  @Test
+  public void testZipArchive() throws Exception {
+    DbxClientV2 client = StubHttpRequestor.client(request -> StubHttpRequestor.download(FOLDER, zip()));
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DownloadFolderResponseWriter writer = new DownloadFolderResponseWriter(os);
+    try (DbxDownloader<DownloadZipResult> downloader = client.files().downloadZip("/Reports")) {
+      writer.writeZip(downloader.getResult().getMetadata(), downloader.getInputStream());
+    }
+
+    DownloadFolderResponse response = DropboxUtils.unmarshall(DownloadFolderResponse.class,
+        new ByteArrayInputStream(os.toByteArray()));
+    Assert.assertEquals("/Reports", response.getPathDisplay());
+    Assert.assertArrayEquals(zip(), response.getContent());
+    Assert.assertEquals(zip().length, writer.getBytes());
+    Assert.assertTrue(response.getFile().isEmpty());
+  }
+
+  private static byte[] zip() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(os)) {
+      ZipEntry folder = new ZipEntry("Reports/");
+      folder.setTime(TIME);
+      zip.putNextEntry(folder);
+      zip.closeEntry();
+      entry(zip, "Reports/a.csv", "1,2\n");
+      entry(zip, "Reports/notes.txt", "skipped");
+      entry(zip, "Reports/sub/b.csv", "");
+    }
+    return os.toByteArray();
+  }
+
+  private static void entry(ZipOutputStream zip, String name, String content) throws IOException {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setTime(TIME);
+    zip.putNextEntry(entry);
+    zip.write(content.getBytes(StandardCharsets.UTF_8));
+    zip.closeEntry();
+  }
+
+  private static final long TIME = 1577836800000L;
+  private static final String FOLDER = "{\"metadata\": {\"name\": \"Reports\", \"id\": \"id:reports\", " +
+      "\"path_lower\": \"/reports\", \"path_display\": \"/Reports\"}}";
+}
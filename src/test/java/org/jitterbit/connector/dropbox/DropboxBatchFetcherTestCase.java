@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.DownloadErrorException;
+import org.jitterbit.connector.dropbox.schema.BatchFetchFileResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the batch fetch of files, against a stubbed Dropbox.
+ */
+public class DropboxBatchFetcherTestCase {
+
+  @Test
+  public void testFilesAreWrittenInOrder() throws Exception {
+    AtomicInteger concurrent = new AtomicInteger();
+    AtomicInteger maxConcurrent = new AtomicInteger();
+    DbxClientV2 client = StubHttpRequestor.client(request -> {
+      int running = concurrent.incrementAndGet();
+      maxConcurrent.accumulateAndGet(running, Math::max);
+      try {
+        String path = request.getArg().replaceAll(".*\"path\"\\s*:\\s*\"([^\"]+)\".*", "$1");
+        // later files complete first
+        Thread.sleep(path.equals("/a.txt") ? 200 : 20);
+        byte[] content = ("content of " + path).getBytes("UTF-8");
+        return StubHttpRequestor.download(StubHttpRequestor.fileMetadata(path, REV, content.length), content);
+      } catch (InterruptedException x) {
+        throw new IOException(x);
+      } finally {
+        concurrent.decrementAndGet();
+      }
+    });
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BatchFetchResponseWriter writer = new BatchFetchResponseWriter(os);
+    DropboxBatchFetcher fetcher = new DropboxBatchFetcher(client).setParallelism(3);
+    writer.start();
+    Assert.assertEquals(4, fetcher.fetchPaths(Arrays.asList("/a.txt", "/b.txt", "/c.txt", "/d.txt"),
+        writer::writeFile));
+    writer.end();
+
+    BatchFetchFileResponse response = DropboxUtils.unmarshall(BatchFetchFileResponse.class,
+        new ByteArrayInputStream(os.toByteArray()));
+    Assert.assertEquals(4, response.getFetchFileResponse().size());
+    for (int i = 0; i < 4; i++) {
+      BatchFetchFileResponse.FetchFileResponse file = response.getFetchFileResponse().get(i);
+      String path = "/" + (char) ('a' + i) + ".txt";
+      Assert.assertEquals(path, file.getPath());
+      Assert.assertEquals("content of " + path, new String(file.getContent(), "UTF-8"));
+    }
+    Assert.assertTrue(maxConcurrent.get() > 1);
+    Assert.assertTrue(maxConcurrent.get() <= 3);
+  }
+
+  @Test
+  public void testFailedFileFailsTheBatch() throws Exception {
+    DbxClientV2 client = StubHttpRequestor.client(request -> {
+      if (request.getArg().contains("/missing.txt")) {
+        return StubHttpRequestor.json(409, "{\"error_summary\": \"path/not_found/\", " +
+            "\"error\": {\".tag\": \"path\", \"path\": {\".tag\": \"not_found\"}}}");
+      }
+      return StubHttpRequestor.download(StubHttpRequestor.fileMetadata("/a.txt", REV, 1), new byte[] {'a'});
+    });
+    DropboxBatchFetcher fetcher = new DropboxBatchFetcher(client).setParallelism(2);
+    AtomicInteger received = new AtomicInteger();
+    try {
+      fetcher.fetchPaths(Arrays.asList("/a.txt", "/missing.txt", "/a.txt"), (path, metadata, content) -> {
+        received.incrementAndGet();
+      });
+      Assert.fail("The missing file fails the batch");
+    } catch (DownloadErrorException expected) {
+      Assert.assertEquals(1, received.get());
+    }
+  }
+
+  private static final String REV = "015f3a7bd2c6a1e0000";
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.CommitInfo;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for the upload of files committed together, against a stubbed Dropbox.
+ */
+public class DropboxBatchUploaderTestCase {
+
+  @Test
+  public void testFilesAreCommittedTogether() throws Exception {
+    StubSessions dropbox = new StubSessions();
+    DbxClientV2 client = StubHttpRequestor.client(dropbox::handle);
+    List<DropboxBatchUploader.Result> files;
+    try (DropboxBatchUploader uploader = new DropboxBatchUploader(client)
+        .setUploader(new DropboxChunkedUploader(client).setChunkSize(4))
+        .setParallelism(2)) {
+      uploader.add(new ByteArrayInputStream("0123456789".getBytes("UTF-8")), CommitInfo.newBuilder("/a.txt").build());
+      uploader.add(new ByteArrayInputStream("abc".getBytes("UTF-8")), CommitInfo.newBuilder("/b.txt").build());
+      uploader.add(new ByteArrayInputStream(new byte[0]), CommitInfo.newBuilder("/c.txt").build());
+      files = uploader.finish();
+      Assert.assertEquals(4, uploader.getPollCount());
+    }
+
+    Assert.assertEquals(3, files.size());
+    Assert.assertEquals("/a.txt", files.get(0).getMetadata().getPathDisplay());
+    Assert.assertEquals(10, files.get(0).getMetadata().getSize());
+    Assert.assertEquals("/b.txt", files.get(1).getMetadata().getPathDisplay());
+    Assert.assertEquals(3, files.get(1).getMetadata().getSize());
+    Assert.assertEquals("/c.txt", files.get(2).getMetadata().getPathDisplay());
+    Assert.assertEquals(0, files.get(2).getMetadata().getSize());
+    // the file rejected because of concurrent writes is committed again on its own
+    Assert.assertEquals("[[/a.txt, /b.txt, /c.txt], [/b.txt]]", dropbox.batches.toString());
+  }
+
+  @Test
+  public void testFailedCommitIsReportedWithTheCommittedFiles() throws Exception {
+    StubSessions dropbox = new StubSessions();
+    dropbox.failure = "{\".tag\": \"path\", \"path\": {\".tag\": \"disallowed_name\"}}";
+    DbxClientV2 client = StubHttpRequestor.client(dropbox::handle);
+    List<DropboxBatchUploader.Result> files;
+    try (DropboxBatchUploader uploader = new DropboxBatchUploader(client)) {
+      uploader.add(new ByteArrayInputStream(new byte[] {1}), CommitInfo.newBuilder("/a.txt").build());
+      uploader.add(new ByteArrayInputStream(new byte[] {2}), CommitInfo.newBuilder("/b.txt").build());
+      uploader.add(new ByteArrayInputStream(new byte[] {3}), CommitInfo.newBuilder("/c.txt").build());
+      files = uploader.finish();
+    }
+
+    Assert.assertEquals(3, files.size());
+    Assert.assertTrue(files.get(0).isSuccess());
+    Assert.assertEquals("/a.txt", files.get(0).getMetadata().getPathDisplay());
+    Assert.assertFalse(files.get(1).isSuccess());
+    Assert.assertEquals("/b.txt", files.get(1).getPath());
+    Assert.assertTrue(files.get(1).getError(), files.get(1).getError().contains("disallowed_name"));
+    Assert.assertTrue(files.get(2).isSuccess());
+    Assert.assertEquals("/c.txt", files.get(2).getMetadata().getPathDisplay());
+    // the rejected file is not committed again
+    Assert.assertEquals(1, dropbox.batches.size());
+  }
+
+  @Test
+  public void testCommitStuckInProgressFailsTheUpload() throws Exception {
+    StubSessions dropbox = new StubSessions();
+    dropbox.inProgress = Integer.MAX_VALUE;
+    DbxClientV2 client = StubHttpRequestor.client(dropbox::handle);
+    try (DropboxBatchUploader uploader = new DropboxBatchUploader(client).setMaxCommitWaitMillis(300)) {
+      uploader.add(new ByteArrayInputStream(new byte[] {1}), CommitInfo.newBuilder("/a.txt").build());
+      uploader.finish();
+      Assert.fail("The commit still in progress fails the upload");
+    } catch (IOException expected) {
+      Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("job"));
+    }
+  }
+
+  /**
+   * Stubbed upload session endpoints of Dropbox. The second file of the first batch fails, with
+   * <code>too_many_write_operations</code> unless another failure is given.
+   */
+  private static final class StubSessions {
+
+    synchronized StubHttpRequestor.Response handle(StubHttpRequestor.Request request) {
+      JsonObject arg = new JsonParser().parse(request.getArg()).getAsJsonObject();
+      switch (request.getPath()) {
+        case "/2/files/upload_session/start":
+          String id = "session" + sizes.size();
+          sizes.put(id, (long) request.getBody().length);
+          if (arg.has("close") && arg.get("close").getAsBoolean()) {
+            closed.add(id);
+          }
+          return StubHttpRequestor.json(200, "{\"session_id\": \"" + id + "\"}");
+        case "/2/files/upload_session/append_v2":
+          JsonObject cursor = arg.getAsJsonObject("cursor");
+          String session = cursor.get("session_id").getAsString();
+          Assert.assertEquals((long) sizes.get(session), cursor.get("offset").getAsLong());
+          sizes.put(session, sizes.get(session) + request.getBody().length);
+          if (arg.has("close") && arg.get("close").getAsBoolean()) {
+            closed.add(session);
+          }
+          return StubHttpRequestor.json(200, "null");
+        case "/2/files/upload_session/finish_batch":
+          List<String> paths = new ArrayList<>();
+          StringBuilder entries = new StringBuilder();
+          for (JsonElement entry : arg.getAsJsonArray("entries")) {
+            String sessionId = entry.getAsJsonObject().getAsJsonObject("cursor").get("session_id").getAsString();
+            String path = entry.getAsJsonObject().getAsJsonObject("commit").get("path").getAsString();
+            Assert.assertTrue(closed.contains(sessionId));
+            entries.append(entries.length() == 0 ? "" : ", ");
+            if (batches.isEmpty() && paths.size() == 1) {
+              entries.append("{\".tag\": \"failure\", \"failure\": ").append(failure).append('}');
+            } else {
+              entries.append(StubHttpRequestor.fileMetadata(path, "015f3a7bd2c6a1e0001", sizes.get(sessionId))
+                  .replace("\".tag\": \"file\"", "\".tag\": \"success\""));
+            }
+            paths.add(path);
+          }
+          batches.add(paths);
+          result = "{\".tag\": \"complete\", \"entries\": [" + entries + "]}";
+          checks = 0;
+          return StubHttpRequestor.json(200, "{\".tag\": \"async_job_id\", \"async_job_id\": \"job\"}");
+        case "/2/files/upload_session/finish_batch/check":
+          Assert.assertEquals("job", arg.get("async_job_id").getAsString());
+          return StubHttpRequestor.json(200, checks++ < inProgress ? "{\".tag\": \"in_progress\"}" : result);
+        default:
+          throw new AssertionError("Unexpected call to " + request.getPath());
+      }
+    }
+
+    private final Map<String, Long> sizes = new HashMap<>();
+    private final Set<String> closed = new HashSet<>();
+    private final List<List<String>> batches = new ArrayList<>();
+    private String failure = "{\".tag\": \"too_many_write_operations\"}";
+    private String result;
+    private int checks;
+    private int inProgress = 1;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.files.CommitInfo;
+import com.dropbox.core.v2.files.FileMetadata;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tests for the chunked uploads, against a stubbed Dropbox.
+ */
+public class DropboxChunkedUploaderTestCase {
+
+  @Test
+  public void testSmallContentUsesSingleUpload() throws Exception {
+    StubSession dropbox = new StubSession();
+    DropboxChunkedUploader uploader = new DropboxChunkedUploader(StubHttpRequestor.client(dropbox::handle))
+        .setSessionThreshold(1000)
+        .setChunkSize(400);
+    byte[] content = content(1000);
+
+    FileMetadata metadata = uploader.upload(new ByteArrayInputStream(content), CommitInfo.newBuilder("/a.bin").build());
+    Assert.assertEquals(1000, metadata.getSize());
+    Assert.assertEquals("[/2/files/upload]", dropbox.calls.toString());
+    Assert.assertArrayEquals(content, dropbox.received.toByteArray());
+  }
+
+  @Test
+  public void testLargeContentUsesSession() throws Exception {
+    StubSession dropbox = new StubSession();
+    DropboxChunkedUploader uploader = new DropboxChunkedUploader(StubHttpRequestor.client(dropbox::handle))
+        .setSessionThreshold(1000)
+        .setChunkSize(1000);
+    byte[] content = content(3500);
+
+    FileMetadata metadata = uploader.upload(new ByteArrayInputStream(content), CommitInfo.newBuilder("/a.bin").build());
+    Assert.assertEquals(3500, metadata.getSize());
+    Assert.assertEquals("[/2/files/upload_session/start, /2/files/upload_session/append_v2, " +
+        "/2/files/upload_session/append_v2, /2/files/upload_session/finish]", dropbox.calls.toString());
+    Assert.assertArrayEquals(content, dropbox.received.toByteArray());
+    Assert.assertEquals(4, uploader.getChunkCount());
+  }
+
+  @Test
+  public void testFailedChunkIsResumedAtTheCorrectOffset() throws Exception {
+    StubSession dropbox = new StubSession();
+    // the first append stores half of the chunk and then loses the connection
+    dropbox.partialAppend = 500;
+    DropboxChunkedUploader uploader = new DropboxChunkedUploader(StubHttpRequestor.client(dropbox::handle))
+        .setSessionThreshold(0)
+        .setChunkSize(1000);
+    byte[] content = content(3000);
+
+    uploader.upload(new ByteArrayInputStream(content), CommitInfo.newBuilder("/a.bin").build());
+    Assert.assertArrayEquals(content, dropbox.received.toByteArray());
+    Assert.assertEquals(2, uploader.getRetryCount());
+    // start, failed append, rejected append, resumed append, append, empty finish
+    Assert.assertEquals(6, dropbox.calls.size());
+  }
+
+  private static byte[] content(int size) {
+    byte[] content = new byte[size];
+    new Random(size).nextBytes(content);
+    return content;
+  }
+
+  /**
+   * Stubbed upload endpoints of Dropbox, keeping the content of a single upload session.
+   */
+  private static final class StubSession {
+
+    StubHttpRequestor.Response handle(StubHttpRequestor.Request request) throws IOException {
+      String path = request.getPath();
+      calls.add(path);
+      byte[] body = request.getBody();
+      switch (path) {
+        case "/2/files/upload":
+          received.write(body);
+          return StubHttpRequestor.json(200, StubHttpRequestor.fileMetadata("/a.bin", "0123456789a", received.size()));
+        case "/2/files/upload_session/start":
+          received.write(body);
+          return StubHttpRequestor.json(200, "{\"session_id\": \"s1\"}");
+        case "/2/files/upload_session/append_v2":
+        case "/2/files/upload_session/finish":
+          long offset = offset(request.getArg());
+          if (offset != received.size()) {
+            String error = "{\".tag\": \"incorrect_offset\", \"correct_offset\": " + received.size() + "}";
+            return StubHttpRequestor.json(409,
+                "{\"error_summary\": \"incorrect_offset/\", \"error\": " + lookupError(path, error) + "}");
+          }
+          if (partialAppend > 0 && path.endsWith("append_v2")) {
+            received.write(body, 0, partialAppend);
+            partialAppend = 0;
+            throw new IOException("Connection reset");
+          }
+          received.write(body);
+          return path.endsWith("finish") ?
+              StubHttpRequestor.json(200, StubHttpRequestor.fileMetadata("/a.bin", "0123456789a", received.size())) :
+              StubHttpRequestor.json(200, "null");
+        default:
+          return StubHttpRequestor.json(400, "unexpected call");
+      }
+    }
+
+    private static String lookupError(String path, String error) {
+      return path.endsWith("finish") ? "{\".tag\": \"lookup_failed\", \"lookup_failed\": " + error + "}" : error;
+    }
+
+    private static long offset(String arg) {
+      Matcher m = Pattern.compile("\"offset\"\\s*:\\s*(\\d+)").matcher(arg);
+      Assert.assertTrue(arg, m.find());
+      return Long.parseLong(m.group(1));
+    }
+
+    private final List<String> calls = new ArrayList<>();
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    private int partialAppend;
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.DbxClientV2;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Stream;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Tests for the shared Dropbox client registry.
+ */
+public class DropboxClientRegistryTestCase {
+
+  @Test
+  public void testSameCredentialsShareClient() {
+    DropboxClientRegistry registry = new DropboxClientRegistry();
+    DropboxClientRegistry.SharedClient first = registry.acquire("key", "token", "en_US");
+    DropboxClientRegistry.SharedClient second = registry.acquire("key", "token", "en_US");
+    Assert.assertSame(first, second);
+    Assert.assertSame(first.getClient(), second.getClient());
+    Assert.assertEquals(2, first.getRefCount());
+    Assert.assertEquals(1, registry.size());
+  }
+
+  @Test
+  public void testDifferentCredentialsDoNotShareClient() {
+    DropboxClientRegistry registry = new DropboxClientRegistry();
+    DropboxClientRegistry.SharedClient first = registry.acquire("key", "token", "en_US");
+    DropboxClientRegistry.SharedClient second = registry.acquire("key", "other-token", "en_US");
+    Assert.assertNotSame(first, second);
+    Assert.assertEquals(2, registry.size());
+  }
+
+  @Test
+  public void testIdleClientIsEvicted() {
+    DropboxClientRegistry registry = new DropboxClientRegistry();
+    registry.setIdleTimeoutMillis(0);
+    DropboxClientRegistry.SharedClient first = registry.acquire("key", "token", "en_US");
+    registry.evictIdle();
+    Assert.assertEquals("Referenced clients must not be evicted", 1, registry.size());
+
+    first.release();
+    registry.evictIdle();
+    Assert.assertEquals(0, registry.size());
+
+    DropboxClientRegistry.SharedClient second = registry.acquire("key", "token", "en_US");
+    Assert.assertNotSame(first, second);
+    Assert.assertEquals(1, second.getRefCount());
+  }
+
+  @Test
+  public void testPoolsAreKeptPerConfiguration() {
+    DropboxClientRegistry registry = new DropboxClientRegistry();
+    DropboxClientRegistry.SharedClient shared = registry.acquire("key", "token", "en_US");
+    DropboxConnectionPool pool = shared.getPool(new DropboxPoolConfiguration().setMaxSize(2));
+    DropboxConnectionPool other = shared.getPool(new DropboxPoolConfiguration().setMaxSize(4));
+    Assert.assertNotSame(pool, other);
+    Assert.assertSame(other, shared.getPool());
+    Assert.assertSame("Alternating configurations reuse their pools", pool,
+        shared.getPool(new DropboxPoolConfiguration().setMaxSize(2)));
+  }
+
+  @Test
+  public void testPoolsAreExposedOverJmx() throws Exception {
+    DropboxClientRegistry registry = new DropboxClientRegistry();
+    DropboxClientRegistry.SharedClient shared = registry.acquire("jmx", "token", "en_US");
+    DropboxConnectionPool pool = shared.getPool(new DropboxPoolConfiguration().setMaxSize(3));
+    Assert.assertTrue(pool.acquire());
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    Set<ObjectName> names = server.queryNames(new ObjectName(DropboxMetrics.DOMAIN + ":type=Pool,*"), null);
+    ObjectName name = names.stream()
+        .filter(n -> n.getKeyProperty("client").contains("jmx"))
+        .findFirst().orElseThrow(AssertionError::new);
+    Assert.assertEquals(1, server.getAttribute(name, "Active"));
+    Assert.assertEquals(2, server.getAttribute(name, "Available"));
+
+    registry.shutdown();
+    Assert.assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  public void testTheShortestIdleTimeoutOfThePoolsEvicts() {
+    DropboxClientRegistry registry = new DropboxClientRegistry();
+    DropboxClientRegistry.SharedClient shared = registry.acquire("key", "token", "en_US");
+    shared.getPool(new DropboxPoolConfiguration().setMaxIdleTimeMillis(0));
+    shared.getPool(new DropboxPoolConfiguration().setMaxIdleTimeMillis(Integer.MAX_VALUE));
+    shared.release();
+    registry.evictIdle();
+    Assert.assertEquals(0, registry.size());
+  }
+
+  @Test
+  public void testClientsAreKeptPerTransport() {
+    DropboxClientRegistry registry = new DropboxClientRegistry();
+    DropboxClientRegistry.SharedClient shared = registry.acquire("key", "token", "en_US");
+    DropboxHttpTransport standard = new DropboxHttpTransport();
+    DropboxHttpTransport okhttp = new DropboxHttpTransport().setType(DropboxHttpTransport.OKHTTP);
+    shared.setTransport(standard);
+    DbxClientV2 client = shared.getClient(standard);
+    shared.setTransport(okhttp);
+    DbxClientV2 other = shared.getClient(okhttp);
+    Assert.assertNotSame(client, other);
+    Assert.assertSame(other, shared.getClient());
+    shared.setTransport(standard);
+    Assert.assertSame("Alternating transports reuse their clients", client, shared.getClient(standard));
+    Assert.assertSame(other, shared.getClient(new DropboxHttpTransport().setType(DropboxHttpTransport.OKHTTP)));
+    registry.shutdown();
+  }
+
+  @Test
+  public void testConcurrencyIsLimitedPerTransport() {
+    DropboxClientRegistry registry = new DropboxClientRegistry();
+    DropboxClientRegistry.SharedClient shared = registry.acquire("key", "token", "en_US");
+    DropboxHttpTransport limited = new DropboxHttpTransport().setMaxConcurrentRequests(8);
+    DropboxHttpTransport unlimited = new DropboxHttpTransport().setMaxConcurrentRequests(0);
+    shared.setTransport(limited);
+    shared.getClient(limited);
+    shared.setTransport(unlimited);
+    shared.getClient(unlimited);
+    shared.setTransport(new DropboxHttpTransport().setMaxConcurrentRequests(2));
+    shared.getClient();
+    // opening an endpoint does not change the limit of the other transports
+    Assert.assertEquals(2, shared.getConcurrencyLimiters().size());
+    Assert.assertEquals(8, shared.getConcurrencyLimiters().stream()
+        .mapToInt(DropboxConcurrencyLimiter::getMaxLimit).max().getAsInt());
+    registry.shutdown();
+  }
+
+  @Test
+  public void testEvictedClientDeletesItsCachedFiles() throws Exception {
+    Path directory = Files.createTempDirectory("cache");
+    DropboxClientRegistry registry = new DropboxClientRegistry();
+    registry.setIdleTimeoutMillis(0);
+    try {
+      DropboxClientRegistry.SharedClient shared = registry.acquire("key", "token", "en_US");
+      DropboxFileCache cache = populate(shared, directory);
+      Assert.assertEquals(1, cache.size());
+      Assert.assertEquals(1, count(directory));
+
+      shared.release();
+      registry.evictIdle();
+      Assert.assertEquals(0, registry.size());
+      Assert.assertEquals(0, cache.size());
+      Assert.assertEquals("The files directory of the cache is deleted", 0, count(directory));
+    } finally {
+      registry.shutdown();
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void testShutdownDeletesTheCachedFilesOfReferencedClients() throws Exception {
+    Path directory = Files.createTempDirectory("cache");
+    DropboxClientRegistry registry = new DropboxClientRegistry();
+    try {
+      DropboxClientRegistry.SharedClient shared = registry.acquire("key", "token", "en_US");
+      populate(shared, directory);
+      Assert.assertEquals(1, count(directory));
+
+      registry.shutdown();
+      Assert.assertEquals(0, registry.size());
+      Assert.assertEquals(0, count(directory));
+      Assert.assertNotSame(shared, registry.acquire("key", "token", "en_US"));
+    } finally {
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void testFileCachesAreKeptPerSettings() throws Exception {
+    Path directory = Files.createTempDirectory("cache");
+    DropboxClientRegistry registry = new DropboxClientRegistry();
+    try {
+      DropboxClientRegistry.SharedClient shared = registry.acquire("key", "token", "en_US");
+      DropboxFileCache cache = populate(shared, directory);
+      DropboxFileCache other = shared.getFileCache(new DropboxFileCache().setDirectory(directory).setMaxSize(20000));
+      Assert.assertNotSame(cache, other);
+      Assert.assertEquals("A cache with other settings leaves the first one alone", 1, cache.size());
+      Assert.assertSame(cache, shared.getFileCache(new DropboxFileCache().setDirectory(directory).setMaxSize(10000)));
+      Assert.assertSame(other, shared.getFileCache(new DropboxFileCache().setDirectory(directory).setMaxSize(20000)));
+    } finally {
+      registry.shutdown();
+      Files.delete(directory);
+    }
+  }
+
+  private static DropboxFileCache populate(DropboxClientRegistry.SharedClient shared, Path directory)
+      throws Exception {
+    byte[] content = new byte[1000];
+    String metadata = StubHttpRequestor.fileMetadata("/a.bin", "015f3a7bd2c6a1e0001", content.length);
+    DbxClientV2 client = StubHttpRequestor.client(request -> request.getPath().equals("/2/files/get_metadata") ?
+        StubHttpRequestor.json(200, metadata) : StubHttpRequestor.download(metadata, content));
+    DropboxFileCache cache = shared.getFileCache(new DropboxFileCache().setDirectory(directory).setMaxSize(10000));
+    cache.open(client, new DropboxSegmentedDownloader(client), "/a.bin").download(new ByteArrayOutputStream());
+    return cache;
+  }
+
+  private static long count(Path directory) throws Exception {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.count();
+    }
+  }
+}
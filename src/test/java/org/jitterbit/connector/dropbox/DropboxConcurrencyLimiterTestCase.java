@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the adaptive limit of the concurrent requests.
+ */
+public class DropboxConcurrencyLimiterTestCase {
+
+  @Test
+  public void testThrottlingHalvesTheLimitOncePerRound() throws Exception {
+    DropboxConcurrencyLimiter limiter = new DropboxConcurrencyLimiter(8);
+    DropboxConcurrencyLimiter.Permit first = limiter.acquire();
+    DropboxConcurrencyLimiter.Permit second = limiter.acquire();
+    first.release(429);
+    Assert.assertEquals(4, limiter.getLimit());
+
+    // the second request was sent under the previous limit
+    second.release(503);
+    Assert.assertEquals(4, limiter.getLimit());
+    limiter.acquire().release(429);
+    Assert.assertEquals(2, limiter.getLimit());
+    Assert.assertEquals(3, limiter.getThrottledCount());
+    Assert.assertEquals(2, limiter.getDecreaseCount());
+
+    // 2 + 1/2 + 1/2.5 + 1/2.9 grows past 3
+    for (int i = 0; i < 3; i++) {
+      limiter.acquire().release(200);
+    }
+    Assert.assertEquals(3, limiter.getLimit());
+
+    // server errors and network errors leave the limit as is, a permit is released once
+    DropboxConcurrencyLimiter.Permit failed = limiter.acquire();
+    failed.release(500);
+    failed.release(429);
+    limiter.acquire().release();
+    Assert.assertEquals(3, limiter.getLimit());
+    Assert.assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void testRequestsWaitAtTheLimit() throws Exception {
+    DropboxConcurrencyLimiter limiter = new DropboxConcurrencyLimiter(2);
+    DropboxConcurrencyLimiter.Permit first = limiter.acquire();
+    limiter.acquire();
+    CountDownLatch acquired = new CountDownLatch(1);
+    Thread waiting = new Thread(() -> {
+      try {
+        limiter.acquire();
+        acquired.countDown();
+      } catch (Exception x) {
+        // the latch is not counted down
+      }
+    });
+    waiting.start();
+    Assert.assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+    first.release(200);
+    Assert.assertTrue(acquired.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(1, limiter.getWaitCount());
+    Assert.assertEquals(2, limiter.getInFlight());
+  }
+}
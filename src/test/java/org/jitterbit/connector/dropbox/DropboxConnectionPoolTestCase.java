@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests for the Dropbox connection pool and its configuration.
+ */
+public class DropboxConnectionPoolTestCase {
+
+  @Test
+  public void testConfigurationFromConnectionPooling() {
+    Map<String, String> props = new HashMap<>();
+    props.put(DropboxConstants.CONNECTION_POOLING,
+        "[{\"name\": \"0\", \"value\": \"4\"}, {\"name\": \"maxWaitTimeMS\", \"value\": \"250\"}," +
+        " {\"name\": \"5\", \"value\": \"1000\"}]");
+    DropboxPoolConfiguration config = DropboxPoolConfiguration.fromProperties(props);
+    Assert.assertEquals(4, config.getMaxSize());
+    Assert.assertEquals(250, config.getMaxWaitTimeMillis());
+    Assert.assertEquals(1000, config.getMaxIdleTimeMillis());
+    Assert.assertEquals(0, config.getMinSize());
+  }
+
+  @Test
+  public void testInvalidConfigurationKeepsDefaults() {
+    Map<String, String> props = new HashMap<>();
+    props.put(DropboxConstants.CONNECTION_POOLING, "not json");
+    props.put(DropboxPoolConfiguration.MIN_SIZE, "two");
+    Assert.assertEquals(new DropboxPoolConfiguration(), DropboxPoolConfiguration.fromProperties(props));
+  }
+
+  @Test
+  public void testPoolIsBounded() throws Exception {
+    DropboxConnectionPool pool = new DropboxConnectionPool(
+        new DropboxPoolConfiguration().setMaxSize(2).setMaxWaitTimeMillis(10));
+    Assert.assertTrue(pool.acquire());
+    Assert.assertTrue(pool.acquire());
+    Assert.assertFalse("The pool should be exhausted", pool.acquire());
+    Assert.assertEquals(2, pool.getActive());
+    Assert.assertEquals(1, pool.getTimeoutCount());
+
+    pool.release();
+    Assert.assertEquals(1, pool.getActive());
+    Assert.assertEquals(1, pool.getAvailable());
+    Assert.assertTrue(pool.acquire());
+  }
+
+  @Test
+  public void testWaitQueueIsBounded() throws Exception {
+    DropboxConnectionPool pool = new DropboxConnectionPool(
+        new DropboxPoolConfiguration().setMaxSize(1).setMaxWaitQueueSize(0));
+    Assert.assertTrue(pool.acquire());
+    Assert.assertFalse(pool.acquire());
+    Assert.assertEquals(1, pool.getRejectedCount());
+    Assert.assertEquals(0, pool.getWaiters());
+  }
+
+  @Test
+  public void testRejectionIsToldApartFromTimeout() throws Exception {
+    DropboxConnectionPool pool = new DropboxConnectionPool(
+        new DropboxPoolConfiguration().setMaxSize(1).setMaxWaitQueueSize(1).setMaxWaitTimeMillis(10));
+    Assert.assertEquals(DropboxConnectionPool.Acquisition.ACQUIRED, pool.tryAcquire());
+    Assert.assertEquals(DropboxConnectionPool.Acquisition.TIMED_OUT, pool.tryAcquire());
+
+    DropboxConnectionPool full = new DropboxConnectionPool(
+        new DropboxPoolConfiguration().setMaxSize(1).setMaxWaitQueueSize(0));
+    Assert.assertEquals(DropboxConnectionPool.Acquisition.ACQUIRED, full.tryAcquire());
+    Assert.assertEquals(DropboxConnectionPool.Acquisition.REJECTED, full.tryAcquire());
+  }
+}
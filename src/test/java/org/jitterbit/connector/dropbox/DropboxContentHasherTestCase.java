@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests for the computation of the Dropbox content hash.
+ */
+public class DropboxContentHasherTestCase {
+
+  @Test
+  public void testEmptyContent() {
+    Assert.assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+        new DropboxContentHasher().getHash());
+  }
+
+  @Test
+  public void testContentSpanningBlocks() throws Exception {
+    byte[] content = new byte[DropboxContentHasher.BLOCK_SIZE * 2 + 1000];
+    new Random(1).nextBytes(content);
+
+    DropboxContentHasher hasher = new DropboxContentHasher();
+    // uneven writes crossing the block boundaries
+    for (int off = 0; off < content.length; off += 1_000_003) {
+      hasher.write(content, off, Math.min(1_000_003, content.length - off));
+    }
+    Assert.assertEquals(content.length, hasher.getSize());
+    Assert.assertEquals(expected(content), hasher.getHash());
+  }
+
+  @Test
+  public void testContentOfExactlyOneBlock() throws Exception {
+    byte[] content = new byte[DropboxContentHasher.BLOCK_SIZE];
+    new Random(2).nextBytes(content);
+    DropboxContentHasher hasher = new DropboxContentHasher();
+    hasher.write(content);
+    Assert.assertEquals(expected(content), hasher.getHash());
+  }
+
+  private static String expected(byte[] content) throws Exception {
+    MessageDigest overall = MessageDigest.getInstance("SHA-256");
+    for (int off = 0; off < content.length; off += DropboxContentHasher.BLOCK_SIZE) {
+      byte[] block = Arrays.copyOfRange(content, off, Math.min(content.length, off + DropboxContentHasher.BLOCK_SIZE));
+      overall.update(MessageDigest.getInstance("SHA-256").digest(block));
+    }
+    return String.format("%064x", new BigInteger(1, overall.digest()));
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.DbxClientV2;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for the cache of downloaded files, against a stubbed Dropbox.
+ */
+public class DropboxFileCacheTestCase {
+
+  @Test
+  public void testUnchangedFileIsReadFromDisk() throws Exception {
+    StubFiles dropbox = new StubFiles();
+    dropbox.put("/a.bin", "015f3a7bd2c6a1e0001", content(3000, 1));
+    DbxClientV2 client = StubHttpRequestor.client(dropbox::handle);
+    Path directory = Files.createTempDirectory("cache");
+    DropboxFileCache cache = new DropboxFileCache().setDirectory(directory).setMaxSize(10000);
+    try {
+      Assert.assertArrayEquals(dropbox.content("/a.bin"), read(cache, client, "/a.bin"));
+      Assert.assertArrayEquals(dropbox.content("/a.bin"), read(cache, client, "/a.bin"));
+      Assert.assertEquals("[metadata /a.bin, download /a.bin, metadata /a.bin]", dropbox.calls.toString());
+      Assert.assertEquals(1, cache.getHitCount());
+      Assert.assertEquals(1, cache.getMissCount());
+      Assert.assertEquals(3000, cache.getSavedBytes());
+
+      // a new revision is downloaded again
+      dropbox.put("/a.bin", "015f3a7bd2c6a1e0002", content(2000, 2));
+      Assert.assertArrayEquals(dropbox.content("/a.bin"), read(cache, client, "/a.bin"));
+      Assert.assertEquals(2, cache.getMissCount());
+      Assert.assertEquals(2000, cache.getBytes());
+    } finally {
+      cache.clear();
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void testLeastRecentlyUsedFilesAreEvicted() throws Exception {
+    StubFiles dropbox = new StubFiles();
+    dropbox.put("/a.bin", "015f3a7bd2c6a1e0001", content(4000, 1));
+    dropbox.put("/b.bin", "015f3a7bd2c6a1e0001", content(4000, 2));
+    dropbox.put("/c.bin", "015f3a7bd2c6a1e0001", content(4000, 3));
+    dropbox.put("/big.bin", "015f3a7bd2c6a1e0001", content(20000, 4));
+    DbxClientV2 client = StubHttpRequestor.client(dropbox::handle);
+    DropboxFileCache cache = new DropboxFileCache().setMaxSize(10000);
+    try {
+      read(cache, client, "/a.bin");
+      read(cache, client, "/b.bin");
+      read(cache, client, "/a.bin");
+      read(cache, client, "/c.bin");
+      Assert.assertEquals(2, cache.size());
+      Assert.assertEquals(8000, cache.getBytes());
+
+      dropbox.calls.clear();
+      read(cache, client, "/a.bin");
+      read(cache, client, "/b.bin");
+      // b was the least recently used file, a is still cached
+      Assert.assertEquals("[metadata /a.bin, metadata /b.bin, download /b.bin]", dropbox.calls.toString());
+
+      // files larger than the cache are not cached
+      Assert.assertArrayEquals(dropbox.content("/big.bin"), read(cache, client, "/big.bin"));
+      Assert.assertEquals(2, cache.size());
+    } finally {
+      cache.clear();
+    }
+  }
+
+  @Test
+  public void testDisabledCacheOnlyDownloads() throws Exception {
+    StubFiles dropbox = new StubFiles();
+    dropbox.put("/a.bin", "015f3a7bd2c6a1e0001", content(3000, 1));
+    DbxClientV2 client = StubHttpRequestor.client(dropbox::handle);
+    DropboxFileCache cache = new DropboxFileCache();
+    read(cache, client, "/a.bin");
+    read(cache, client, "/a.bin");
+    Assert.assertEquals("[download /a.bin, download /a.bin]", dropbox.calls.toString());
+    Assert.assertEquals(0, cache.getMissCount());
+  }
+
+  private static byte[] read(DropboxFileCache cache, DbxClientV2 client, String path) throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    cache.open(client, new DropboxSegmentedDownloader(client), path).download(os);
+    return os.toByteArray();
+  }
+
+  private static byte[] content(int size, int seed) {
+    byte[] content = new byte[size];
+    new Random(seed).nextBytes(content);
+    return content;
+  }
+
+  /**
+   * Stubbed metadata and download endpoints of Dropbox.
+   */
+  private static final class StubFiles {
+
+    void put(String path, String rev, byte[] content) {
+      revs.put(path, rev);
+      contents.put(path, content);
+    }
+
+    byte[] content(String path) {
+      return contents.get(path);
+    }
+
+    StubHttpRequestor.Response handle(StubHttpRequestor.Request request) {
+      String path = request.getPath().equals("/2/files/get_metadata") ?
+          new String(request.getBody(), StandardCharsets.UTF_8) : request.getArg();
+      path = path.replaceAll(".*\"path\"\\s*:\\s*\"([^\"]+)\".*", "$1");
+      String metadata = StubHttpRequestor.fileMetadata(path, revs.get(path), contents.get(path).length);
+      if (request.getPath().equals("/2/files/get_metadata")) {
+        calls.add("metadata " + path);
+        return StubHttpRequestor.json(200, metadata);
+      }
+      Assert.assertEquals("/2/files/download", request.getPath());
+      calls.add("download " + path);
+      return StubHttpRequestor.download(metadata, contents.get(path));
+    }
+
+    private final Map<String, String> revs = new HashMap<>();
+    private final Map<String, byte[]> contents = new HashMap<>();
+    private final List<String> calls = new ArrayList<>();
+  }
+}
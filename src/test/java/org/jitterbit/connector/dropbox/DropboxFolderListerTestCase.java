@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the paginated folder listings, against a stubbed Dropbox.
+ */
+public class DropboxFolderListerTestCase {
+
+  @Test
+  public void testAllPagesAreListed() throws Exception {
+    List<String> calls = new ArrayList<>();
+    DropboxFolderLister lister = new DropboxFolderLister(StubHttpRequestor.client(request -> {
+      calls.add(request.getPath() + " " + request.getArg().replaceAll("\\s", ""));
+      return StubHttpRequestor.json(200, request.getPath().endsWith("continue") ?
+          page("c2", false, "/in/b.xml", "/in/sub/c.json") : page("c1", true, "/in/a.xml"));
+    })).setRecursive(true).setPageSize(1);
+
+    List<String> names = new ArrayList<>();
+    String cursor = lister.list("/in", entry -> names.add(entry.getPathDisplay()));
+    Assert.assertEquals("[/in/a.xml, /in/b.xml, /in/sub/c.json]", names.toString());
+    Assert.assertEquals("c2", cursor);
+    Assert.assertEquals(2, calls.size());
+    Assert.assertTrue(calls.get(0), calls.get(0).contains("\"recursive\":true"));
+    Assert.assertTrue(calls.get(0), calls.get(0).contains("\"limit\":1"));
+    Assert.assertEquals("/2/files/list_folder/continue {\"cursor\":\"c1\"}", calls.get(1));
+  }
+
+  @Test
+  public void testVisitorStopsTheListing() throws Exception {
+    List<String> calls = new ArrayList<>();
+    DropboxFolderLister lister = new DropboxFolderLister(StubHttpRequestor.client(request -> {
+      calls.add(request.getPath());
+      return StubHttpRequestor.json(200, page("c1", true, "/in/a.xml", "/in/b.xml"));
+    }));
+
+    List<String> names = new ArrayList<>();
+    Assert.assertNull(lister.list("/in", entry -> names.add(entry.getPathDisplay()) && names.size() < 1));
+    Assert.assertEquals("[/in/a.xml]", names.toString());
+    Assert.assertEquals("[/2/files/list_folder]", calls.toString());
+  }
+
+  private static String page(String cursor, boolean hasMore, String... paths) {
+    StringBuilder json = new StringBuilder("{\"entries\": [");
+    for (int i = 0; i < paths.length; i++) {
+      json.append(i > 0 ? ", " : "").append(StubHttpRequestor.fileMetadata(paths[i], "0123456789a", 10));
+    }
+    return json.append("], \"cursor\": \"").append(cursor).append("\", \"has_more\": ").append(hasMore).append("}")
+        .toString();
+  }
+}
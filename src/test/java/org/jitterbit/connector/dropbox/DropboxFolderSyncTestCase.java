@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.DbxClientV2;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Tests for the incremental synchronization of folders and its persisted state, against a stubbed Dropbox.
+ */
+public class DropboxFolderSyncTestCase {
+
+  @Test
+  public void testChangesAreReportedOnceAcrossExecutions() throws Exception {
+    Map<String, String> pages = new HashMap<>();
+    pages.put("list", page("c1", true, file("/in/a.xml", "a1"), file("/in/b.xml", "b1")));
+    pages.put("c1", page("c2", false, file("/in/c.xml", "c1")));
+    pages.put("c2", page("c3", false, file("/in/a.xml", "a2"), deleted("/in/b.xml"), file("/in/d.xml", "d1")));
+    pages.put("c3", "reset");
+    pages.put("relist", page("c4", false, file("/in/a.xml", "a2"), file("/in/c.xml", "c2")));
+    DbxClientV2 client = stub(pages);
+    Path directory = Files.createTempDirectory("sync");
+    try {
+      // the first listing, over two executions
+      Assert.assertEquals("[added /in/a.xml, added /in/b.xml]", sync(client, directory, 2, true, true));
+      Assert.assertEquals("[added /in/c.xml]", sync(client, directory, 2, false, true));
+
+      // the changes, classified by the revisions known
+      Assert.assertEquals("[modified /in/a.xml, deleted /in/b.xml, added /in/d.xml]",
+          sync(client, directory, 2, false, false));
+
+      // a reset cursor lists the folder again, reporting only what changed
+      pages.put("list", pages.remove("relist"));
+      Assert.assertEquals("[modified /in/c.xml, deleted /in/d.xml]", sync(client, directory, 10, false, true));
+
+      try (DropboxSyncState state = DropboxSyncState.open(directory, "operation")) {
+        Assert.assertEquals("c4", state.getCursor());
+        Assert.assertEquals(2, state.size());
+        Assert.assertEquals("c20123456789", state.getRev("/in/c.xml"));
+        Assert.assertFalse(state.isFullListing());
+      }
+    } finally {
+      deleteAll(directory);
+    }
+  }
+
+  @Test
+  public void testUncommittedChangesAreReportedAgain() throws Exception {
+    Map<String, String> pages = new HashMap<>();
+    pages.put("list", page("c1", false, file("/in/a.xml", "a1")));
+    pages.put("c1", page("c2", false, file("/in/b.xml", "b1")));
+    pages.put("c2", page("c2", false));
+    DbxClientV2 client = stub(pages);
+    Path directory = Files.createTempDirectory("sync");
+    try {
+      Assert.assertEquals("[added /in/a.xml]", sync(client, directory, 10, false, true));
+      try (DropboxSyncState state = DropboxSyncState.open(directory, "operation")) {
+        List<String> changes = new ArrayList<>();
+        new DropboxFolderSync(new DropboxFolderLister(client), state)
+            .sync("/in", (change, entry) -> changes.add(change + " " + entry.getPathDisplay()));
+        Assert.assertEquals("[added /in/b.xml]", changes.toString());
+      }
+      Assert.assertEquals("[added /in/b.xml]", sync(client, directory, 10, false, false));
+
+      // a commit only partly written is ignored
+      Path journal = directory.resolve("operation.journal");
+      long size = Files.size(journal);
+      Files.write(journal, new byte[] {'P', 0, 9, '/'}, StandardOpenOption.APPEND);
+      try (DropboxSyncState state = DropboxSyncState.open(directory, "operation")) {
+        Assert.assertEquals("c2", state.getCursor());
+        Assert.assertEquals(2, state.size());
+        Assert.assertEquals(size, state.getJournalSize());
+      }
+      Assert.assertEquals("[]", sync(client, directory, 10, false, false));
+    } finally {
+      deleteAll(directory);
+    }
+  }
+
+  @Test
+  public void testSnapshotKeepsTheFullListingInProgress() throws Exception {
+    Map<String, String> pages = new HashMap<>();
+    pages.put("list", page("c1", false, file("/in/a.xml", "a1"), file("/in/b.xml", "b1")));
+    pages.put("c1", "reset");
+    DbxClientV2 client = stub(pages);
+    Path directory = Files.createTempDirectory("sync");
+    try {
+      sync(client, directory, 10, false, true);
+      pages.put("list", page("c2", true, file("/in/a.xml", "a2")));
+      pages.put("c2", page("c3", false));
+      Assert.assertEquals("[modified /in/a.xml]", sync(client, directory, 1, true, true));
+      try (DropboxSyncState state = DropboxSyncState.open(directory, "operation")) {
+        state.writeSnapshot();
+        Assert.assertFalse(Files.exists(directory.resolve("operation.journal")));
+      }
+      Assert.assertEquals("[deleted /in/b.xml]", sync(client, directory, 1, false, true));
+    } finally {
+      deleteAll(directory);
+    }
+  }
+
+  @Test
+  public void testAnotherAccountStartsOver() throws Exception {
+    Map<String, String> pages = new HashMap<>();
+    pages.put("list", page("c1", false, file("/in/a.xml", "a1")));
+    pages.put("c1", page("c1", false));
+    DbxClientV2 client = stub(pages);
+    Path directory = Files.createTempDirectory("sync");
+    try {
+      Assert.assertEquals("[added /in/a.xml]", sync(client, directory, "key dbid:1", false, true));
+      Assert.assertEquals("[]", sync(client, directory, "key dbid:1", false, false));
+      Assert.assertEquals("[added /in/a.xml]", sync(client, directory, "key dbid:2", false, true));
+    } finally {
+      deleteAll(directory);
+    }
+  }
+
+  private static String sync(DbxClientV2 client, Path directory, int maxEntries, boolean hasMore,
+      boolean fullListing) throws Exception {
+    return sync(client, directory, maxEntries, null, hasMore, fullListing);
+  }
+
+  private static String sync(DbxClientV2 client, Path directory, String account, boolean hasMore,
+      boolean fullListing) throws Exception {
+    return sync(client, directory, 10, account, hasMore, fullListing);
+  }
+
+  private static String sync(DbxClientV2 client, Path directory, int maxEntries, String account, boolean hasMore,
+      boolean fullListing) throws Exception {
+    List<String> changes = new ArrayList<>();
+    try (DropboxSyncState state = DropboxSyncState.open(directory, "operation")) {
+      DropboxFolderSync sync = new DropboxFolderSync(new DropboxFolderLister(client), state)
+          .setAccount(account)
+          .setMaxEntries(maxEntries);
+      Assert.assertEquals(hasMore, sync.sync("/in", (change, entry) -> {
+        changes.add(change + " " + entry.getPathLower());
+      }));
+      Assert.assertEquals(fullListing, sync.isFullListing());
+      sync.commit();
+    }
+    return changes.toString();
+  }
+
+  private static DbxClientV2 stub(Map<String, String> pages) {
+    return StubHttpRequestor.client(request -> {
+      String key = "list";
+      if (request.getPath().endsWith("continue")) {
+        key = request.getArg().replaceAll(".*\"cursor\"\\s*:\\s*\"([^\"]+)\".*", "$1");
+      }
+      String page = pages.get(key);
+      if ("reset".equals(page)) {
+        return StubHttpRequestor.json(409, "{\"error_summary\": \"reset/\", \"error\": {\".tag\": \"reset\"}}");
+      }
+      return StubHttpRequestor.json(200, page);
+    });
+  }
+
+  private static String page(String cursor, boolean hasMore, String... entries) {
+    return "{\"entries\": [" + String.join(", ", entries) + "], \"cursor\": \"" + cursor + "\", \"has_more\": " +
+        hasMore + "}";
+  }
+
+  private static String file(String path, String rev) {
+    return StubHttpRequestor.fileMetadata(path, rev + "0123456789", 10);
+  }
+
+  private static String deleted(String path) {
+    String name = path.substring(path.lastIndexOf('/') + 1);
+    return "{\".tag\": \"deleted\", \"name\": \"" + name + "\", \"path_lower\": \"" + path + "\", " +
+        "\"path_display\": \"" + path + "\"}";
+  }
+
+  private static void deleteAll(Path directory) throws Exception {
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+}
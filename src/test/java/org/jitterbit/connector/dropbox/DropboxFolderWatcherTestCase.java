@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.DbxClientV2;
+import org.jitterbit.connector.dropbox.schema.WatchFolderResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the long polls of watched folders, against a stubbed Dropbox.
+ */
+public class DropboxFolderWatcherTestCase {
+
+  @Test
+  public void testChangesAreListedAfterTheLongpoll() throws Exception {
+    List<String> calls = new ArrayList<>();
+    DbxClientV2 client = StubHttpRequestor.client(request -> {
+      calls.add(request.getPath() + " " + request.getArg().replaceAll("\\s", ""));
+      if (request.getPath().endsWith("longpoll")) {
+        return StubHttpRequestor.json(200, "{\"changes\": " + (calls.size() > 1) + "}");
+      }
+      return StubHttpRequestor.json(200, "{\"entries\": [" + StubHttpRequestor.fileMetadata("/in/a.xml", REV, 10) +
+          ", {\".tag\": \"deleted\", \"name\": \"b.xml\", \"path_lower\": \"/in/b.xml\", " +
+          "\"path_display\": \"/in/b.xml\"}], \"cursor\": \"c1\", \"has_more\": false}");
+    });
+    DropboxFolderWatcher watcher = new DropboxFolderWatcher(new DropboxFolderLister(client), client);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    WatchFolderResponseWriter writer = new WatchFolderResponseWriter(os);
+    writer.start();
+    String cursor = watcher.watch("/in", "c0", 60000, entry -> {
+      writer.writeEntry(entry);
+      return true;
+    });
+    writer.end(cursor);
+
+    Assert.assertEquals("c1", cursor);
+    Assert.assertEquals(2, watcher.getLongpollCount());
+    Assert.assertEquals(3, calls.size());
+    Assert.assertTrue(calls.get(0), calls.get(0).contains("\"cursor\":\"c0\""));
+    Assert.assertEquals("/2/files/list_folder/continue {\"cursor\":\"c0\"}", calls.get(2));
+
+    WatchFolderResponse response = DropboxUtils.unmarshall(WatchFolderResponse.class,
+        new ByteArrayInputStream(os.toByteArray()));
+    Assert.assertEquals("c1", response.getCursor());
+    Assert.assertEquals(2, response.getEntry().size());
+    Assert.assertEquals("file", response.getEntry().get(0).getType());
+    Assert.assertEquals(REV, response.getEntry().get(0).getRev());
+    Assert.assertEquals("deleted", response.getEntry().get(1).getType());
+    Assert.assertEquals("/in/b.xml", response.getEntry().get(1).getPathDisplay());
+  }
+
+  @Test
+  public void testResetCursorIsReplacedByTheLatestCursor() throws Exception {
+    List<String> calls = new ArrayList<>();
+    DbxClientV2 client = StubHttpRequestor.client(request -> {
+      calls.add(request.getPath() + " " + request.getArg().replaceAll("\\s", ""));
+      if (request.getPath().endsWith("get_latest_cursor")) {
+        return StubHttpRequestor.json(200, "{\"cursor\": \"c9\"}");
+      }
+      if (request.getArg().contains("\"c0\"")) {
+        return StubHttpRequestor.json(409, "{\"error_summary\": \"reset/\", \"error\": {\".tag\": \"reset\"}}");
+      }
+      if (request.getPath().endsWith("longpoll")) {
+        return StubHttpRequestor.json(200, "{\"changes\": true}");
+      }
+      return StubHttpRequestor.json(200, "{\"entries\": [], \"cursor\": \"c10\", \"has_more\": false}");
+    });
+    DropboxFolderWatcher watcher = new DropboxFolderWatcher(new DropboxFolderLister(client), client);
+
+    Assert.assertEquals("c10", watcher.watch("/in", "c0", 60000, entry -> true));
+    Assert.assertEquals(1, watcher.getResetCount());
+    Assert.assertTrue(calls.get(1), calls.get(1).startsWith("/2/files/list_folder/get_latest_cursor"));
+    Assert.assertEquals("/2/files/list_folder/continue {\"cursor\":\"c9\"}", calls.get(3));
+
+    // a cursor reset while listing the changes without waiting
+    calls.clear();
+    Assert.assertEquals("c9", watcher.watch("/in", "c0", 0, entry -> true));
+    Assert.assertEquals(2, watcher.getResetCount());
+    Assert.assertEquals(2, calls.size());
+  }
+
+  @Test
+  public void testEmptyCursorWatchesTheChangesFromNowOn() throws Exception {
+    List<String> calls = new ArrayList<>();
+    DbxClientV2 client = StubHttpRequestor.client(request -> {
+      calls.add(request.getPath() + " " + request.getArg().replaceAll("\\s", ""));
+      if (request.getPath().endsWith("get_latest_cursor")) {
+        return StubHttpRequestor.json(200, "{\"cursor\": \"c9\"}");
+      }
+      return StubHttpRequestor.json(200, "{\"entries\": [], \"cursor\": \"c10\", \"has_more\": false}");
+    });
+    DropboxFolderWatcher watcher = new DropboxFolderWatcher(new DropboxFolderLister(client), client);
+
+    Assert.assertEquals("c10", watcher.watch("/in", "", 0, entry -> true));
+    Assert.assertEquals(2, calls.size());
+    Assert.assertTrue(calls.get(0), calls.get(0).startsWith("/2/files/list_folder/get_latest_cursor"));
+    Assert.assertEquals("/2/files/list_folder/continue {\"cursor\":\"c9\"}", calls.get(1));
+  }
+
+  private static final String REV = "015f3a7bd2c6a1e0000";
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxRequestConfig;
+import com.dropbox.core.http.HttpRequestor;
+import com.dropbox.core.http.OkHttp3Requestor;
+import com.dropbox.core.v2.DbxClientV2;
+import okhttp3.OkHttpClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the configuration of the HTTP transport.
+ */
+public class DropboxHttpTransportTestCase {
+
+  @Test
+  public void testRequestsAreSentToTheBaseUrl() throws Exception {
+    Map<String, String> props = new HashMap<>();
+    props.put(DropboxConstants.HTTP_BASE_URL, "http://localhost:8080/");
+    List<String> urls = new ArrayList<>();
+    System.setProperty(DropboxHttpTransport.ALLOW_BASE_URL_PROPERTY, "true");
+    DropboxHttpTransport transport;
+    try {
+      transport = DropboxHttpTransport.fromProperties(props);
+    } finally {
+      System.clearProperty(DropboxHttpTransport.ALLOW_BASE_URL_PROPERTY);
+    }
+    transport.setRequestorFactory(() -> new StubHttpRequestor(request -> {
+      urls.add(request.getUrl());
+      String metadata = StubHttpRequestor.fileMetadata("/a.txt", REV, 1);
+      return request.getPath().equals("/2/files/download") ?
+          StubHttpRequestor.download(metadata, new byte[] {'a'}) : StubHttpRequestor.json(200, metadata);
+    }));
+    Assert.assertEquals("http://localhost:8080/", transport.getBaseUrl());
+
+    DbxClientV2 client = new DbxClientV2(DbxRequestConfig.newBuilder("test")
+        .withHttpRequestor(transport.createRequestor()).build(), "token");
+    client.files().getMetadata("/a.txt");
+    client.files().download("/a.txt").download(new ByteArrayOutputStream());
+    Assert.assertEquals("http://localhost:8080/2/files/get_metadata", urls.get(0));
+    Assert.assertEquals("http://localhost:8080/2/files/download", urls.get(1));
+  }
+
+  @Test
+  public void testBaseUrlMustBeAllowedAndOnALoopbackHost() {
+    Map<String, String> props = new HashMap<>();
+    props.put(DropboxConstants.HTTP_BASE_URL, "http://localhost:8080");
+    Assert.assertNull("The base URL needs the system property",
+        DropboxHttpTransport.fromProperties(props).getBaseUrl());
+
+    System.setProperty(DropboxHttpTransport.ALLOW_BASE_URL_PROPERTY, "true");
+    try {
+      Assert.assertEquals("http://localhost:8080", DropboxHttpTransport.fromProperties(props).getBaseUrl());
+      props.put(DropboxConstants.HTTP_BASE_URL, "https://example.com");
+      Assert.assertNull(DropboxHttpTransport.fromProperties(props).getBaseUrl());
+    } finally {
+      System.clearProperty(DropboxHttpTransport.ALLOW_BASE_URL_PROPERTY);
+    }
+    Assert.assertTrue(DropboxHttpTransport.isLoopback("http://127.0.0.1:8080"));
+    Assert.assertTrue(DropboxHttpTransport.isLoopback("http://[::1]:8080/"));
+    Assert.assertFalse(DropboxHttpTransport.isLoopback("http://localhost.example.com"));
+  }
+
+  @Test
+  public void testRequestsAreSentToDropboxByDefault() throws Exception {
+    DropboxHttpTransport transport = DropboxHttpTransport.fromProperties(new HashMap<>());
+    Assert.assertNull(transport.getBaseUrl());
+    Assert.assertEquals(transport, new DropboxHttpTransport());
+    Assert.assertNotEquals(transport, new DropboxHttpTransport().setBaseUrl("http://localhost:8080"));
+  }
+
+  @Test
+  public void testClosingAnOkHttpRequestorReleasesItsThreads() {
+    HttpRequestor requestor = new DropboxHttpTransport().setType(DropboxHttpTransport.OKHTTP)
+        .setBaseUrl("http://localhost:8080").createRequestor();
+    OkHttpClient client = ((OkHttp3Requestor) ((BaseUrlRequestor) requestor).getRequestor()).getClient();
+    Assert.assertFalse(client.dispatcher().executorService().isShutdown());
+
+    DropboxHttpTransport.close(requestor);
+    Assert.assertTrue(client.dispatcher().executorService().isShutdown());
+    Assert.assertEquals(0, client.connectionPool().connectionCount());
+  }
+
+  private static final String REV = "015f3a7bd2c6a1e0000";
+}
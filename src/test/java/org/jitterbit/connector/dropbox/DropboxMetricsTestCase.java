@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxRequestConfig;
+import com.dropbox.core.v2.DbxClientV2;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+/**
+ * Tests for the metrics of the connector and their JMX view.
+ */
+public class DropboxMetricsTestCase {
+
+  @Test
+  public void testHistogramPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assert.assertEquals(0, histogram.getPercentileMillis(99));
+    for (int millis = 1; millis <= 100; millis++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+    Assert.assertEquals(100, histogram.getCount());
+    Assert.assertEquals(50.5, histogram.getMeanMillis(), 0.001);
+    // the 50th latency is in the bucket of 32 to 63 ms, the 99th in the one of 64 to 127 ms
+    Assert.assertEquals(63, histogram.getPercentileMillis(50));
+    Assert.assertEquals(100, histogram.getPercentileMillis(99));
+    Assert.assertEquals(100, histogram.getMaxMillis());
+  }
+
+  @Test
+  public void testRequestsAreRecordedByEndpoint() throws Exception {
+    byte[] content = "content of a.txt".getBytes(StandardCharsets.UTF_8);
+    StubHttpRequestor stub = new StubHttpRequestor(request -> {
+      String metadata = StubHttpRequestor.fileMetadata("/a.txt", "015f3a7bd2c6a1e0001", content.length);
+      if (request.getPath().equals("/2/files/download")) {
+        return StubHttpRequestor.download(metadata, content);
+      }
+      return StubHttpRequestor.json(409, "{\"error_summary\": \"path/not_found/\", " +
+          "\"error\": {\".tag\": \"path\", \"path\": {\".tag\": \"not_found\"}}}");
+    });
+    DropboxMetrics metrics = new DropboxMetrics(null);
+    DbxClientV2 client = new DbxClientV2(DbxRequestConfig.newBuilder("test")
+        .withHttpRequestor(new MeteredRequestor(stub, metrics))
+        .build(), "test-token");
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    client.files().download("/a.txt").download(os);
+    try {
+      client.files().getMetadata("/missing.txt");
+      Assert.fail("The file is missing");
+    } catch (Exception expected) {
+      // the error is recorded by the endpoint
+    }
+
+    EndpointMetrics download = metrics.getEndpoint("/2/files/download");
+    Assert.assertEquals(1, download.getRequestCount());
+    Assert.assertEquals(0, download.getErrorCount());
+    Assert.assertEquals(content.length, download.getBytesReceived());
+    EndpointMetrics getMetadata = metrics.getEndpoint("/2/files/get_metadata");
+    Assert.assertEquals(1, getMetadata.getRequestCount());
+    Assert.assertEquals(1, getMetadata.getErrorCount());
+    Assert.assertTrue(getMetadata.getBytesSent() > 0);
+    Assert.assertEquals("/2/files/download",
+        MeteredRequestor.getEndpoint("https://content.dropboxapi.com/2/files/download?arg=x"));
+  }
+
+  @Test
+  public void testActivityMetricsAreExposedOverJmx() throws Exception {
+    MBeanServer server = MBeanServerFactory.newMBeanServer();
+    DropboxMetrics metrics = new DropboxMetrics(server);
+    ActivityMetrics fetch = metrics.getActivity("fetch", "op-1");
+    try (ActivityMetrics.Execution execution = fetch.start()) {
+      execution.addBytesIn(1024);
+    }
+    try (ActivityMetrics.Execution execution = fetch.start()) {
+      execution.fail(Messages.DROPBOX_CODE03);
+    }
+    metrics.recordConnectionOpen();
+
+    ObjectName name = new ObjectName(DropboxMetrics.DOMAIN + ":type=Activity,name=fetch,operation=op-1");
+    Assert.assertEquals(2L, server.getAttribute(name, "ExecutionCount"));
+    Assert.assertEquals(1L, server.getAttribute(name, "FailureCount"));
+    Assert.assertEquals(1024L, server.getAttribute(name, "BytesIn"));
+    TabularData failures = (TabularData) server.getAttribute(name, "FailureCounts");
+    CompositeData failure = failures.get(new Object[]{Messages.DROPBOX_CODE03});
+    Assert.assertEquals(1L, failure.get("value"));
+
+    ObjectName connector = new ObjectName(DropboxMetrics.DOMAIN + ":type=Connector");
+    Assert.assertEquals(1L, server.getAttribute(connector, "ConnectionOpenCount"));
+    Assert.assertEquals(DropboxConnectionValidator.INSTANCE.getFailureCount(),
+        server.getAttribute(connector, "ValidationFailureCount"));
+    Assert.assertEquals(DropboxConnectionValidator.INSTANCE.getMaxLatencyMillis(),
+        (double) server.getAttribute(connector, "MaxValidationMillis"), 0.001);
+    Assert.assertEquals(Long.valueOf(1), metrics.getErrorCounts().get(Messages.DROPBOX_CODE03));
+
+    metrics.removeActivity("fetch", "op-1");
+    Assert.assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  public void testClientsDescribeTheirFileCaches() {
+    DropboxClientRegistry.SharedClient shared = DropboxClientRegistry.INSTANCE.acquire("metrics", "token", "en_US");
+    try {
+      shared.getFileCache(new DropboxFileCache().setMaxSize(1000));
+      String client = new DropboxMetrics(null).getClients().get(shared.getName());
+      Assert.assertTrue(client, client.contains("fileCache=[hits=0, misses=0, savedBytes=0, bytes=0]"));
+    } finally {
+      shared.release();
+    }
+  }
+}
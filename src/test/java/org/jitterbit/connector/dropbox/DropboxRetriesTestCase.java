@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxRequestConfig;
+import com.dropbox.core.RateLimitException;
+import com.dropbox.core.http.HttpRequestor;
+import com.dropbox.core.v2.DbxClientV2;
+import com.dropbox.core.v2.files.FileMetadata;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the retries of the Dropbox calls, against a stubbed Dropbox.
+ */
+public class DropboxRetriesTestCase {
+
+  @Test
+  public void testBackoffIsJittered() {
+    RateLimitException limited = new RateLimitException("req", "too_many_requests", 2, TimeUnit.SECONDS);
+    IOException failed = new IOException("reset");
+    for (int i = 0; i < 100; i++) {
+      long wait = DropboxRetries.getBackoffMillis(limited, 0);
+      Assert.assertTrue(wait >= 2000 && wait < 2000 + DropboxRetries.INITIAL_BACKOFF_MS);
+      wait = DropboxRetries.getBackoffMillis(failed, 2);
+      Assert.assertTrue(wait >= 1000 && wait <= 2000);
+      wait = DropboxRetries.getBackoffMillis(failed, 20);
+      Assert.assertTrue(wait >= DropboxRetries.MAX_BACKOFF_MS / 2 && wait <= DropboxRetries.MAX_BACKOFF_MS);
+    }
+  }
+
+  @Test
+  public void testRateLimitedCallIsRetried() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    StubHttpRequestor stub = new StubHttpRequestor(request -> {
+      if (calls.incrementAndGet() == 1) {
+        HttpRequestor.Response limited = StubHttpRequestor.json(429, "{\"error_summary\": \"too_many_requests/\", " +
+            "\"error\": {\"reason\": {\".tag\": \"too_many_requests\"}, \"retry_after\": 0}}");
+        Map<String, List<String>> headers = new HashMap<>(limited.getHeaders());
+        headers.put("Retry-After", Collections.singletonList("0"));
+        return new HttpRequestor.Response(429, limited.getBody(), headers);
+      }
+      return StubHttpRequestor.json(200, StubHttpRequestor.fileMetadata("/a.txt", "015f3a7bd2c6a1e0001", 1));
+    });
+    DropboxConcurrencyLimiter limiter = new DropboxConcurrencyLimiter(4);
+    DbxClientV2 client = new DbxClientV2(DbxRequestConfig.newBuilder("test")
+        .withHttpRequestor(new ConcurrencyLimitedRequestor(stub, limiter))
+        .build(), "test-token");
+
+    FileMetadata file = (FileMetadata) DropboxRetries.call(() -> client.files().getMetadata("/a.txt"), 1);
+    Assert.assertEquals("/a.txt", file.getPathDisplay());
+    Assert.assertEquals(2, calls.get());
+    Assert.assertEquals(1, limiter.getThrottledCount());
+    Assert.assertEquals(2, limiter.getLimit());
+    Assert.assertEquals(0, limiter.getInFlight());
+  }
+}
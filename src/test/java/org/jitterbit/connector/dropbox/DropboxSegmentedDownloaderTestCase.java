@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tests for the segmented downloads, against a stubbed Dropbox.
+ */
+public class DropboxSegmentedDownloaderTestCase {
+
+  @Test
+  public void testSmallFileIsStreamed() throws Exception {
+    StubFile dropbox = new StubFile(content(3000));
+    DropboxSegmentedDownloader downloader = new DropboxSegmentedDownloader(StubHttpRequestor.client(dropbox::handle))
+        .setThreshold(5000)
+        .setSegmentSize(1000);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    Assert.assertEquals(3000, downloader.open("/a.bin").download(os).getSize());
+    Assert.assertArrayEquals(dropbox.content, os.toByteArray());
+    Assert.assertEquals("[all]", dropbox.ranges.toString());
+  }
+
+  @Test
+  public void testLargeFileIsDownloadedInSegments() throws Exception {
+    StubFile dropbox = new StubFile(content(3500));
+    DropboxSegmentedDownloader downloader = new DropboxSegmentedDownloader(StubHttpRequestor.client(dropbox::handle))
+        .setThreshold(0)
+        .setSegmentSize(1000)
+        .setParallelism(3);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    downloader.open("/a.bin").download(os);
+    Assert.assertArrayEquals(dropbox.content, os.toByteArray());
+    Assert.assertEquals(4, downloader.getSegmentCount());
+    List<String> ranges = new ArrayList<>(dropbox.ranges);
+    Collections.sort(ranges);
+    Assert.assertEquals("[1000-1999, 2000-2999, 3000-3499, all]", ranges.toString());
+  }
+
+  @Test
+  public void testFailedSegmentIsRequestedAgain() throws Exception {
+    StubFile dropbox = new StubFile(content(3500));
+    dropbox.failRange = "2000-2999";
+    DropboxSegmentedDownloader downloader = new DropboxSegmentedDownloader(StubHttpRequestor.client(dropbox::handle))
+        .setThreshold(0)
+        .setSegmentSize(1000)
+        .setParallelism(2);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    downloader.open("/a.bin").download(os);
+    Assert.assertArrayEquals(dropbox.content, os.toByteArray());
+    Assert.assertEquals(1, downloader.getRetryCount());
+    Assert.assertEquals(2, Collections.frequency(dropbox.ranges, "2000-2999"));
+  }
+
+  @Test
+  public void testInterruptedStreamIsResumed() throws Exception {
+    StubFile dropbox = new StubFile(content(3000));
+    dropbox.failRange = "all";
+    DropboxSegmentedDownloader downloader = new DropboxSegmentedDownloader(StubHttpRequestor.client(dropbox::handle))
+        .setParallelism(1);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    downloader.open("/a.bin").download(os);
+    Assert.assertArrayEquals(dropbox.content, os.toByteArray());
+    Assert.assertEquals(1, downloader.getRetryCount());
+    Assert.assertEquals("[all, 1200-2999]", dropbox.ranges.toString());
+  }
+
+  private static byte[] content(int size) {
+    byte[] content = new byte[size];
+    new Random(size).nextBytes(content);
+    return content;
+  }
+
+  /**
+   * Stubbed download endpoint of Dropbox, serving a single file. The response of the range marked as
+   * failing loses its connection once, after 1200 bytes or half of the range.
+   */
+  private static final class StubFile {
+
+    StubFile(byte[] content) {
+      this.content = content;
+    }
+
+    StubHttpRequestor.Response handle(StubHttpRequestor.Request request) throws IOException {
+      Assert.assertEquals("/2/files/download", request.getPath());
+      String range = request.getHeader("Range");
+      int start = 0;
+      int end = content.length - 1;
+      String name = "all";
+      if (range != null) {
+        Assert.assertTrue(request.getArg(), request.getArg().contains(REV));
+        Matcher m = Pattern.compile("bytes=(\\d+)-(\\d+)").matcher(range);
+        Assert.assertTrue(range, m.matches());
+        start = Integer.parseInt(m.group(1));
+        end = Integer.parseInt(m.group(2));
+        name = start + "-" + end;
+      }
+      ranges.add(name);
+      byte[] body = new byte[end - start + 1];
+      System.arraycopy(content, start, body, 0, body.length);
+      StubHttpRequestor.Response response = StubHttpRequestor.download(
+          StubHttpRequestor.fileMetadata("/a.bin", REV, content.length), body);
+      if (name.equals(failRange)) {
+        failRange = null;
+        return new StubHttpRequestor.Response(200, failingAfter(body, Math.min(1200, body.length / 2)),
+            response.getHeaders());
+      }
+      return response;
+    }
+
+    private static InputStream failingAfter(byte[] body, int length) {
+      ByteArrayInputStream in = new ByteArrayInputStream(body, 0, length);
+      return new InputStream() {
+        @Override
+        public int read() throws IOException {
+          byte[] b = new byte[1];
+          return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          int n = in.read(b, off, len);
+          if (n == -1) {
+            throw new IOException("Connection reset");
+          }
+          return n;
+        }
+      };
+    }
+
+    private static final String REV = "0123456789a";
+
+    private final byte[] content;
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    private volatile String failRange;
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import org.jitterbit.connector.dropbox.schema.PutFileRequest;
+import org.jitterbit.connector.sdk.metadata.SchemaMetaData;
+import org.jitterbit.connector.sdk.metadata.SchemaMetaData.SchemaContentType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for the Dropbox connector utilities.
+ */
+public class DropboxUtilsTestCase {
+
+  @Test
+  public void testMarshallRoundTrip() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      PutFileRequest request = new PutFileRequest();
+      request.setPath("/folder/file" + i + ".txt");
+      request.setContent(("content " + i).getBytes(StandardCharsets.UTF_8));
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      DropboxUtils.marshall(PutFileRequest.class, request, os);
+
+      PutFileRequest parsed = DropboxUtils.unmarshall(PutFileRequest.class, new ByteArrayInputStream(os.toByteArray()));
+      Assert.assertEquals(request.getPath(), parsed.getPath());
+      Assert.assertArrayEquals(request.getContent(), parsed.getContent());
+    }
+  }
+
+  @Test
+  public void testContextIsCached() throws Exception {
+    Assert.assertSame(DropboxUtils.getContext(PutFileRequest.class), DropboxUtils.getContext(PutFileRequest.class));
+  }
+
+  @Test
+  public void testResourcesAreCached() throws Exception {
+    String resource = "xsds/" + DropboxConstants.FETCH_FILE_RSP_XSD;
+    String content = DropboxUtils.getResource(resource);
+    Assert.assertEquals(DropboxUtils.loadResource(null, resource), content);
+    Assert.assertSame(content, DropboxUtils.getResource(resource));
+
+    SchemaMetaData schema = DropboxUtils.getSchema("m1.xsd", SchemaContentType.XSD, "support-xsds/m1.xsd");
+    Assert.assertSame(schema, DropboxUtils.getSchema("m1.xsd", SchemaContentType.XSD, "support-xsds/m1.xsd"));
+    Assert.assertEquals(SchemaContentType.XSD, schema.getSchemaContentType());
+    Assert.assertSame(DropboxUtils.getResource("support-xsds/m1.xsd"), schema.getContent());
+  }
+
+  @Test(expected = IOException.class)
+  public void testMissingResourceFails() throws Exception {
+    DropboxUtils.getResource("xsds/missing.xsd");
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxDownloader;
+import com.dropbox.core.v2.files.FileMetadata;
+import org.jitterbit.connector.dropbox.schema.FetchFileResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Tests for the streaming writer of the Fetch File response.
+ */
+public class FetchFileResponseWriterTestCase {
+
+  @Test
+  public void testResponseMatchesSchema() throws Exception {
+    // spans several chunks and does not end on a 3-byte boundary
+    byte[] content = new byte[FetchFileResponseWriter.CHUNK_SIZE * 2 + 7];
+    new Random(7).nextBytes(content);
+    Date modified = new Date(1500000000000L);
+    FileMetadata metadata =
+        new FileMetadata("file.bin", "id:abc", modified, modified, "015f3a7bd2c6a1e0000", content.length);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new FetchFileResponseWriter(os).write(metadata,
+        new DbxDownloader<>(metadata, new ByteArrayInputStream(content)));
+
+    FetchFileResponse response =
+        DropboxUtils.unmarshall(FetchFileResponse.class, new ByteArrayInputStream(os.toByteArray()));
+    Assert.assertEquals("file.bin", response.getName());
+    Assert.assertEquals("015f3a7bd2c6a1e0000", response.getRev());
+    Assert.assertEquals(content.length, response.getSize().intValue());
+    Assert.assertEquals(modified, response.getServerModified().toGregorianCalendar().getTime());
+    Assert.assertNull(response.getSharingInfo());
+    Assert.assertArrayEquals(content, response.getContent());
+  }
+
+  @Test
+  public void testEmptyContent() throws Exception {
+    Date modified = new Date();
+    FileMetadata metadata = new FileMetadata("empty.txt", "id:abc", modified, modified, "015f3a7bd2c6a1e0000", 0);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new FetchFileResponseWriter(os).write(metadata,
+        new DbxDownloader<>(metadata, new ByteArrayInputStream(new byte[0])));
+
+    FetchFileResponse response =
+        DropboxUtils.unmarshall(FetchFileResponse.class, new ByteArrayInputStream(os.toByteArray()));
+    Assert.assertEquals(0, response.getContent().length);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the incremental folder listing cache, against a stubbed Dropbox.
+ */
+public class FolderListingCacheTestCase {
+
+  @Test
+  public void testLaterListingsApplyTheChanges() throws Exception {
+    List<String> calls = new ArrayList<>();
+    DropboxFolderLister lister = new DropboxFolderLister(StubHttpRequestor.client(request -> {
+      calls.add(request.getPath());
+      if (request.getPath().endsWith("continue")) {
+        return StubHttpRequestor.json(200, "{\"entries\": [" + DELETED_B + ", " + file("/in/c.xml") + "], " +
+            "\"cursor\": \"c2\", \"has_more\": false}");
+      }
+      return StubHttpRequestor.json(200, "{\"entries\": [" + file("/in/a.xml") + ", " + file("/in/b.xml") + "], " +
+          "\"cursor\": \"c1\", \"has_more\": false}");
+    }));
+    FolderListingCache cache = new FolderListingCache();
+
+    Assert.assertEquals("[/in/a.xml, /in/b.xml]", list(cache, lister, 60000));
+    Assert.assertEquals("[/in/a.xml, /in/c.xml]", list(cache, lister, 60000));
+    Assert.assertEquals("[/2/files/list_folder, /2/files/list_folder/continue]", calls.toString());
+    Assert.assertEquals(1, cache.getMissCount());
+    Assert.assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void testInvalidCursorListsAgain() throws Exception {
+    List<String> calls = new ArrayList<>();
+    DropboxFolderLister lister = new DropboxFolderLister(StubHttpRequestor.client(request -> {
+      calls.add(request.getPath());
+      if (request.getPath().endsWith("continue")) {
+        return StubHttpRequestor.json(409, "{\"error_summary\": \"reset/\", \"error\": {\".tag\": \"reset\"}}");
+      }
+      return StubHttpRequestor.json(200, "{\"entries\": [" + file("/in/a.xml") + "], " +
+          "\"cursor\": \"c1\", \"has_more\": false}");
+    }));
+    FolderListingCache cache = new FolderListingCache();
+
+    list(cache, lister, 60000);
+    Assert.assertEquals("[/in/a.xml]", list(cache, lister, 60000));
+    Assert.assertEquals("[/2/files/list_folder, /2/files/list_folder/continue, /2/files/list_folder]",
+        calls.toString());
+    Assert.assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void testCacheIsBounded() throws Exception {
+    List<String> calls = new ArrayList<>();
+    DropboxFolderLister lister = new DropboxFolderLister(StubHttpRequestor.client(request -> {
+      calls.add(request.getPath());
+      return StubHttpRequestor.json(200, "{\"entries\": [" + file("/in/a.xml") + "], " +
+          "\"cursor\": \"c1\", \"has_more\": false}");
+    }));
+    FolderListingCache cache = new FolderListingCache().setMaxFolders(1);
+
+    cache.list(lister, "/in", 60000, entry -> true);
+    cache.list(lister, "/out", 60000, entry -> true);
+    Assert.assertEquals(1, cache.size());
+    cache.list(lister, "/in", 60000, entry -> true);
+    Assert.assertEquals(3, cache.getMissCount());
+
+    // a listing without a time to live is never cached
+    cache.clear();
+    cache.list(lister, "/in", 0, entry -> true);
+    Assert.assertEquals(0, cache.size());
+  }
+
+  private static String list(FolderListingCache cache, DropboxFolderLister lister, long ttlMillis) throws Exception {
+    List<String> paths = new ArrayList<>();
+    cache.list(lister, "/in", ttlMillis, entry -> paths.add(entry.getPathDisplay()));
+    return paths.toString();
+  }
+
+  private static String file(String path) {
+    return StubHttpRequestor.fileMetadata(path, "0123456789a", 10);
+  }
+
+  private static final String DELETED_B =
+      "{\".tag\": \"deleted\", \"name\": \"b.xml\", \"path_lower\": \"/in/b.xml\", \"path_display\": \"/in/b.xml\"}";
+}
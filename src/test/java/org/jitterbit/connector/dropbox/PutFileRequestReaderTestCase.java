@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import org.apache.commons.io.IOUtils;
+import org.jitterbit.connector.dropbox.schema.PutFileRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Tests for the streaming reader of the Put File request.
+ */
+public class PutFileRequestReaderTestCase {
+
+  @Test
+  public void testReadMarshalledRequest() throws Exception {
+    byte[] content = new byte[1024 * 1024 + 1];
+    new Random(11).nextBytes(content);
+    PutFileRequest request = new PutFileRequest();
+    request.setPath("/folder/file.bin");
+    request.setMode("OVERWRITE");
+    request.setAutorename(true);
+    request.setContent(content);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DropboxUtils.marshall(PutFileRequest.class, request, os);
+
+    PutFileRequestReader reader = new PutFileRequestReader(new ByteArrayInputStream(os.toByteArray()));
+    Assert.assertEquals("/folder/file.bin", reader.getPath());
+    Assert.assertEquals("OVERWRITE", reader.getMode());
+    Assert.assertTrue(reader.isAutorename());
+    Assert.assertFalse(reader.isMute());
+    Assert.assertArrayEquals(content, IOUtils.toByteArray(reader.getContent()));
+    reader.close();
+  }
+
+  @Test
+  public void testContentWithLineBreaksAndComments() throws Exception {
+    String xml = "<?xml version=\"1.0\"?>\n" +
+        "<putFileRequest xmlns=\"" + DropboxConstants.PUT_FILE_NAMESPACE + "\">\n" +
+        "  <mute>1</mute>\n" +
+        "  <content>\n    SGVsbG8s\n    IFdvcmxk<!-- comment -->IQ==\n  </content>\n" +
+        "</putFileRequest>";
+    PutFileRequestReader reader =
+        new PutFileRequestReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    Assert.assertNull(reader.getPath());
+    Assert.assertTrue(reader.isMute());
+    Assert.assertEquals("Hello, World!", IOUtils.toString(reader.getContent(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testReadBatchRequest() throws Exception {
+    String xml = "<batchPutFileRequest xmlns=\"" + DropboxConstants.PUT_FILE_NAMESPACE + "\">" +
+        "<putFileRequest><path>/a</path><content>SGVsbG8=</content></putFileRequest>" +
+        "<putFileRequest><path>/b</path><mode>ADD</mode><content>c2tpcHBlZA==</content></putFileRequest>" +
+        "<putFileRequest><path>/c</path><content></content></putFileRequest>" +
+        "</batchPutFileRequest>";
+    BatchPutFileRequestReader reader =
+        new BatchPutFileRequestReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    PutFileRequestReader file = reader.next();
+    Assert.assertEquals("/a", file.getPath());
+    Assert.assertEquals("Hello", IOUtils.toString(file.getContent(), StandardCharsets.UTF_8));
+    // the content of the second file is skipped
+    file = reader.next();
+    Assert.assertEquals("/b", file.getPath());
+    Assert.assertEquals("ADD", file.getMode());
+    file = reader.next();
+    Assert.assertEquals("/c", file.getPath());
+    Assert.assertEquals(0, IOUtils.toByteArray(file.getContent()).length);
+    Assert.assertNull(reader.next());
+    Assert.assertNull(reader.next());
+    reader.close();
+  }
+
+  @Test(expected = XMLStreamException.class)
+  public void testMissingContent() throws Exception {
+    String xml = "<putFileRequest xmlns=\"" + DropboxConstants.PUT_FILE_NAMESPACE + "\">" +
+        "<path>/a</path></putFileRequest>";
+    new PutFileRequestReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+  }
+}
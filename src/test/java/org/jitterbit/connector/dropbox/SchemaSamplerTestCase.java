@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.v2.files.FileMetadata;
+import org.jitterbit.connector.sdk.metadata.SchemaMetaData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+
+/**
+ * Tests for the sampling of schemas from the beginning of files, and their cache.
+ */
+public class SchemaSamplerTestCase {
+
+  @Test
+  public void testXmlPrefixKeepsCompleteElements() {
+    String xml = "<?xml version=\"1.0\"?><contacts><contact><name>A</name></contact>"
+        + "<contact><name>B</name></contact><contact><na";
+    String sample = SchemaSampler.sampleXml(xml);
+    Assert.assertNotNull(sample);
+    Assert.assertTrue(sample, sample.contains("<contacts><contact><name>A</name></contact><contact><name>B</name>"
+        + "</contact></contacts>"));
+    Assert.assertFalse(sample, sample.contains("<na>"));
+  }
+
+  @Test
+  public void testXmlPrefixKeepsTheCompleteElementsOfNestedCollections() {
+    String sample = SchemaSampler.sampleXml(
+        "<root><records><record><id>1</id></record><record><id>2</id></record><record><i");
+    Assert.assertTrue(sample,
+        sample.endsWith("<root><records><record><id>1</id></record><record><id>2</id></record></records></root>"));
+    sample = SchemaSampler.sampleXml("<root><a><b>text</b><c");
+    Assert.assertTrue(sample, sample.endsWith("<root><a><b>text</b></a></root>"));
+  }
+
+  @Test
+  public void testCompleteXmlIsKept() {
+    String sample = SchemaSampler.sampleXml("<a><b x=\"1\">text</b></a>");
+    Assert.assertTrue(sample, sample.endsWith("<a><b x=\"1\">text</b></a>"));
+  }
+
+  @Test
+  public void testXmlWithoutRootHasNoSample() {
+    Assert.assertNull(SchemaSampler.sampleXml("<?xml version=\"1.0\"?><con"));
+  }
+
+  @Test
+  public void testJsonPrefixKeepsCompleteValues() {
+    Assert.assertEquals("[{\"id\":1,\"tags\":[\"a\"]},{\"id\":2,\"tags\":[]}]",
+        SchemaSampler.sampleJson("[{\"id\":1,\"tags\":[\"a\"]},{\"id\":2,\"tags\":[]},{\"id\":3,\"ta"));
+    Assert.assertEquals("{\"name\":\"x\",\"active\":true,\"items\":[{\"a\":1}]}",
+        SchemaSampler.sampleJson("{\"name\":\"x\",\"active\":true,\"items\":[{\"a\":1},{\"a\":"));
+    Assert.assertEquals("{\"data\":[{\"id\":1,\"tags\":[\"a\"]}]}",
+        SchemaSampler.sampleJson("{\"data\":[{\"id\":1,\"tags\":[\"a\",\"b"));
+    Assert.assertEquals("{\"name\":\"x\"}", SchemaSampler.sampleJson("{\"name\":\"x\",\"items\":[{\"a\":"));
+    Assert.assertNull(SchemaSampler.sampleJson(""));
+  }
+
+  @Test
+  public void testSchemasAreCachedByRevision() {
+    SchemaSampleCache cache = new SchemaSampleCache();
+    FileMetadata first = file("015f3a7bd2c6a1e0000");
+    Assert.assertNull(cache.getFile("/Folder/Data.json"));
+
+    SchemaMetaData schema = new SchemaMetaData().setName("data.json.xsd");
+    cache.put(first, 1024, schema);
+    Assert.assertSame(first, cache.getFile("/Folder/Data.json"));
+    Assert.assertSame(schema, cache.get(first, 1024));
+    Assert.assertNull(cache.get(first, 0));
+
+    FileMetadata second = file("015f3a7bd2c6a1e0001");
+    cache.recordFile(second);
+    Assert.assertSame(second, cache.getFile("/folder/data.json"));
+    Assert.assertNull(cache.get(second, 1024));
+    Assert.assertEquals(1, cache.getHitCount());
+    Assert.assertEquals(2, cache.getMissCount());
+  }
+
+  private static FileMetadata file(String rev) {
+    Date modified = new Date(0);
+    return new FileMetadata("data.json", "id:1", modified, modified, rev, 5000,
+        "/folder/data.json", "/Folder/Data.json", null, null, null, null, null, null);
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2018-2020 Jitterbit, Inc.
+ *
+ * Licensed under the JITTERBIT MASTER SUBSCRIPTION AGREEMENT
+ * (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * https://www.jitterbit.com/cloud-eula
+ *
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package org.jitterbit.connector.dropbox;
+
+import com.dropbox.core.DbxRequestConfig;
+import com.dropbox.core.http.HttpRequestor;
+import com.dropbox.core.v2.DbxClientV2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP requestor answering the requests of a Dropbox client in memory, for tests that need
+ * a Dropbox client without a Dropbox account.
+ */
+public class StubHttpRequestor extends HttpRequestor {
+
+  /**
+   * Answers a request made to Dropbox.
+   */
+  public interface Handler {
+
+    /**
+     * Returns the response to a request.
+     *
+     * @param request the request
+     * @return the response
+     * @throws IOException to simulate a network error
+     */
+    Response handle(Request request) throws IOException;
+  }
+
+  /**
+   * A request made to Dropbox.
+   */
+  public static final class Request {
+
+    Request(String url, Iterable<Header> headers, byte[] body) {
+      this.url = url;
+      for (Header header : headers) {
+        this.headers.put(header.getKey(), header.getValue());
+      }
+      this.body = body;
+    }
+
+    public String getUrl() {
+      return url;
+    }
+
+    /**
+     * Returns the path of the endpoint called, such as <code>/2/files/upload</code>.
+     *
+     * @return the path of the endpoint
+     */
+    public String getPath() {
+      return url.substring(url.indexOf('/', "https://".length()));
+    }
+
+    /**
+     * Returns the JSON arguments of the request, either from the <code>Dropbox-API-Arg</code> header
+     * or from the body.
+     *
+     * @return the arguments
+     */
+    public String getArg() {
+      String arg = headers.get("Dropbox-API-Arg");
+      return arg != null ? arg : new String(body, StandardCharsets.UTF_8);
+    }
+
+    public String getHeader(String name) {
+      return headers.get(name);
+    }
+
+    public byte[] getBody() {
+      return body;
+    }
+
+    private final String url;
+    private final Map<String, String> headers = new HashMap<>();
+    private final byte[] body;
+  }
+
+  public StubHttpRequestor(Handler handler) {
+    this.handler = handler;
+  }
+
+  /**
+   * Creates a Dropbox client whose requests are answered by a handler.
+   *
+   * @param handler the handler of the requests
+   * @return the Dropbox client
+   */
+  public static DbxClientV2 client(Handler handler) {
+    DbxRequestConfig config = DbxRequestConfig.newBuilder("test")
+        .withHttpRequestor(new StubHttpRequestor(handler))
+        .build();
+    return new DbxClientV2(config, "test-token");
+  }
+
+  /**
+   * Creates a response with a JSON body.
+   *
+   * @param status the HTTP status code
+   * @param json the body
+   * @return the response
+   */
+  public static Response json(int status, String json) {
+    return new Response(status, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+        Collections.singletonMap("Content-Type", Collections.singletonList("application/json")));
+  }
+
+  /**
+   * Creates the response of a content download endpoint, which returns its result in the
+   * <code>Dropbox-API-Result</code> header.
+   *
+   * @param result the JSON result
+   * @param content the content downloaded
+   * @return the response
+   */
+  public static Response download(String result, byte[] content) {
+    Map<String, List<String>> headers = new HashMap<>();
+    headers.put("Dropbox-API-Result", Collections.singletonList(result));
+    headers.put("Content-Type", Collections.singletonList("application/octet-stream"));
+    return new Response(200, new ByteArrayInputStream(content), headers);
+  }
+
+  /**
+   * Returns the JSON metadata of a file, as returned by Dropbox.
+   *
+   * @param path the path of the file
+   * @param rev the revision of the file
+   * @param size the size of the file
+   * @return the JSON metadata
+   */
+  public static String fileMetadata(String path, String rev, long size) {
+    String name = path.substring(path.lastIndexOf('/') + 1);
+    return "{\".tag\": \"file\", \"name\": \"" + name + "\", \"id\": \"id:" + name + "\", " +
+        "\"client_modified\": \"2020-01-01T00:00:00Z\", \"server_modified\": \"2020-01-01T00:00:00Z\", " +
+        "\"rev\": \"" + rev + "\", \"size\": " + size + ", \"path_lower\": \"" + path.toLowerCase() + "\", " +
+        "\"path_display\": \"" + path + "\"}";
+  }
+
+  @Override
+  public Response doGet(String url, Iterable<Header> headers) throws IOException {
+    return handler.handle(new Request(url, headers, new byte[0]));
+  }
+
+  @Override
+  public Uploader startPost(String url, Iterable<Header> headers) throws IOException {
+    return new StubUploader(url, headers);
+  }
+
+  @Override
+  public Uploader startPut(String url, Iterable<Header> headers) throws IOException {
+    return new StubUploader(url, headers);
+  }
+
+  private final class StubUploader extends Uploader {
+
+    StubUploader(String url, Iterable<Header> headers) {
+      this.url = url;
+      this.headers = headers;
+    }
+
+    @Override
+    public OutputStream getBody() {
+      return body;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void abort() {
+    }
+
+    @Override
+    public Response finish() throws IOException {
+      return handler.handle(new Request(url, headers, body.toByteArray()));
+    }
+
+    private final String url;
+    private final Iterable<Header> headers;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+  }
+
+  private final Handler handler;
+}